@@ -35,6 +35,14 @@ public interface CockroachDBConfiguration extends Configuration {
 
   String FLYWAY_TABLE_PROPERTY_NAME = "flyway.table";
 
+  // comma separated, e.g. to add optional migrations
+  String FLYWAY_LOCATIONS_PROPERTY_NAME = "flyway.locations";
+  String FLYWAY_LOCATIONS_DEFAULT_VALUE = "db/migration";
+
+  // allow applying optional migrations enabled after the newer migrations have been applied
+  String FLYWAY_OUT_OF_ORDER_PROPERTY_NAME = "flyway.out.of.order";
+  boolean FLYWAY_OUT_OF_ORDER_DEFAULT_VALUE = false;
+
   // The defaults are currently in line with the HikariConfig defaults, which are unfortunately
   // private.
   String CONNECTION_POOL_MAX_SIZE_PROPERTY_NAME = "workflow.cockroachdb.connection.pool.size.max";
@@ -84,6 +92,16 @@ public interface CockroachDBConfiguration extends Configuration {
   String DB_SOCKET_TIMEOUT_PROPERTY_NAME = "workflow.cockroachdb.socket.timeout.seconds";
   int DB_SOCKET_TIMEOUT_DEFAULT_VALUE = 30;
 
+  String DB_QUEUE_LEASE_DURATION_PROPERTY_NAME =
+      "workflow.cockroachdb.queue.lease.duration.seconds";
+  long DB_QUEUE_LEASE_DURATION_DEFAULT_VALUE = 60;
+
+  String DB_LOCK_LEASE_DURATION_PROPERTY_NAME = "workflow.cockroachdb.lock.lease.duration.millis";
+  long DB_LOCK_LEASE_DURATION_DEFAULT_VALUE = TimeUnit.SECONDS.toMillis(10);
+
+  String DB_LOCK_RETRY_INTERVAL_PROPERTY_NAME = "workflow.cockroachdb.lock.retry.interval.millis";
+  long DB_LOCK_RETRY_INTERVAL_DEFAULT_VALUE = 50;
+
   // cockroachdb enterprise version feature
   String FOLLOWER_READS_ENABLED_PROPERTY_NAME = "workflow.cockroachdb.follower.reads.enabled";
   boolean FOLLOWER_READS_ENABLED_DEFAULT_VALUE = false;
@@ -114,6 +132,14 @@ public interface CockroachDBConfiguration extends Configuration {
     return Optional.ofNullable(getProperty(FLYWAY_TABLE_PROPERTY_NAME, null));
   }
 
+  default String[] getFlywayLocations() {
+    return getProperty(FLYWAY_LOCATIONS_PROPERTY_NAME, FLYWAY_LOCATIONS_DEFAULT_VALUE).split(",");
+  }
+
+  default boolean isFlywayOutOfOrder() {
+    return getBoolProperty(FLYWAY_OUT_OF_ORDER_PROPERTY_NAME, FLYWAY_OUT_OF_ORDER_DEFAULT_VALUE);
+  }
+
   default int getConnectionPoolMaxSize() {
     return getIntProperty(
         CONNECTION_POOL_MAX_SIZE_PROPERTY_NAME, CONNECTION_POOL_MAX_SIZE_DEFAULT_VALUE);
@@ -180,6 +206,21 @@ public interface CockroachDBConfiguration extends Configuration {
     return getIntProperty(DB_SOCKET_TIMEOUT_PROPERTY_NAME, DB_SOCKET_TIMEOUT_DEFAULT_VALUE);
   }
 
+  default long getDbQueueLeaseDurationSeconds() {
+    return getLongProperty(
+        DB_QUEUE_LEASE_DURATION_PROPERTY_NAME, DB_QUEUE_LEASE_DURATION_DEFAULT_VALUE);
+  }
+
+  default long getDbLockLeaseDurationMillis() {
+    return getLongProperty(
+        DB_LOCK_LEASE_DURATION_PROPERTY_NAME, DB_LOCK_LEASE_DURATION_DEFAULT_VALUE);
+  }
+
+  default long getDbLockRetryIntervalMillis() {
+    return getLongProperty(
+        DB_LOCK_RETRY_INTERVAL_PROPERTY_NAME, DB_LOCK_RETRY_INTERVAL_DEFAULT_VALUE);
+  }
+
   default boolean isFollowerReadsEnabled() {
     return getBooleanProperty(
         FOLLOWER_READS_ENABLED_PROPERTY_NAME, FOLLOWER_READS_ENABLED_DEFAULT_VALUE);
@@ -81,6 +81,8 @@ public class CockroachDBDataSourceProvider {
     Flyway flyway =
         Flyway.configure()
             .dataSource(dataSource)
+            .locations(configuration.getFlywayLocations())
+            .outOfOrder(configuration.isFlywayOutOfOrder())
             .placeholderReplacement(false)
             .baselineOnMigrate(configuration.isFlywayBaseLineMigrationEnabled())
             .load();
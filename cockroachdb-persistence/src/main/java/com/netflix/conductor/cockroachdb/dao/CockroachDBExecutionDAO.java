@@ -14,12 +14,14 @@ package com.netflix.conductor.cockroachdb.dao;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.util.StatementFunction;
 import com.netflix.conductor.common.metadata.events.EventExecution;
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.dao.ExecutionDAO;
 import com.netflix.conductor.dao.IndexDAO;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -28,6 +30,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -41,6 +44,10 @@ import org.slf4j.LoggerFactory;
 /**
  * CockroachDB implementation of Execution DAO.
  *
+ * <p>If a fencing lock is set, the workflow and task writes made while the current thread holds
+ * the lock of the workflow check its fencing token within the same transaction. So the writes
+ * from a node that lost the lock lease are rejected.
+ *
  * @author jun-he
  */
 public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements ExecutionDAO {
@@ -53,6 +60,9 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
       "UPSERT INTO task (workflow_instance_id,task_id,payload) VALUES (?,?,?)";
   private static final String UPSERT_TASK_STATEMENT =
       "UPSERT INTO task (workflow_instance_id,task_id,payload) VALUES (?,?,?)";
+  private static final String UPSERT_TASKS_STATEMENT_PREFIX =
+      "UPSERT INTO task (workflow_instance_id,task_id,payload) VALUES ";
+  private static final String TASK_ROW_PLACEHOLDER = "(?,?,?)";
   private static final String GET_TASK_BY_TASK_ID_STATEMENT =
       "SELECT payload FROM task WHERE task_id = ?";
   private static final String GET_TASKS_BY_WORKFLOW_INSTANCE_ID_STATEMENT =
@@ -85,16 +95,28 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
   private final IndexDAO indexDAO;
   private final int insertBatchSize;
   private final int maxSearchSize;
+  private final CockroachDBLockDAO fencingLock;
 
   public CockroachDBExecutionDAO(
       DataSource dataSource,
       IndexDAO indexDAO,
       ObjectMapper objectMapper,
       CockroachDBConfiguration config) {
+    this(dataSource, indexDAO, objectMapper, config, null);
+  }
+
+  /** Constructor with a fencing lock, which is null if the writes are not fenced. */
+  public CockroachDBExecutionDAO(
+      DataSource dataSource,
+      IndexDAO indexDAO,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      CockroachDBLockDAO fencingLock) {
     super(dataSource, objectMapper, config);
     this.indexDAO = indexDAO;
     this.insertBatchSize = config.getDbInsertBatchSize();
     this.maxSearchSize = config.getDbMaxSearchSize();
+    this.fencingLock = fencingLock;
   }
 
   /**
@@ -151,16 +173,13 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
   @Override
   public List<Task> createTasks(List<Task> tasks) {
     validateTasks(tasks);
-    Collection<Task> pendingTasks =
-        tasks.stream()
-            .collect(
-                Collectors.toMap(Task::getTaskId, Function.identity(), (u, v) -> v, TreeMap::new))
-            .values();
+    Collection<Task> pendingTasks = dedupTasks(tasks);
 
     return withMetricLogError(
         () -> {
           int cnt =
-              withRetryableStatement(
+              withFencedStatement(
+                  tasks.get(0).getWorkflowInstanceId(),
                   CREATE_TASK_STATEMENT,
                   statement -> {
                     int count = 0;
@@ -202,15 +221,12 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
     withMetricLogError(
         () -> {
           int cnt =
-              withRetryableTransaction(
-                  conn -> {
-                    int updated;
-                    try (PreparedStatement statement =
-                        conn.prepareStatement(UPSERT_TASK_STATEMENT)) {
-                      addTask(statement, task);
-                      updated = statement.executeUpdate();
-                    }
-                    return updated;
+              withFencedStatement(
+                  task.getWorkflowInstanceId(),
+                  UPSERT_TASK_STATEMENT,
+                  statement -> {
+                    addTask(statement, task);
+                    return statement.executeUpdate();
                   });
           LOG.debug(
               "updated {} task {} in a workflow instance {}",
@@ -225,6 +241,113 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
         task.getWorkflowInstanceId());
   }
 
+  /**
+   * Updates multiple tasks using multi-row UPSERT statements within a single transaction, which
+   * costs a round trip per insertBatchSize tasks instead of one per task.
+   *
+   * @param tasks tasks to be updated
+   */
+  public void updateTasks(List<Task> tasks) {
+    if (tasks == null || tasks.isEmpty()) {
+      return;
+    }
+    List<Task> pendingTasks = new ArrayList<>(dedupTasks(tasks));
+    List<String> payloads = new ArrayList<>(pendingTasks.size());
+    for (Task task : pendingTasks) {
+      payloads.add(toJson(task));
+    }
+    withMetricLogError(
+        () -> {
+          int cnt =
+              withRetryableTransaction(
+                  conn ->
+                      upsertTasks(
+                          conn, pendingTasks, payloads, "", PreparedStatement::executeUpdate));
+          LOG.debug(
+              "updated {}/{}/{} tasks in a workflow instance {}",
+              cnt,
+              pendingTasks.size(),
+              tasks.size(),
+              tasks.get(0).getWorkflowInstanceId());
+          return cnt;
+        },
+        "updateTasks",
+        "Failed updating {} tasks in a workflow instance {}",
+        tasks.size(),
+        tasks.get(0).getWorkflowInstanceId());
+  }
+
+  /**
+   * Upserts the tasks with their serialized payloads within the given connection. Each multi-row
+   * UPSERT statement writes at most insertBatchSize tasks. The suffix, e.g. a RETURNING clause,
+   * is appended to every statement, which is then run by the executor. The fencing tokens of the
+   * workflows of the tasks are checked first.
+   *
+   * @return the sum of the executor results
+   */
+  protected int upsertTasks(
+      Connection conn,
+      List<Task> tasks,
+      List<String> payloads,
+      String suffix,
+      StatementFunction<Integer> executor)
+      throws SQLException {
+    for (String workflowId :
+        tasks.stream().map(Task::getWorkflowInstanceId).collect(Collectors.toSet())) {
+      checkFencingToken(conn, workflowId);
+    }
+    int updated = 0;
+    Iterator<Task> taskIterator = tasks.iterator();
+    Iterator<String> payloadIterator = payloads.iterator();
+    for (int remaining = tasks.size(); remaining > 0; remaining -= insertBatchSize) {
+      int rows = Math.min(insertBatchSize, remaining);
+      String stmt =
+          UPSERT_TASKS_STATEMENT_PREFIX
+              + String.join(",", Collections.nCopies(rows, TASK_ROW_PLACEHOLDER))
+              + suffix;
+      try (PreparedStatement statement = conn.prepareStatement(stmt)) {
+        int idx = 0;
+        for (int i = 0; i < rows; i++) {
+          Task task = taskIterator.next();
+          statement.setString(++idx, task.getWorkflowInstanceId());
+          statement.setString(++idx, task.getTaskId());
+          statement.setString(++idx, payloadIterator.next());
+        }
+        updated += executor.apply(statement);
+      }
+    }
+    return updated;
+  }
+
+  /**
+   * Run a write statement of a workflow or its tasks within a transaction, which checks the
+   * fencing token of the workflow first.
+   */
+  protected <R> R withFencedStatement(
+      String workflowId, String stmt, StatementFunction<R> function) {
+    return withRetryableTransaction(
+        conn -> {
+          checkFencingToken(conn, workflowId);
+          try (PreparedStatement statement = conn.prepareStatement(stmt)) {
+            return function.apply(statement);
+          }
+        });
+  }
+
+  /** Check the fencing token of the workflow lock held by the current thread, if any. */
+  protected void checkFencingToken(Connection conn, String workflowId) throws SQLException {
+    if (fencingLock != null) {
+      fencingLock.checkFencingToken(conn, workflowId);
+    }
+  }
+
+  /** Dedup the tasks by the task id, the last one wins, ordered by the task id. */
+  protected Collection<Task> dedupTasks(List<Task> tasks) {
+    return tasks.stream()
+        .collect(Collectors.toMap(Task::getTaskId, Function.identity(), (u, v) -> v, TreeMap::new))
+        .values();
+  }
+
   @Override
   public boolean exceedsInProgressLimit(Task task) {
     Optional<TaskDef> taskDefinition = task.getTaskDefinition();
@@ -370,11 +493,13 @@ public class CockroachDBExecutionDAO extends CockroachDBBaseDAO implements Execu
 
     withMetricLogError(
         () ->
-            withRetryableUpdate(
+            withFencedStatement(
+                workflow.getWorkflowId(),
                 stmt,
                 statement -> {
                   statement.setString(1, workflow.getWorkflowId());
                   statement.setString(2, toJson(workflow));
+                  return statement.executeUpdate();
                 }),
         methodName,
         "Failed {} with workflow instance id {}",
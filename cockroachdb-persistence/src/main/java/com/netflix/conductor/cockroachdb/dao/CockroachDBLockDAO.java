@@ -0,0 +1,391 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.cockroachdb.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.core.execution.ApplicationException;
+import com.netflix.conductor.core.utils.Lock;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CockroachDB lease based implementation of Lock.
+ *
+ * <p>Each held lock is a row in the execution_lock table owned by this node with a short lease.
+ * Acquiring a lock claims the row in a single statement if it is absent or its lease is expired,
+ * and bumps its token. Releasing a lock only deletes the row with the same token, so it never drops
+ * a lease taken over by another node. All the leases held by this node are renewed together in a
+ * single statement by a background thread until the caller's lease time is reached.
+ *
+ * <p>The token is also a fencing token. The execution DAO checks it by {@link
+ * #checkFencingToken} within the transaction of every workflow or task write made while holding
+ * the lock. So a node that lost its lease, e.g. after a long pause, cannot overwrite the updates
+ * made by the node that took over the lock.
+ *
+ * <p>Threads within the same node are serialized by an in-process reentrant lock before touching
+ * the DB. So the contention between deciders in a node never reaches the DB, and a node only
+ * competes with other nodes for the lease rows. The lease expiration relies on the node clocks, so
+ * the lease duration should be much larger than the clock skew.
+ *
+ * @author jun-he
+ */
+public class CockroachDBLockDAO extends CockroachDBBaseDAO implements Lock {
+  private static final Logger LOG = LoggerFactory.getLogger(CockroachDBLockDAO.class);
+
+  private static final String LOCK_ID_COLUMN = "lock_id";
+  private static final String TOKEN_COLUMN = "token";
+  private static final long DEFAULT_LEASE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(60);
+  private static final long NO_TOKEN = 0;
+
+  private static final String ACQUIRE_LOCK_STATEMENT =
+      "INSERT INTO execution_lock (lock_id,owner,token,expire_ts) VALUES (?,?,1,?) "
+          + "ON CONFLICT (lock_id) DO UPDATE SET owner = excluded.owner, "
+          + "token = execution_lock.token + 1, expire_ts = excluded.expire_ts "
+          + "WHERE execution_lock.expire_ts <= ? OR execution_lock.owner = excluded.owner "
+          + "RETURNING token";
+  private static final String RENEW_LOCKS_STATEMENT =
+      "UPDATE execution_lock SET expire_ts = ? WHERE owner = ? AND lock_id = ANY(?) "
+          + "RETURNING lock_id";
+  private static final String RELEASE_LOCK_STATEMENT =
+      "DELETE FROM execution_lock WHERE lock_id = ? AND owner = ? AND token = ?";
+  private static final String RELEASE_ALL_LOCKS_STATEMENT =
+      "DELETE FROM execution_lock WHERE owner = ?";
+  private static final String DELETE_LOCK_STATEMENT =
+      "DELETE FROM execution_lock WHERE lock_id = ?";
+  private static final String CHECK_FENCING_TOKEN_QUERY =
+      "SELECT token FROM execution_lock WHERE lock_id = ? AND owner = ? AND token = ?";
+
+  private final String owner;
+  private final long leaseDurationMillis;
+  private final long retryIntervalMillis;
+  private final Map<String, LocalLock> locks = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService renewer;
+
+  public CockroachDBLockDAO(
+      DataSource dataSource, ObjectMapper objectMapper, CockroachDBConfiguration config) {
+    this(
+        dataSource,
+        objectMapper,
+        config,
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "cockroachdb-lock-renewer");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  @VisibleForTesting
+  CockroachDBLockDAO(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      ScheduledExecutorService renewer) {
+    super(dataSource, objectMapper, config);
+    this.owner = config.getClientName() + ":" + UUID.randomUUID();
+    this.leaseDurationMillis = config.getDbLockLeaseDurationMillis();
+    this.retryIntervalMillis = config.getDbLockRetryIntervalMillis();
+    this.renewer = renewer;
+  }
+
+  /** Start to renew the leases held by this node periodically. */
+  public void postConstruct() {
+    long interval = Math.max(1, leaseDurationMillis / 3);
+    renewer.scheduleWithFixedDelay(
+        () -> {
+          try {
+            renewLeases();
+          } catch (RuntimeException e) {
+            LOG.warn("Failed to renew the lock leases for owner [{}], will retry", owner, e);
+          }
+        },
+        interval,
+        interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop the renewal and give up all the leases held by this node. */
+  public void preDestroy() {
+    renewer.shutdownNow();
+    try {
+      withRetryableUpdate(RELEASE_ALL_LOCKS_STATEMENT, statement -> statement.setString(1, owner));
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to release the locks for owner [{}], they will expire", owner, e);
+    }
+  }
+
+  @Override
+  public void acquireLock(String lockId) {
+    acquireLock(lockId, Long.MAX_VALUE, DEFAULT_LEASE_TIME_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean acquireLock(String lockId, long timeToTry, TimeUnit unit) {
+    return acquireLock(
+        lockId, unit.toMillis(timeToTry), DEFAULT_LEASE_TIME_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean acquireLock(String lockId, long timeToTry, long leaseTime, TimeUnit unit) {
+    long timeToTryMillis = unit.toMillis(timeToTry);
+    long leaseTimeMillis = unit.toMillis(leaseTime);
+    long deadline = saturatedAdd(System.currentTimeMillis(), timeToTryMillis);
+    LocalLock local = retain(lockId);
+    boolean locked = false;
+    boolean acquired = false;
+    try {
+      locked = local.mutex.tryLock(timeToTryMillis, TimeUnit.MILLISECONDS);
+      if (!locked) {
+        return false; // held by another thread in this node, no need to hit DB
+      }
+      if (local.mutex.getHoldCount() > 1) {
+        if (local.token == NO_TOKEN) {
+          LOG.warn("Lost the lease of lock [{}] held by the current thread", lockId);
+          return false;
+        }
+        acquired = true;
+        return true;
+      }
+      while (true) {
+        long now = System.currentTimeMillis();
+        long token = tryAcquire(lockId, now);
+        if (token != NO_TOKEN) {
+          local.token = token;
+          local.leaseDeadline = saturatedAdd(now, leaseTimeMillis);
+          acquired = true;
+          return true;
+        }
+        long remaining = deadline - now;
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.MILLISECONDS.sleep(Math.min(retryIntervalMillis, remaining));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while acquiring lock [{}]", lockId);
+      return false;
+    } finally {
+      if (!acquired) {
+        if (locked) {
+          local.mutex.unlock();
+        }
+        release(lockId);
+      }
+    }
+  }
+
+  @Override
+  public void releaseLock(String lockId) {
+    LocalLock local = locks.get(lockId);
+    if (local == null || !local.mutex.isHeldByCurrentThread()) {
+      LOG.warn("Lock [{}] is not held by the current thread and skip releasing it", lockId);
+      return;
+    }
+    try {
+      if (local.mutex.getHoldCount() == 1 && local.token != NO_TOKEN) {
+        long token = local.token;
+        local.token = NO_TOKEN;
+        withRetryableUpdate(
+            RELEASE_LOCK_STATEMENT,
+            statement -> {
+              statement.setString(1, lockId);
+              statement.setString(2, owner);
+              statement.setLong(3, token);
+            });
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to release lock [{}] and its lease will expire", lockId, e);
+    } finally {
+      local.mutex.unlock();
+      release(lockId);
+    }
+  }
+
+  @Override
+  public void deleteLock(String lockId) {
+    withMetricLogError(
+        () ->
+            withRetryableUpdate(
+                DELETE_LOCK_STATEMENT, statement -> statement.setString(1, lockId)),
+        "deleteLock",
+        "Failed deleting lock [{}]",
+        lockId);
+  }
+
+  /**
+   * Check the fencing token of the lock within the transaction of a write guarded by the lock. It
+   * is a no-op if the current thread does not hold the lock. If its lease is lost or taken over by
+   * another node, it throws and the write is rolled back. A takeover committed after the check
+   * conflicts with the transaction reading the lock row, which is then retried and fails the check.
+   *
+   * @param conn the transactional connection of the write
+   * @param lockId lock id
+   * @throws SQLException sql exception
+   */
+  public void checkFencingToken(Connection conn, String lockId) throws SQLException {
+    LocalLock local = locks.get(lockId);
+    if (local == null || !local.mutex.isHeldByCurrentThread()) {
+      return;
+    }
+    long token = local.token;
+    if (token != NO_TOKEN) {
+      try (PreparedStatement statement = conn.prepareStatement(CHECK_FENCING_TOKEN_QUERY)) {
+        statement.setString(1, lockId);
+        statement.setString(2, owner);
+        statement.setLong(3, token);
+        try (ResultSet result = statement.executeQuery()) {
+          if (result.next()) {
+            return;
+          }
+        }
+      }
+      local.token = NO_TOKEN;
+    }
+    throw new ApplicationException(
+        ApplicationException.Code.CONFLICT,
+        String.format(
+            "Lost the lease of lock [%s] for owner [%s] and reject the write", lockId, owner));
+  }
+
+  /** Get the token of a lock held by the current thread, 0 if not held or it is lost. */
+  @VisibleForTesting
+  long getToken(String lockId) {
+    LocalLock local = locks.get(lockId);
+    if (local == null || !local.mutex.isHeldByCurrentThread()) {
+      return NO_TOKEN;
+    }
+    return local.token;
+  }
+
+  /**
+   * Renew all the leases held by this node within a single statement. The locks held beyond their
+   * lease time are not renewed and then expire. The locks failed to be renewed are marked as lost.
+   *
+   * @return the number of renewed leases
+   */
+  @VisibleForTesting
+  int renewLeases() {
+    long now = System.currentTimeMillis();
+    List<String> lockIds = new ArrayList<>();
+    locks.forEach(
+        (lockId, local) -> {
+          if (local.token != NO_TOKEN && local.leaseDeadline > now) {
+            lockIds.add(lockId);
+          }
+        });
+    if (lockIds.isEmpty()) {
+      return 0;
+    }
+    Set<String> renewed =
+        withMetricLogError(
+            () ->
+                withRetryableQuery(
+                    RENEW_LOCKS_STATEMENT,
+                    statement -> {
+                      statement.setLong(1, now + leaseDurationMillis);
+                      statement.setString(2, owner);
+                      statement.setArray(
+                          3,
+                          statement
+                              .getConnection()
+                              .createArrayOf(ARRAY_TYPE_NAME, lockIds.toArray(new String[0])));
+                    },
+                    result -> {
+                      Set<String> ids = new HashSet<>();
+                      while (result.next()) {
+                        ids.add(result.getString(LOCK_ID_COLUMN));
+                      }
+                      return ids;
+                    }),
+            "renewLeases",
+            "Failed renewing [{}] lock leases for owner [{}]",
+            lockIds.size(),
+            owner);
+    for (String lockId : lockIds) {
+      if (!renewed.contains(lockId)) {
+        LocalLock local = locks.get(lockId);
+        if (local != null) {
+          local.token = NO_TOKEN;
+        }
+        LOG.warn("Lost the lease of lock [{}] for owner [{}]", lockId, owner);
+      }
+    }
+    return renewed.size();
+  }
+
+  private long tryAcquire(String lockId, long now) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                ACQUIRE_LOCK_STATEMENT,
+                statement -> {
+                  statement.setString(1, lockId);
+                  statement.setString(2, owner);
+                  statement.setLong(3, now + leaseDurationMillis);
+                  statement.setLong(4, now);
+                },
+                result -> result.next() ? result.getLong(TOKEN_COLUMN) : NO_TOKEN),
+        "acquireLock",
+        "Failed acquiring lock [{}] for owner [{}]",
+        lockId,
+        owner);
+  }
+
+  /** Get the local lock and count the current thread as its user. */
+  private LocalLock retain(String lockId) {
+    return locks.compute(
+        lockId,
+        (id, local) -> {
+          LocalLock res = local == null ? new LocalLock() : local;
+          res.users++;
+          return res;
+        });
+  }
+
+  /** Remove the current thread from the users of the local lock and drop it if unused. */
+  private void release(String lockId) {
+    locks.computeIfPresent(lockId, (id, local) -> --local.users == 0 ? null : local);
+  }
+
+  private static long saturatedAdd(long base, long delta) {
+    long res = base + delta;
+    return ((base ^ res) & (delta ^ res)) < 0 ? Long.MAX_VALUE : res;
+  }
+
+  /** In-process state of a lock, users is only accessed within the map compute functions. */
+  private static final class LocalLock {
+    private final ReentrantLock mutex = new ReentrantLock();
+    private volatile long token = NO_TOKEN;
+    private volatile long leaseDeadline;
+    private int users;
+  }
+}
@@ -13,107 +13,409 @@
 package com.netflix.conductor.cockroachdb.dao;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
 import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.util.StatementPreparer;
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.dao.QueueDAO;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Dummy CockroachDB implementation of QueueDAO.
+ * CockroachDB implementation of QueueDAO.
+ *
+ * <p>Each message is a row in the queue_message table. The visible_ts column holds the moment that
+ * the message can be claimed. It is the visible time for a pending message and the lease deadline
+ * for a leased (popped but not acked) message. So a message with an expired lease is claimable
+ * again by the next pop without waiting for processUnacks, and it is counted in the queue size.
+ * Pop claims a batch of due messages in a single UPDATE statement using the visibility index. The
+ * batch is selected with SKIP LOCKED, so concurrent pollers claim different messages instead of
+ * contending on the same rows.
+ *
+ * <p>The poll timeout is ignored as the pop never blocks.
  *
  * @author jun-he
  */
 public class CockroachDBQueueDAO extends CockroachDBBaseDAO implements QueueDAO {
+  private static final Logger LOG = LoggerFactory.getLogger(CockroachDBQueueDAO.class);
+
+  private static final String SHARD_NAME = "a";
+  private static final String SIZE_COLUMN = "size";
+  private static final String UNACKED_COLUMN = "uacked";
+  private static final String QUEUE_NAME_COLUMN = "queue_name";
+  private static final String MESSAGE_ID_COLUMN = "message_id";
+  private static final String PRIORITY_COLUMN = "priority";
+
+  private static final String UPSERT_MESSAGE_STATEMENT =
+      "UPSERT INTO queue_message (queue_name,message_id,priority,visible_ts,leased,payload) "
+          + "VALUES (?,?,?,?,FALSE,?)";
+  private static final String INSERT_MESSAGE_IF_NOT_EXISTS_STATEMENT =
+      "INSERT INTO queue_message (queue_name,message_id,priority,visible_ts,leased) "
+          + "VALUES (?,?,?,?,FALSE) ON CONFLICT (queue_name,message_id) DO NOTHING";
+  private static final String POP_MESSAGES_STATEMENT =
+      "UPDATE queue_message SET leased = TRUE, visible_ts = ? "
+          + "WHERE (queue_name,message_id) IN (SELECT queue_name,message_id FROM queue_message "
+          + "WHERE queue_name = ? AND visible_ts <= ? "
+          + "ORDER BY priority DESC, visible_ts ASC LIMIT ? FOR UPDATE SKIP LOCKED) "
+          + "RETURNING message_id, priority, payload";
+  private static final String REMOVE_MESSAGE_STATEMENT =
+      "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ?";
+  private static final String ACK_MESSAGE_STATEMENT =
+      "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ? AND leased = TRUE";
+  private static final String SET_UNACK_TIMEOUT_STATEMENT =
+      "UPDATE queue_message SET leased = TRUE, visible_ts = ? "
+          + "WHERE queue_name = ? AND message_id = ?";
+  private static final String RESET_OFFSET_TIME_STATEMENT =
+      "UPDATE queue_message SET visible_ts = ? "
+          + "WHERE queue_name = ? AND message_id = ? AND leased = FALSE";
+  private static final String PROCESS_UNACKS_STATEMENT =
+      "UPDATE queue_message SET leased = FALSE "
+          + "WHERE queue_name = ? AND visible_ts <= ? AND leased = TRUE";
+  private static final String FLUSH_QUEUE_STATEMENT =
+      "DELETE FROM queue_message WHERE queue_name = ?";
+  private static final String GET_QUEUE_SIZE_STATEMENT =
+      "SELECT count(*) AS size FROM queue_message "
+          + "WHERE queue_name = ? AND (leased = FALSE OR visible_ts <= ?)";
+  private static final String CONTAINS_MESSAGE_STATEMENT =
+      "SELECT message_id FROM queue_message WHERE queue_name = ? AND message_id = ?";
+  private static final String GET_QUEUES_DETAIL_STATEMENT =
+      "SELECT queue_name, sum(CASE WHEN leased AND visible_ts > ? THEN 0 ELSE 1 END) AS size, "
+          + "sum(CASE WHEN leased AND visible_ts > ? THEN 1 ELSE 0 END) AS uacked "
+          + "FROM queue_message GROUP BY queue_name";
+
+  private final int insertBatchSize;
+  private final long leaseDurationSeconds;
+
   public CockroachDBQueueDAO(
       DataSource dataSource, ObjectMapper objectMapper, CockroachDBConfiguration config) {
     super(dataSource, objectMapper, config);
+    this.insertBatchSize = config.getDbInsertBatchSize();
+    this.leaseDurationSeconds = config.getDbQueueLeaseDurationSeconds();
   }
 
   @Override
-  public void push(String queueName, String id, long offsetTimeInSecond) {}
+  public void push(String queueName, String id, long offsetTimeInSecond) {
+    push(queueName, id, 0, offsetTimeInSecond);
+  }
 
   @Override
-  public void push(String queueName, String id, int priority, long offsetTimeInSecond) {}
+  public void push(String queueName, String id, int priority, long offsetTimeInSecond) {
+    withMetricLogError(
+        () ->
+            withRetryableUpdate(
+                UPSERT_MESSAGE_STATEMENT,
+                statement -> {
+                  statement.setString(1, queueName);
+                  statement.setString(2, id);
+                  statement.setInt(3, priority);
+                  statement.setLong(4, visibleTime(offsetTimeInSecond));
+                  statement.setString(5, null);
+                }),
+        "push",
+        "Failed pushing a message {} to queue {}",
+        id,
+        queueName);
+  }
 
+  /** Push messages in batches within a single transaction. */
   @Override
-  public void push(String queueName, List<Message> messages) {}
+  public void push(String queueName, List<Message> messages) {
+    if (messages == null || messages.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    int cnt =
+        withMetricLogError(
+            () ->
+                withRetryableStatement(
+                    UPSERT_MESSAGE_STATEMENT,
+                    statement -> {
+                      int count = 0;
+                      int inserted = 0;
+                      for (Message message : messages) {
+                        statement.setString(1, queueName);
+                        statement.setString(2, message.getId());
+                        statement.setInt(3, message.getPriority());
+                        statement.setLong(4, now);
+                        statement.setString(5, message.getPayload());
+                        statement.addBatch();
+                        count++;
+                        if (count % insertBatchSize == 0 || count == messages.size()) {
+                          int[] res = statement.executeBatch();
+                          inserted += res.length;
+                        }
+                      }
+                      return inserted;
+                    }),
+            "pushMessages",
+            "Failed pushing {} messages to queue {}",
+            messages.size(),
+            queueName);
+    LOG.debug("Pushed {}/{} messages to queue {}", cnt, messages.size(), queueName);
+  }
 
   @Override
   public boolean pushIfNotExists(String queueName, String id, long offsetTimeInSecond) {
-    return false;
+    return pushIfNotExists(queueName, id, 0, offsetTimeInSecond);
   }
 
   @Override
   public boolean pushIfNotExists(
       String queueName, String id, int priority, long offsetTimeInSecond) {
-    return false;
+    int cnt =
+        withMetricLogError(
+            () ->
+                withRetryableUpdate(
+                    INSERT_MESSAGE_IF_NOT_EXISTS_STATEMENT,
+                    statement -> {
+                      statement.setString(1, queueName);
+                      statement.setString(2, id);
+                      statement.setInt(3, priority);
+                      statement.setLong(4, visibleTime(offsetTimeInSecond));
+                    }),
+            "pushIfNotExists",
+            "Failed pushing a message {} if not exists to queue {}",
+            id,
+            queueName);
+    return cnt == SUCCESS_WRITE_SIZE;
   }
 
   @Override
   public List<String> pop(String queueName, int count, int timeout) {
-    return null;
+    return pop(queueName, count, timeout, leaseDurationSeconds);
+  }
+
+  @Override
+  public List<String> pop(String queueName, int count, int timeout, long leaseDurationSeconds) {
+    List<Message> messages = pollMessages(queueName, count, timeout, leaseDurationSeconds);
+    List<String> ids = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      ids.add(message.getId());
+    }
+    return ids;
   }
 
   @Override
   public List<Message> pollMessages(String queueName, int count, int timeout) {
-    return null;
+    return pollMessages(queueName, count, timeout, leaseDurationSeconds);
   }
 
+  /** Claim up to count due messages in a single statement and lease them. */
   @Override
-  public void remove(String queueName, String messageId) {}
+  public List<Message> pollMessages(
+      String queueName, int count, int timeout, long leaseDurationSeconds) {
+    Preconditions.checkArgument(count >= 0, "pop count must not be negative");
+    if (count == 0) {
+      return Collections.emptyList();
+    }
+    long now = System.currentTimeMillis();
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                POP_MESSAGES_STATEMENT,
+                statement -> {
+                  statement.setLong(1, now + TimeUnit.SECONDS.toMillis(leaseDurationSeconds));
+                  statement.setString(2, queueName);
+                  statement.setLong(3, now);
+                  statement.setInt(4, count);
+                },
+                result -> {
+                  List<Message> messages = new ArrayList<>();
+                  while (result.next()) {
+                    String id = result.getString(MESSAGE_ID_COLUMN);
+                    messages.add(
+                        new Message(
+                            id,
+                            result.getString(PAYLOAD_COLUMN),
+                            id,
+                            result.getInt(PRIORITY_COLUMN)));
+                  }
+                  return messages;
+                }),
+        "pollMessages",
+        "Failed popping {} messages from queue {}",
+        count,
+        queueName);
+  }
+
+  @Override
+  public void remove(String queueName, String messageId) {
+    withMetricLogError(
+        () -> withRetryableUpdate(REMOVE_MESSAGE_STATEMENT, messageKey(queueName, messageId)),
+        "remove",
+        "Failed removing a message {} from queue {}",
+        messageId,
+        queueName);
+  }
 
   @Override
   public int getSize(String queueName) {
-    return 0;
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                GET_QUEUE_SIZE_STATEMENT,
+                statement -> {
+                  statement.setString(1, queueName);
+                  statement.setLong(2, System.currentTimeMillis());
+                },
+                result -> result.next() ? result.getInt(SIZE_COLUMN) : 0),
+        "getSize",
+        "Failed getting the size of queue {}",
+        queueName);
   }
 
   @Override
   public boolean ack(String queueName, String messageId) {
-    return false;
+    int cnt =
+        withMetricLogError(
+            () -> withRetryableUpdate(ACK_MESSAGE_STATEMENT, messageKey(queueName, messageId)),
+            "ack",
+            "Failed acking a message {} in queue {}",
+            messageId,
+            queueName);
+    return cnt == SUCCESS_WRITE_SIZE;
   }
 
+  /** Lease the message for the given unack timeout in milliseconds. */
   @Override
   public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
-    return false;
+    int cnt =
+        withMetricLogError(
+            () ->
+                withRetryableUpdate(
+                    SET_UNACK_TIMEOUT_STATEMENT,
+                    statement -> {
+                      statement.setLong(1, System.currentTimeMillis() + unackTimeout);
+                      statement.setString(2, queueName);
+                      statement.setString(3, messageId);
+                    }),
+            "setUnackTimeout",
+            "Failed setting unack timeout for a message {} in queue {}",
+            messageId,
+            queueName);
+    return cnt == SUCCESS_WRITE_SIZE;
   }
 
   @Override
-  public void flush(String queueName) {}
+  public void flush(String queueName) {
+    withMetricLogError(
+        () ->
+            withRetryableUpdate(
+                FLUSH_QUEUE_STATEMENT, statement -> statement.setString(1, queueName)),
+        "flush",
+        "Failed flushing queue {}",
+        queueName);
+  }
 
   @Override
   public Map<String, Long> queuesDetail() {
-    return null;
+    Map<String, Long> detail = new HashMap<>();
+    queuesDetailVerbose()
+        .forEach((k, v) -> detail.put(k, v.get(SHARD_NAME).getOrDefault(SIZE_COLUMN, 0L)));
+    return detail;
   }
 
   @Override
   public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
-    return null;
+    return withMetricLogError(
+        () ->
+            withReadOnlyQuery(
+                GET_QUEUES_DETAIL_STATEMENT,
+                statement -> {
+                  long now = System.currentTimeMillis();
+                  statement.setLong(1, now);
+                  statement.setLong(2, now);
+                },
+                result -> {
+                  Map<String, Map<String, Map<String, Long>>> detail = new HashMap<>();
+                  while (result.next()) {
+                    Map<String, Long> shard = new HashMap<>();
+                    shard.put(SIZE_COLUMN, result.getLong(SIZE_COLUMN));
+                    shard.put(UNACKED_COLUMN, result.getLong(UNACKED_COLUMN));
+                    detail.put(
+                        result.getString(QUEUE_NAME_COLUMN),
+                        Collections.singletonMap(SHARD_NAME, shard));
+                  }
+                  return detail;
+                }),
+        "queuesDetailVerbose",
+        "Failed getting queues detail");
   }
 
   @Override
   public boolean resetOffsetTime(String queueName, String id) {
-    return false;
+    int cnt =
+        withMetricLogError(
+            () ->
+                withRetryableUpdate(
+                    RESET_OFFSET_TIME_STATEMENT,
+                    statement -> {
+                      statement.setLong(1, System.currentTimeMillis());
+                      statement.setString(2, queueName);
+                      statement.setString(3, id);
+                    }),
+            "resetOffsetTime",
+            "Failed resetting offset time for a message {} in queue {}",
+            id,
+            queueName);
+    return cnt == SUCCESS_WRITE_SIZE;
   }
 
+  /** Re-expose all the messages with expired leases in a single statement. */
   @Override
-  public List<String> pop(String queueName, int count, int timeout, long leaseDurationSeconds) {
-    return null;
+  public void processUnacks(String queueName) {
+    int cnt =
+        withMetricLogError(
+            () ->
+                withRetryableUpdate(
+                    PROCESS_UNACKS_STATEMENT,
+                    statement -> {
+                      statement.setString(1, queueName);
+                      statement.setLong(2, System.currentTimeMillis());
+                    }),
+            "processUnacks",
+            "Failed processing unacked messages in queue {}",
+            queueName);
+    if (cnt > 0) {
+      LOG.info("Re-exposed {} unacked messages in queue {}", cnt, queueName);
+    }
   }
 
   @Override
-  public List<Message> pollMessages(
-      String queueName, int count, int timeout, long leaseDurationSeconds) {
-    return null;
+  public boolean postpone(
+      String queueName, String messageId, int priority, long postponeDurationInSeconds) {
+    push(queueName, messageId, priority, postponeDurationInSeconds);
+    return true;
   }
 
   @Override
-  public void processUnacks(String queueName) {}
+  public boolean containsMessage(String queueName, String messageId) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                CONTAINS_MESSAGE_STATEMENT, messageKey(queueName, messageId), ResultSet::next),
+        "containsMessage",
+        "Failed checking a message {} in queue {}",
+        messageId,
+        queueName);
+  }
 
-  @Override
-  public boolean postpone(
-      String queueName, String messageId, int priority, long postponeDurationInSeconds) {
-    return false;
+  private static StatementPreparer messageKey(String queueName, String messageId) {
+    return statement -> {
+      statement.setString(1, queueName);
+      statement.setString(2, messageId);
+    };
+  }
+
+  private static long visibleTime(long offsetTimeInSecond) {
+    return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(0, offsetTimeInSecond));
   }
 }
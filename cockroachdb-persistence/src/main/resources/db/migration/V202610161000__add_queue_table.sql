@@ -0,0 +1,14 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- SCHEMA FOR QUEUE DAO
+-- --------------------------------------------------------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS queue_message (
+  queue_name    STRING NOT NULL,
+  message_id    STRING NOT NULL,
+  priority      INT4 NOT NULL DEFAULT 0,
+  visible_ts    INT8 NOT NULL,                  -- epoch millis when visible, or the lease deadline if leased
+  leased        BOOL NOT NULL DEFAULT FALSE,    -- true if popped but not yet acked
+  payload       STRING,
+  create_ts     TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (queue_name, message_id),
+  INDEX visibility_index (queue_name, visible_ts ASC) STORING (priority, leased)
+);
@@ -0,0 +1,11 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- SCHEMA FOR EXECUTION LOCK
+-- --------------------------------------------------------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS execution_lock (
+  lock_id       STRING NOT NULL,
+  owner         STRING NOT NULL,                -- id of the node holding the lease
+  token         INT8 NOT NULL,                  -- fencing token increased on every acquisition
+  expire_ts     INT8 NOT NULL,                  -- epoch millis when the lease expires
+  PRIMARY KEY (lock_id),
+  INDEX owner_index (owner) STORING (expire_ts)
+);
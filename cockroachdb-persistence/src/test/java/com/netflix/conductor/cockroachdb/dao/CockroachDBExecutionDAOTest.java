@@ -16,12 +16,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowTask;
 import com.netflix.conductor.common.run.Workflow;
+import com.netflix.conductor.core.execution.ApplicationException;
 import com.netflix.conductor.dao.ExecutionDAO;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -31,6 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.junit.After;
 import org.junit.Before;
@@ -218,6 +221,79 @@ public class CockroachDBExecutionDAOTest extends CockroachDBBaseTest {
     assertEquals(tasks.get(0), found.get(0));
   }
 
+  @Test
+  public void testUpdateTasks() {
+    List<Task> tasks = new ArrayList<>();
+    for (int i = 0; i < 70; i++) {
+      Task task = new Task();
+      task.setScheduledTime(1L);
+      task.setSeq(i + 1);
+      task.setTaskId(TEST_WORKFLOW_ID + "_t" + i);
+      task.setReferenceTaskName("testUpdateTasks" + i);
+      task.setWorkflowInstanceId(TEST_WORKFLOW_ID);
+      task.setTaskDefName("testUpdateTasks");
+      task.setStatus(Task.Status.SCHEDULED);
+      tasks.add(task);
+    }
+    dao.createTasks(tasks);
+
+    tasks.forEach(task -> task.setStatus(Task.Status.IN_PROGRESS));
+    tasks.add(tasks.get(0));
+    ((CockroachDBExecutionDAO) dao).updateTasks(tasks);
+    List<Task> actual = dao.getTasksForWorkflow(TEST_WORKFLOW_ID);
+    assertEquals(70, actual.size());
+    for (Task task : actual) {
+      assertEquals(Task.Status.IN_PROGRESS, task.getStatus());
+    }
+  }
+
+  @Test
+  public void testFencedWrites() {
+    CockroachDBLockDAO node1 = new CockroachDBLockDAO(dataSource, objectMapper, config);
+    CockroachDBLockDAO node2 = new CockroachDBLockDAO(dataSource, objectMapper, config);
+    CockroachDBExecutionDAO fencedDao =
+        new CockroachDBExecutionDAO(
+            dataSource,
+            new CockroachDBIndexDAO(dataSource, objectMapper, config),
+            objectMapper,
+            config,
+            node1);
+    Workflow workflow = createTestWorkflow(TEST_WORKFLOW_ID);
+    Task task = new Task();
+    task.setScheduledTime(1L);
+    task.setSeq(1);
+    task.setTaskId(TEST_TASK_ID_1);
+    task.setReferenceTaskName("testFencedWrites");
+    task.setWorkflowInstanceId(TEST_WORKFLOW_ID);
+    task.setTaskDefName(TEST_TASK_DEF_NAME);
+    task.setStatus(Task.Status.SCHEDULED);
+    try {
+      // writes without holding the lock are not fenced
+      fencedDao.createTasks(Collections.singletonList(task));
+      assertTrue(node1.acquireLock(TEST_WORKFLOW_ID, 0, TimeUnit.MILLISECONDS));
+      task.setStatus(Task.Status.IN_PROGRESS);
+      fencedDao.updateTask(task);
+      fencedDao.updateWorkflow(workflow);
+
+      node2.deleteLock(TEST_WORKFLOW_ID);
+      assertTrue(node2.acquireLock(TEST_WORKFLOW_ID, 0, TimeUnit.MILLISECONDS));
+      task.setStatus(Task.Status.COMPLETED);
+      try {
+        fencedDao.updateTasks(Collections.singletonList(task));
+        fail("the write from the node that lost the lease should be rejected");
+      } catch (ApplicationException e) {
+        assertEquals(ApplicationException.Code.CONFLICT, e.getCode());
+      }
+      assertEquals(Task.Status.IN_PROGRESS, dao.getTask(TEST_TASK_ID_1).getStatus());
+      assertFalse(node1.acquireLock(TEST_WORKFLOW_ID, 0, TimeUnit.MILLISECONDS));
+      node1.releaseLock(TEST_WORKFLOW_ID);
+    } finally {
+      node1.preDestroy();
+      node2.preDestroy();
+      dao.removeTask(TEST_TASK_ID_1);
+    }
+  }
+
   @Test
   public void testTaskOps() {
     List<Task> tasks = new LinkedList<>();
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.cockroachdb.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.conductor.cockroachdb.CockroachDBTestConfiguration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CockroachDBLockDAOTest extends CockroachDBBaseTest {
+  private static final String LOCK_ID = "test-lock";
+
+  private CockroachDBLockDAO node1;
+  private CockroachDBLockDAO node2;
+
+  @Before
+  public void setUp() {
+    node1 = new CockroachDBLockDAO(dataSource, objectMapper, config);
+    node2 = new CockroachDBLockDAO(dataSource, objectMapper, config);
+    node1.deleteLock(LOCK_ID);
+  }
+
+  @After
+  public void tearDown() {
+    node1.preDestroy();
+    node2.preDestroy();
+  }
+
+  @Test
+  public void testAcquireAndRelease() {
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    long token = node1.getToken(LOCK_ID);
+    assertTrue(token > 0);
+    assertFalse(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node1.releaseLock(LOCK_ID);
+    assertEquals(0, node1.getToken(LOCK_ID));
+    assertTrue(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertEquals(token + 1, node2.getToken(LOCK_ID));
+    node2.releaseLock(LOCK_ID);
+  }
+
+  @Test
+  public void testReentrantAcquire() {
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node1.releaseLock(LOCK_ID);
+    assertFalse(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node1.releaseLock(LOCK_ID);
+    assertTrue(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node2.releaseLock(LOCK_ID);
+  }
+
+  @Test
+  public void testReentrantAcquireLostLease() {
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node2.deleteLock(LOCK_ID);
+    assertTrue(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertEquals(0, node1.renewLeases());
+    assertFalse(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node1.releaseLock(LOCK_ID);
+    assertEquals(1, node2.renewLeases());
+    node2.releaseLock(LOCK_ID);
+  }
+
+  @Test
+  public void testInProcessContention() throws Exception {
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertFalse(
+        CompletableFuture.supplyAsync(
+                () -> node1.acquireLock(LOCK_ID, 10, TimeUnit.MILLISECONDS))
+            .get());
+    node1.releaseLock(LOCK_ID);
+    assertTrue(
+        CompletableFuture.supplyAsync(
+                () -> {
+                  boolean acquired = node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS);
+                  node1.releaseLock(LOCK_ID);
+                  return acquired;
+                })
+            .get());
+  }
+
+  @Test
+  public void testAcquireExpiredLease() throws Exception {
+    CockroachDBLockDAO shortLease =
+        new CockroachDBLockDAO(
+            dataSource,
+            objectMapper,
+            new CockroachDBTestConfiguration() {
+              @Override
+              public long getDbLockLeaseDurationMillis() {
+                return 1;
+              }
+            });
+    assertTrue(shortLease.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    TimeUnit.MILLISECONDS.sleep(10);
+    assertTrue(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertEquals(0, shortLease.renewLeases());
+    assertEquals(0, shortLease.getToken(LOCK_ID));
+    shortLease.releaseLock(LOCK_ID);
+    assertEquals(1, node2.renewLeases());
+    node2.releaseLock(LOCK_ID);
+  }
+
+  @Test
+  public void testRenewLeases() {
+    assertEquals(0, node1.renewLeases());
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertTrue(node1.acquireLock("another-lock", 0, TimeUnit.MILLISECONDS));
+    assertEquals(2, node1.renewLeases());
+    node1.releaseLock("another-lock");
+    assertEquals(1, node1.renewLeases());
+    node1.releaseLock(LOCK_ID);
+    assertEquals(0, node1.renewLeases());
+  }
+
+  @Test
+  public void testDeleteLock() {
+    assertTrue(node1.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    node2.deleteLock(LOCK_ID);
+    assertTrue(node2.acquireLock(LOCK_ID, 0, TimeUnit.MILLISECONDS));
+    assertEquals(0, node1.renewLeases());
+    node1.releaseLock(LOCK_ID);
+    node2.releaseLock(LOCK_ID);
+  }
+}
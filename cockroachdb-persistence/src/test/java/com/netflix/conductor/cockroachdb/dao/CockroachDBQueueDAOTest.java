@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.cockroachdb.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.conductor.core.events.queue.Message;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CockroachDBQueueDAOTest extends CockroachDBBaseTest {
+  private static final String TEST_QUEUE = "test-queue";
+  private static final String ID = "abcd-1234-defg-5678";
+
+  private CockroachDBQueueDAO dao;
+
+  @Before
+  public void setUp() {
+    dao = new CockroachDBQueueDAO(dataSource, objectMapper, config);
+    dao.flush(TEST_QUEUE);
+  }
+
+  @After
+  public void tearDown() {
+    dao.flush(TEST_QUEUE);
+  }
+
+  @Test
+  public void testPushAndPop() {
+    dao.push(TEST_QUEUE, ID, 0);
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    assertTrue(dao.containsMessage(TEST_QUEUE, ID));
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 2, 100));
+    assertEquals(Collections.emptyList(), dao.pop(TEST_QUEUE, 2, 100));
+    assertEquals(0, dao.getSize(TEST_QUEUE));
+    assertTrue(dao.containsMessage(TEST_QUEUE, ID));
+  }
+
+  @Test
+  public void testPushWithOffset() {
+    dao.push(TEST_QUEUE, ID, 100);
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    assertEquals(Collections.emptyList(), dao.pop(TEST_QUEUE, 1, 100));
+    assertTrue(dao.resetOffsetTime(TEST_QUEUE, ID));
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 1, 100));
+    assertFalse(dao.resetOffsetTime(TEST_QUEUE, ID));
+  }
+
+  @Test
+  public void testPushMessages() {
+    dao.push(
+        TEST_QUEUE,
+        Arrays.asList(
+            new Message("id1", "payload1", null, 1), new Message("id2", "payload2", null, 5)));
+    assertEquals(2, dao.getSize(TEST_QUEUE));
+    List<Message> messages = dao.pollMessages(TEST_QUEUE, 2, 100);
+    assertEquals(2, messages.size());
+    assertEquals("id2", messages.get(0).getId());
+    assertEquals("payload2", messages.get(0).getPayload());
+    assertEquals(5, messages.get(0).getPriority());
+    assertEquals("id1", messages.get(1).getId());
+    assertEquals("payload1", messages.get(1).getPayload());
+  }
+
+  @Test
+  public void testPushIfNotExists() {
+    assertTrue(dao.pushIfNotExists(TEST_QUEUE, ID, 0));
+    assertFalse(dao.pushIfNotExists(TEST_QUEUE, ID, 0));
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    dao.pop(TEST_QUEUE, 1, 100);
+    assertFalse(dao.pushIfNotExists(TEST_QUEUE, ID, 0));
+  }
+
+  @Test
+  public void testPopWithPriority() {
+    dao.push(TEST_QUEUE, "low", 0, 0);
+    dao.push(TEST_QUEUE, "high", 10, 0);
+    dao.push(TEST_QUEUE, "delayed", 99, 100);
+    assertEquals(Arrays.asList("high", "low"), dao.pop(TEST_QUEUE, 5, 100));
+  }
+
+  @Test
+  public void testPopLeaseExpired() {
+    dao.push(TEST_QUEUE, ID, 0);
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 1, 100, 0));
+    // a message with an expired lease is claimable again, so it is counted in the size
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    assertEquals(1L, dao.queuesDetail().get(TEST_QUEUE).longValue());
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 1, 100));
+    assertEquals(0, dao.getSize(TEST_QUEUE));
+    assertEquals(Collections.emptyList(), dao.pop(TEST_QUEUE, 1, 100));
+  }
+
+  @Test
+  public void testPopSkipLockedMessages() throws Exception {
+    dao.push(TEST_QUEUE, ID, 0);
+    dao.push(TEST_QUEUE, "id2", 0);
+    try (Connection conn = dataSource.getConnection()) {
+      conn.setAutoCommit(false);
+      try (PreparedStatement stmt =
+          conn.prepareStatement(
+              "SELECT message_id FROM queue_message "
+                  + "WHERE queue_name = ? AND message_id = ? FOR UPDATE")) {
+        stmt.setString(1, TEST_QUEUE);
+        stmt.setString(2, ID);
+        try (ResultSet result = stmt.executeQuery()) {
+          assertTrue(result.next());
+        }
+      }
+      // the locked message is skipped instead of blocking the pop
+      assertEquals(Collections.singletonList("id2"), dao.pop(TEST_QUEUE, 2, 100));
+      conn.rollback();
+    }
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 2, 100));
+  }
+
+  @Test
+  public void testAck() {
+    dao.push(TEST_QUEUE, ID, 0);
+    assertFalse(dao.ack(TEST_QUEUE, ID));
+    dao.pop(TEST_QUEUE, 1, 100);
+    assertTrue(dao.ack(TEST_QUEUE, ID));
+    assertFalse(dao.containsMessage(TEST_QUEUE, ID));
+    assertFalse(dao.ack(TEST_QUEUE, ID));
+  }
+
+  @Test
+  public void testSetUnackTimeoutAndProcessUnacks() {
+    assertFalse(dao.setUnackTimeout(TEST_QUEUE, ID, 1000));
+    dao.push(TEST_QUEUE, ID, 0);
+    dao.pop(TEST_QUEUE, 1, 100);
+    assertTrue(dao.setUnackTimeout(TEST_QUEUE, ID, 100000));
+    dao.processUnacks(TEST_QUEUE);
+    assertEquals(0, dao.getSize(TEST_QUEUE));
+    assertTrue(dao.setUnackTimeout(TEST_QUEUE, ID, 0));
+    dao.processUnacks(TEST_QUEUE);
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    assertEquals(Collections.singletonList(ID), dao.pop(TEST_QUEUE, 1, 100));
+  }
+
+  @Test
+  public void testRemoveAndFlush() {
+    dao.push(TEST_QUEUE, ID, 0);
+    dao.push(TEST_QUEUE, "id2", 0);
+    dao.remove(TEST_QUEUE, ID);
+    assertFalse(dao.containsMessage(TEST_QUEUE, ID));
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    dao.flush(TEST_QUEUE);
+    assertEquals(0, dao.getSize(TEST_QUEUE));
+  }
+
+  @Test
+  public void testPostpone() {
+    dao.push(TEST_QUEUE, ID, 0);
+    dao.pop(TEST_QUEUE, 1, 100);
+    assertTrue(dao.postpone(TEST_QUEUE, ID, 0, 100));
+    assertEquals(1, dao.getSize(TEST_QUEUE));
+    assertEquals(Collections.emptyList(), dao.pop(TEST_QUEUE, 1, 100));
+  }
+
+  @Test
+  public void testQueuesDetail() {
+    dao.push(TEST_QUEUE, ID, 0);
+    dao.push(TEST_QUEUE, "id2", 0);
+    dao.pop(TEST_QUEUE, 1, 100);
+    assertEquals(1L, dao.queuesDetail().get(TEST_QUEUE).longValue());
+    Map<String, Long> shard = dao.queuesDetailVerbose().get(TEST_QUEUE).get("a");
+    assertEquals(1L, shard.get("size").longValue());
+    assertEquals(1L, shard.get("uacked").longValue());
+  }
+}
@@ -34,6 +34,12 @@ public interface Artifact {
   /** Get artifact type info. */
   Type getType();
 
+  /**
+   * Deep copy the artifact, as some artifacts, e.g. the foreach overview, are updated in place by
+   * the step runtime.
+   */
+  Artifact copy();
+
   /** supported artifact types. */
   enum Type {
     /** default artifact holding a (key, value) map. */
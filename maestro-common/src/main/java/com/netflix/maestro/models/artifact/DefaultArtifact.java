@@ -83,4 +83,11 @@ public class DefaultArtifact implements Artifact {
   public Type getType() {
     return Type.DEFAULT;
   }
+
+  @Override
+  public DefaultArtifact copy() {
+    DefaultArtifact copied = new DefaultArtifact();
+    copied.data.putAll(data);
+    return copied;
+  }
 }
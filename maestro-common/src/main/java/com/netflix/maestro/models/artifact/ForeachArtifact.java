@@ -71,4 +71,20 @@ public class ForeachArtifact implements Artifact {
   public boolean isFreshRun() {
     return runPolicy == null || runPolicy.isFreshRun();
   }
+
+  @Override
+  public ForeachArtifact copy() {
+    ForeachArtifact copied = new ForeachArtifact();
+    copied.foreachWorkflowId = foreachWorkflowId;
+    copied.foreachIdentity = foreachIdentity;
+    copied.foreachRunId = foreachRunId;
+    copied.runPolicy = runPolicy;
+    copied.runId = runId;
+    copied.ancestorIterationCount = ancestorIterationCount;
+    copied.totalLoopCount = totalLoopCount;
+    copied.nextLoopIndex = nextLoopIndex;
+    copied.foreachOverview = foreachOverview == null ? null : foreachOverview.copy();
+    copied.pendingAction = pendingAction;
+    return copied;
+  }
 }
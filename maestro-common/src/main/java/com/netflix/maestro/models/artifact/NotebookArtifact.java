@@ -43,4 +43,13 @@ public class NotebookArtifact implements Artifact {
   public Type getType() {
     return Type.NOTEBOOK;
   }
+
+  @Override
+  public NotebookArtifact copy() {
+    NotebookArtifact copied = new NotebookArtifact();
+    copied.outputPath = outputPath;
+    copied.uploadedParamsPath = uploadedParamsPath;
+    copied.outputGenerated = outputGenerated;
+    return copied;
+  }
 }
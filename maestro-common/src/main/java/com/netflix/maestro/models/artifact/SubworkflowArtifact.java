@@ -59,4 +59,17 @@ public final class SubworkflowArtifact implements Artifact {
         "[%s][%s][%s][%s]",
         subworkflowId, subworkflowInstanceId, subworkflowRunId, subworkflowUuid);
   }
+
+  /** The subworkflow overview is shared as it is replaced rather than updated in place. */
+  @Override
+  public SubworkflowArtifact copy() {
+    SubworkflowArtifact copied = new SubworkflowArtifact();
+    copied.subworkflowId = subworkflowId;
+    copied.subworkflowVersionId = subworkflowVersionId;
+    copied.subworkflowInstanceId = subworkflowInstanceId;
+    copied.subworkflowRunId = subworkflowRunId;
+    copied.subworkflowUuid = subworkflowUuid;
+    copied.subworkflowOverview = subworkflowOverview;
+    return copied;
+  }
 }
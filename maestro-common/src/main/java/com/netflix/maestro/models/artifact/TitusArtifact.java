@@ -65,4 +65,20 @@ public class TitusArtifact implements Artifact {
   public Type getType() {
     return Type.TITUS;
   }
+
+  @Override
+  public TitusArtifact copy() {
+    TitusArtifact copied = new TitusArtifact();
+    copied.cmbJobId = cmbJobId;
+    copied.cmbUiLink = cmbUiLink;
+    copied.executionScript = executionScript;
+    copied.titusJobId = titusJobId;
+    copied.titusLogUiLink = titusLogUiLink;
+    copied.titusExecutionOutput = titusExecutionOutput;
+    copied.titusExecutionErrorOutput = titusExecutionErrorOutput;
+    copied.titusOptions = titusOptions;
+    copied.titusTaskId = titusTaskId;
+    copied.milestones = milestones == null ? null : new ArrayList<>(milestones);
+    return copied;
+  }
 }
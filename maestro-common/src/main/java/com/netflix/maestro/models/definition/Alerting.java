@@ -26,6 +26,8 @@ import com.netflix.maestro.models.parameter.ParamDefinition;
 import com.netflix.maestro.models.parameter.Parameter;
 import com.netflix.maestro.validations.TctConstraint;
 import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +86,15 @@ public class Alerting {
     private Set<String> users;
     private Set<String> channels;
     private Set<String> mentionUsers;
+
+    /** Get a copy of the slack config. */
+    public SlackConfig copy() {
+      SlackConfig copy = new SlackConfig();
+      copy.users = users == null ? null : new HashSet<>(users);
+      copy.channels = channels == null ? null : new HashSet<>(channels);
+      copy.mentionUsers = mentionUsers == null ? null : new HashSet<>(mentionUsers);
+      return copy;
+    }
   }
 
   /** Pagerduty configurations of {@link Alerting}. */
@@ -103,6 +114,14 @@ public class Alerting {
     private Severity severity;
     private Boolean alwaysPage;
 
+    /** Get a copy of the pagerduty config. */
+    public PagerdutyConfig copy() {
+      PagerdutyConfig copy = new PagerdutyConfig();
+      copy.severity = severity;
+      copy.alwaysPage = alwaysPage;
+      return copy;
+    }
+
     /**
      * <a
      * href="https://support.pagerduty.com/docs/dynamic-notifications#eventalert-severity-levels">Pagerduty
@@ -135,6 +154,22 @@ public class Alerting {
     }
   }
 
+  /** Get a deep copy of the alerting config without serializing it. */
+  public Alerting copy() {
+    Alerting copy = new Alerting();
+    copy.emails = emails == null ? null : new HashSet<>(emails);
+    copy.pagerduties = pagerduties == null ? null : new HashSet<>(pagerduties);
+    copy.slackConfig = slackConfig == null ? null : slackConfig.copy();
+    copy.bypassDigestConfig = bypassDigestConfig == null ? null : bypassDigestConfig.copy();
+    if (typeConfigs != null) {
+      copy.typeConfigs = new EnumMap<>(AlertType.class);
+      typeConfigs.forEach((type, config) -> copy.typeConfigs.put(type, config.copy()));
+    }
+    copy.pagerdutyConfig = pagerdutyConfig == null ? null : pagerdutyConfig.copy();
+    copy.tct = tct == null ? null : tct.copy();
+    return copy;
+  }
+
   /** Update alerting fields by parsing parameters within it. */
   @JsonIgnore
   public void update(Function<ParamDefinition, Parameter> paramParser) {
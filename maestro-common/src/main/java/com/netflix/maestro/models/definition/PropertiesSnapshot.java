@@ -106,6 +106,17 @@ public final class PropertiesSnapshot {
         .build();
   }
 
+  /**
+   * Get a deep copy of the properties snapshot without serializing it. The users, the access
+   * control and the run strategy are shared as they are immutable.
+   */
+  public PropertiesSnapshot copy() {
+    return toBuilder()
+        .alerting(alerting == null ? null : alerting.copy())
+        .tags(tags == null ? null : tags.copy())
+        .build();
+  }
+
   /** extract properties info. */
   public Properties extractProperties() {
     Properties properties = new Properties();
@@ -61,6 +61,16 @@ public class Tag {
     return tag;
   }
 
+  /** Get a copy of the tag. The attribute values are shared. */
+  public Tag copy() {
+    Tag copy = new Tag();
+    copy.name = name;
+    copy.namespace = namespace;
+    copy.permit = permit;
+    copy.attributes = new HashMap<>(attributes);
+    return copy;
+  }
+
   /** tag name space. */
   public enum Namespace {
     /** system defined tag or parameter, e.g. RUN_TS. */
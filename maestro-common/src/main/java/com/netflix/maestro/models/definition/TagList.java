@@ -50,6 +50,13 @@ public class TagList {
     }
   }
 
+  /** Get a copy of the tag list with the copied tags. */
+  public TagList copy() {
+    List<Tag> copies = new ArrayList<>(tags.size());
+    tags.forEach(tag -> copies.add(tag.copy()));
+    return new TagList(copies);
+  }
+
   /** Merge tags to the tag list. */
   @JsonIgnore
   public void merge(@Nullable List<Tag> input) {
@@ -43,6 +43,16 @@ public class Tct {
   private Long completedByTs;
   private String tz;
 
+  /** Get a copy of the tct config. */
+  public Tct copy() {
+    Tct copy = new Tct();
+    copy.durationMinutes = durationMinutes;
+    copy.completedByHour = completedByHour;
+    copy.completedByTs = completedByTs;
+    copy.tz = tz;
+    return copy;
+  }
+
   /** Generate a parameter for completedByTs. */
   @JsonIgnore
   public LongParamDefinition getCompletedByTsParam() {
@@ -49,6 +49,19 @@ public class AlertingTypeConfig implements Serializable {
 
   private Integer durationMinutes;
 
+  /** Get a copy of the alerting type config. */
+  public AlertingTypeConfig copy() {
+    AlertingTypeConfig copy = new AlertingTypeConfig();
+    copy.emails = emails == null ? null : new HashSet<>(emails);
+    copy.pagerduties = pagerduties == null ? null : new HashSet<>(pagerduties);
+    copy.slackConfig = slackConfig == null ? null : slackConfig.copy();
+    copy.actions = actions == null ? null : new HashSet<>(actions);
+    copy.disabled = disabled;
+    copy.granularity = granularity;
+    copy.durationMinutes = durationMinutes;
+    return copy;
+  }
+
   /** Serialize {@link Action} collection. */
   @JsonGetter("actions")
   public Set<String> serializeActions() {
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 import com.netflix.maestro.models.definition.Alerting;
 import java.io.Serializable;
+import java.util.HashSet;
 import java.util.Set;
 import lombok.Data;
 
@@ -35,4 +36,12 @@ public class BypassDigestConfig implements Serializable {
   private boolean bypassWorkflow;
 
   private Set<String> steps;
+
+  /** Get a copy of the bypass digest config. */
+  public BypassDigestConfig copy() {
+    BypassDigestConfig copy = new BypassDigestConfig();
+    copy.bypassWorkflow = bypassWorkflow;
+    copy.steps = steps == null ? null : new HashSet<>(steps);
+    return copy;
+  }
 }
@@ -216,4 +216,26 @@ public class ForeachDetails {
     }
     add(iterationId, newStatus);
   }
+
+  /** Deep copy the details, including the pending updates. */
+  @JsonIgnore
+  ForeachDetails copy() {
+    ForeachDetails copied = new ForeachDetails(copyIntervals(info));
+    copied.pendingInfo.putAll(copyIntervals(pendingInfo));
+    return copied;
+  }
+
+  private static EnumMap<WorkflowInstance.Status, List<Interval>> copyIntervals(
+      EnumMap<WorkflowInstance.Status, List<Interval>> intervals) {
+    EnumMap<WorkflowInstance.Status, List<Interval>> copied =
+        new EnumMap<>(WorkflowInstance.Status.class);
+    intervals.forEach(
+        (status, list) ->
+            copied.put(
+                status,
+                list.stream()
+                    .map(i -> new Interval(i.start, i.end))
+                    .collect(Collectors.toCollection(ArrayList::new))));
+    return copied;
+  }
 }
@@ -364,4 +364,17 @@ public class ForeachStepOverview {
         .filter(iterId -> iterId >= startInstanceId)
         .collect(Collectors.toSet());
   }
+
+  /** Deep copy the overview, as it is updated in place while the iterations are running. */
+  public ForeachStepOverview copy() {
+    ForeachStepOverview copied = new ForeachStepOverview();
+    copied.checkpoint = checkpoint;
+    copied.stats = stats == null ? null : new EnumMap<>(stats);
+    copied.runningStats = runningStats == null ? null : new EnumMap<>(runningStats);
+    copied.rollup = rollup == null ? null : rollup.copy();
+    copied.runningRollup = runningRollup == null ? null : runningRollup.copy();
+    copied.details = details == null ? null : details.copy();
+    copied.restartInfo = restartInfo == null ? null : new HashSet<>(restartInfo);
+    return copied;
+  }
 }
@@ -76,6 +76,16 @@ public class WorkflowRollupOverview {
       return this.cnt == other.cnt;
     }
 
+    private CountReference copy() {
+      CountReference copied = new CountReference();
+      copied.cnt = cnt;
+      if (ref != null) {
+        copied.ref = new LinkedHashMap<>();
+        ref.forEach((k, v) -> copied.ref.put(k, new ArrayList<>(v)));
+      }
+      return copied;
+    }
+
     @SuppressWarnings({"PMD.AvoidInstantiatingObjectsInLoops"})
     private void aggregate(CountReference other) {
       this.cnt += other.cnt;
@@ -205,4 +215,15 @@ public class WorkflowRollupOverview {
           }
         });
   }
+
+  /** Deep copy the rollup overview, including the count references. */
+  public WorkflowRollupOverview copy() {
+    WorkflowRollupOverview copied = new WorkflowRollupOverview();
+    copied.totalLeafCount = totalLeafCount;
+    if (overview != null) {
+      copied.overview = new EnumMap<>(StepInstance.Status.class);
+      overview.forEach((status, countRef) -> copied.overview.put(status, countRef.copy()));
+    }
+    return copied;
+  }
 }
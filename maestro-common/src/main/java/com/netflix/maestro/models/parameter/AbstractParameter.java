@@ -79,6 +79,11 @@ public abstract class AbstractParameter implements Parameter {
     }
   }
 
+  /** Copy the meta for {@link Parameter#copy()}, as the meta is updated in place. */
+  protected Map<String, Object> copyMeta() {
+    return new LinkedHashMap<>(meta);
+  }
+
   /** Validation at initialization. */
   @Override
   public void validate() {
@@ -112,4 +112,9 @@ public final class BooleanArrayParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public BooleanArrayParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
@@ -108,4 +108,9 @@ public final class BooleanParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public BooleanParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
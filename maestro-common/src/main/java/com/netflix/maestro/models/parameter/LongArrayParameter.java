@@ -110,4 +110,9 @@ public final class LongArrayParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public LongArrayParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
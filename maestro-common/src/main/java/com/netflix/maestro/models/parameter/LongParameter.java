@@ -98,4 +98,9 @@ public final class LongParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public LongParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
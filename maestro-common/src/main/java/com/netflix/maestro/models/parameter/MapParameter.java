@@ -247,4 +247,9 @@ public final class MapParameter extends AbstractParameter {
   public Set<String> getParamNames() {
     return evaluatedResult.keySet();
   }
+
+  @Override
+  public MapParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
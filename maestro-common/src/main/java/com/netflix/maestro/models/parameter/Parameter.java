@@ -89,6 +89,13 @@ public interface Parameter {
    */
   ParamDefinition toDefinition();
 
+  /**
+   * Copy the parameter so its name, evaluated result, evaluated time and meta can be updated
+   * independently. The values and evaluated results are shared as they are replaced rather than
+   * updated in place.
+   */
+  Parameter copy();
+
   /** true if the parameter is defined as a literal; false if it is a sel expression. */
   @JsonIgnore
   default boolean isLiteral() {
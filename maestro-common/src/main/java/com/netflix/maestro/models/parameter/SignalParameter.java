@@ -133,6 +133,11 @@ public class SignalParameter implements Parameter {
   }
 
   /** Builder class for SignalParameter. */
+  @Override
+  public SignalParameter copy() {
+    return SignalParameter.builder().parameter(parameter.copy()).operator(operator).build();
+  }
+
   @JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
   @JsonPOJOBuilder(withPrefix = "")
   public static final class SignalParameterBuilder {}
@@ -130,4 +130,9 @@ public final class StringArrayParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public StringArrayParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
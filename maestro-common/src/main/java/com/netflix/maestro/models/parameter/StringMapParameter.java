@@ -95,4 +95,9 @@ public final class StringMapParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public StringMapParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
@@ -103,4 +103,9 @@ public final class StringParameter extends AbstractParameter {
     }
     return builder.value(evaluatedResult).build();
   }
+
+  @Override
+  public StringParameter copy() {
+    return toBuilder().meta(copyMeta()).build();
+  }
 }
@@ -13,8 +13,10 @@
 package com.netflix.maestro.models.artifact;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 import com.netflix.maestro.MaestroBaseTest;
+import com.netflix.maestro.models.instance.WorkflowInstance;
 import org.junit.Test;
 
 public class ForeachArtifactTest extends MaestroBaseTest {
@@ -25,4 +27,26 @@ public class ForeachArtifactTest extends MaestroBaseTest {
     assertEquals(
         request, MAPPER.readValue(MAPPER.writeValueAsString(request), ForeachArtifact.class));
   }
+
+  @Test
+  public void testCopy() throws Exception {
+    ForeachArtifact artifact =
+        loadObject("fixtures/artifact/sample-foreach-artifact.json", ForeachArtifact.class);
+    ForeachArtifact copied = artifact.copy();
+    assertEquals(artifact, copied);
+    assertNotSame(artifact.getForeachOverview(), copied.getForeachOverview());
+
+    copied.setNextLoopIndex(8);
+    copied.getForeachOverview().addOne(7, WorkflowInstance.Status.SUCCEEDED, null);
+    copied.getForeachOverview().addOne(8, WorkflowInstance.Status.IN_PROGRESS, null);
+    copied.getForeachOverview().refreshDetail();
+    copied
+        .getForeachOverview()
+        .getRunningRollup()
+        .aggregate(artifact.getForeachOverview().getRunningRollup());
+    assertEquals(
+        loadObject("fixtures/artifact/sample-foreach-artifact.json", ForeachArtifact.class),
+        artifact);
+    assertEquals(copied.getForeachOverview(), copied.getForeachOverview().copy());
+  }
 }
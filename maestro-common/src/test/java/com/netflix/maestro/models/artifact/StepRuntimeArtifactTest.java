@@ -13,6 +13,7 @@
 package com.netflix.maestro.models.artifact;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.netflix.maestro.MaestroBaseTest;
@@ -43,4 +44,23 @@ public class StepRuntimeArtifactTest extends MaestroBaseTest {
     assertEquals(expected, actual);
     assertEquals(ser1, ser2);
   }
+
+  @Test
+  public void testCopyArtifacts() throws Exception {
+    for (String fixture :
+        new String[] {
+          "fixtures/artifact/sample-artifacts.json",
+          "fixtures/artifact/sample-step-runtime-artifacts.json"
+        }) {
+      ArtifactMap expected = loadObject(fixture, ArtifactMap.class);
+      expected
+          .getArtifacts()
+          .forEach(
+              (key, artifact) -> {
+                Artifact copied = artifact.copy();
+                assertNotSame(artifact, copied);
+                assertEquals(artifact, copied);
+              });
+    }
+  }
 }
@@ -15,7 +15,9 @@ package com.netflix.maestro.models.definition;
 import static com.netflix.maestro.models.definition.alerting.AlertType.*;
 import static com.netflix.maestro.models.definition.alerting.AlertingTypeConfig.Action.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -131,6 +133,24 @@ public class AlertingTest extends MaestroBaseTest {
     assertNull(actual.getTypeConfigs().get(STEP_FAILURE).getDurationMinutes());
   }
 
+  @Test
+  public void testCopy() {
+    Alerting copy = expected.copy();
+    assertEquals(expected, copy);
+    assertNotSame(expected.getEmails(), copy.getEmails());
+    assertNotSame(expected.getSlackConfig(), copy.getSlackConfig());
+    assertNotSame(expected.getBypassDigestConfig(), copy.getBypassDigestConfig());
+    assertNotSame(expected.getTct(), copy.getTct());
+    assertNotSame(
+        expected.getTypeConfigs().get(STEP_FAILURE), copy.getTypeConfigs().get(STEP_FAILURE));
+
+    copy.getTypeConfigs().get(STEP_FAILURE).getEmails().add("new@netflix.com");
+    copy.getTct().setTz("PST");
+    assertFalse(
+        expected.getTypeConfigs().get(STEP_FAILURE).getEmails().contains("new@netflix.com"));
+    assertEquals("UTC", expected.getTct().getTz());
+  }
+
   @Test
   public void testSerde() throws Exception {
     final Alerting reparsed = MAPPER.readValue(MAPPER.writeValueAsString(expected), Alerting.class);
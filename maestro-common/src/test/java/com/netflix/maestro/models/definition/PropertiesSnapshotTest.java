@@ -13,6 +13,7 @@
 package com.netflix.maestro.models.definition;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 
 import com.netflix.maestro.MaestroBaseTest;
 import org.junit.Test;
@@ -44,4 +45,21 @@ public class PropertiesSnapshotTest extends MaestroBaseTest {
     assertEquals(ps.getDescription(), extracted.getDescription());
     assertEquals(ps.getTags(), extracted.getTags());
   }
+
+  @Test
+  public void testCopy() throws Exception {
+    PropertiesSnapshot ps =
+        loadObject(
+            "fixtures/workflows/definition/sample-properties.json", PropertiesSnapshot.class);
+    PropertiesSnapshot copy = ps.copy();
+    assertEquals(ps, copy);
+    assertNotSame(ps.getAlerting(), copy.getAlerting());
+    assertNotSame(ps.getTags(), copy.getTags());
+    assertNotSame(ps.getTags().getTags().get(0), copy.getTags().getTags().get(0));
+
+    copy.getAlerting().getTct().setCompletedByHour(2);
+    copy.getTags().getTags().get(0).addAttribute("creator", "another");
+    assertEquals(1, ps.getAlerting().getTct().getCompletedByHour().intValue());
+    assertEquals("maestro-dev", ps.getTags().getTags().get(0).getAttributes().get("creator"));
+  }
 }
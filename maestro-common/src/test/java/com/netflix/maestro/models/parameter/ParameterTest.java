@@ -358,4 +358,34 @@ public class ParameterTest extends MaestroBaseTest {
         "BooleanArrayParamDefinition(super=AbstractParamDefinition(name=booleanArrayParam, expression=null, validator=null, tags=null, mode=MUTABLE, meta=null), value=[false, true, false])",
         booleanArrayParamDef.toString());
   }
+
+  @Test
+  public void testCopy() {
+    StringParameter param =
+        StringParameter.builder()
+            .name("stringParam")
+            .expression("return 'abc';")
+            .evaluatedResult("abc")
+            .evaluatedTime(12345L)
+            .mode(ParamMode.IMMUTABLE)
+            .build();
+    param.getMeta().put("source", "DEFINITION");
+    SignalParameter signalParam =
+        SignalParameter.builder().parameter(param).operator(SignalOperator.EQUALS_TO).build();
+
+    StringParameter copied = param.copy();
+    SignalParameter copiedSignal = signalParam.copy();
+    assertEquals(param, copied);
+    assertEquals(signalParam, copiedSignal);
+
+    copied.setName("copied");
+    copied.setEvaluatedResult(1L);
+    copied.setEvaluatedTime(0L);
+    copiedSignal.setEvaluatedResult("xyz");
+    assertEquals("stringParam", param.getName());
+    assertEquals("abc", param.getEvaluatedResult());
+    assertEquals(12345L, param.getEvaluatedTime().longValue());
+    assertEquals(Collections.singletonMap("source", "DEFINITION"), param.getMeta());
+    assertEquals("abc", signalParam.getEvaluatedResult());
+  }
 }
@@ -16,18 +16,44 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.dao.IndexDAO;
 import com.netflix.maestro.engine.compression.JsonConverter;
 import com.netflix.maestro.engine.compression.StringCodec;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
 import com.netflix.maestro.engine.properties.MaestroConductorProperties;
 import com.netflix.maestro.utils.HashHelper;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javax.sql.DataSource;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
-/** CockroachDB implementation of Execution DAO optimized for Maestro use case. */
+/**
+ * CockroachDB implementation of Execution DAO optimized for Maestro use case.
+ *
+ * <p>If the execution cache is enabled, it keeps the DB rows of the recently read workflows and
+ * their tasks in a node-local cache bounded by the max number of workflows in the least recently
+ * used order. Each cached row has a version, which is the `row_version` column set by the DB to a
+ * new unique value on every insert or update of the row. A cached read only fetches the row
+ * versions and then re-fetches the rows whose versions changed, so the rows updated by other nodes
+ * are detected and refreshed. The writes through this DAO update the cached rows using the
+ * versions returned by the DB. So with the workflow ownership or the decider lock, a workflow is
+ * mostly read and updated by a single node and its reads rarely fetch or parse any payload. The
+ * parsed objects are cached and copied on both write and read as the callers mutate them.
+ */
 @Slf4j
 public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
   /**
@@ -37,17 +63,63 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
    */
   private static final String GET_TASK_CHECKSUM_UPDATE_TIME_QUERY =
       "SELECT payload->>'workerId' as id, payload->>'updateTime' as payload FROM task where task_id=?";
+  private static final String GET_TASKS_CHECKSUM_UPDATE_TIME_QUERY =
+      "SELECT task_id, payload->>'workerId' as id, payload->>'updateTime' as payload "
+          + "FROM task where task_id = ANY(?)";
+  private static final String TASK_ID_COLUMN = "task_id";
+  private static final String RETURNING_TASK_VERSION_CLAUSE =
+      " RETURNING task_id AS id, row_version AS version";
 
+  private static final String FLAG_COLUMN = "flag";
+  private static final String VERSION_COLUMN = "version";
+  private static final String GET_WORKFLOW_ROW_VERSIONS_QUERY =
+      "SELECT TRUE AS flag, workflow_instance_id AS id, row_version AS version "
+          + "FROM workflow_instance WHERE workflow_instance_id = ? UNION ALL "
+          + "SELECT FALSE AS flag, task_id AS id, row_version AS version "
+          + "FROM task WHERE workflow_instance_id = ?";
+  private static final String GET_WORKFLOW_ROWS_QUERY =
+      "SELECT TRUE AS flag, workflow_instance_id AS id, payload, row_version AS version "
+          + "FROM workflow_instance WHERE workflow_instance_id = ? UNION ALL "
+          + "SELECT FALSE AS flag, task_id AS id, payload, row_version AS version "
+          + "FROM task WHERE workflow_instance_id = ?";
+  private static final String GET_TASK_ROWS_QUERY =
+      "SELECT FALSE AS flag, task_id AS id, payload, row_version AS version "
+          + "FROM task WHERE workflow_instance_id = ? AND task_id = ANY(?)";
+  private static final String UPSERT_TASK_RETURNING_VERSION_STATEMENT =
+      "UPSERT INTO task (workflow_instance_id,task_id,payload) VALUES (?,?,?) "
+          + "RETURNING row_version AS version";
+  private static final String UPSERT_WORKFLOW_RETURNING_VERSION_STATEMENT =
+      "UPSERT INTO workflow_instance (workflow_instance_id,payload) VALUES (?,?) "
+          + "RETURNING row_version AS version";
+
+  private final ObjectMapper objectMapper;
   private final long maxTaskUpdateInterval;
   private final JsonConverter jsonConverter;
+  private final int cacheMaxWorkflows;
+  private final Map<String, CachedWorkflow> cache;
+  private final MaestroMetrics metrics;
 
   public MaestroCockroachDBExecutionDao(
       DataSource dataSource,
       ObjectMapper objectMapper,
       StringCodec stringCodec,
       IndexDAO indexDAO,
-      MaestroConductorProperties properties) {
-    super(dataSource, indexDAO, objectMapper, properties);
+      MaestroConductorProperties properties,
+      MaestroMetrics metrics) {
+    this(dataSource, objectMapper, stringCodec, indexDAO, properties, metrics, null);
+  }
+
+  /** Constructor with a fencing lock, which is null if the writes are not fenced. */
+  public MaestroCockroachDBExecutionDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      StringCodec stringCodec,
+      IndexDAO indexDAO,
+      MaestroConductorProperties properties,
+      MaestroMetrics metrics,
+      CockroachDBLockDAO fencingLock) {
+    super(dataSource, indexDAO, objectMapper, properties, fencingLock);
+    this.objectMapper = objectMapper;
     this.jsonConverter =
         new JsonConverter(
             objectMapper,
@@ -55,6 +127,40 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
             properties.isCompressionEnabled(),
             properties.getCompressorName());
     this.maxTaskUpdateInterval = properties.getMaxTaskUpdateIntervalInMillis();
+    this.cacheMaxWorkflows = properties.getExecutionCacheMaxWorkflows();
+    this.cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedWorkflow> eldest) {
+            return size() > cacheMaxWorkflows;
+          }
+        };
+    this.metrics = metrics;
+  }
+
+  /**
+   * Cached DB row of a workflow or a task. The value is a private copy, which must not be returned
+   * to the callers without copying it. The version is null if unknown.
+   */
+  private static final class CachedRow<T> {
+    private final T value;
+    private final Long version;
+
+    private CachedRow(T value, Long version) {
+      this.value = value;
+      this.version = version;
+    }
+  }
+
+  /** Cached DB rows of a workflow and its tasks keyed by the task id. */
+  private static final class CachedWorkflow {
+    private CachedRow<Workflow> workflow;
+    private final Map<String, CachedRow<Task>> tasks;
+
+    private CachedWorkflow(CachedRow<Workflow> workflow, Map<String, CachedRow<Task>> tasks) {
+      this.workflow = workflow;
+      this.tasks = tasks;
+    }
   }
 
   /**
@@ -64,6 +170,50 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
   @Override
   public void updateTask(Task task) {
     Map.Entry<String, Long> taskInDb = getTaskChecksumAndUpdateTime(task.getTaskId());
+    if (!checkAndSetChecksum(task, taskInDb)) {
+      return;
+    }
+    if (cacheMaxWorkflows > 0) {
+      upsertTask(task);
+    } else {
+      super.updateTask(task);
+    }
+  }
+
+  /**
+   * Batch version of {@link #updateTask}. It gets the checksums of all the tasks in a single query
+   * and then writes the changed tasks in multi-row UPSERT statements within a single transaction.
+   */
+  @Override
+  public void updateTasks(List<Task> tasks) {
+    if (tasks == null || tasks.isEmpty()) {
+      return;
+    }
+    Collection<Task> pendingTasks = dedupTasks(tasks);
+    Map<String, Map.Entry<String, Long>> tasksInDb = getTaskChecksumsAndUpdateTimes(pendingTasks);
+    List<Task> changed = new ArrayList<>(pendingTasks.size());
+    for (Task task : pendingTasks) {
+      if (checkAndSetChecksum(task, tasksInDb.get(task.getTaskId()))) {
+        changed.add(task);
+      }
+    }
+    if (changed.isEmpty()) {
+      return;
+    }
+    metrics.distributionSummary(
+        MetricConstants.EXECUTION_TASK_UPDATE_BATCH_SIZE_METRIC, changed.size(), getClass());
+    if (cacheMaxWorkflows > 0) {
+      upsertTasks(changed);
+    } else {
+      super.updateTasks(changed);
+    }
+  }
+
+  /**
+   * Set the checksum of the task and return true if it should be written to DB, i.e. it is
+   * changed or its last DB update is older than the max task update interval.
+   */
+  private boolean checkAndSetChecksum(Task task, Map.Entry<String, Long> taskInDb) {
     String taskCheckSum = computeChecksum(task);
     if (taskInDb != null) {
       long updateInterval = task.getUpdateTime() - taskInDb.getValue();
@@ -72,7 +222,7 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
             "task has the same checksum and update interval {} is less than max interval {} millis and skip update",
             updateInterval,
             maxTaskUpdateInterval);
-        return;
+        return false;
       }
       LOG.info(
           "update task [{}] with checksum=[{}] with an update interval=[{}]",
@@ -80,9 +230,288 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
           taskCheckSum,
           updateInterval);
     }
-
     task.setWorkerId(taskCheckSum);
-    super.updateTask(task);
+    return true;
+  }
+
+  @Override
+  public List<Task> createTasks(List<Task> tasks) {
+    List<Task> created = super.createTasks(tasks);
+    if (cacheMaxWorkflows > 0) {
+      // the versions of the created rows are unknown, so they are re-fetched by the next read
+      for (Task task : created) {
+        updateCachedTask(
+            task.getWorkflowInstanceId(), task.getTaskId(), new CachedRow<>(null, null));
+      }
+    }
+    return created;
+  }
+
+  @Override
+  public String updateWorkflow(Workflow workflow) {
+    if (cacheMaxWorkflows <= 0) {
+      return super.updateWorkflow(workflow);
+    }
+    validateWorkflow(workflow);
+    List<Task> tasks = workflow.getTasks();
+    workflow.setTasks(Collections.emptyList());
+    String payload;
+    Workflow copy;
+    try {
+      payload = toJson(workflow);
+      copy = copyOf(workflow, Workflow.class);
+    } finally {
+      workflow.setTasks(tasks);
+    }
+    Long version =
+        withMetricLogError(
+            () ->
+                withFencedStatement(
+                    workflow.getWorkflowId(),
+                    UPSERT_WORKFLOW_RETURNING_VERSION_STATEMENT,
+                    stmt -> {
+                      stmt.setString(1, workflow.getWorkflowId());
+                      stmt.setString(2, payload);
+                      return getVersion(stmt);
+                    }),
+            "updateWorkflow",
+            "Failed updating a workflow instance with id {}",
+            workflow.getWorkflowId());
+    synchronized (cache) {
+      CachedWorkflow cached = cache.get(workflow.getWorkflowId());
+      if (cached != null) {
+        cached.workflow = new CachedRow<>(copy, version);
+      }
+    }
+    return workflow.getWorkflowId();
+  }
+
+  @Override
+  public boolean removeWorkflow(String workflowId) {
+    boolean removed = super.removeWorkflow(workflowId);
+    synchronized (cache) {
+      cache.remove(workflowId);
+    }
+    return removed;
+  }
+
+  /**
+   * Get the workflow with its tasks from the execution cache if enabled. It fetches the row
+   * versions of a cached workflow and only re-fetches the rows with different versions.
+   */
+  @Override
+  public Workflow getWorkflow(String workflowId, boolean includeTasks) {
+    if (!includeTasks || cacheMaxWorkflows <= 0) {
+      return super.getWorkflow(workflowId, includeTasks);
+    }
+    CachedWorkflow snapshot;
+    synchronized (cache) {
+      CachedWorkflow cached = cache.get(workflowId);
+      snapshot =
+          cached == null ? null : new CachedWorkflow(cached.workflow, new HashMap<>(cached.tasks));
+    }
+    CachedWorkflow latest;
+    if (snapshot == null) {
+      recordCacheMetric(MetricConstants.EXECUTION_CACHE_MISS_METRIC);
+      latest = getCachedRows(GET_WORKFLOW_ROWS_QUERY, workflowId, true);
+    } else {
+      latest = refresh(workflowId, snapshot);
+    }
+    if (latest != snapshot) {
+      synchronized (cache) {
+        if (latest.workflow == null) {
+          cache.remove(workflowId);
+          return null;
+        }
+        cache.put(workflowId, latest);
+      }
+    }
+    return toWorkflow(latest);
+  }
+
+  private CachedWorkflow refresh(String workflowId, CachedWorkflow cached) {
+    CachedWorkflow versions = getCachedRows(GET_WORKFLOW_ROW_VERSIONS_QUERY, workflowId, false);
+    if (versions.workflow == null) {
+      return versions;
+    }
+    if (!Objects.equals(versions.workflow.version, cached.workflow.version)) {
+      recordCacheMetric(MetricConstants.EXECUTION_CACHE_STALE_METRIC);
+      return getCachedRows(GET_WORKFLOW_ROWS_QUERY, workflowId, true);
+    }
+    CachedWorkflow latest = new CachedWorkflow(cached.workflow, new HashMap<>());
+    List<String> changed = new ArrayList<>();
+    versions.tasks.forEach(
+        (taskId, row) -> {
+          CachedRow<Task> cachedRow = cached.tasks.get(taskId);
+          if (cachedRow != null && Objects.equals(row.version, cachedRow.version)) {
+            latest.tasks.put(taskId, cachedRow);
+          } else {
+            changed.add(taskId);
+          }
+        });
+    if (changed.isEmpty() && latest.tasks.size() == cached.tasks.size()) {
+      recordCacheMetric(MetricConstants.EXECUTION_CACHE_HIT_METRIC);
+      return cached;
+    }
+    recordCacheMetric(MetricConstants.EXECUTION_CACHE_STALE_METRIC);
+    if (!changed.isEmpty()) {
+      latest.tasks.putAll(getChangedTaskRows(workflowId, changed));
+    }
+    return latest;
+  }
+
+  private CachedWorkflow getCachedRows(String query, String workflowId, boolean withPayload) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                query,
+                stmt -> {
+                  stmt.setString(1, workflowId);
+                  stmt.setString(2, workflowId);
+                },
+                result -> cachedRowsFromResult(result, withPayload)),
+        "getCachedRows",
+        "Failed getting the rows of a workflow instance {}",
+        workflowId);
+  }
+
+  private Map<String, CachedRow<Task>> getChangedTaskRows(String workflowId, List<String> taskIds) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                GET_TASK_ROWS_QUERY,
+                stmt -> {
+                  stmt.setString(1, workflowId);
+                  stmt.setArray(
+                      2,
+                      stmt.getConnection()
+                          .createArrayOf(ARRAY_TYPE_NAME, taskIds.toArray(new String[0])));
+                },
+                result -> cachedRowsFromResult(result, true).tasks),
+        "getChangedTaskRows",
+        "Failed getting [{}] changed task rows of a workflow instance {}",
+        taskIds.size(),
+        workflowId);
+  }
+
+  private CachedWorkflow cachedRowsFromResult(ResultSet result, boolean withPayload)
+      throws SQLException {
+    CachedWorkflow rows = new CachedWorkflow(null, new HashMap<>());
+    while (result.next()) {
+      String payload = withPayload ? result.getString(PAYLOAD_COLUMN) : null;
+      long version = result.getLong(VERSION_COLUMN);
+      if (result.getBoolean(FLAG_COLUMN)) {
+        rows.workflow =
+            new CachedRow<>(payload == null ? null : fromJson(payload, Workflow.class), version);
+      } else {
+        rows.tasks.put(
+            result.getString(ID_COLUMN),
+            new CachedRow<>(payload == null ? null : fromJson(payload, Task.class), version));
+      }
+    }
+    return rows;
+  }
+
+  private Workflow toWorkflow(CachedWorkflow cached) {
+    Workflow workflow = copyOf(cached.workflow.value, Workflow.class);
+    if (!cached.tasks.isEmpty()) {
+      List<Task> tasks = new ArrayList<>(cached.tasks.size());
+      for (CachedRow<Task> row : cached.tasks.values()) {
+        tasks.add(copyOf(row.value, Task.class));
+      }
+      tasks.sort(Comparator.comparingInt(Task::getSeq));
+      workflow.setTasks(tasks);
+    }
+    return workflow;
+  }
+
+  private void upsertTask(Task task) {
+    String payload = toJson(task);
+    Long version =
+        withMetricLogError(
+            () ->
+                withFencedStatement(
+                    task.getWorkflowInstanceId(),
+                    UPSERT_TASK_RETURNING_VERSION_STATEMENT,
+                    stmt -> {
+                      stmt.setString(1, task.getWorkflowInstanceId());
+                      stmt.setString(2, task.getTaskId());
+                      stmt.setString(3, payload);
+                      return getVersion(stmt);
+                    }),
+            "updateTask",
+            "Failed updating a task with id {} in a workflow instance {}",
+            task.getTaskId(),
+            task.getWorkflowInstanceId());
+    updateCachedTask(
+        task.getWorkflowInstanceId(),
+        task.getTaskId(),
+        new CachedRow<>(copyOf(task, Task.class), version));
+  }
+
+  private void upsertTasks(List<Task> tasks) {
+    List<String> payloads = new ArrayList<>(tasks.size());
+    for (Task task : tasks) {
+      payloads.add(toJson(task));
+    }
+    Map<String, Long> versions = new HashMap<>();
+    withMetricLogError(
+        () ->
+            withRetryableTransaction(
+                conn ->
+                    upsertTasks(
+                        conn,
+                        tasks,
+                        payloads,
+                        RETURNING_TASK_VERSION_CLAUSE,
+                        stmt -> {
+                          int cnt = 0;
+                          try (ResultSet result = stmt.executeQuery()) {
+                            while (result.next()) {
+                              versions.put(
+                                  result.getString(ID_COLUMN), result.getLong(VERSION_COLUMN));
+                              cnt++;
+                            }
+                          }
+                          return cnt;
+                        })),
+        "updateTasks",
+        "Failed updating {} tasks in a workflow instance {}",
+        tasks.size(),
+        tasks.get(0).getWorkflowInstanceId());
+    for (Task task : tasks) {
+      updateCachedTask(
+          task.getWorkflowInstanceId(),
+          task.getTaskId(),
+          new CachedRow<>(copyOf(task, Task.class), versions.get(task.getTaskId())));
+    }
+  }
+
+  private static Long getVersion(PreparedStatement stmt) throws SQLException {
+    try (ResultSet result = stmt.executeQuery()) {
+      return result.next() ? result.getLong(VERSION_COLUMN) : null;
+    }
+  }
+
+  private void updateCachedTask(String workflowId, String taskId, CachedRow<Task> row) {
+    synchronized (cache) {
+      CachedWorkflow cached = cache.get(workflowId);
+      if (cached != null) {
+        cached.tasks.put(taskId, row);
+      }
+    }
+  }
+
+  /**
+   * Deep copy an object through the object mapper without serializing it to a string, which skips
+   * the json parsing and the decompression of a DB read.
+   */
+  private <T> T copyOf(T value, Class<T> clazz) {
+    return objectMapper.convertValue(value, clazz);
+  }
+
+  private void recordCacheMetric(String metricName) {
+    metrics.counter(metricName, getClass());
   }
 
   @Override
@@ -117,6 +546,30 @@ public class MaestroCockroachDBExecutionDao extends CockroachDBExecutionDAO {
     return checkSum;
   }
 
+  private Map<String, Map.Entry<String, Long>> getTaskChecksumsAndUpdateTimes(
+      Collection<Task> tasks) {
+    String[] taskIds = tasks.stream().map(Task::getTaskId).toArray(String[]::new);
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                GET_TASKS_CHECKSUM_UPDATE_TIME_QUERY,
+                stmt ->
+                    stmt.setArray(1, stmt.getConnection().createArrayOf(ARRAY_TYPE_NAME, taskIds)),
+                result -> {
+                  Map<String, Map.Entry<String, Long>> tasksInDb = new HashMap<>();
+                  while (result.next()) {
+                    tasksInDb.put(
+                        result.getString(TASK_ID_COLUMN),
+                        new AbstractMap.SimpleEntry<>(
+                            result.getString(ID_COLUMN), result.getLong(PAYLOAD_COLUMN)));
+                  }
+                  return tasksInDb;
+                }),
+        "getTaskChecksumsAndUpdateTimes",
+        "Failed getting checksums and update times of [{}] tasks",
+        taskIds.length);
+  }
+
   private Map.Entry<String, Long> getTaskChecksumAndUpdateTime(String taskId) {
     return withMetricLogError(
         () ->
@@ -88,7 +88,7 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
   }
 
   @VisibleForTesting
-  void configureCallbackInterval(Task task) {
+  void configureCallbackInterval(Workflow workflow, Task task) {
     boolean isRunningForeachStep = false;
     boolean isMaestroTaskCreated = false;
     boolean isFirstPollingCycle =
@@ -96,7 +96,9 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
     if (task != null && task.getOutputData().containsKey(Constants.STEP_RUNTIME_SUMMARY_FIELD)) {
       StepRuntimeSummary runtimeSummary =
           StepHelper.retrieveRuntimeSummary(objectMapper, task.getOutputData());
-      Long callbackInSecs = stepRuntimeCallbackDelayPolicy.getCallBackDelayInSecs(runtimeSummary);
+      Long callbackInSecs =
+          stepRuntimeCallbackDelayPolicy.getCallBackDelayInSecs(
+              StepHelper.retrieveWorkflowId(workflow.getInput()), runtimeSummary);
       if (callbackInSecs != null) {
         LOG.trace(
             "Set customized callback [{}] in seconds for step [{}]",
@@ -133,6 +135,7 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
   @Override
   List<String> cancelNonTerminalTasks(Workflow workflow) {
     List<String> erroredTasks = new ArrayList<>();
+    List<Task> cancelledTasks = new ArrayList<>();
     // Update non-terminal tasks' status to CANCELED
     for (Task task : workflow.getTasks()) {
       if (!task.getStatus().isTerminal()) {
@@ -146,7 +149,7 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
         WorkflowSystemTask workflowSystemTask = WorkflowSystemTask.get(task.getTaskType());
         try {
           workflowSystemTask.cancel(workflow, task, this);
-          executionDAOFacade.updateTask(task); // only update if cancelled
+          cancelledTasks.add(task); // only update if cancelled
         } catch (Exception e) {
           erroredTasks.add(task.getReferenceTaskName());
           LOG.error(
@@ -158,6 +161,18 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
         }
       }
     }
+    if (!cancelledTasks.isEmpty()) {
+      try {
+        executionDAOFacade.updateTasks(cancelledTasks); // update all cancelled tasks in a batch
+      } catch (Exception e) {
+        cancelledTasks.forEach(task -> erroredTasks.add(task.getReferenceTaskName()));
+        LOG.error(
+            "Error updating [{}] canceled tasks in workflow: {}",
+            cancelledTasks.size(),
+            workflow.getWorkflowId(),
+            e);
+      }
+    }
     if (erroredTasks.isEmpty()) {
       try {
         workflowStatusListener.onWorkflowFinalizedIfEnabled(workflow);
@@ -239,13 +254,15 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
       if (!task.getStatus().isTerminal()) {
         task.setCallbackAfterSeconds(callbackTime);
         try {
-          configureCallbackInterval(task); // overwrite if needed
+          configureCallbackInterval(workflow, task); // overwrite if needed
         } catch (Exception e) {
           LOG.error(
               "Error configuring callback interval for task [{}]. Please investigate it",
               task.getTaskId(),
               e);
         }
+      } else {
+        notifyStepTerminated(workflow, task);
       }
 
       updateTask(new TaskResult(task));
@@ -262,6 +279,23 @@ public class MaestroWorkflowExecutor extends WorkflowExecutor {
     }
   }
 
+  /** Let the callback delay policy learn from the terminated step, which is best effort. */
+  private void notifyStepTerminated(Workflow workflow, Task task) {
+    if (task.getOutputData().containsKey(Constants.STEP_RUNTIME_SUMMARY_FIELD)) {
+      try {
+        StepRuntimeSummary runtimeSummary =
+            StepHelper.retrieveRuntimeSummary(objectMapper, task.getOutputData());
+        stepRuntimeCallbackDelayPolicy.onStepTerminated(
+            StepHelper.retrieveWorkflowId(workflow.getInput()), runtimeSummary);
+      } catch (Exception e) {
+        LOG.warn(
+            "Error notifying callback delay policy for terminated task [{}], ignore it",
+            task.getTaskId(),
+            e);
+      }
+    }
+  }
+
   public boolean requeueSweep(String workflowId) {
     return queueDAO.pushIfNotExists(WorkflowExecutor.DECIDER_QUEUE, workflowId, 0L);
   }
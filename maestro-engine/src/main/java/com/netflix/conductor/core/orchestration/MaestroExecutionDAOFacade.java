@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.core.orchestration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBExecutionDAO;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.core.config.Configuration;
+import com.netflix.conductor.core.execution.ApplicationException;
+import com.netflix.conductor.dao.ExecutionDAO;
+import com.netflix.conductor.dao.IndexDAO;
+import com.netflix.conductor.dao.PollDataDAO;
+import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.dao.RateLimitingDAO;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Maestro execution DAO facade. It writes a batch of task updates, e.g. the tasks updated by a
+ * single decide, with a single batch call to {@link CockroachDBExecutionDAO#updateTasks} instead of
+ * one DB round trip per task.
+ */
+@Slf4j
+public class MaestroExecutionDAOFacade extends ExecutionDAOFacade {
+  private final ExecutionDAO executionDAO;
+  private final IndexDAO indexDAO;
+  private final Configuration config;
+
+  /** Constructor. */
+  public MaestroExecutionDAOFacade(
+      ExecutionDAO executionDAO,
+      QueueDAO queueDAO,
+      IndexDAO indexDAO,
+      RateLimitingDAO rateLimitingDao,
+      PollDataDAO pollDataDAO,
+      ObjectMapper objectMapper,
+      Configuration config) {
+    super(executionDAO, queueDAO, indexDAO, rateLimitingDao, pollDataDAO, objectMapper, config);
+    this.executionDAO = executionDAO;
+    this.indexDAO = indexDAO;
+    this.config = config;
+  }
+
+  /**
+   * Update the tasks in a batch if the execution DAO supports it. The update and end times are set
+   * in the same way as {@link ExecutionDAOFacade#updateTask}.
+   */
+  @Override
+  public void updateTasks(List<Task> tasks) {
+    if (tasks.size() <= 1 || !(executionDAO instanceof CockroachDBExecutionDAO)) {
+      super.updateTasks(tasks);
+      return;
+    }
+    try {
+      for (Task task : tasks) {
+        if (task.getStatus() != null) {
+          if (!task.getStatus().isTerminal() || task.getUpdateTime() == 0) {
+            task.setUpdateTime(System.currentTimeMillis());
+          }
+          if (task.getStatus().isTerminal() && task.getEndTime() == 0) {
+            task.setEndTime(System.currentTimeMillis());
+          }
+        }
+      }
+      ((CockroachDBExecutionDAO) executionDAO).updateTasks(tasks);
+      if (!config.enableAsyncIndexing()) {
+        tasks.forEach(indexDAO::indexTask);
+      }
+    } catch (Exception e) {
+      String errorMsg =
+          String.format(
+              "Error updating [%s] tasks in workflow: %s",
+              tasks.size(), tasks.get(0).getWorkflowInstanceId());
+      LOG.error(errorMsg, e);
+      throw new ApplicationException(ApplicationException.Code.BACKEND_ERROR, errorMsg, e);
+    }
+  }
+}
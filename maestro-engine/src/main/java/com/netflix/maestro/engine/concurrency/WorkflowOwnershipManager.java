@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.concurrency;
+
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.dao.MaestroClusterMemberDao;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.engine.utils.ConsistentHashRing;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Manage the cluster membership and the ownership of the queue partitions. Each node heartbeats
+ * into the cluster member table and periodically loads the live members. Keys, e.g. workflow ids,
+ * are hashed into a fixed number of partitions, and the partitions are assigned to the live
+ * members by a consistent hash ring with virtual nodes. So a membership change only moves about
+ * 1/N of the partitions.
+ *
+ * <p>The ownership is best effort. Before the first refresh or during a rebalance, two nodes might
+ * both think they own a partition for a short time. The queue leases still make sure that a
+ * message is only processed by a single node at a time, so it only wastes some work.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads"})
+@Slf4j
+public class WorkflowOwnershipManager {
+  private static final String PARTITION_PREFIX = "partition-";
+
+  private final MaestroClusterMemberDao memberDao;
+  @Getter private final String memberId;
+  @Getter private final int partitionCount;
+  private final int virtualNodes;
+  private final long heartbeatIntervalInMillis;
+  private final long memberTtlInMillis;
+  private final ScheduledExecutorService executorService;
+  private final MaestroMetrics metrics;
+
+  private volatile ConsistentHashRing ring;
+  private volatile boolean[] owned;
+  private volatile int[] ownedPartitions;
+
+  /** Constructor. */
+  public WorkflowOwnershipManager(
+      MaestroClusterMemberDao memberDao,
+      String memberId,
+      int partitionCount,
+      int virtualNodes,
+      long heartbeatIntervalInMillis,
+      long memberTtlInMillis,
+      ScheduledExecutorService executorService,
+      MaestroMetrics metrics) {
+    this.memberDao = memberDao;
+    this.memberId = memberId;
+    this.partitionCount = partitionCount;
+    this.virtualNodes = virtualNodes;
+    this.heartbeatIntervalInMillis = heartbeatIntervalInMillis;
+    this.memberTtlInMillis = memberTtlInMillis;
+    this.executorService = executorService;
+    this.metrics = metrics;
+    assign(Collections.singletonList(memberId)); // own all partitions until the first refresh
+  }
+
+  /** Join the cluster and start to heartbeat. */
+  public void postConstruct() {
+    refresh();
+    executorService.scheduleWithFixedDelay(
+        this::refresh,
+        heartbeatIntervalInMillis,
+        heartbeatIntervalInMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop heartbeats and leave the cluster so the other nodes take over its partitions. */
+  public void preDestroy() {
+    executorService.shutdownNow();
+    try {
+      memberDao.removeMember(memberId);
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to remove cluster member [{}] and it will expire", memberId, e);
+    }
+  }
+
+  /**
+   * Get the partition of a key.
+   *
+   * @param key the key, e.g. a workflow id
+   * @return the partition number within [0, partitionCount)
+   */
+  public int getPartition(String key) {
+    return (int) Math.floorMod(ConsistentHashRing.hash(key), (long) partitionCount);
+  }
+
+  /** Check if the key belongs to a partition owned by this node. */
+  public boolean isOwned(String key) {
+    return owned[getPartition(key)];
+  }
+
+  /** Get the owner of the key based on the latest loaded membership. */
+  public String getOwner(String key) {
+    return ring.getOwner(PARTITION_PREFIX + getPartition(key));
+  }
+
+  /** Get the partitions owned by this node. */
+  public int[] getOwnedPartitions() {
+    return ownedPartitions;
+  }
+
+  /** Heartbeat and rebalance the partitions if the membership changes. It never throws. */
+  @VisibleForTesting
+  void refresh() {
+    try {
+      memberDao.heartbeat(memberId);
+      TreeSet<String> members = new TreeSet<>(memberDao.getLiveMembers(memberTtlInMillis));
+      members.add(memberId);
+      List<String> current = new ArrayList<>(members);
+      if (!current.equals(ring.getMembers())) {
+        List<String> previous = ring.getMembers();
+        assign(current);
+        memberDao.removeExpiredMembers(memberTtlInMillis);
+        metrics.counter(MetricConstants.WORKFLOW_OWNERSHIP_REBALANCE_METRIC, getClass());
+        LOG.info(
+            "Cluster members changed from {} to {} and member [{}] owns [{}/{}] partitions",
+            previous,
+            current,
+            memberId,
+            ownedPartitions.length,
+            partitionCount);
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to refresh the cluster membership for [{}], will retry", memberId, e);
+    }
+  }
+
+  private void assign(List<String> members) {
+    ConsistentHashRing newRing = new ConsistentHashRing(members, virtualNodes);
+    boolean[] newOwned = new boolean[partitionCount];
+    List<Integer> partitions = new ArrayList<>();
+    for (int i = 0; i < partitionCount; ++i) {
+      if (memberId.equals(newRing.getOwner(PARTITION_PREFIX + i))) {
+        newOwned[i] = true;
+        partitions.add(i);
+      }
+    }
+    this.owned = newOwned;
+    this.ownedPartitions = partitions.stream().mapToInt(Integer::intValue).toArray();
+    this.ring = newRing;
+  }
+}
@@ -14,23 +14,53 @@ package com.netflix.maestro.engine.dao;
 
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.maestro.annotations.VisibleForTesting;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import lombok.AllArgsConstructor;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * In-memory implementation of QueueDAO for local testing purpose. It is expected to be thread safe
- * but does not have a transactional support. It also ignores the priority, offsetTimeInSecond,
- * postponeDurationInSeconds, etc.
+ * In-memory implementation of QueueDAO. It is thread safe but does not have a transactional
+ * support or durability.
+ *
+ * <p>Each queue keeps a hash index from message id to its entry for O(1) membership checks and
+ * three ordered sets: delayed messages ordered by the visible time, ready messages ordered by the
+ * priority (higher first) and then the visible time, and unacked messages ordered by the lease
+ * deadline. Push, remove and postpone are O(log n). Popped messages are leased and become visible
+ * again if they are neither acked nor removed before the lease expires. It never blocks, so the
+ * poll timeout is ignored.
  */
 @Slf4j
-@AllArgsConstructor
 public class InMemoryQueueDao implements QueueDAO {
-  private final Map<String, ConcurrentLinkedDeque<String>> queues;
+  /** Default lease duration for the messages popped without an explicit lease. */
+  @VisibleForTesting static final long DEFAULT_LEASE_DURATION_IN_SECONDS = 60;
+
+  private static final String SHARD_NAME = "a";
+  private static final String SIZE_KEY = "size";
+  private static final String UNACKED_KEY = "uacked";
+
+  private final Map<String, MessageQueue> queues;
+  private final Clock clock;
+
+  /** Constructor. */
+  public InMemoryQueueDao() {
+    this(new ConcurrentHashMap<>(), Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  InMemoryQueueDao(Map<String, MessageQueue> queues, Clock clock) {
+    this.queues = queues;
+    this.clock = clock;
+  }
 
   @Override
   public void push(String queueName, String id, long offsetTimeInSecond) {
@@ -39,15 +69,23 @@ public class InMemoryQueueDao implements QueueDAO {
 
   @Override
   public void push(String queueName, String id, int priority, long offsetTimeInSecond) {
-    if (!queues.containsKey(queueName)) {
-      queues.put(queueName, new ConcurrentLinkedDeque<>());
-    }
-    LOG.info("push a task [{}] to queue [{}]", id, queueName);
-    queues.get(queueName).offerLast(id);
+    LOG.debug(
+        "push a message [{}] to queue [{}] with priority [{}] and offset [{}] seconds",
+        id,
+        queueName,
+        priority,
+        offsetTimeInSecond);
+    getQueue(queueName).push(id, priority, visibleTime(offsetTimeInSecond), false);
   }
 
   @Override
-  public void push(String queueName, List<Message> messages) {}
+  public void push(String queueName, List<Message> messages) {
+    MessageQueue queue = getQueue(queueName);
+    long now = clock.millis();
+    for (Message message : messages) {
+      queue.push(message.getId(), message.getPriority(), now, false);
+    }
+  }
 
   @Override
   public boolean pushIfNotExists(String queueName, String id, long offsetTimeInSecond) {
@@ -57,66 +95,74 @@ public class InMemoryQueueDao implements QueueDAO {
   @Override
   public boolean pushIfNotExists(
       String queueName, String id, int priority, long offsetTimeInSecond) {
-    if (!containsMessage(queueName, id)) {
-      push(queueName, id, priority, offsetTimeInSecond);
-      return true;
-    }
-    return false;
+    return getQueue(queueName).push(id, priority, visibleTime(offsetTimeInSecond), true);
   }
 
   @Override
   public List<String> pop(String queueName, int count, int timeout) {
-    List<String> tasks = new ArrayList<>(count);
-    if (!queues.containsKey(queueName)) {
-      queues.put(queueName, new ConcurrentLinkedDeque<>());
-    }
-    for (int i = 0; i < count; ++i) {
-      String entry = queues.get(queueName).pollFirst();
-      if (entry != null) {
-        tasks.add(entry);
-      } else {
-        break;
-      }
+    return pop(queueName, count, timeout, DEFAULT_LEASE_DURATION_IN_SECONDS);
+  }
+
+  @Override
+  public List<String> pop(String queueName, int count, int timeout, long leaseDurationSeconds) {
+    List<Entry> entries =
+        getQueue(queueName)
+            .pop(count, clock.millis(), TimeUnit.SECONDS.toMillis(leaseDurationSeconds));
+    List<String> ids = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      ids.add(entry.id);
     }
-    if (!tasks.isEmpty()) {
-      LOG.info("pop messages [{}] for queue [{}]", tasks, queueName);
+    if (!ids.isEmpty()) {
+      LOG.debug("pop messages [{}] for queue [{}]", ids, queueName);
     }
-    return tasks;
+    return ids;
   }
 
   @Override
   public List<Message> pollMessages(String queueName, int count, int timeout) {
-    return null;
+    return pollMessages(queueName, count, timeout, DEFAULT_LEASE_DURATION_IN_SECONDS);
   }
 
   @Override
-  public void remove(String queueName, String messageId) {
-    if (!queues.containsKey(queueName)) {
-      queues.put(queueName, new ConcurrentLinkedDeque<>());
+  public List<Message> pollMessages(
+      String queueName, int count, int timeout, long leaseDurationSeconds) {
+    List<Entry> entries =
+        getQueue(queueName)
+            .pop(count, clock.millis(), TimeUnit.SECONDS.toMillis(leaseDurationSeconds));
+    List<Message> messages = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      messages.add(new Message(entry.id, null, entry.id, entry.priority));
     }
-    queues.get(queueName).remove(messageId);
+    return messages;
+  }
+
+  @Override
+  public void remove(String queueName, String messageId) {
+    getQueue(queueName).remove(messageId);
   }
 
   @Override
   public int getSize(String queueName) {
-    if (!queues.containsKey(queueName)) {
-      queues.put(queueName, new ConcurrentLinkedDeque<>());
-    }
-    return queues.get(queueName).size();
+    return getQueue(queueName).size();
   }
 
   @Override
   public boolean ack(String queueName, String messageId) {
-    return false;
+    return getQueue(queueName).ack(messageId);
   }
 
   @Override
   public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
-    return false;
+    return getQueue(queueName).setUnackTimeout(messageId, clock.millis() + unackTimeout);
   }
 
   @Override
-  public void flush(String queueName) {}
+  public void flush(String queueName) {
+    MessageQueue queue = queues.get(queueName);
+    if (queue != null) {
+      queue.clear();
+    }
+  }
 
   @Override
   public Map<String, Long> queuesDetail() {
@@ -127,41 +173,229 @@ public class InMemoryQueueDao implements QueueDAO {
 
   @Override
   public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
-    return null;
+    Map<String, Map<String, Map<String, Long>>> detail = new HashMap<>();
+    queues.forEach(
+        (k, v) -> {
+          Map<String, Long> shard = new HashMap<>();
+          shard.put(SIZE_KEY, (long) v.size());
+          shard.put(UNACKED_KEY, (long) v.unackedSize());
+          detail.put(k, Collections.singletonMap(SHARD_NAME, shard));
+        });
+    return detail;
   }
 
   @Override
   public boolean resetOffsetTime(String queueName, String id) {
-    return postpone(queueName, id, 0, 0);
+    return getQueue(queueName).resetOffsetTime(id, clock.millis());
   }
 
   @Override
-  public List<String> pop(String queueName, int count, int timeout, long leaseDurationSeconds) {
-    return null;
-  }
-
-  @Override
-  public List<Message> pollMessages(
-      String queueName, int count, int timeout, long leaseDurationSeconds) {
-    return null;
+  public void processUnacks(String queueName) {
+    getQueue(queueName).processUnacks(clock.millis());
   }
 
-  @Override
-  public void processUnacks(String queueName) {}
-
   @Override
   public boolean postpone(
       String queueName, String messageId, int priority, long postponeDurationInSeconds) {
-    remove(queueName, messageId);
-    push(queueName, messageId, priority, postponeDurationInSeconds);
+    getQueue(queueName).push(messageId, priority, visibleTime(postponeDurationInSeconds), false);
     return true;
   }
 
   @Override
   public boolean containsMessage(String queueName, String messageId) {
-    if (!queues.containsKey(queueName)) {
-      queues.put(queueName, new ConcurrentLinkedDeque<>());
+    return getQueue(queueName).contains(messageId);
+  }
+
+  private MessageQueue getQueue(String queueName) {
+    return queues.computeIfAbsent(queueName, q -> new MessageQueue());
+  }
+
+  private long visibleTime(long offsetTimeInSecond) {
+    return clock.millis() + TimeUnit.SECONDS.toMillis(Math.max(0, offsetTimeInSecond));
+  }
+
+  /** Message state within a queue. */
+  private enum State {
+    DELAYED,
+    READY,
+    UNACKED
+  }
+
+  /** Queue entry, its time is either the visible time or the lease deadline based on the state. */
+  private static final class Entry {
+    private final String id;
+    private final int priority;
+    private final long seq;
+    private long time;
+    private State state;
+
+    private Entry(String id, int priority, long seq, long time) {
+      this.id = id;
+      this.priority = priority;
+      this.seq = seq;
+      this.time = time;
+    }
+  }
+
+  private static final Comparator<Entry> TIME_ORDER =
+      Comparator.<Entry>comparingLong(e -> e.time).thenComparingLong(e -> e.seq);
+
+  private static final Comparator<Entry> PRIORITY_ORDER =
+      Comparator.<Entry>comparingInt(e -> e.priority)
+          .reversed()
+          .thenComparingLong(e -> e.time)
+          .thenComparingLong(e -> e.seq);
+
+  /**
+   * A single delay-aware queue. All the operations are guarded by the queue monitor. Entries must
+   * be detached from its ordered set before mutating its time.
+   */
+  @VisibleForTesting
+  static final class MessageQueue {
+    private final Map<String, Entry> index = new HashMap<>();
+    private final TreeSet<Entry> delayed = new TreeSet<>(TIME_ORDER);
+    private final TreeSet<Entry> ready = new TreeSet<>(PRIORITY_ORDER);
+    private final TreeSet<Entry> unacked = new TreeSet<>(TIME_ORDER);
+    private long sequence;
+
+    synchronized boolean push(String id, int priority, long visibleTime, boolean ifNotExists) {
+      Entry existing = index.get(id);
+      if (existing != null) {
+        if (ifNotExists) {
+          return false;
+        }
+        detach(existing);
+      }
+      Entry entry = new Entry(id, priority, sequence++, visibleTime);
+      index.put(id, entry);
+      attach(entry, State.DELAYED);
+      return true;
+    }
+
+    synchronized List<Entry> pop(int count, long now, long leaseMillis) {
+      processUnacks(now);
+      promoteDue(now);
+      List<Entry> popped = new ArrayList<>(Math.min(count, ready.size()));
+      while (popped.size() < count && !ready.isEmpty()) {
+        Entry entry = ready.pollFirst();
+        entry.time = now + leaseMillis;
+        attach(entry, State.UNACKED);
+        popped.add(entry);
+      }
+      return popped;
+    }
+
+    synchronized boolean remove(String id) {
+      Entry entry = index.remove(id);
+      if (entry != null) {
+        detach(entry);
+        return true;
+      }
+      return false;
+    }
+
+    synchronized boolean ack(String id) {
+      Entry entry = index.get(id);
+      if (entry != null && entry.state == State.UNACKED) {
+        index.remove(id);
+        detach(entry);
+        return true;
+      }
+      return false;
+    }
+
+    synchronized boolean setUnackTimeout(String id, long deadline) {
+      Entry entry = index.get(id);
+      if (entry == null) {
+        return false;
+      }
+      detach(entry);
+      entry.time = deadline;
+      attach(entry, State.UNACKED);
+      return true;
+    }
+
+    synchronized boolean resetOffsetTime(String id, long now) {
+      Entry entry = index.get(id);
+      if (entry == null || entry.state == State.UNACKED) {
+        return false;
+      }
+      detach(entry);
+      entry.time = now;
+      attach(entry, State.READY);
+      return true;
+    }
+
+    synchronized void processUnacks(long now) {
+      while (!unacked.isEmpty() && unacked.first().time <= now) {
+        Entry entry = unacked.pollFirst();
+        entry.time = now;
+        attach(entry, State.READY);
+      }
+    }
+
+    synchronized boolean contains(String id) {
+      return index.containsKey(id);
+    }
+
+    synchronized int size() {
+      return delayed.size() + ready.size();
+    }
+
+    synchronized int unackedSize() {
+      return unacked.size();
+    }
+
+    synchronized void clear() {
+      index.clear();
+      delayed.clear();
+      ready.clear();
+      unacked.clear();
+    }
+
+    private void promoteDue(long now) {
+      Iterator<Entry> iterator = delayed.iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.time > now) {
+          break;
+        }
+        iterator.remove();
+        attach(entry, State.READY);
+      }
+    }
+
+    private void attach(Entry entry, State state) {
+      entry.state = state;
+      switch (state) {
+        case DELAYED:
+          delayed.add(entry);
+          break;
+        case READY:
+          ready.add(entry);
+          break;
+        case UNACKED:
+          unacked.add(entry);
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void detach(Entry entry) {
+      switch (entry.state) {
+        case DELAYED:
+          delayed.remove(entry);
+          break;
+        case READY:
+          ready.remove(entry);
+          break;
+        case UNACKED:
+          unacked.remove(entry);
+          break;
+        default:
+          break;
+      }
     }
-    return queues.get(queueName).contains(messageId);
   }
 }
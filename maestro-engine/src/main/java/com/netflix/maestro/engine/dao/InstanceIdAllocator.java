@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.exceptions.MaestroRetryableError;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Node-local hi-lo allocator of workflow instance ids. It reserves a block of instance ids of a
+ * workflow by advancing its latest_instance_id once and then hands the ids out locally, so starting
+ * a new workflow instance does not have to lock and update the workflow row every time.
+ *
+ * <p>Allocated ids are unique and monotonically increasing within a node. Across nodes, ids are
+ * only ordered by the block reservation order. Unused ids are skipped, e.g. ids left in a block
+ * after a restart, ids taken by a rolled back transaction, or the tail of a block that cannot fit a
+ * batch. So latest_instance_id is the upper bound of reserved ids instead of the instance count.
+ *
+ * <p>Ids are allocated before the caller opens its start transaction, so a block is reserved in its
+ * own transaction without holding another connection. The caller then validates the allocation
+ * against the workflow internal id read in its transaction, which drops the block reserved for a
+ * deleted workflow with the same workflow id. A per workflow lock is used (instead of synchronized)
+ * to avoid pinning virtual threads while reserving a block from the database.
+ */
+final class InstanceIdAllocator {
+  /** Reserve ids of a workflow in the database. */
+  @FunctionalInterface
+  interface Reserver {
+    /**
+     * Reserve the given number of ids for the workflow.
+     *
+     * @param workflowId workflow id
+     * @param size the number of ids to reserve
+     * @return the reserved block
+     */
+    Block reserve(String workflowId, long size);
+  }
+
+  /** A reserved block of instance ids, i.e. (latestInstanceId - size, latestInstanceId]. */
+  static final class Block {
+    private final long internalId;
+    private final long hi;
+    private long next;
+
+    Block(long internalId, long latestInstanceId, long size) {
+      this.internalId = internalId;
+      this.hi = latestInstanceId;
+      this.next = latestInstanceId - size + 1;
+    }
+
+    private long remaining() {
+      return hi - next + 1;
+    }
+  }
+
+  /** Allocated consecutive instance ids starting from firstId of a workflow with internalId. */
+  static final class Allocation {
+    final long internalId;
+    final long firstId;
+
+    private Allocation(long internalId, long firstId) {
+      this.internalId = internalId;
+      this.firstId = firstId;
+    }
+  }
+
+  /** Error thrown if an allocation is from a block reserved for a deleted workflow. */
+  static final class StaleBlockError extends MaestroRetryableError {
+    private static final long serialVersionUID = -3470520415306419584L;
+
+    private StaleBlockError(String workflowId) {
+      super("Workflow [%s] has been changed while reserving its instance ids", workflowId);
+    }
+  }
+
+  private static final class Slot {
+    private final ReentrantLock lock = new ReentrantLock();
+    private Block block;
+  }
+
+  private final long blockSize;
+  private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+  InstanceIdAllocator(long blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  /**
+   * Allocate a range of consecutive instance ids for the workflow. It must be called outside of any
+   * transaction as the reserver borrows its own connection.
+   *
+   * @param workflowId workflow id
+   * @param count the number of ids to allocate
+   * @param reserver reserver to get a new block if the current block cannot fit the request
+   * @return the allocation including the first allocated instance id
+   */
+  Allocation allocate(String workflowId, int count, Reserver reserver) {
+    Slot slot = slots.computeIfAbsent(workflowId, id -> new Slot());
+    slot.lock.lock();
+    try {
+      Block block = slot.block;
+      if (block == null || block.remaining() < count) {
+        slot.block = null;
+        block = reserver.reserve(workflowId, Math.max(blockSize, count));
+        slot.block = block;
+      }
+      long first = block.next;
+      block.next += count;
+      return new Allocation(block.internalId, first);
+    } finally {
+      slot.lock.unlock();
+    }
+  }
+
+  /**
+   * Validate the allocation against the current internal id of the workflow read by the caller in
+   * its transaction. If they differ, the block of the allocation is dropped and the caller should
+   * retry with a new allocation.
+   *
+   * @param workflowId workflow id
+   * @param allocation the allocation to validate
+   * @param internalId the current internal id of the workflow
+   * @throws StaleBlockError if the allocation is from a block reserved for a deleted workflow
+   */
+  void validate(String workflowId, Allocation allocation, long internalId) {
+    if (allocation.internalId == internalId) {
+      return;
+    }
+    Slot slot = slots.get(workflowId);
+    if (slot != null) {
+      slot.lock.lock();
+      try {
+        if (slot.block != null && slot.block.internalId == allocation.internalId) {
+          slot.block = null;
+        }
+      } finally {
+        slot.lock.unlock();
+      }
+    }
+    throw new StaleBlockError(workflowId);
+  }
+
+  /** Get the number of remaining ids in the local block of the workflow. */
+  @VisibleForTesting
+  long remaining(String workflowId) {
+    Slot slot = slots.get(workflowId);
+    return slot == null || slot.block == null ? 0 : slot.block.remaining();
+  }
+}
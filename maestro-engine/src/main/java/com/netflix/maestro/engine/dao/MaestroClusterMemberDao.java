@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * DAO for the maestro cluster members. Each node keeps its row alive by heartbeats. A member is
+ * live if its last heartbeat is within the given ttl. The time is from the DB to avoid clock skew
+ * between nodes.
+ */
+public class MaestroClusterMemberDao extends CockroachDBBaseDAO {
+  private static final String MEMBER_ID_COLUMN = "member_id";
+
+  private static final String HEARTBEAT_QUERY =
+      "UPSERT INTO maestro_cluster_member (member_id,heartbeat_ts) VALUES (?,CURRENT_TIMESTAMP)";
+  private static final String GET_LIVE_MEMBERS_QUERY =
+      "SELECT member_id FROM maestro_cluster_member "
+          + "WHERE heartbeat_ts > CURRENT_TIMESTAMP - INTERVAL '1 millisecond' * ? "
+          + "ORDER BY member_id";
+  private static final String REMOVE_MEMBER_QUERY =
+      "DELETE FROM maestro_cluster_member WHERE member_id = ?";
+  private static final String REMOVE_EXPIRED_MEMBERS_QUERY =
+      "DELETE FROM maestro_cluster_member "
+          + "WHERE heartbeat_ts <= CURRENT_TIMESTAMP - INTERVAL '1 millisecond' * ?";
+
+  /** Constructor for MaestroClusterMemberDao. */
+  public MaestroClusterMemberDao(
+      DataSource dataSource, ObjectMapper objectMapper, CockroachDBConfiguration config) {
+    super(dataSource, objectMapper, config);
+  }
+
+  /**
+   * Record a heartbeat for the member.
+   *
+   * @param memberId member id
+   */
+  public void heartbeat(String memberId) {
+    withMetricLogError(
+        () -> withRetryableUpdate(HEARTBEAT_QUERY, stmt -> stmt.setString(1, memberId)),
+        "heartbeat",
+        "Failed to heartbeat for cluster member [{}]",
+        memberId);
+  }
+
+  /**
+   * Get the ids of the live members sorted by the member id.
+   *
+   * @param ttlInMillis max time since the last heartbeat for a member to be live
+   * @return sorted member ids
+   */
+  public List<String> getLiveMembers(long ttlInMillis) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                GET_LIVE_MEMBERS_QUERY,
+                stmt -> stmt.setLong(1, ttlInMillis),
+                result -> {
+                  List<String> members = new ArrayList<>();
+                  while (result.next()) {
+                    members.add(result.getString(MEMBER_ID_COLUMN));
+                  }
+                  return members;
+                }),
+        "getLiveMembers",
+        "Failed to get the live cluster members with ttl [{}]",
+        ttlInMillis);
+  }
+
+  /**
+   * Remove a member, e.g. when the node shuts down.
+   *
+   * @param memberId member id
+   * @return the number of removed members
+   */
+  public int removeMember(String memberId) {
+    return withMetricLogError(
+        () -> withRetryableUpdate(REMOVE_MEMBER_QUERY, stmt -> stmt.setString(1, memberId)),
+        "removeMember",
+        "Failed to remove cluster member [{}]",
+        memberId);
+  }
+
+  /**
+   * Remove the members without a heartbeat within the given ttl.
+   *
+   * @param ttlInMillis max time since the last heartbeat for a member to be live
+   * @return the number of removed members
+   */
+  public int removeExpiredMembers(long ttlInMillis) {
+    return withMetricLogError(
+        () ->
+            withRetryableUpdate(
+                REMOVE_EXPIRED_MEMBERS_QUERY, stmt -> stmt.setLong(1, ttlInMillis)),
+        "removeExpiredMembers",
+        "Failed to remove the expired cluster members with ttl [{}]",
+        ttlInMillis);
+  }
+}
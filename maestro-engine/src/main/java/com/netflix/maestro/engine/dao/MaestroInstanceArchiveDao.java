@@ -0,0 +1,419 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
+import com.netflix.maestro.annotations.SuppressFBWarnings;
+import com.netflix.maestro.engine.compression.StringCodec;
+import com.netflix.maestro.exceptions.MaestroInternalError;
+import com.netflix.maestro.models.Constants;
+import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.instance.WorkflowInstance;
+import com.netflix.maestro.models.timeline.Timeline;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * DAO for the cold storage of the terminal workflow and step instances. It moves whole workflow
+ * instances, i.e. all of their runs and step instances, out of the instance tables into the archive
+ * tables. Each archived row keeps the full data model, which is serialized to JSON and compressed
+ * by the {@link StringCodec}, so it can be read back without touching the instance tables.
+ *
+ * <p>A workflow instance is archived only if every run of it has ended before the cutoff time with
+ * a terminal status other than the raw `FAILED` status, which still blocks the strict sequential
+ * run strategy. Foreach iterations are kept in the instance tables as the foreach step scans them
+ * in bulk. Archived workflow instances are expected to be immutable and are not restarted. The
+ * uuids of the archived runs are kept in an indexed column, so the run strategy still dedups the
+ * runs with the same uuid after they are archived.
+ *
+ * <p>The rows are read with the mappers of {@link MaestroWorkflowInstanceDao} and {@link
+ * MaestroStepInstanceDao}. The archived instances of a workflow being deleted are neither archived
+ * nor returned, and they are purged by {@link MaestroWorkflowDeletionDao}.
+ */
+@SuppressFBWarnings("OBL_UNSATISFIED_OBLIGATION")
+@Slf4j
+public class MaestroInstanceArchiveDao extends CockroachDBBaseDAO {
+  private static final String ARCHIVABLE_STATUSES =
+      "('SUCCEEDED','STOPPED','TIMED_OUT','FAILED_1','FAILED_2')";
+
+  // the workflow of the row aliased as `a` is not being deleted
+  private static final String WORKFLOW_NOT_DELETED_CONDITION =
+      "NOT EXISTS (SELECT 1 FROM maestro_workflow_deleted d "
+          + "WHERE d.workflow_id=a.workflow_id AND d.stage != 'DELETION_DONE')";
+
+  private static final String GET_ARCHIVABLE_INSTANCES_QUERY =
+      "SELECT DISTINCT workflow_id,instance_id FROM maestro_workflow_instance a "
+          + "WHERE end_ts < ? AND status IN "
+          + ARCHIVABLE_STATUSES
+          + " AND initiator_type != 'FOREACH' AND NOT EXISTS (SELECT 1 FROM maestro_workflow_instance r "
+          + "WHERE r.workflow_id=a.workflow_id AND r.instance_id=a.instance_id "
+          + "AND (r.end_ts IS NULL OR r.end_ts >= ? OR r.status NOT IN "
+          + ARCHIVABLE_STATUSES
+          + ")) AND "
+          + WORKFLOW_NOT_DELETED_CONDITION
+          + " LIMIT ?";
+
+  private static final String GET_WORKFLOW_INSTANCE_RUNS_QUERY =
+      "SELECT instance,status,execution_id,start_ts,end_ts,modify_ts,runtime_overview,timeline "
+          + "FROM maestro_workflow_instance WHERE workflow_id=? AND instance_id=?";
+
+  private static final String GET_STEP_INSTANCES_QUERY =
+      "SELECT instance,runtime_state,dependencies,outputs,artifacts,timeline "
+          + "FROM maestro_step_instance WHERE workflow_id=? AND workflow_instance_id=?";
+
+  private static final String ARCHIVE_WORKFLOW_INSTANCES_QUERY_PREFIX =
+      "UPSERT INTO maestro_workflow_instance_archive "
+          + "(workflow_id,instance_id,run_id,uuid,compressor,payload) VALUES ";
+  private static final String WORKFLOW_INSTANCE_ROW_PLACEHOLDER = "(?,?,?,?,?,?)";
+
+  private static final String ARCHIVE_STEP_INSTANCES_QUERY_PREFIX =
+      "UPSERT INTO maestro_step_instance_archive (workflow_id,workflow_instance_id,"
+          + "workflow_run_id,step_id,step_attempt_id,compressor,payload) VALUES ";
+  private static final String STEP_INSTANCE_ROW_PLACEHOLDER = "(?,?,?,?,?,?,?)";
+
+  private static final String DELETE_STEP_INSTANCES_QUERY =
+      "DELETE FROM maestro_step_instance WHERE workflow_id=? AND workflow_instance_id=?";
+
+  private static final String DELETE_WORKFLOW_INSTANCE_QUERY =
+      "DELETE FROM maestro_workflow_instance WHERE workflow_id=? AND instance_id=?";
+
+  private static final String GET_ARCHIVED_WORKFLOW_INSTANCE_QUERY_TEMPLATE =
+      "SELECT compressor,payload FROM maestro_workflow_instance_archive a "
+          + "WHERE workflow_id=? AND instance_id=? AND "
+          + WORKFLOW_NOT_DELETED_CONDITION
+          + " %s";
+
+  private static final String GET_ARCHIVED_WORKFLOW_INSTANCE_QUERY =
+      String.format(GET_ARCHIVED_WORKFLOW_INSTANCE_QUERY_TEMPLATE, "AND run_id=?");
+
+  private static final String GET_LATEST_ARCHIVED_WORKFLOW_INSTANCE_RUN_QUERY =
+      String.format(GET_ARCHIVED_WORKFLOW_INSTANCE_QUERY_TEMPLATE, "ORDER BY run_id DESC LIMIT 1");
+
+  private static final String GET_ARCHIVED_STEP_INSTANCE_QUERY_TEMPLATE =
+      "SELECT compressor,payload FROM maestro_step_instance_archive a WHERE workflow_id=? "
+          + "AND workflow_instance_id=? AND workflow_run_id=? AND step_id=? AND "
+          + WORKFLOW_NOT_DELETED_CONDITION
+          + " %s";
+
+  private static final String GET_ARCHIVED_STEP_INSTANCE_QUERY =
+      String.format(GET_ARCHIVED_STEP_INSTANCE_QUERY_TEMPLATE, "AND step_attempt_id=?");
+
+  private static final String GET_LATEST_ARCHIVED_STEP_INSTANCE_QUERY =
+      String.format(
+          GET_ARCHIVED_STEP_INSTANCE_QUERY_TEMPLATE, "ORDER BY step_attempt_id DESC LIMIT 1");
+
+  private static final String COMPRESSOR_COLUMN = "compressor";
+
+  private final StringCodec codec;
+  private final String compressorName;
+  private final int insertBatchSize;
+
+  /**
+   * Constructor for Maestro instance archive DAO.
+   *
+   * @param dataSource database data source
+   * @param objectMapper object mapper
+   * @param config configuration
+   * @param codec string codec to compress the archived payloads
+   * @param compressorName the name of the compressor used to archive the payloads
+   */
+  public MaestroInstanceArchiveDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      StringCodec codec,
+      String compressorName) {
+    super(dataSource, objectMapper, config);
+    this.codec = codec;
+    this.compressorName = compressorName;
+    this.insertBatchSize = config.getDbInsertBatchSize();
+  }
+
+  /**
+   * Archive a batch of workflow instances with all of their runs ended before the cutoff time. The
+   * batch, including the step instances, is moved to the archive tables in a single transaction.
+   *
+   * @param cutoffTime the end time in epoch millis, before which the runs are archived
+   * @param limit the max number of workflow instances to archive in the batch
+   * @param instanceDao workflow instance DAO to map the workflow instance rows
+   * @param stepInstanceDao step instance DAO to map the step instance rows
+   * @return the number of archived workflow instances
+   */
+  int archiveInstances(
+      long cutoffTime,
+      int limit,
+      MaestroWorkflowInstanceDao instanceDao,
+      MaestroStepInstanceDao stepInstanceDao) {
+    return withMetricLogError(
+        () ->
+            withRetryableTransaction(
+                conn -> {
+                  List<InstanceKey> keys = getArchivableInstances(conn, cutoffTime, limit);
+                  for (InstanceKey key : keys) {
+                    archiveInstance(conn, key, instanceDao, stepInstanceDao);
+                  }
+                  return keys.size();
+                }),
+        "archiveInstances",
+        "Failed to archive the workflow instances ended before [{}]",
+        cutoffTime);
+  }
+
+  private List<InstanceKey> getArchivableInstances(Connection conn, long cutoffTime, int limit)
+      throws SQLException {
+    try (PreparedStatement stmt = conn.prepareStatement(GET_ARCHIVABLE_INSTANCES_QUERY)) {
+      int idx = 0;
+      Timestamp cutoff = new Timestamp(cutoffTime);
+      stmt.setTimestamp(++idx, cutoff);
+      stmt.setTimestamp(++idx, cutoff);
+      stmt.setInt(++idx, limit);
+      try (ResultSet result = stmt.executeQuery()) {
+        List<InstanceKey> keys = new ArrayList<>();
+        while (result.next()) {
+          keys.add(new InstanceKey(result.getString(1), result.getLong(2)));
+        }
+        return keys;
+      }
+    }
+  }
+
+  private void archiveInstance(
+      Connection conn,
+      InstanceKey key,
+      MaestroWorkflowInstanceDao instanceDao,
+      MaestroStepInstanceDao stepInstanceDao)
+      throws SQLException {
+    List<StepInstance> steps = new ArrayList<>();
+    try (PreparedStatement stmt = conn.prepareStatement(GET_STEP_INSTANCES_QUERY)) {
+      key.prepare(stmt);
+      try (ResultSet result = stmt.executeQuery()) {
+        while (result.next()) {
+          steps.add(stepInstanceDao.maestroStepFromResult(result));
+        }
+      }
+    }
+    List<WorkflowInstance> runs = new ArrayList<>();
+    try (PreparedStatement stmt = conn.prepareStatement(GET_WORKFLOW_INSTANCE_RUNS_QUERY)) {
+      key.prepare(stmt);
+      try (ResultSet result = stmt.executeQuery()) {
+        while (result.next()) {
+          runs.add(instanceDao.workflowInstanceFromResult(result));
+        }
+      }
+    }
+
+    upsertRows(
+        conn,
+        ARCHIVE_STEP_INSTANCES_QUERY_PREFIX,
+        STEP_INSTANCE_ROW_PLACEHOLDER,
+        steps,
+        (stmt, offset, step) -> {
+          int idx = offset;
+          stmt.setString(++idx, step.getWorkflowId());
+          stmt.setLong(++idx, step.getWorkflowInstanceId());
+          stmt.setLong(++idx, step.getWorkflowRunId());
+          stmt.setString(++idx, step.getStepId());
+          stmt.setLong(++idx, step.getStepAttemptId());
+          stmt.setString(++idx, compressorName);
+          stmt.setString(++idx, compress(step));
+        });
+    upsertRows(
+        conn,
+        ARCHIVE_WORKFLOW_INSTANCES_QUERY_PREFIX,
+        WORKFLOW_INSTANCE_ROW_PLACEHOLDER,
+        runs,
+        (stmt, offset, run) -> {
+          int idx = offset;
+          stmt.setString(++idx, run.getWorkflowId());
+          stmt.setLong(++idx, run.getWorkflowInstanceId());
+          stmt.setLong(++idx, run.getWorkflowRunId());
+          stmt.setString(++idx, run.getWorkflowUuid());
+          stmt.setString(++idx, compressorName);
+          stmt.setString(++idx, compress(run));
+        });
+
+    try (PreparedStatement stmt = conn.prepareStatement(DELETE_STEP_INSTANCES_QUERY)) {
+      key.prepare(stmt);
+      stmt.executeUpdate();
+    }
+    try (PreparedStatement stmt = conn.prepareStatement(DELETE_WORKFLOW_INSTANCE_QUERY)) {
+      key.prepare(stmt);
+      stmt.executeUpdate();
+    }
+    LOG.debug(
+        "Archived workflow instance [{}][{}] with [{}] runs and [{}] step instances",
+        key.workflowId,
+        key.instanceId,
+        runs.size(),
+        steps.size());
+  }
+
+  /** Upsert the rows in chunks of at most insertBatchSize rows, one multi-row UPSERT per chunk. */
+  private <T> void upsertRows(
+      Connection conn, String prefix, String placeholder, List<T> rows, RowBinder<T> binder)
+      throws SQLException {
+    int columns = (int) placeholder.chars().filter(c -> c == '?').count();
+    Iterator<T> iterator = rows.iterator();
+    for (int remaining = rows.size(); remaining > 0; remaining -= insertBatchSize) {
+      int size = Math.min(insertBatchSize, remaining);
+      String query = prefix + String.join(",", Collections.nCopies(size, placeholder));
+      try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        for (int i = 0; i < size; i++) {
+          binder.bind(stmt, i * columns, iterator.next());
+        }
+        stmt.executeUpdate();
+      }
+    }
+  }
+
+  /**
+   * Get an archived workflow instance run.
+   *
+   * @param workflowId workflow id
+   * @param instanceId workflow instance id
+   * @param runId workflow run id, {@link Constants#LATEST_ONE} for the latest run
+   * @return the archived workflow instance run or null if it is not archived
+   */
+  public WorkflowInstance getWorkflowInstanceRun(String workflowId, long instanceId, long runId) {
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                runId == Constants.LATEST_ONE
+                    ? GET_LATEST_ARCHIVED_WORKFLOW_INSTANCE_RUN_QUERY
+                    : GET_ARCHIVED_WORKFLOW_INSTANCE_QUERY,
+                stmt -> {
+                  int idx = 0;
+                  stmt.setString(++idx, workflowId);
+                  stmt.setLong(++idx, instanceId);
+                  if (runId != Constants.LATEST_ONE) {
+                    stmt.setLong(++idx, runId);
+                  }
+                },
+                result -> {
+                  if (result.next()) {
+                    return decompress(result, WorkflowInstance.class);
+                  }
+                  return null;
+                }),
+        "getArchivedWorkflowInstanceRun",
+        "Failed to get the archived workflow instance for [{}][{}][{}]",
+        workflowId,
+        instanceId,
+        runId);
+  }
+
+  /**
+   * Get an archived step instance.
+   *
+   * @param workflowId workflow id
+   * @param workflowInstanceId workflow instance id
+   * @param workflowRunId workflow run id
+   * @param stepId step id
+   * @param stepAttempt step attempt id, {@link Constants#LATEST_INSTANCE_RUN} for the latest one
+   * @return the archived step instance or null if it is not archived
+   */
+  public StepInstance getStepInstance(
+      String workflowId,
+      long workflowInstanceId,
+      long workflowRunId,
+      String stepId,
+      String stepAttempt) {
+    boolean latest = Constants.LATEST_INSTANCE_RUN.equalsIgnoreCase(stepAttempt);
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                latest ? GET_LATEST_ARCHIVED_STEP_INSTANCE_QUERY : GET_ARCHIVED_STEP_INSTANCE_QUERY,
+                stmt -> {
+                  int idx = 0;
+                  stmt.setString(++idx, workflowId);
+                  stmt.setLong(++idx, workflowInstanceId);
+                  stmt.setLong(++idx, workflowRunId);
+                  stmt.setString(++idx, stepId);
+                  if (!latest) {
+                    stmt.setLong(++idx, Long.parseLong(stepAttempt));
+                  }
+                },
+                result -> {
+                  if (result.next()) {
+                    StepInstance instance = decompress(result, StepInstance.class);
+                    // keep it the same as the step instance loaded from the instance table
+                    if (instance.getArtifacts() == null) {
+                      instance.setArtifacts(Collections.emptyMap());
+                    }
+                    if (instance.getTimeline() == null) {
+                      instance.setTimeline(new Timeline(Collections.emptyList()));
+                    }
+                    return instance;
+                  }
+                  return null;
+                }),
+        "getArchivedStepInstance",
+        "Failed to get the archived step instance for [{}][{}][{}][{}][{}]",
+        workflowId,
+        workflowInstanceId,
+        workflowRunId,
+        stepId,
+        stepAttempt);
+  }
+
+  private String compress(Object instance) {
+    try {
+      return codec.compress(compressorName, toJson(instance));
+    } catch (IOException e) {
+      throw new MaestroInternalError(e, "Failed to compress the archived instance payload");
+    }
+  }
+
+  private <T> T decompress(ResultSet rs, Class<T> clazz) throws SQLException {
+    try {
+      return fromJson(
+          codec.decompress(rs.getString(COMPRESSOR_COLUMN), rs.getString(PAYLOAD_COLUMN)), clazz);
+    } catch (IOException e) {
+      throw new MaestroInternalError(e, "Failed to decompress the archived instance payload");
+    }
+  }
+
+  /** Function to set the parameters of a row after the given parameter offset. */
+  @FunctionalInterface
+  private interface RowBinder<T> {
+    void bind(PreparedStatement stmt, int offset, T row) throws SQLException;
+  }
+
+  /** Primary key prefix of a workflow instance shared by all of its runs and step instances. */
+  private static final class InstanceKey {
+    private final String workflowId;
+    private final long instanceId;
+
+    private InstanceKey(String workflowId, long instanceId) {
+      this.workflowId = workflowId;
+      this.instanceId = instanceId;
+    }
+
+    private void prepare(PreparedStatement stmt) throws SQLException {
+      stmt.setString(1, workflowId);
+      stmt.setLong(2, instanceId);
+    }
+  }
+}
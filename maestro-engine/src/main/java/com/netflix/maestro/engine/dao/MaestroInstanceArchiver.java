@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.netflix.maestro.annotations.Nullable;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.engine.utils.TimeUtils;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Archiver to periodically move the terminal workflow instances older than the max age to the
+ * archive tables. Each round archives bounded batches until there is nothing left to archive and
+ * pauses between the batches to limit the load added to the database.
+ *
+ * <p>If the workflow ownership is enabled, only the owner of the archiver key archives, so the
+ * nodes do not contend on the same batches. Otherwise, every node archives and the conflicting
+ * batches are retried by the transactions.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads"})
+@Slf4j
+@AllArgsConstructor
+public class MaestroInstanceArchiver {
+  private static final String ARCHIVER_OWNERSHIP_KEY = "maestro-instance-archiver";
+
+  private final MaestroInstanceArchiveDao archiveDao;
+  private final MaestroWorkflowInstanceDao instanceDao;
+  private final MaestroStepInstanceDao stepInstanceDao;
+  @Nullable private final WorkflowOwnershipManager ownershipManager;
+  private final ScheduledExecutorService executorService;
+  private final int batchSize;
+  private final long maxAgeMs;
+  private final long intervalMs;
+  private final long batchDelayMs;
+  private final MaestroMetrics metrics;
+
+  public void postConstruct() {
+    executorService.scheduleWithFixedDelay(
+        this::archiveAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void preDestroy() {
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.info("executor shutdown is timed out and calling shutdownNow");
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException ex) {
+      LOG.info("executor shutdown is interrupted and calling shutdownNow");
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Archive workflow instances until none is left. It never throws runtime exceptions. */
+  void archiveAll() {
+    if (ownershipManager != null && !ownershipManager.isOwned(ARCHIVER_OWNERSHIP_KEY)) {
+      LOG.debug(
+          "Skip archiving as the archiver is owned by [{}]",
+          ownershipManager.getOwner(ARCHIVER_OWNERSHIP_KEY));
+      return;
+    }
+    long cutoffTime = System.currentTimeMillis() - maxAgeMs;
+    int total = 0;
+    try {
+      int archived = archive(cutoffTime);
+      total += archived;
+      while (archived >= batchSize && !executorService.isShutdown()) {
+        TimeUtils.sleep(batchDelayMs)
+            .ifPresent(
+                details ->
+                    LOG.info(
+                        "Thread is interrupted, ignore it and just continue without sleeping: {}",
+                        details));
+        archived = archive(cutoffTime);
+        total += archived;
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to archive workflow instances and will retry it later", e);
+      metrics.counter(MetricConstants.INSTANCE_ARCHIVE_FAILURE_METRIC, getClass());
+    }
+    if (total > 0) {
+      LOG.info("Archived [{}] workflow instances ended before [{}]", total, cutoffTime);
+    }
+  }
+
+  /**
+   * Archive a batch of workflow instances ended before the cutoff time.
+   *
+   * @return the number of archived workflow instances
+   */
+  int archive(long cutoffTime) {
+    int archived = archiveDao.archiveInstances(cutoffTime, batchSize, instanceDao, stepInstanceDao);
+    metrics.distributionSummary(
+        MetricConstants.INSTANCE_ARCHIVE_BATCH_METRIC, archived, getClass());
+    return archived;
+  }
+}
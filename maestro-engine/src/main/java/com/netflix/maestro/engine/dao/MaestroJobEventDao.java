@@ -0,0 +1,176 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
+import com.netflix.maestro.annotations.Nullable;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+
+/**
+ * DAO for the maestro job event outbox. Job events are added within the caller's transaction
+ * together with the state changes, so they are either committed or rolled back together. A
+ * dispatcher then claims them in batches, publishes them, and deletes them.
+ *
+ * <p>The visible_ts column is the time that a job event can be claimed. Claiming a job event moves
+ * its visible_ts forward by the lease duration, so a job event claimed by a crashed dispatcher is
+ * claimed again after the lease expires. It means a job event is delivered at least once.
+ */
+public class MaestroJobEventDao extends CockroachDBBaseDAO {
+  private static final String EVENT_ID_COLUMN = "event_id";
+
+  private static final String ADD_JOB_EVENT_QUERY =
+      "INSERT INTO maestro_job_event (payload,visible_ts) VALUES (?,?)";
+  private static final String CLAIM_JOB_EVENTS_QUERY =
+      "UPDATE maestro_job_event SET visible_ts=? WHERE visible_ts<=? "
+          + "ORDER BY visible_ts ASC LIMIT ? RETURNING event_id,payload";
+  private static final String DELETE_JOB_EVENTS_QUERY =
+      "DELETE FROM maestro_job_event WHERE event_id = ANY (?)";
+
+  /** Constructor for MaestroJobEventDao. */
+  public MaestroJobEventDao(
+      DataSource dataSource, ObjectMapper objectMapper, CockroachDBConfiguration config) {
+    super(dataSource, objectMapper, config);
+  }
+
+  /**
+   * Send a job event as a part of the transaction. It is added to the outbox if enabled, so it is
+   * committed or rolled back together with the state change. Otherwise, it is published directly.
+   *
+   * @param jobEventDao the outbox dao, null if the outbox is disabled
+   * @param publisher the publisher to publish the job event directly
+   * @param conn the connection of the caller's transaction
+   * @param jobEvent job event to send
+   * @param msg error message if failing to publish it directly
+   * @throws SQLException sql exception
+   */
+  public static void sendJobEvent(
+      @Nullable MaestroJobEventDao jobEventDao,
+      MaestroJobEventPublisher publisher,
+      Connection conn,
+      MaestroJobEvent jobEvent,
+      String msg)
+      throws SQLException {
+    if (jobEventDao != null) {
+      jobEventDao.addJobEvent(conn, jobEvent, MaestroJobEventPublisher.DEFAULT_INVISIBLE_TIME);
+    } else {
+      publisher.publishOrThrow(jobEvent, msg);
+    }
+  }
+
+  /**
+   * Add a job event to the outbox within the given transaction.
+   *
+   * @param conn the connection of the caller's transaction
+   * @param jobEvent job event to add
+   * @param invisibleMs invisible time in milliseconds
+   * @throws SQLException sql exception
+   */
+  public void addJobEvent(Connection conn, MaestroJobEvent jobEvent, long invisibleMs)
+      throws SQLException {
+    addJobEvents(conn, Collections.singletonList(jobEvent), invisibleMs);
+  }
+
+  /**
+   * Add a list of job events to the outbox within the given transaction in a single batch.
+   *
+   * @param conn the connection of the caller's transaction
+   * @param jobEvents job events to add
+   * @param invisibleMs invisible time in milliseconds
+   * @throws SQLException sql exception
+   */
+  public void addJobEvents(
+      Connection conn, List<? extends MaestroJobEvent> jobEvents, long invisibleMs)
+      throws SQLException {
+    if (jobEvents.isEmpty()) {
+      return;
+    }
+    long visibleTime = System.currentTimeMillis() + Math.max(0, invisibleMs);
+    try (PreparedStatement stmt = conn.prepareStatement(ADD_JOB_EVENT_QUERY)) {
+      for (MaestroJobEvent jobEvent : jobEvents) {
+        stmt.setString(1, toJson(jobEvent));
+        stmt.setLong(2, visibleTime);
+        stmt.addBatch();
+      }
+      stmt.executeBatch();
+    }
+  }
+
+  /**
+   * Claim a batch of visible job events and lease them for the given duration.
+   *
+   * @param limit max number of job events to claim
+   * @param leaseMs lease duration in milliseconds
+   * @return the claimed job events keyed by the event id in the visible time order
+   */
+  public Map<String, MaestroJobEvent> claimJobEvents(int limit, long leaseMs) {
+    long now = System.currentTimeMillis();
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                CLAIM_JOB_EVENTS_QUERY,
+                stmt -> {
+                  stmt.setLong(1, now + leaseMs);
+                  stmt.setLong(2, now);
+                  stmt.setInt(3, limit);
+                },
+                result -> {
+                  Map<String, MaestroJobEvent> jobEvents = new LinkedHashMap<>();
+                  while (result.next()) {
+                    jobEvents.put(
+                        result.getString(EVENT_ID_COLUMN),
+                        fromJson(result.getString(PAYLOAD_COLUMN), MaestroJobEvent.class));
+                  }
+                  return jobEvents;
+                }),
+        "claimJobEvents",
+        "Failed claiming [{}] job events from the outbox",
+        limit);
+  }
+
+  /**
+   * Delete the dispatched job events from the outbox in a single statement.
+   *
+   * @param eventIds event ids to delete
+   * @return the number of deleted job events
+   */
+  public int deleteJobEvents(List<String> eventIds) {
+    if (eventIds.isEmpty()) {
+      return 0;
+    }
+    return withMetricLogError(
+        () ->
+            withRetryableStatement(
+                DELETE_JOB_EVENTS_QUERY,
+                stmt -> {
+                  stmt.setArray(
+                      1,
+                      stmt.getConnection()
+                          .createArrayOf(ARRAY_TYPE_NAME, eventIds.toArray(new String[0])));
+                  return stmt.executeUpdate();
+                }),
+        "deleteJobEvents",
+        "Failed deleting [{}] job events from the outbox",
+        eventIds.size());
+  }
+}
@@ -15,6 +15,8 @@ package com.netflix.maestro.engine.dao;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
+import com.netflix.conductor.core.execution.ApplicationException;
+import com.netflix.maestro.annotations.Nullable;
 import com.netflix.maestro.annotations.SuppressFBWarnings;
 import com.netflix.maestro.engine.db.InstanceRunUuid;
 import com.netflix.maestro.engine.execution.RunRequest;
@@ -36,6 +38,7 @@ import com.netflix.maestro.models.instance.WorkflowInstance;
 import com.netflix.maestro.models.timeline.TimelineEvent;
 import com.netflix.maestro.models.timeline.TimelineLogEvent;
 import com.netflix.maestro.utils.Checks;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -47,6 +50,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
@@ -68,6 +72,14 @@ import lombok.extern.slf4j.Slf4j;
  * instruct users to stop extra non-terminal instances first. Maestro won't automatically stop those
  * to avoid unexpected behavior. Users have to manually stop them before switching to LAST_ONLY
  * because a new run might unexpectedly stop all previously queued or running instances.
+ *
+ * <p>By default, a start locks the workflow row to get the next instance id. If the instance id
+ * block size is larger than 1, new instances with queueing run strategies get ids from a node-local
+ * block reserved by {@link InstanceIdAllocator} instead. The ids are allocated before the start
+ * transaction, so it never waits for a block reservation while holding a connection. Then ids are
+ * unique and increasing per node but not gap free, e.g. the ids allocated for duplicated requests
+ * are skipped, and the queue order across nodes follows the block reservation order.
+ * FIRST_ONLY, LAST_ONLY, and restarts still take the row lock as their decisions are serialized.
  */
 @SuppressFBWarnings("OBL_UNSATISFIED_OBLIGATION")
 @Slf4j
@@ -75,6 +87,8 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
   private static final String ONE_STRING = "1";
   private static final String TWO_STRING = "2";
   private static final int DO_NOTHING_CODE = 0;
+  private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+  private static final String WORKFLOW_UNIQUE_INDEX = "workflow_unique_index";
 
   private static final String GET_LATEST_WORKFLOW_INSTANCE_ID_QUERY =
       "SELECT latest_instance_id AS id FROM maestro_workflow WHERE workflow_id=? FOR UPDATE";
@@ -82,6 +96,13 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
   private static final String UPDATE_LATEST_WORKFLOW_INSTANCE_ID_QUERY =
       "UPDATE maestro_workflow set (latest_instance_id,modify_ts)=(?,CURRENT_TIMESTAMP) WHERE workflow_id=?";
 
+  private static final String GET_WORKFLOW_INTERNAL_ID_QUERY =
+      "SELECT internal_id AS id FROM maestro_workflow WHERE workflow_id=?";
+
+  private static final String RESERVE_WORKFLOW_INSTANCE_IDS_QUERY =
+      "UPDATE maestro_workflow set (latest_instance_id,modify_ts)=(latest_instance_id+?,CURRENT_TIMESTAMP) "
+          + "WHERE workflow_id=? RETURNING internal_id,latest_instance_id";
+
   private static final String GET_LATEST_WORKFLOW_INSTANCE_RUN_ID_QUERY =
       "SELECT run_id AS id, status FROM maestro_workflow_instance "
           + "WHERE workflow_id=? AND instance_id=? ORDER BY run_id DESC LIMIT 1";
@@ -133,11 +154,18 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
           + "WHERE workflow_id=? AND status='CREATED' AND execution_id IS NULL "
           + "LIMIT 2 RETURNING instance";
 
+  // the uuids of the archived instances are checked as well to dedup the runs older than max-age
   private static final String CHECK_EXISTING_UUID_QUERY =
-      "SELECT uuid AS id FROM maestro_workflow_instance@workflow_unique_index WHERE workflow_id=? AND uuid=?";
+      "SELECT uuid AS id FROM maestro_workflow_instance@workflow_unique_index "
+          + "WHERE workflow_id=? AND uuid=? UNION ALL "
+          + "SELECT uuid AS id FROM maestro_workflow_instance_archive@archive_unique_index "
+          + "WHERE workflow_id=? AND uuid=?";
 
   private static final String CHECK_EXISTING_UUIDS_QUERY =
-      "SELECT uuid AS id FROM maestro_workflow_instance@workflow_unique_index WHERE workflow_id=? AND uuid = ANY (?)";
+      "SELECT uuid AS id FROM maestro_workflow_instance@workflow_unique_index "
+          + "WHERE workflow_id=? AND uuid = ANY (?) UNION ALL "
+          + "SELECT uuid AS id FROM maestro_workflow_instance_archive@archive_unique_index "
+          + "WHERE workflow_id=? AND uuid = ANY (?)";
 
   private static final String UPDATE_WORKFLOW_INSTANCE_FAILED_STATUS =
       "UPDATE maestro_workflow_instance@primary SET (status) = ('FAILED_2') "
@@ -149,7 +177,9 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
   private static final long RESEND_JOB_EVENT_DELAY_IN_MILLISECONDS = TimeUnit.SECONDS.toMillis(5);
 
   private final MaestroJobEventPublisher publisher;
+  private final MaestroJobEventDao jobEventDao;
   private final MaestroMetrics metrics;
+  private final InstanceIdAllocator idAllocator;
 
   /** constructor. */
   public MaestroRunStrategyDao(
@@ -158,9 +188,42 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
       CockroachDBConfiguration config,
       MaestroJobEventPublisher publisher,
       MaestroMetrics metrics) {
+    this(dataSource, objectMapper, config, publisher, null, metrics);
+  }
+
+  /**
+   * Constructor with the job event outbox. If jobEventDao is null, job events are published
+   * directly by the publisher. Otherwise, they are added to the outbox within the transaction.
+   */
+  public MaestroRunStrategyDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      MaestroJobEventPublisher publisher,
+      MaestroJobEventDao jobEventDao,
+      MaestroMetrics metrics) {
+    this(dataSource, objectMapper, config, publisher, jobEventDao, metrics, 1);
+  }
+
+  /**
+   * Constructor with the job event outbox and the instance id block size. If the block size is
+   * larger than 1, new instances with queueing run strategies get their instance ids from a block
+   * reserved by this node.
+   */
+  public MaestroRunStrategyDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      MaestroJobEventPublisher publisher,
+      MaestroJobEventDao jobEventDao,
+      MaestroMetrics metrics,
+      long instanceIdBlockSize) {
     super(dataSource, objectMapper, config);
     this.publisher = publisher;
+    this.jobEventDao = jobEventDao;
     this.metrics = metrics;
+    this.idAllocator =
+        instanceIdBlockSize > 1 ? new InstanceIdAllocator(instanceIdBlockSize) : null;
   }
 
   private long getLatestInstanceId(Connection conn, String workflowId) throws SQLException {
@@ -180,6 +243,92 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
     return latestInstanceId;
   }
 
+  private long getInternalId(Connection conn, String workflowId) throws SQLException {
+    try (PreparedStatement stmt = conn.prepareStatement(GET_WORKFLOW_INTERNAL_ID_QUERY)) {
+      stmt.setString(1, workflowId);
+      try (ResultSet result = stmt.executeQuery()) {
+        if (result.next()) {
+          return result.getLong(ID_COLUMN);
+        }
+      }
+    }
+    throw new MaestroNotFoundException(
+        "Cannot find workflow [%s] while trying to start it", workflowId);
+  }
+
+  /**
+   * Reserve a block of instance ids in its own transaction. It must not join the start transaction
+   * as the block is kept in memory even if the start transaction is rolled back.
+   */
+  private InstanceIdAllocator.Block reserveInstanceIds(String workflowId, long size) {
+    InstanceIdAllocator.Block block =
+        withMetricLogError(
+            () ->
+                withRetryableQuery(
+                    RESERVE_WORKFLOW_INSTANCE_IDS_QUERY,
+                    stmt -> {
+                      stmt.setLong(1, size);
+                      stmt.setString(2, workflowId);
+                    },
+                    result -> {
+                      if (result.next()) {
+                        return new InstanceIdAllocator.Block(
+                            result.getLong("internal_id"),
+                            result.getLong("latest_instance_id"),
+                            size);
+                      }
+                      return null;
+                    }),
+            "reserveInstanceIds",
+            "Failed to reserve [{}] instance ids for workflow [{}]",
+            size,
+            workflowId);
+    if (block == null) {
+      throw new MaestroNotFoundException(
+          "Cannot find workflow [%s] while trying to start it", workflowId);
+    }
+    metrics.counter(MetricConstants.RUNSTRATEGY_INSTANCE_ID_BLOCK_RESERVED_METRIC, getClass());
+    LOG.debug("Reserved a block of [{}] instance ids for workflow [{}]", size, workflowId);
+    return block;
+  }
+
+  /**
+   * Allocate the new instance ids from the node-local block before opening the start transaction
+   * if enabled, so the block lock of the workflow is never held while waiting for a connection. If
+   * the workflow has been re-created since the block was reserved, the start is retried once with
+   * a newly reserved block.
+   */
+  private <T> T withIdBlock(
+      String workflowId,
+      int count,
+      boolean enabled,
+      Function<InstanceIdAllocator.Allocation, T> start) {
+    if (!enabled) {
+      return start.apply(null);
+    }
+    try {
+      return start.apply(idAllocator.allocate(workflowId, count, this::reserveInstanceIds));
+    } catch (InstanceIdAllocator.StaleBlockError e) {
+      LOG.info("Retry starting workflow [{}] with a new instance id block", workflowId);
+      return start.apply(idAllocator.allocate(workflowId, count, this::reserveInstanceIds));
+    }
+  }
+
+  /** Check if the new instance ids are allocated from the node-local block. */
+  private boolean useIdBlock(RunStrategy runStrategy) {
+    if (idAllocator == null) {
+      return false;
+    }
+    switch (runStrategy.getRule()) {
+      case SEQUENTIAL:
+      case PARALLEL:
+      case STRICT_SEQUENTIAL:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   private long getLatestRunId(Connection conn, String workflowId, long workflowInstanceId)
       throws SQLException {
     try (PreparedStatement stmt =
@@ -203,6 +352,8 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
     try (PreparedStatement wfiStmt = conn.prepareStatement(CHECK_EXISTING_UUID_QUERY)) {
       wfiStmt.setString(1, instance.getWorkflowId());
       wfiStmt.setString(2, instance.getWorkflowUuid());
+      wfiStmt.setString(3, instance.getWorkflowId());
+      wfiStmt.setString(4, instance.getWorkflowUuid());
       try (ResultSet result = wfiStmt.executeQuery()) {
         return result.next();
       }
@@ -247,10 +398,15 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
   }
 
   /** Publish a {@link StartWorkflowJobEvent} job event. */
-  private void publishStartWorkflowJobEvent(String workflowId) {
+  private void publishStartWorkflowJobEvent(Connection conn, String workflowId)
+      throws SQLException {
     StartWorkflowJobEvent jobEvent = StartWorkflowJobEvent.create(workflowId);
-    publisher.publishOrThrow(
-        jobEvent, "Failed sending a job event to start workflow, please retry.");
+    MaestroJobEventDao.sendJobEvent(
+        jobEventDao,
+        publisher,
+        conn,
+        jobEvent,
+        "Failed sending a job event to start workflow, please retry.");
   }
 
   /**
@@ -291,12 +447,16 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
       int res = wfiStmt.executeUpdate();
       Checks.checkTrue(res == SUCCESS_WRITE_SIZE, "insertInstance expects to always return 1.");
       if (withQueue) {
-        publishStartWorkflowJobEvent(instance.getWorkflowId());
+        publishStartWorkflowJobEvent(conn, instance.getWorkflowId());
       } else {
         TerminateThenRunInstanceJobEvent jobEvent =
             createTerminateInstanceJobEvent(toTerminate, instance);
-        publisher.publishOrThrow(
-            jobEvent, "Failed sending a terminate job event to run workflow, please retry.");
+        MaestroJobEventDao.sendJobEvent(
+            jobEventDao,
+            publisher,
+            conn,
+            jobEvent,
+            "Failed sending a terminate job event to run workflow, please retry.");
       }
       return res;
     }
@@ -313,11 +473,16 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
     wfiStmt.setString(++idx, toJson(timelineEvent));
   }
 
-  private void publishInstanceStopJobEvent(WorkflowInstance instance, long markTime) {
+  private void publishInstanceStopJobEvent(
+      Connection conn, WorkflowInstance instance, long markTime) throws SQLException {
     WorkflowInstanceUpdateJobEvent jobEvent =
         WorkflowInstanceUpdateJobEvent.create(instance, WorkflowInstance.Status.STOPPED, markTime);
-    publisher.publishOrThrow(
-        jobEvent, "Failed sending a job event to notify stopping workflow instance, please retry.");
+    MaestroJobEventDao.sendJobEvent(
+        jobEventDao,
+        publisher,
+        conn,
+        jobEvent,
+        "Failed sending a job event to notify stopping workflow instance, please retry.");
   }
 
   private int addStoppedInstance(
@@ -327,7 +492,7 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
       prepareStopInstanceStatement(wfiStmt, instance, timelineEvent);
       int res = wfiStmt.executeUpdate();
       Checks.checkTrue(res == SUCCESS_WRITE_SIZE, "addStoppedInstance expects to always return 1.");
-      publishInstanceStopJobEvent(instance, instance.getCreateTime());
+      publishInstanceStopJobEvent(conn, instance, instance.getCreateTime());
       return res;
     }
   }
@@ -359,7 +524,10 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
       WorkflowInstanceUpdateJobEvent jobEvent =
           WorkflowInstanceUpdateJobEvent.create(
               instance, instance.getStatus(), instance.getCreateTime());
-      publisher.publishOrThrow(
+      MaestroJobEventDao.sendJobEvent(
+          jobEventDao,
+          publisher,
+          conn,
           jobEvent,
           "Failed sending a job event to notify terminated workflow instance, please retry.");
       return res;
@@ -413,7 +581,7 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
       try (ResultSet result = wfiStmt.executeQuery()) {
         if (result.next()) {
           WorkflowInstance instance = fromJson(result.getString(1), WorkflowInstance.class);
-          publishInstanceStopJobEvent(instance, System.currentTimeMillis());
+          publishInstanceStopJobEvent(conn, instance, System.currentTimeMillis());
           Checks.checkTrue(
               !result.next(),
               "Invalid case: finding more than 1 pending runs beside [%s][%s] with LAST_ONLY run strategy.",
@@ -494,43 +662,36 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
    */
   public int startWithRunStrategy(
       @NotNull WorkflowInstance instance, @NotNull RunStrategy runStrategy) {
+    return withIdBlock(
+        instance.getWorkflowId(),
+        1,
+        instance.isFreshRun() && useIdBlock(runStrategy),
+        allocation -> startWithRunStrategy(instance, runStrategy, allocation));
+  }
+
+  private int startWithRunStrategy(
+      WorkflowInstance instance,
+      RunStrategy runStrategy,
+      @Nullable InstanceIdAllocator.Allocation allocation) {
+    final long instanceId = instance.getWorkflowInstanceId();
+    final long runId = instance.getWorkflowRunId();
     return withMetricLogError(
-        () ->
-            withRetryableTransaction(
-                conn -> {
-                  final long nextInstanceId =
-                      getLatestInstanceId(conn, instance.getWorkflowId()) + 1;
-                  if (isDuplicated(conn, instance)) {
-                    return 0;
-                  }
-                  completeInstanceInit(conn, nextInstanceId, instance);
-                  int res;
-                  if (instance.getStatus().isTerminal()) {
-                    // Save it directly and send a terminate event
-                    res = addTerminatedInstance(conn, instance);
-                  } else {
-                    switch (runStrategy.getRule()) {
-                      case SEQUENTIAL:
-                      case PARALLEL:
-                      case STRICT_SEQUENTIAL:
-                        res = insertInstance(conn, instance, true, null);
-                        break;
-                      case FIRST_ONLY:
-                        res = startFirstOnlyInstance(conn, instance);
-                        break;
-                      case LAST_ONLY:
-                        res = startLastOnlyInstance(conn, instance);
-                        break;
-                      default:
-                        throw new MaestroInternalError(
-                            "When start, run strategy [%s] is not supported.", runStrategy);
-                    }
-                  }
-                  if (instance.getWorkflowInstanceId() == nextInstanceId) {
-                    updateLatestInstanceId(conn, instance.getWorkflowId(), nextInstanceId);
-                  }
-                  return res;
-                }),
+        () -> {
+          try {
+            return startInTransaction(instance, runStrategy, allocation);
+          } catch (ApplicationException e) {
+            if (allocation != null && isDuplicatedUuidError(e)) {
+              LOG.info(
+                  "Workflow instance [{}][{}] has been started concurrently, skip it",
+                  instance.getWorkflowId(),
+                  instance.getWorkflowUuid());
+              instance.setWorkflowInstanceId(instanceId);
+              instance.setWorkflowRunId(runId);
+              return 0;
+            }
+            throw e;
+          }
+        },
         "startWithRunStrategy",
         "Failed to start a workflow [{}][{}] with run strategy [{}]",
         instance.getWorkflowId(),
@@ -538,6 +699,77 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
         runStrategy);
   }
 
+  private int startInTransaction(
+      WorkflowInstance instance,
+      RunStrategy runStrategy,
+      @Nullable InstanceIdAllocator.Allocation allocation) {
+    return withRetryableTransaction(
+        conn -> {
+          final boolean withIdBlock = allocation != null;
+          final long nextInstanceId;
+          if (withIdBlock) {
+            idAllocator.validate(
+                instance.getWorkflowId(),
+                allocation,
+                getInternalId(conn, instance.getWorkflowId()));
+            if (isDuplicated(conn, instance)) {
+              return 0;
+            }
+            nextInstanceId = allocation.firstId;
+          } else {
+            nextInstanceId = getLatestInstanceId(conn, instance.getWorkflowId()) + 1;
+            if (isDuplicated(conn, instance)) {
+              return 0;
+            }
+          }
+          completeInstanceInit(conn, nextInstanceId, instance);
+          int res;
+          if (instance.getStatus().isTerminal()) {
+            // Save it directly and send a terminate event
+            res = addTerminatedInstance(conn, instance);
+          } else {
+            switch (runStrategy.getRule()) {
+              case SEQUENTIAL:
+              case PARALLEL:
+              case STRICT_SEQUENTIAL:
+                res = insertInstance(conn, instance, true, null);
+                break;
+              case FIRST_ONLY:
+                res = startFirstOnlyInstance(conn, instance);
+                break;
+              case LAST_ONLY:
+                res = startLastOnlyInstance(conn, instance);
+                break;
+              default:
+                throw new MaestroInternalError(
+                    "When start, run strategy [%s] is not supported.", runStrategy);
+            }
+          }
+          if (!withIdBlock && instance.getWorkflowInstanceId() == nextInstanceId) {
+            updateLatestInstanceId(conn, instance.getWorkflowId(), nextInstanceId);
+          }
+          return res;
+        });
+  }
+
+  /**
+   * Check if the error is caused by the unique index on the workflow instance uuid. With the
+   * instance id block, the uuid check is not serialized by the workflow row lock, so a concurrent
+   * start of the same uuid fails at the insert instead.
+   */
+  private static boolean isDuplicatedUuidError(Throwable error) {
+    Throwable cause = error;
+    while (cause != null) {
+      if (cause instanceof SQLException
+          && UNIQUE_VIOLATION_SQL_STATE.equals(((SQLException) cause).getSQLState())
+          && String.valueOf(cause.getMessage()).contains(WORKFLOW_UNIQUE_INDEX)) {
+        return true;
+      }
+      cause = cause.getCause();
+    }
+    return false;
+  }
+
   /**
    * Dequeue workflow instances considering the current run strategy. It won't update the instance
    * state but will always deterministically send out the run workflow job event. Downstream will
@@ -586,13 +818,18 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
                     workflowId);
                 return null;
               } else {
-                return getRunWorkflowInstances(
-                    conn, workflowId, concurrency, Constants.DEQUEUE_SIZE_LIMIT);
+                RunWorkflowInstancesJobEvent runInstances =
+                    getRunWorkflowInstances(
+                        conn, workflowId, concurrency, Constants.DEQUEUE_SIZE_LIMIT);
+                if (jobEventDao != null) {
+                  addDequeueJobEvents(conn, workflowId, runInstances);
+                }
+                return runInstances;
               }
             });
 
     final int size = startInstances == null ? 0 : startInstances.size();
-    if (size > DO_NOTHING_CODE) {
+    if (jobEventDao == null && size > DO_NOTHING_CODE) {
       startInstances
           .singletonStream()
           .forEach(
@@ -606,14 +843,33 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
           size,
           workflowId,
           concurrency);
-      publisher.publishOrThrow(
-          StartWorkflowJobEvent.create(workflowId),
-          RESEND_JOB_EVENT_DELAY_IN_MILLISECONDS,
-          "Failed to send start job event, will try it again");
+      if (jobEventDao == null) {
+        publisher.publishOrThrow(
+            StartWorkflowJobEvent.create(workflowId),
+            RESEND_JOB_EVENT_DELAY_IN_MILLISECONDS,
+            "Failed to send start job event, will try it again");
+      }
     }
     return size;
   }
 
+  /** Add the dequeue job events to the outbox within the same transaction. */
+  private void addDequeueJobEvents(
+      Connection conn, String workflowId, RunWorkflowInstancesJobEvent runInstances)
+      throws SQLException {
+    final int size = runInstances == null ? 0 : runInstances.size();
+    if (size > DO_NOTHING_CODE) {
+      jobEventDao.addJobEvents(
+          conn,
+          runInstances.singletonStream().collect(Collectors.toList()),
+          MaestroJobEventPublisher.DEFAULT_INVISIBLE_TIME);
+    }
+    if (size >= Constants.DEQUEUE_SIZE_LIMIT) {
+      jobEventDao.addJobEvent(
+          conn, StartWorkflowJobEvent.create(workflowId), RESEND_JOB_EVENT_DELAY_IN_MILLISECONDS);
+    }
+  }
+
   private boolean existLastRunFailedInstance(Connection conn, String workflowId)
       throws SQLException {
     try (PreparedStatement stmt = conn.prepareStatement(CHECK_LAST_RUN_FAILED_INSTANCES_QUERY)) {
@@ -647,6 +903,9 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
    * Add a list of new workflow instance runs (i.e. run_id=1). The instance list has already been
    * sized to fit into the batch size limit. It will skip instances with duplicated uuids.
    *
+   * <p>Instance ids in a batch are always consecutive and follow the list order. With the instance
+   * id block enabled, they are only increasing within this node.
+   *
    * @param workflowId workflow id
    * @param runStrategy run strategy to check
    * @param instances the list of workflow instances to create
@@ -659,41 +918,32 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
     if (instances == null || instances.isEmpty()) {
       return new int[0];
     }
+    return withIdBlock(
+        workflowId,
+        instances.size(),
+        useIdBlock(runStrategy),
+        allocation -> startBatchWithRunStrategy(workflowId, runStrategy, instances, allocation));
+  }
+
+  private int[] startBatchWithRunStrategy(
+      String workflowId,
+      RunStrategy runStrategy,
+      List<WorkflowInstance> instances,
+      @Nullable InstanceIdAllocator.Allocation allocation) {
     return withMetricLogError(
         () -> {
-          Set<String> uuids =
-              instances.stream().map(WorkflowInstance::getWorkflowUuid).collect(Collectors.toSet());
-
-          return withRetryableTransaction(
-              conn -> {
-                final long nextInstanceId = getLatestInstanceId(conn, workflowId) + 1;
-                if (dedupAndCheckIfAllDuplicated(conn, workflowId, uuids)) {
-                  return new int[instances.size()];
-                }
-                long lastAssignedInstanceId =
-                    completeInstancesInit(conn, nextInstanceId, uuids, instances);
-                int[] res;
-                switch (runStrategy.getRule()) {
-                  case SEQUENTIAL:
-                  case PARALLEL:
-                  case STRICT_SEQUENTIAL:
-                    res = enqueueInstances(conn, workflowId, instances);
-                    break;
-                  case FIRST_ONLY:
-                    res = startFirstOnlyInstances(conn, workflowId, instances);
-                    break;
-                  case LAST_ONLY:
-                    res = startLastOnlyInstances(conn, workflowId, instances);
-                    break;
-                  default:
-                    throw new MaestroInternalError(
-                        "When startBatch, run strategy [%s] is not supported.", runStrategy);
-                }
-                if (lastAssignedInstanceId >= nextInstanceId) {
-                  updateLatestInstanceId(conn, workflowId, lastAssignedInstanceId);
-                }
-                return res;
-              });
+          try {
+            return startBatchInTransaction(workflowId, runStrategy, instances, allocation);
+          } catch (ApplicationException e) {
+            if (allocation != null && isDuplicatedUuidError(e)) {
+              LOG.info(
+                  "Some workflow instances of [{}] have been started concurrently, retry the batch",
+                  workflowId);
+              instances.forEach(instance -> instance.setWorkflowInstanceId(DO_NOTHING_CODE));
+              return startBatchInTransaction(workflowId, runStrategy, instances, allocation);
+            }
+            throw e;
+          }
         },
         "startBatchWithRunStrategy",
         "Failed to start [{}] workflow instances for [{}] with run strategy [{}]",
@@ -702,11 +952,64 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
         runStrategy);
   }
 
+  private int[] startBatchInTransaction(
+      String workflowId,
+      RunStrategy runStrategy,
+      List<WorkflowInstance> instances,
+      @Nullable InstanceIdAllocator.Allocation allocation) {
+    Set<String> uuids =
+        instances.stream().map(WorkflowInstance::getWorkflowUuid).collect(Collectors.toSet());
+
+    return withRetryableTransaction(
+        conn -> {
+          final boolean withIdBlock = allocation != null;
+          final long nextInstanceId;
+          if (withIdBlock) {
+            idAllocator.validate(workflowId, allocation, getInternalId(conn, workflowId));
+            if (dedupAndCheckIfAllDuplicated(conn, workflowId, uuids)) {
+              return new int[instances.size()];
+            }
+            nextInstanceId = allocation.firstId;
+          } else {
+            nextInstanceId = getLatestInstanceId(conn, workflowId) + 1;
+            if (dedupAndCheckIfAllDuplicated(conn, workflowId, uuids)) {
+              return new int[instances.size()];
+            }
+          }
+          long lastAssignedInstanceId =
+              completeInstancesInit(conn, nextInstanceId, uuids, instances);
+          int[] res;
+          switch (runStrategy.getRule()) {
+            case SEQUENTIAL:
+            case PARALLEL:
+            case STRICT_SEQUENTIAL:
+              res = enqueueInstances(conn, workflowId, instances);
+              break;
+            case FIRST_ONLY:
+              res = startFirstOnlyInstances(conn, workflowId, instances);
+              break;
+            case LAST_ONLY:
+              res = startLastOnlyInstances(conn, workflowId, instances);
+              break;
+            default:
+              throw new MaestroInternalError(
+                  "When startBatch, run strategy [%s] is not supported.", runStrategy);
+          }
+          if (!withIdBlock && lastAssignedInstanceId >= nextInstanceId) {
+            updateLatestInstanceId(conn, workflowId, lastAssignedInstanceId);
+          }
+          return res;
+        });
+  }
+
   private boolean dedupAndCheckIfAllDuplicated(
       Connection conn, String workflowId, Set<String> uuids) throws SQLException {
     try (PreparedStatement wfiStmt = conn.prepareStatement(CHECK_EXISTING_UUIDS_QUERY)) {
+      Array uuidArray = conn.createArrayOf(ARRAY_TYPE_NAME, uuids.toArray(new String[0]));
       wfiStmt.setString(1, workflowId);
-      wfiStmt.setArray(2, conn.createArrayOf(ARRAY_TYPE_NAME, uuids.toArray(new String[0])));
+      wfiStmt.setArray(2, uuidArray);
+      wfiStmt.setString(3, workflowId);
+      wfiStmt.setArray(4, uuidArray);
       try (ResultSet result = wfiStmt.executeQuery()) {
         while (result.next()) {
           uuids.remove(result.getString(ID_COLUMN));
@@ -748,7 +1051,7 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
         Checks.checkTrue(
             Arrays.stream(res).allMatch(i -> i == SUCCESS_WRITE_SIZE),
             "executeBatch in enqueueInstances should return all 1s.");
-        publishStartWorkflowJobEvent(workflowId);
+        publishStartWorkflowJobEvent(conn, workflowId);
       }
     }
     return ret;
@@ -834,16 +1137,20 @@ public class MaestroRunStrategyDao extends CockroachDBBaseDAO {
 
     final long excluded = runningOne.getInstanceId();
     final long markTime = System.currentTimeMillis();
-    instances.stream()
-        .filter(
-            instance ->
-                instance.getWorkflowInstanceId() != DO_NOTHING_CODE
-                    && instance.getWorkflowInstanceId() != excluded)
-        .forEach(instance -> publishInstanceStopJobEvent(instance, markTime));
+    for (WorkflowInstance instance : instances) {
+      if (instance.getWorkflowInstanceId() != DO_NOTHING_CODE
+          && instance.getWorkflowInstanceId() != excluded) {
+        publishInstanceStopJobEvent(conn, instance, markTime);
+      }
+    }
 
     if (jobEvent != null) {
-      publisher.publishOrThrow(
-          jobEvent, "Failed sending a job event: [" + runningOne + "], please retry.");
+      MaestroJobEventDao.sendJobEvent(
+          jobEventDao,
+          publisher,
+          conn,
+          jobEvent,
+          "Failed sending a job event: [" + runningOne + "], please retry.");
     }
 
     LOG.info(
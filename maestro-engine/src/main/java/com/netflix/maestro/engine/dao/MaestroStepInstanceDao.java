@@ -19,9 +19,11 @@ import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
 import com.netflix.conductor.cockroachdb.util.ResultProcessor;
 import com.netflix.maestro.annotations.SuppressFBWarnings;
 import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.db.DbOperation;
 import com.netflix.maestro.engine.execution.StepRuntimeSummary;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.utils.ObjectHelper;
+import com.netflix.maestro.exceptions.MaestroInternalError;
 import com.netflix.maestro.exceptions.MaestroNotFoundException;
 import com.netflix.maestro.models.Constants;
 import com.netflix.maestro.models.Defaults;
@@ -41,11 +43,13 @@ import com.netflix.maestro.models.timeline.Timeline;
 import com.netflix.maestro.models.timeline.TimelineEvent;
 import com.netflix.maestro.utils.Checks;
 import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +61,9 @@ import javax.sql.DataSource;
  * DAO for saving and retrieving Maestro step instance data model.
  *
  * <p>In the data model, we use `null` to indicate `unset`.
+ *
+ * <p>If the archive is enabled, getting a step instance falls back to the archive tables when it
+ * has been moved out of the instance table by the archiver.
  */
 @SuppressFBWarnings("OBL_UNSATISFIED_OBLIGATION")
 public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
@@ -70,6 +77,30 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
 
   private static final String UPSERT_STEP_INSTANCE_QUERY = "UPSERT " + ADD_STEP_INSTANCE_POSTFIX;
 
+  private static final String STEP_INSTANCE_VALUE_PLACE_HOLDER = "(?,?,?,?,?,?)";
+
+  private static final String BATCH_ADD_STEP_INSTANCE_POSTFIX_TEMPLATE =
+      "INTO maestro_step_instance (instance,runtime_state,dependencies,outputs,artifacts,timeline) VALUES %s";
+
+  private static final String BATCH_CREATE_STEP_INSTANCE_QUERY_TEMPLATE =
+      "INSERT " + BATCH_ADD_STEP_INSTANCE_POSTFIX_TEMPLATE;
+
+  private static final String BATCH_UPSERT_STEP_INSTANCE_QUERY_TEMPLATE =
+      "UPSERT " + BATCH_ADD_STEP_INSTANCE_POSTFIX_TEMPLATE;
+
+  private static final String STEP_UPDATE_VALUE_PLACE_HOLDER =
+      "(?::JSONB,?::JSONB,?::JSONB,?::JSONB,?::STRING[],?,?::INT8,?::INT8,?,?::INT8)";
+
+  private static final String BATCH_UPDATE_STEP_INSTANCE_QUERY_TEMPLATE =
+      "UPDATE maestro_step_instance AS s "
+          + "SET (runtime_state,dependencies,outputs,artifacts,timeline) = "
+          + "(v.runtime_state,v.dependencies,v.outputs,v.artifacts,v.timeline) "
+          + "FROM (VALUES %s) AS v (runtime_state,dependencies,outputs,artifacts,timeline,"
+          + "workflow_id,workflow_instance_id,workflow_run_id,step_id,step_attempt_id) "
+          + "WHERE s.workflow_id=v.workflow_id AND s.workflow_instance_id=v.workflow_instance_id "
+          + "AND s.workflow_run_id=v.workflow_run_id AND s.step_id=v.step_id "
+          + "AND s.step_attempt_id=v.step_attempt_id";
+
   private static final String WHERE_CONDITION_BY_WORKFLOW_IDS =
       "WHERE workflow_id=? AND workflow_instance_id=? AND workflow_run_id=?";
 
@@ -166,6 +197,8 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
       STEP_DEPENDENCIES_TYPE_REFERENCE =
           new TypeReference<Map<StepDependencyType, StepDependencies>>() {};
 
+  private final MaestroInstanceArchiveDao archiveDao;
+
   /**
    * Constructor for Maestro step instance DAO.
    *
@@ -175,7 +208,24 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
    */
   public MaestroStepInstanceDao(
       DataSource dataSource, ObjectMapper objectMapper, CockroachDBConfiguration config) {
+    this(dataSource, objectMapper, config, null);
+  }
+
+  /**
+   * Constructor for Maestro step instance DAO with the archive.
+   *
+   * @param dataSource database data source
+   * @param objectMapper object mapper
+   * @param config configuration
+   * @param archiveDao instance archive DAO, null if the archive is disabled
+   */
+  public MaestroStepInstanceDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      MaestroInstanceArchiveDao archiveDao) {
     super(dataSource, objectMapper, config);
+    this.archiveDao = archiveDao;
   }
 
   /**
@@ -184,54 +234,23 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
    * @param instance step instance
    */
   public void insertOrUpsertStepInstance(StepInstance instance, boolean inserted) {
-    final StepRuntimeState runtimeState = instance.getRuntimeState();
-    final Map<StepDependencyType, StepDependencies> dependencies = instance.getDependencies();
-    final Map<StepOutputsDefinition.StepOutputType, StepOutputs> outputs = instance.getOutputs();
-    final Map<String, Artifact> artifacts = instance.getArtifacts();
-    final Timeline timeline = instance.getTimeline();
-    try {
-      instance.setRuntimeState(null);
-      instance.setDependencies(null);
-      instance.setOutputs(null);
-      instance.setArtifacts(null);
-      instance.setTimeline(null);
-      final String stepInstanceStr = toJson(instance);
-      final String runtimeStateStr = toJson(runtimeState);
-      final String stepDependenciesSummariesStr = toJson(dependencies);
-      final String outputsStr = outputs == null ? null : toJson(outputs);
-      final String artifactsStr = toJson(artifacts);
-      final String[] timelineArray =
-          timeline == null
-              ? null
-              : timeline.getTimelineEvents().stream().map(this::toJson).toArray(String[]::new);
-      withMetricLogError(
-          () ->
-              withRetryableTransaction(
-                  conn -> {
-                    try (PreparedStatement stmt =
-                        conn.prepareStatement(
-                            inserted ? UPSERT_STEP_INSTANCE_QUERY : CREATE_STEP_INSTANCE_QUERY)) {
-                      int idx = 0;
-                      stmt.setString(++idx, stepInstanceStr);
-                      stmt.setString(++idx, runtimeStateStr);
-                      stmt.setString(++idx, stepDependenciesSummariesStr);
-                      stmt.setString(++idx, outputsStr);
-                      stmt.setString(++idx, artifactsStr);
-                      stmt.setArray(++idx, conn.createArrayOf(ARRAY_TYPE_NAME, timelineArray));
-                      return stmt.executeUpdate();
-                    }
-                  }),
-          "insertOrUpsertStepInstance",
-          "Failed to insert or upsert step instance {}[{}]",
-          instance.getIdentity(),
-          instance.getStepAttemptId());
-    } finally {
-      instance.setTimeline(timeline);
-      instance.setArtifacts(artifacts);
-      instance.setDependencies(dependencies);
-      instance.setOutputs(outputs);
-      instance.setRuntimeState(runtimeState);
-    }
+    final String[] row = toInsertRow(instance);
+    final String[] timelineArray = toTimelineArray(instance.getTimeline());
+    withMetricLogError(
+        () ->
+            withRetryableTransaction(
+                conn -> {
+                  try (PreparedStatement stmt =
+                      conn.prepareStatement(
+                          inserted ? UPSERT_STEP_INSTANCE_QUERY : CREATE_STEP_INSTANCE_QUERY)) {
+                    setInsertRow(conn, stmt, 0, row, timelineArray);
+                    return stmt.executeUpdate();
+                  }
+                }),
+        "insertOrUpsertStepInstance",
+        "Failed to insert or upsert step instance {}[{}]",
+        instance.getIdentity(),
+        instance.getStepAttemptId());
   }
 
   /**
@@ -241,33 +260,23 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
    * @param stepSummary step instance runtime summary
    */
   public void updateStepInstance(WorkflowSummary workflowSummary, StepRuntimeSummary stepSummary) {
-    final String runtimeState = toJson(stepSummary.getRuntimeState());
-    final String stepDependenciesSummariesStr = toJson(stepSummary.getDependencies());
-    final String artifacts = toJson(stepSummary.getArtifacts());
-    final String stepOutputs =
-        stepSummary.getOutputs() == null ? null : toJson(stepSummary.getOutputs());
-    final String[] timelineArray =
-        stepSummary.getTimeline() == null
-            ? null
-            : stepSummary.getTimeline().getTimelineEvents().stream()
-                .map(this::toJson)
-                .toArray(String[]::new);
+    final String[] row = toUpdateRow(stepSummary);
+    final String[] timelineArray = toTimelineArray(stepSummary.getTimeline());
     withMetricLogError(
         () ->
             withRetryableTransaction(
                 conn -> {
                   try (PreparedStatement stmt = conn.prepareStatement(UPDATE_STEP_INSTANCE_QUERY)) {
-                    int idx = 0;
-                    stmt.setString(++idx, runtimeState);
-                    stmt.setString(++idx, stepDependenciesSummariesStr);
-                    stmt.setString(++idx, stepOutputs);
-                    stmt.setString(++idx, artifacts);
-                    stmt.setArray(++idx, conn.createArrayOf(ARRAY_TYPE_NAME, timelineArray));
-                    stmt.setString(++idx, workflowSummary.getWorkflowId());
-                    stmt.setLong(++idx, workflowSummary.getWorkflowInstanceId());
-                    stmt.setLong(++idx, workflowSummary.getWorkflowRunId());
-                    stmt.setString(++idx, stepSummary.getStepId());
-                    stmt.setLong(++idx, stepSummary.getStepAttemptId());
+                    setUpdateRow(
+                        conn,
+                        stmt,
+                        0,
+                        row,
+                        timelineArray,
+                        workflowSummary.getWorkflowId(),
+                        workflowSummary.getWorkflowInstanceId(),
+                        workflowSummary.getWorkflowRunId(),
+                        stepSummary);
                     return stmt.executeUpdate();
                   }
                 }),
@@ -277,24 +286,225 @@ public class MaestroStepInstanceDao extends CockroachDBBaseDAO {
         stepSummary.getIdentity());
   }
 
-  /** Get step instance from DB for a given step instance attempt. */
+  /**
+   * Write a batch of step instance changes within a single transaction. The DB operation of each
+   * step runtime summary decides if the matching step instance is inserted, upserted or updated.
+   * Inserts, upserts and updates are each sent as a single multi-row statement, as executeBatch
+   * still sends one statement per row. If any of them fails, e.g. an insert conflicts or a step
+   * instance shows up twice in an upsert, the whole transaction is rolled back and the exception is
+   * thrown.
+   *
+   * @param instances step instances, which also carry the workflow identity for the updates
+   * @param stepSummaries step runtime summaries, in the same order as the step instances
+   */
+  public void batchSyncStepInstances(
+      List<StepInstance> instances, List<StepRuntimeSummary> stepSummaries) {
+    Checks.checkTrue(
+        instances.size() == stepSummaries.size(),
+        "The number of step instances [%s] and step summaries [%s] must be the same",
+        instances.size(),
+        stepSummaries.size());
+    final List<String[]> rows = new ArrayList<>(instances.size());
+    final List<String[]> timelines = new ArrayList<>(instances.size());
+    for (int i = 0; i < instances.size(); ++i) {
+      StepRuntimeSummary stepSummary = stepSummaries.get(i);
+      if (stepSummary.getDbOperation() == DbOperation.UPDATE) {
+        rows.add(toUpdateRow(stepSummary));
+        timelines.add(toTimelineArray(stepSummary.getTimeline()));
+      } else {
+        rows.add(toInsertRow(instances.get(i)));
+        timelines.add(toTimelineArray(instances.get(i).getTimeline()));
+      }
+    }
+    final Map<DbOperation, List<Integer>> indexes = new EnumMap<>(DbOperation.class);
+    for (int i = 0; i < stepSummaries.size(); ++i) {
+      indexes.computeIfAbsent(stepSummaries.get(i).getDbOperation(), k -> new ArrayList<>()).add(i);
+    }
+    withMetricLogError(
+        () ->
+            withRetryableTransaction(
+                conn -> {
+                  int updated = 0;
+                  for (Map.Entry<DbOperation, List<Integer>> entry : indexes.entrySet()) {
+                    List<Integer> idxs = entry.getValue();
+                    switch (entry.getKey()) {
+                      case INSERT:
+                      case UPSERT:
+                        try (PreparedStatement stmt =
+                            conn.prepareStatement(
+                                String.format(
+                                    entry.getKey() == DbOperation.UPSERT
+                                        ? BATCH_UPSERT_STEP_INSTANCE_QUERY_TEMPLATE
+                                        : BATCH_CREATE_STEP_INSTANCE_QUERY_TEMPLATE,
+                                    String.join(
+                                        ",",
+                                        Collections.nCopies(
+                                            idxs.size(), STEP_INSTANCE_VALUE_PLACE_HOLDER))))) {
+                          int idx = 0;
+                          for (int i : idxs) {
+                            idx = setInsertRow(conn, stmt, idx, rows.get(i), timelines.get(i));
+                          }
+                          updated += stmt.executeUpdate();
+                        }
+                        break;
+                      case UPDATE:
+                        try (PreparedStatement stmt =
+                            conn.prepareStatement(
+                                String.format(
+                                    BATCH_UPDATE_STEP_INSTANCE_QUERY_TEMPLATE,
+                                    String.join(
+                                        ",",
+                                        Collections.nCopies(
+                                            idxs.size(), STEP_UPDATE_VALUE_PLACE_HOLDER))))) {
+                          int idx = 0;
+                          for (int i : idxs) {
+                            StepInstance instance = instances.get(i);
+                            idx =
+                                setUpdateRow(
+                                    conn,
+                                    stmt,
+                                    idx,
+                                    rows.get(i),
+                                    timelines.get(i),
+                                    instance.getWorkflowId(),
+                                    instance.getWorkflowInstanceId(),
+                                    instance.getWorkflowRunId(),
+                                    stepSummaries.get(i));
+                          }
+                          updated += stmt.executeUpdate();
+                        }
+                        break;
+                      default:
+                        StepRuntimeSummary stepSummary = stepSummaries.get(idxs.get(0));
+                        throw new MaestroInternalError(
+                            "Invalid DB operation: %s for step instance [%s][%s]",
+                            stepSummary.getDbOperation(),
+                            stepSummary.getStepId(),
+                            stepSummary.getStepAttemptId());
+                    }
+                  }
+                  return updated;
+                }),
+        "batchSyncStepInstances",
+        "Failed to sync a batch of [{}] step instances",
+        instances.size());
+  }
+
+  /** Serialize the step instance into the columns except the timeline for insert or upsert. */
+  private String[] toInsertRow(StepInstance instance) {
+    final StepRuntimeState runtimeState = instance.getRuntimeState();
+    final Map<StepDependencyType, StepDependencies> dependencies = instance.getDependencies();
+    final Map<StepOutputsDefinition.StepOutputType, StepOutputs> outputs = instance.getOutputs();
+    final Map<String, Artifact> artifacts = instance.getArtifacts();
+    final Timeline timeline = instance.getTimeline();
+    try {
+      instance.setRuntimeState(null);
+      instance.setDependencies(null);
+      instance.setOutputs(null);
+      instance.setArtifacts(null);
+      instance.setTimeline(null);
+      return new String[] {
+        toJson(instance),
+        toJson(runtimeState),
+        toJson(dependencies),
+        outputs == null ? null : toJson(outputs),
+        toJson(artifacts)
+      };
+    } finally {
+      instance.setTimeline(timeline);
+      instance.setArtifacts(artifacts);
+      instance.setDependencies(dependencies);
+      instance.setOutputs(outputs);
+      instance.setRuntimeState(runtimeState);
+    }
+  }
+
+  /** Serialize the step runtime summary into the columns except the timeline for update. */
+  private String[] toUpdateRow(StepRuntimeSummary stepSummary) {
+    return new String[] {
+      toJson(stepSummary.getRuntimeState()),
+      toJson(stepSummary.getDependencies()),
+      stepSummary.getOutputs() == null ? null : toJson(stepSummary.getOutputs()),
+      toJson(stepSummary.getArtifacts())
+    };
+  }
+
+  private String[] toTimelineArray(Timeline timeline) {
+    return timeline == null
+        ? null
+        : timeline.getTimelineEvents().stream().map(this::toJson).toArray(String[]::new);
+  }
+
+  /** Set the columns of a row starting after the given parameter index and return the last one. */
+  private int setInsertRow(
+      Connection conn, PreparedStatement stmt, int offset, String[] row, String[] timelineArray)
+      throws SQLException {
+    int idx = offset;
+    for (String column : row) {
+      stmt.setString(++idx, column);
+    }
+    stmt.setArray(++idx, conn.createArrayOf(ARRAY_TYPE_NAME, timelineArray));
+    return idx;
+  }
+
+  /** Set the columns of a row starting after the given parameter index and return the last one. */
+  private int setUpdateRow(
+      Connection conn,
+      PreparedStatement stmt,
+      int offset,
+      String[] row,
+      String[] timelineArray,
+      String workflowId,
+      long workflowInstanceId,
+      long workflowRunId,
+      StepRuntimeSummary stepSummary)
+      throws SQLException {
+    int idx = offset;
+    for (String column : row) {
+      stmt.setString(++idx, column);
+    }
+    stmt.setArray(++idx, conn.createArrayOf(ARRAY_TYPE_NAME, timelineArray));
+    stmt.setString(++idx, workflowId);
+    stmt.setLong(++idx, workflowInstanceId);
+    stmt.setLong(++idx, workflowRunId);
+    stmt.setString(++idx, stepSummary.getStepId());
+    stmt.setLong(++idx, stepSummary.getStepAttemptId());
+    return idx;
+  }
+
+  /**
+   * Get step instance from DB for a given step instance attempt. If it is not in the instance
+   * table, it is loaded from the archive if enabled and the workflow is not being deleted.
+   */
   public StepInstance getStepInstance(
       String workflowId,
       long workflowInstanceId,
       long workflowRunId,
       String stepId,
       String stepAttempt) {
-    return getStepInstanceFieldByIds(
-        StepInstanceField.ALL,
-        workflowId,
-        workflowInstanceId,
-        workflowRunId,
-        stepId,
-        stepAttempt,
-        this::maestroStepFromResult);
+    try {
+      return getStepInstanceFieldByIds(
+          StepInstanceField.ALL,
+          workflowId,
+          workflowInstanceId,
+          workflowRunId,
+          stepId,
+          stepAttempt,
+          this::maestroStepFromResult);
+    } catch (MaestroNotFoundException e) {
+      StepInstance archived =
+          archiveDao == null
+              ? null
+              : archiveDao.getStepInstance(
+                  workflowId, workflowInstanceId, workflowRunId, stepId, stepAttempt);
+      if (archived == null) {
+        throw e;
+      }
+      return archived;
+    }
   }
 
-  private StepInstance maestroStepFromResult(ResultSet rs) throws SQLException {
+  StepInstance maestroStepFromResult(ResultSet rs) throws SQLException {
     StepInstance instance = getInstance(rs);
     instance.setRuntimeState(getRuntimeState(rs));
     instance.setDependencies(getDependencies(rs));
@@ -58,6 +58,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -66,6 +67,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import javax.validation.constraints.NotNull;
@@ -111,8 +113,11 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
       "SELECT active_version_id,latest_version_id,properties_snapshot "
           + "FROM maestro_workflow WHERE workflow_id=? FOR UPDATE";
 
+  // skip reading properties_snapshot if the version stamp (internal_id, modify_ts) is unchanged
   private static final String GET_CURRENT_PROPERTIES_SNAPSHOT =
-      "SELECT properties_snapshot FROM maestro_workflow WHERE workflow_id=?";
+      "SELECT internal_id,modify_ts,CASE WHEN internal_id=? AND modify_ts=? THEN NULL "
+          + "ELSE properties_snapshot END AS properties_snapshot "
+          + "FROM maestro_workflow WHERE workflow_id=?";
 
   private static final String GET_MAESTRO_WORKFLOW =
       "SELECT workflow_id,internal_id,active_version_id,activate_ts,activated_by,properties_snapshot,"
@@ -194,6 +199,7 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
       "SELECT MAX((workflow->'latest_instance_id')::INT) as id FROM maestro_workflow_deleted WHERE workflow_id=?";
   private final MaestroJobEventPublisher publisher;
   private final TriggerSubscriptionClient subscriptionClient;
+  private final WorkflowDefinitionCache definitionCache;
 
   /**
    * Constructor for Maestro workflow DAO.
@@ -202,16 +208,28 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
    * @param objectMapper object mapper
    * @param config configuration
    * @param subscriptionClient trigger service(s) client.
+   * @param definitionCache node-local cache of workflow definition rows
    */
   public MaestroWorkflowDao(
       DataSource dataSource,
       ObjectMapper objectMapper,
       CockroachDBConfiguration config,
       MaestroJobEventPublisher publisher,
-      TriggerSubscriptionClient subscriptionClient) {
+      TriggerSubscriptionClient subscriptionClient,
+      WorkflowDefinitionCache definitionCache) {
     super(dataSource, objectMapper, config);
     this.publisher = publisher;
     this.subscriptionClient = subscriptionClient;
+    this.definitionCache = definitionCache;
+  }
+
+  /** Run a write to a workflow and then invalidate its cached rows even if the write failed. */
+  private <T> T withInvalidation(String workflowId, Supplier<T> write) {
+    try {
+      return write.get();
+    } finally {
+      definitionCache.invalidate(workflowId);
+    }
   }
 
   /**
@@ -223,6 +241,12 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
    */
   public WorkflowDefinition addWorkflowDefinition(
       WorkflowDefinition workflowDef, Properties changes) {
+    return withInvalidation(
+        workflowDef.getWorkflow().getId(), () -> doAddWorkflowDefinition(workflowDef, changes));
+  }
+
+  private WorkflowDefinition doAddWorkflowDefinition(
+      WorkflowDefinition workflowDef, Properties changes) {
     LOG.info("Adding a new workflow definition with an id [{}]", workflowDef.getWorkflow().getId());
     final Workflow workflow = workflowDef.getWorkflow();
     final Metadata metadata = workflowDef.getMetadata();
@@ -310,6 +334,12 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
    */
   public PropertiesSnapshot updateWorkflowProperties(
       String workflowId, User author, Properties props, PropertiesUpdate update) {
+    return withInvalidation(
+        workflowId, () -> doUpdateWorkflowProperties(workflowId, author, props, update));
+  }
+
+  private PropertiesSnapshot doUpdateWorkflowProperties(
+      String workflowId, User author, Properties props, PropertiesUpdate update) {
     LOG.debug("Updating workflow properties for workflow id [{}]", workflowId);
     Checks.notNull(
         props, "properties changes to apply cannot be null for workflow [%s]", workflowId);
@@ -538,16 +568,21 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
   private MaestroWorkflow getMaestroWorkflowInternal(String workflowId, String version) {
     return withMetricLogError(
         () -> {
-          MaestroWorkflow maestroWorkflow = getMaestroWorkflow(workflowId);
-          if (maestroWorkflow == null) {
+          WorkflowDefinitionCache.WorkflowRow row =
+              definitionCache.getWorkflow(workflowId, () -> queryWorkflowRow(workflowId));
+          if (row == null) {
             throw new MaestroNotFoundException(
                 "Workflow [%s] has not been created yet or has been deleted.", workflowId);
           }
+          MaestroWorkflow maestroWorkflow = maestroWorkflowFromRow(workflowId, row);
 
           long versionId = deriveVersionId(workflowId, version, new WorkflowInfo(maestroWorkflow));
           MaestroWorkflowVersion mwv =
-              withRetryableTransaction(
-                  conn -> queryMaestroWorkflowVersionWithConn(conn, workflowId, versionId));
+              maestroWorkflowVersionFromRow(
+                  definitionCache.getVersion(
+                      row.internalId,
+                      versionId,
+                      () -> queryVersionRow(workflowId, versionId)));
           maestroWorkflow.setMetadata(mwv.getMetadata());
           maestroWorkflow.setDefinition(mwv.getDefinition());
           maestroWorkflow.setTriggerUuids(mwv.getTriggerUuids());
@@ -559,6 +594,34 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
         version);
   }
 
+  private WorkflowDefinitionCache.WorkflowRow queryWorkflowRow(String workflowId) {
+    return withRetryableQuery(
+        GET_MAESTRO_WORKFLOW,
+        stmt -> stmt.setString(1, workflowId),
+        result -> {
+          if (result.next()) {
+            return workflowRowFromResult(result);
+          }
+          return null;
+        });
+  }
+
+  private WorkflowDefinitionCache.VersionRow queryVersionRow(String workflowId, long versionId) {
+    return withRetryableQuery(
+        GET_MAESTRO_WORKFLOW_VERSION,
+        stmt -> {
+          stmt.setString(1, workflowId);
+          stmt.setLong(2, versionId);
+        },
+        result -> {
+          if (result.next()) {
+            return versionRowFromResult(result);
+          }
+          throw new MaestroNotFoundException(
+              "Cannot find workflow [%s] with version [%s]", workflowId, versionId);
+        });
+  }
+
   private MaestroWorkflowVersion queryMaestroWorkflowVersionWithConn(
       Connection conn, String workflowId, long versionId) throws SQLException {
     try (PreparedStatement stmt = conn.prepareStatement(GET_MAESTRO_WORKFLOW_VERSION)) {
@@ -627,6 +690,7 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
                 return null;
               }
             });
+    definitionCache.invalidate(workflowId);
     if (res == null) {
       throw new MaestroNotFoundException(
           "No workflow is deleted because workflow [%s] is non-existing or has queued or running instances.",
@@ -654,26 +718,53 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
   }
 
   private MaestroWorkflow maestroWorkflowFromResult(ResultSet rs) throws SQLException {
-    final long activeVersionId = rs.getLong(ACTIVE_VERSION_COLUMN);
     final String workflowId =
         Checks.notNull(rs.getString(WORKFLOW_ID_COLUMN), "workflow_id cannot be null");
-    MaestroWorkflow.MaestroWorkflowBuilder builder =
-        MaestroWorkflow.builder().workflowId(workflowId).activeVersionId(activeVersionId);
+    return maestroWorkflowFromRow(workflowId, workflowRowFromResult(rs));
+  }
+
+  private WorkflowDefinitionCache.WorkflowRow workflowRowFromResult(ResultSet rs)
+      throws SQLException {
+    final long activeVersionId = rs.getLong(ACTIVE_VERSION_COLUMN);
+    Long activateTime = null;
+    String activatedBy = null;
     if (activeVersionId > Constants.INACTIVE_VERSION_ID) {
-      builder
-          .activateTime(
-              Checks.notNull(
-                      rs.getTimestamp("activate_ts"),
-                      "activate_ts cannot be null if there is an active version")
-                  .getTime())
-          .activatedBy(fromJson(rs.getString("activated_by"), User.class));
+      activateTime =
+          Checks.notNull(
+                  rs.getTimestamp("activate_ts"),
+                  "activate_ts cannot be null if there is an active version")
+              .getTime();
+      activatedBy = rs.getString("activated_by");
+    }
+    return new WorkflowDefinitionCache.WorkflowRow(
+        rs.getLong(INTERNAL_ID_COLUMN),
+        activeVersionId,
+        activateTime,
+        activatedBy,
+        rs.getString(PROPERTIES_COLUMN),
+        rs.getLong(LATEST_VERSION_COLUMN),
+        rs.getTimestamp(MODIFY_TS_COLUMN).getTime());
+  }
+
+  private MaestroWorkflow maestroWorkflowFromRow(
+      String workflowId, WorkflowDefinitionCache.WorkflowRow row) {
+    MaestroWorkflow.MaestroWorkflowBuilder builder =
+        MaestroWorkflow.builder().workflowId(workflowId).activeVersionId(row.activeVersionId);
+    if (row.activeVersionId > Constants.INACTIVE_VERSION_ID) {
+      builder.activateTime(row.activateTime).activatedBy(fromJson(row.activatedBy, User.class));
     }
 
     return builder
-        .propertiesSnapshot(propertiesSnapshotFromResult(rs, workflowId))
-        .latestVersionId(rs.getLong(LATEST_VERSION_COLUMN))
-        .modifyTime(rs.getTimestamp(MODIFY_TS_COLUMN).getTime())
-        .internalId(rs.getLong(INTERNAL_ID_COLUMN))
+        .propertiesSnapshot(
+            fromJson(
+                Checks.notNull(
+                    row.propertiesSnapshot,
+                    "Properties in DB cannot be null for workflow [%s]",
+                    workflowId),
+                PropertiesSnapshot.class))
+        .latestVersionId(row.latestVersionId)
+        .modifyTime(row.modifyTime)
+        .internalId(row.internalId)
         .build();
   }
 
@@ -689,10 +780,23 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
 
   private MaestroWorkflowVersion maestroWorkflowVersionFromResult(ResultSet rs)
       throws SQLException {
+    return maestroWorkflowVersionFromRow(versionRowFromResult(rs));
+  }
+
+  private WorkflowDefinitionCache.VersionRow versionRowFromResult(ResultSet rs)
+      throws SQLException {
+    return new WorkflowDefinitionCache.VersionRow(
+        rs.getString(METADATA_COLUMN),
+        rs.getString(DEFINITION_COLUMN),
+        rs.getString(TRIGGER_UUIDS_COLUMN));
+  }
+
+  private MaestroWorkflowVersion maestroWorkflowVersionFromRow(
+      WorkflowDefinitionCache.VersionRow row) {
     return MaestroWorkflowVersion.builder()
-        .metadata(convertJson(rs.getString(METADATA_COLUMN), Metadata.class))
-        .definition(convertJson(rs.getString(DEFINITION_COLUMN), Workflow.class))
-        .triggerUuids(convertJson(rs.getString(TRIGGER_UUIDS_COLUMN), TriggerUuids.class))
+        .metadata(convertJson(row.metadata, Metadata.class))
+        .definition(convertJson(row.definition, Workflow.class))
+        .triggerUuids(convertJson(row.triggerUuids, TriggerUuids.class))
         .build();
   }
 
@@ -856,36 +960,69 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
     return getCurrentPropertiesSnapshot(workflowId);
   }
 
-  /** Get the current properties snapshot from maestro_workflow table. */
+  /**
+   * Get the current properties snapshot from maestro_workflow table. The cached one is shared, so
+   * the callers get their own deep copies as PropertiesSnapshot is mutable.
+   */
   private PropertiesSnapshot getCurrentPropertiesSnapshot(String workflowId) {
-    PropertiesSnapshot propertiesSnapshot =
+    return getCurrentSnapshotRow(workflowId).propertiesSnapshot.copy();
+  }
+
+  /**
+   * Get the current properties snapshot row from maestro_workflow table. The node-local cached one
+   * is returned if it was validated recently or its version stamp is unchanged.
+   */
+  private WorkflowDefinitionCache.SnapshotRow getCurrentSnapshotRow(String workflowId) {
+    WorkflowDefinitionCache.SnapshotRow row =
         withMetricLogError(
             () ->
-                withRetryableQuery(
-                    GET_CURRENT_PROPERTIES_SNAPSHOT,
-                    stmt -> stmt.setString(1, workflowId),
-                    result -> {
-                      if (result.next()) {
-                        return propertiesSnapshotFromResult(result, workflowId);
-                      }
-                      return null;
-                    }),
+                definitionCache.getSnapshot(
+                    workflowId, cached -> querySnapshotRow(workflowId, cached)),
             "getCurrentPropertiesSnapshot",
             "Failed getting current properties-snapshot for workflow [{}]",
             workflowId);
-    if (propertiesSnapshot == null) {
+    if (row == null) {
       throw new MaestroNotFoundException(
           "Cannot find workflow [%s]'s current properties-snapshot. It has not been created yet or has been deleted.",
           workflowId);
     }
-    return propertiesSnapshot;
+    return row;
+  }
+
+  private WorkflowDefinitionCache.SnapshotRow querySnapshotRow(
+      String workflowId, @Nullable WorkflowDefinitionCache.SnapshotRow cached) {
+    return withRetryableQuery(
+        GET_CURRENT_PROPERTIES_SNAPSHOT,
+        stmt -> {
+          int idx = 0;
+          if (cached == null) {
+            stmt.setNull(++idx, Types.BIGINT);
+            stmt.setNull(++idx, Types.TIMESTAMP);
+          } else {
+            stmt.setLong(++idx, cached.internalId);
+            stmt.setTimestamp(++idx, cached.modifyTime);
+          }
+          stmt.setString(++idx, workflowId);
+        },
+        result -> {
+          if (!result.next()) {
+            return null;
+          }
+          if (cached != null && result.getString(PROPERTIES_COLUMN) == null) {
+            return cached;
+          }
+          return new WorkflowDefinitionCache.SnapshotRow(
+              result.getLong(INTERNAL_ID_COLUMN),
+              result.getTimestamp(MODIFY_TS_COLUMN),
+              propertiesSnapshotFromResult(result, workflowId));
+        });
   }
 
   /** Get the current run strategy from maestro_workflow table. */
   public RunStrategy getRunStrategy(String workflowId) {
-    PropertiesSnapshot properties = getCurrentPropertiesSnapshot(workflowId);
-    LOG.debug("Properties for workflow [{}] are {}", workflowId, properties);
-    return ObjectHelper.valueOrDefault(properties.getRunStrategy(), Defaults.DEFAULT_RUN_STRATEGY);
+    RunStrategy runStrategy = getCurrentSnapshotRow(workflowId).propertiesSnapshot.getRunStrategy();
+    LOG.debug("Run strategy for workflow [{}] is {}", workflowId, runStrategy);
+    return ObjectHelper.valueOrDefault(runStrategy, Defaults.DEFAULT_RUN_STRATEGY);
   }
 
   private TriggerUuids insertMaestroWorkflowVersion(
@@ -1080,6 +1217,10 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
    * @return timeline info
    */
   public String deactivate(String workflowId, User caller) {
+    return withInvalidation(workflowId, () -> doDeactivate(workflowId, caller));
+  }
+
+  private String doDeactivate(String workflowId, User caller) {
     return withMetricLogError(
         () ->
             withRetryableTransaction(
@@ -1136,6 +1277,10 @@ public class MaestroWorkflowDao extends CockroachDBBaseDAO {
    * @return the timeline info
    */
   public MaestroJobEvent activate(String workflowId, String version, User caller) {
+    return withInvalidation(workflowId, () -> doActivate(workflowId, version, caller));
+  }
+
+  private MaestroJobEvent doActivate(String workflowId, String version, User caller) {
     return withMetricLogError(
         () ->
             withRetryableTransaction(
@@ -52,9 +52,16 @@ import lombok.extern.slf4j.Slf4j;
  *   <li>8. directly associated/launched inline workflow instances
  *   <li>9. directly associated/launched inline workflow step instances
  *   <li>10. directly associated/created tag permits for job concurrency control
+ *   <li>11. archived workflow instances
+ *   <li>12. archived step instances
+ *   <li>13. archived inline workflow instances
+ *   <li>14. archived inline workflow step instances
  * </ul>
  *
- * <p>If deleting a range of workflow instances, it will delete item 6 to 9.
+ * <p>If deleting a range of workflow instances, it will delete item 6 to 9 and item 11 to 14.
+ *
+ * <p>The archived data are deleted after the instance tables, so the workflow instances moved to
+ * the archive tables by the archiver during the deletion are deleted as well.
  */
 @Slf4j
 public class MaestroWorkflowDeletionDao extends CockroachDBBaseDAO {
@@ -101,6 +108,28 @@ public class MaestroWorkflowDeletionDao extends CockroachDBBaseDAO {
         stmt.setInt(++idx, Constants.BATCH_DELETION_LIMIT);
       }
     },
+    DELETING_ARCHIVED_WORKFLOW_INSTANCES(
+        "DELETE FROM maestro_workflow_instance_archive WHERE workflow_id=? LIMIT ?"),
+    DELETING_ARCHIVED_STEP_INSTANCES(
+        "DELETE FROM maestro_step_instance_archive WHERE workflow_id=? LIMIT ?"),
+    DELETING_ARCHIVED_INLINE_INSTANCES(
+        "DELETE FROM maestro_workflow_instance_archive "
+            + "WHERE workflow_id >= ? AND workflow_id < ? LIMIT ?") {
+      @Override
+      void prepareQuery(PreparedStatement stmt, String workflowId, long internalId)
+          throws SQLException {
+        DELETING_INLINE_INSTANCES.prepareQuery(stmt, workflowId, internalId);
+      }
+    },
+    DELETING_ARCHIVED_INLINE_STEP_INSTANCES(
+        "DELETE FROM maestro_step_instance_archive "
+            + "WHERE workflow_id >= ? AND workflow_id < ? LIMIT ?") {
+      @Override
+      void prepareQuery(PreparedStatement stmt, String workflowId, long internalId)
+          throws SQLException {
+        DELETING_INLINE_INSTANCES.prepareQuery(stmt, workflowId, internalId);
+      }
+    },
     DELETION_DONE("");
 
     @Getter private final String query;
@@ -18,10 +18,13 @@ import com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO;
 import com.netflix.maestro.annotations.SuppressFBWarnings;
 import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.db.ForeachIterationOverview;
+import com.netflix.maestro.engine.db.InstanceRunRecord;
+import com.netflix.maestro.engine.db.InstanceRunUuid;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.jobevents.RunWorkflowInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.TerminateInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowInstanceUpdateJobEvent;
+import com.netflix.maestro.engine.properties.MaestroConductorProperties;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.engine.utils.AggregatedViewHelper;
 import com.netflix.maestro.engine.utils.ObjectHelper;
@@ -48,7 +51,9 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
@@ -60,6 +65,14 @@ import lombok.extern.slf4j.Slf4j;
  * DAO for saving and retrieving Maestro workflow instance data model.
  *
  * <p>In the data model, we use `null` to indicate `unset`.
+ *
+ * <p>If the instance sharding is enabled, the primary key has an extra instance_shard column
+ * computed from the instance id. Queries filter by the instance id and leave the shard to the
+ * database, which derives it for point lookups and scans all the shards for range scans.
+ *
+ * <p>If the archive is enabled, getting a workflow instance run falls back to the archive tables
+ * when it has been moved out of the instance table by the archiver, unless the workflow is being
+ * deleted.
  */
 // mute the false positive error due to https://github.com/spotbugs/spotbugs/issues/293
 @SuppressFBWarnings("OBL_UNSATISFIED_OBLIGATION")
@@ -73,7 +86,11 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
 
   private static final String CREATE_WORKFLOW_INSTANCE_QUERY_TEMPLATE =
       "INSERT INTO maestro_workflow_instance (instance,status) VALUES %s "
-          + "ON CONFLICT (workflow_id,instance_id,run_id) DO NOTHING RETURNING instance_id";
+          + "ON CONFLICT (%s) DO NOTHING RETURNING instance_id";
+
+  private static final String INSTANCE_PRIMARY_KEY = "workflow_id,instance_id,run_id";
+  private static final String SHARDED_INSTANCE_PRIMARY_KEY =
+      "workflow_id,instance_shard,instance_id,run_id";
 
   private static final String TERMINATE_QUEUED_INSTANCE_QUERY =
       "UPDATE maestro_workflow_instance@primary SET (status,end_ts,modify_ts,timeline) "
@@ -148,6 +165,14 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
   private static final String GET_WORKFLOW_WITH_SAME_UUID_QUERY =
       "SELECT 1 FROM workflow_instance@name_status_index WHERE workflow_name=? LIMIT 1";
 
+  private static final String GET_WORKFLOW_INSTANCE_RUNS_WITH_EXECUTED_QUERY_TEMPLATE =
+      "SELECT instance_id,run_id,"
+          + ALL_FIELDS
+          + ",EXISTS (SELECT 1 FROM workflow_instance@name_status_index AS w "
+          + "WHERE w.workflow_name=m.uuid LIMIT 1) AS executed "
+          + "FROM maestro_workflow_instance@primary AS m "
+          + "WHERE workflow_id=? AND (instance_id,run_id) IN (%s)";
+
   private static final String UPDATE_INSTANCE_FAILED_STATUS =
       "UPDATE maestro_workflow_instance@workflow_status_index SET (status) = ('FAILED_2') "
           + "WHERE workflow_id=? AND status='FAILED' AND instance_id>=? AND instance_id<=?";
@@ -222,6 +247,9 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
       "Workflow instance status becomes [%s] due to reason [%s]";
 
   private final MaestroJobEventPublisher publisher;
+  private final MaestroJobEventDao jobEventDao;
+  private final MaestroInstanceArchiveDao archiveDao;
+  private final String instancePrimaryKey;
 
   /**
    * Constructor for Maestro workflow instance DAO.
@@ -235,8 +263,54 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
       ObjectMapper objectMapper,
       CockroachDBConfiguration config,
       MaestroJobEventPublisher publisher) {
+    this(dataSource, objectMapper, config, publisher, null);
+  }
+
+  /**
+   * Constructor for Maestro workflow instance DAO with the job event outbox.
+   *
+   * @param dataSource database data source
+   * @param objectMapper object mapper
+   * @param config configuration
+   * @param publisher job event publisher
+   * @param jobEventDao job event outbox DAO, null to publish job events directly
+   */
+  public MaestroWorkflowInstanceDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      MaestroJobEventPublisher publisher,
+      MaestroJobEventDao jobEventDao) {
+    this(dataSource, objectMapper, config, publisher, jobEventDao, null);
+  }
+
+  /**
+   * Constructor for Maestro workflow instance DAO with the job event outbox and the archive.
+   *
+   * @param dataSource database data source
+   * @param objectMapper object mapper
+   * @param config configuration
+   * @param publisher job event publisher
+   * @param jobEventDao job event outbox DAO, null to publish job events directly
+   * @param archiveDao instance archive DAO, null if the archive is disabled
+   */
+  public MaestroWorkflowInstanceDao(
+      DataSource dataSource,
+      ObjectMapper objectMapper,
+      CockroachDBConfiguration config,
+      MaestroJobEventPublisher publisher,
+      MaestroJobEventDao jobEventDao,
+      MaestroInstanceArchiveDao archiveDao) {
     super(dataSource, objectMapper, config);
     this.publisher = publisher;
+    this.jobEventDao = jobEventDao;
+    this.archiveDao = archiveDao;
+    this.instancePrimaryKey =
+        config.getBooleanProperty(
+                MaestroConductorProperties.INSTANCE_SHARDING_ENABLED_PROPERTY_NAME,
+                MaestroConductorProperties.INSTANCE_SHARDING_ENABLED_DEFAULT_VALUE)
+            ? SHARDED_INSTANCE_PRIMARY_KEY
+            : INSTANCE_PRIMARY_KEY;
   }
 
   private void updateInstances(List<WorkflowInstance> instances) {
@@ -257,7 +331,8 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
     String sql =
         String.format(
             CREATE_WORKFLOW_INSTANCE_QUERY_TEMPLATE,
-            String.join(",", Collections.nCopies(instances.size(), VALUE_PLACE_HOLDER)));
+            String.join(",", Collections.nCopies(instances.size(), VALUE_PLACE_HOLDER)),
+            instancePrimaryKey);
     try (PreparedStatement wfiStmt = conn.prepareStatement(sql)) {
       int idx = 0;
       for (WorkflowInstance instance : instances) {
@@ -295,6 +370,23 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
     return idx;
   }
 
+  private List<RunWorkflowInstancesJobEvent> createRunInstancesJobEvents(
+      String workflowId, List<WorkflowInstance> instances, int batchSize) {
+    List<RunWorkflowInstancesJobEvent> jobEvents = new ArrayList<>();
+    RunWorkflowInstancesJobEvent startInstances = null;
+    for (WorkflowInstance instance : instances) {
+      if (startInstances == null || startInstances.size() >= batchSize) {
+        startInstances = RunWorkflowInstancesJobEvent.init(workflowId);
+        jobEvents.add(startInstances);
+      }
+      startInstances.addOneRun(
+          instance.getWorkflowInstanceId(),
+          instance.getWorkflowRunId(),
+          instance.getWorkflowUuid());
+    }
+    return jobEvents;
+  }
+
   private void publishRunInstancesJobEvent(RunWorkflowInstancesJobEvent startInstances) {
     publisher.publishOrThrow(
         startInstances, "Failed sending job events to run workflow instances, will retry.");
@@ -317,7 +409,10 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
                 conn -> {
                   int res = terminateQueuedInstance(conn, instance, status, reason);
                   if (res == SUCCESS_WRITE_SIZE) {
-                    publisher.publishOrThrow(
+                    MaestroJobEventDao.sendJobEvent(
+                        jobEventDao,
+                        publisher,
+                        conn,
                         WorkflowInstanceUpdateJobEvent.create(
                             instance, status, System.currentTimeMillis()),
                         "Failed sending job events when terminating queued instance");
@@ -383,7 +478,10 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
                       WorkflowInstanceUpdateJobEvent jobEvent =
                           WorkflowInstanceUpdateJobEvent.create(
                               stoppedInstances, status, System.currentTimeMillis());
-                      publisher.publishOrThrow(
+                      MaestroJobEventDao.sendJobEvent(
+                          jobEventDao,
+                          publisher,
+                          conn,
                           jobEvent,
                           "Failed sending an update job event to notify stopping workflow instances.");
                     }
@@ -476,11 +574,21 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
                     workflowId,
                     instances.get(0).getWorkflowInstanceId(),
                     instances.get(instances.size() - 1));
-                return insertMaestroWorkflowInstances(conn, instances);
+                int[] inserted = insertMaestroWorkflowInstances(conn, instances);
+                if (jobEventDao != null) {
+                  jobEventDao.addJobEvents(
+                      conn,
+                      createRunInstancesJobEvents(workflowId, instances, batchSize),
+                      MaestroJobEventPublisher.DEFAULT_INVISIBLE_TIME);
+                }
+                return inserted;
               });
       LOG.debug(
           "Created workflow instances {} for workflow_id [{}]", Arrays.toString(res), workflowId);
-      int cnt = publishRunInstancesJobEvents(workflowId, instances, batchSize);
+      int cnt =
+          jobEventDao != null
+              ? instances.size()
+              : publishRunInstancesJobEvents(workflowId, instances, batchSize);
       LOG.info(
           "Created {}/{} workflow instances and sent {} run job events for workflow id {}",
           res.length,
@@ -578,6 +686,65 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
         uuid);
   }
 
+  /**
+   * Get a batch of workflow instance runs together with the flag about if there is any conductor
+   * workflow instance with its uuid in a single query. Missing rows are not included.
+   *
+   * @param workflowId workflow id
+   * @param instanceRunUuids workflow instance runs to load
+   * @return a map from the requested instance run uuid to the record loaded from DB
+   */
+  public Map<InstanceRunUuid, InstanceRunRecord> getWorkflowInstanceRunsWithExecuted(
+      String workflowId, List<InstanceRunUuid> instanceRunUuids) {
+    if (instanceRunUuids.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, InstanceRunUuid> requested = new HashMap<>();
+    for (InstanceRunUuid instanceRunUuid : instanceRunUuids) {
+      requested.put(
+          instanceRunKey(instanceRunUuid.getInstanceId(), instanceRunUuid.getRunId()),
+          instanceRunUuid);
+    }
+    String sql =
+        String.format(
+            GET_WORKFLOW_INSTANCE_RUNS_WITH_EXECUTED_QUERY_TEMPLATE,
+            String.join(",", Collections.nCopies(requested.size(), VALUE_PLACE_HOLDER)));
+    return withMetricLogError(
+        () ->
+            withRetryableQuery(
+                sql,
+                stmt -> {
+                  int idx = 0;
+                  stmt.setString(++idx, workflowId);
+                  for (InstanceRunUuid instanceRunUuid : requested.values()) {
+                    stmt.setLong(++idx, instanceRunUuid.getInstanceId());
+                    stmt.setLong(++idx, instanceRunUuid.getRunId());
+                  }
+                },
+                result -> {
+                  Map<InstanceRunUuid, InstanceRunRecord> records = new HashMap<>();
+                  while (result.next()) {
+                    InstanceRunUuid key =
+                        requested.get(
+                            instanceRunKey(
+                                result.getLong(INSTANCE_ID_COLUMN), result.getLong("run_id")));
+                    records.put(
+                        key,
+                        new InstanceRunRecord(
+                            workflowInstanceFromResult(result), result.getBoolean("executed")));
+                  }
+                  return records;
+                }),
+        "getWorkflowInstanceRunsWithExecuted",
+        "Failed to get [{}] workflow instance runs for workflow [{}]",
+        instanceRunUuids.size(),
+        workflowId);
+  }
+
+  private static String instanceRunKey(long instanceId, long runId) {
+    return instanceId + ":" + runId;
+  }
+
   /**
    * Update workflow instance runtime info.
    *
@@ -717,7 +884,7 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
 
   /**
    * Get the instance data of a specific workflow instance run, including the summary of its step
-   * instances.
+   * instances. If it is not in the instance table, it is loaded from the archive if enabled.
    *
    * @param workflowId workflow id
    * @param instanceId workflow instance id
@@ -750,6 +917,9 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
             workflowId,
             instanceId,
             runId);
+    if (ret == null && archiveDao != null) {
+      ret = archiveDao.getWorkflowInstanceRun(workflowId, instanceId, runId);
+    }
     if (ret == null) {
       throw new MaestroNotFoundException(
           "workflow instance [%s][%s][%s] not found (either not created or deleted)",
@@ -842,7 +1012,7 @@ public class MaestroWorkflowInstanceDao extends CockroachDBBaseDAO {
         workflowId);
   }
 
-  private WorkflowInstance workflowInstanceFromResult(ResultSet rs) throws SQLException {
+  WorkflowInstance workflowInstanceFromResult(ResultSet rs) throws SQLException {
     WorkflowInstance instance =
         Checks.notNull(
             getJsonObjectIfPresent(rs, "instance", WorkflowInstance.class),
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * QueueDAO decorator to split each queue into partitions and only poll the partitions owned by
+ * this node. A message goes to the partition of its id, i.e. the workflow id for the decider
+ * queue and the task id for the task queues. So the nodes no longer compete for the same queue
+ * entries, and the polling work is spread over the nodes by {@link WorkflowOwnershipManager}.
+ *
+ * <p>The partition of a message is fixed by its id, so a rebalance never moves any message. The
+ * new owner just starts to poll the partition. The size and detail methods aggregate all the
+ * partitions of a queue.
+ *
+ * <p>The messages pushed before the partitioning was enabled stay in the unpartitioned queue. Every
+ * node keeps polling it first and the message operations fall back to it until it is drained,
+ * i.e. it has no message left, including the unacked ones. After that, it is only checked once a
+ * minute in case a node not upgraded yet pushes to it.
+ */
+public class PartitionedQueueDao implements QueueDAO {
+  private static final String PARTITION_DELIMITER = "#";
+  private static final String SIZE_KEY = "size";
+  private static final String UNACKED_KEY = "uacked";
+  private static final long LEGACY_RECHECK_INTERVAL_MILLIS = 60000;
+
+  private final QueueDAO delegate;
+  private final WorkflowOwnershipManager ownershipManager;
+  private final AtomicInteger cursor = new AtomicInteger();
+  private final Map<String, Long> drainedLegacyQueues = new ConcurrentHashMap<>();
+
+  /** Constructor. */
+  public PartitionedQueueDao(QueueDAO delegate, WorkflowOwnershipManager ownershipManager) {
+    this.delegate = delegate;
+    this.ownershipManager = ownershipManager;
+  }
+
+  @Override
+  public void push(String queueName, String id, long offsetTimeInSecond) {
+    delegate.push(partitionOf(queueName, id), id, offsetTimeInSecond);
+  }
+
+  @Override
+  public void push(String queueName, String id, int priority, long offsetTimeInSecond) {
+    delegate.push(partitionOf(queueName, id), id, priority, offsetTimeInSecond);
+  }
+
+  @Override
+  public void push(String queueName, List<Message> messages) {
+    Map<String, List<Message>> grouped = new LinkedHashMap<>();
+    for (Message message : messages) {
+      grouped
+          .computeIfAbsent(partitionOf(queueName, message.getId()), k -> new ArrayList<>())
+          .add(message);
+    }
+    grouped.forEach(delegate::push);
+  }
+
+  @Override
+  public boolean pushIfNotExists(String queueName, String id, long offsetTimeInSecond) {
+    if (isLegacyActive(queueName) && delegate.containsMessage(queueName, id)) {
+      return false;
+    }
+    return delegate.pushIfNotExists(partitionOf(queueName, id), id, offsetTimeInSecond);
+  }
+
+  @Override
+  public boolean pushIfNotExists(
+      String queueName, String id, int priority, long offsetTimeInSecond) {
+    if (isLegacyActive(queueName) && delegate.containsMessage(queueName, id)) {
+      return false;
+    }
+    return delegate.pushIfNotExists(partitionOf(queueName, id), id, priority, offsetTimeInSecond);
+  }
+
+  @Override
+  public List<String> pop(String queueName, int count, int timeout) {
+    return pollOwned(queueName, count, (name, num) -> delegate.pop(name, num, timeout));
+  }
+
+  @Override
+  public List<String> pop(String queueName, int count, int timeout, long leaseDurationSeconds) {
+    return pollOwned(
+        queueName, count, (name, num) -> delegate.pop(name, num, timeout, leaseDurationSeconds));
+  }
+
+  @Override
+  public List<Message> pollMessages(String queueName, int count, int timeout) {
+    return pollOwned(queueName, count, (name, num) -> delegate.pollMessages(name, num, timeout));
+  }
+
+  @Override
+  public List<Message> pollMessages(
+      String queueName, int count, int timeout, long leaseDurationSeconds) {
+    return pollOwned(
+        queueName,
+        count,
+        (name, num) -> delegate.pollMessages(name, num, timeout, leaseDurationSeconds));
+  }
+
+  @Override
+  public void remove(String queueName, String messageId) {
+    delegate.remove(partitionOf(queueName, messageId), messageId);
+    if (isLegacyActive(queueName)) {
+      delegate.remove(queueName, messageId);
+    }
+  }
+
+  @Override
+  public int getSize(String queueName) {
+    int size = delegate.getSize(queueName);
+    for (int i = 0; i < ownershipManager.getPartitionCount(); ++i) {
+      size += delegate.getSize(partitionName(queueName, i));
+    }
+    return size;
+  }
+
+  @Override
+  public boolean ack(String queueName, String messageId) {
+    return delegate.ack(partitionOf(queueName, messageId), messageId)
+        || (isLegacyActive(queueName) && delegate.ack(queueName, messageId));
+  }
+
+  @Override
+  public boolean setUnackTimeout(String queueName, String messageId, long unackTimeout) {
+    return delegate.setUnackTimeout(partitionOf(queueName, messageId), messageId, unackTimeout)
+        || (isLegacyActive(queueName)
+            && delegate.setUnackTimeout(queueName, messageId, unackTimeout));
+  }
+
+  @Override
+  public void flush(String queueName) {
+    delegate.flush(queueName);
+    for (int i = 0; i < ownershipManager.getPartitionCount(); ++i) {
+      delegate.flush(partitionName(queueName, i));
+    }
+  }
+
+  @Override
+  public Map<String, Long> queuesDetail() {
+    Map<String, Long> detail = new HashMap<>();
+    delegate.queuesDetail().forEach((k, v) -> detail.merge(queueNameOf(k), v, Long::sum));
+    return detail;
+  }
+
+  @Override
+  public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
+    Map<String, Map<String, Map<String, Long>>> detail = new HashMap<>();
+    delegate
+        .queuesDetailVerbose()
+        .forEach(
+            (queue, shards) -> {
+              Map<String, Map<String, Long>> merged =
+                  detail.computeIfAbsent(queueNameOf(queue), k -> new HashMap<>());
+              shards.forEach(
+                  (shard, stats) -> {
+                    Map<String, Long> mergedStats =
+                        merged.computeIfAbsent(shard, k -> new HashMap<>());
+                    mergedStats.merge(SIZE_KEY, stats.getOrDefault(SIZE_KEY, 0L), Long::sum);
+                    mergedStats.merge(
+                        UNACKED_KEY, stats.getOrDefault(UNACKED_KEY, 0L), Long::sum);
+                  });
+            });
+    return detail;
+  }
+
+  @Override
+  public boolean resetOffsetTime(String queueName, String id) {
+    return delegate.resetOffsetTime(partitionOf(queueName, id), id)
+        || (isLegacyActive(queueName) && delegate.resetOffsetTime(queueName, id));
+  }
+
+  @Override
+  public void processUnacks(String queueName) {
+    if (isLegacyActive(queueName)) {
+      delegate.processUnacks(queueName);
+    }
+    for (int partition : ownershipManager.getOwnedPartitions()) {
+      delegate.processUnacks(partitionName(queueName, partition));
+    }
+  }
+
+  @Override
+  public boolean postpone(
+      String queueName, String messageId, int priority, long postponeDurationInSeconds) {
+    if (isLegacyActive(queueName)) {
+      delegate.remove(queueName, messageId);
+    }
+    return delegate.postpone(
+        partitionOf(queueName, messageId), messageId, priority, postponeDurationInSeconds);
+  }
+
+  @Override
+  public boolean containsMessage(String queueName, String messageId) {
+    return delegate.containsMessage(partitionOf(queueName, messageId), messageId)
+        || (isLegacyActive(queueName) && delegate.containsMessage(queueName, messageId));
+  }
+
+  /**
+   * Poll the unpartitioned queue until it is drained, and then the owned partitions one by one
+   * until getting enough messages. It starts from a different partition each time so all the owned
+   * partitions are polled fairly.
+   */
+  private <T> List<T> pollOwned(
+      String queueName, int count, BiFunction<String, Integer, List<T>> poller) {
+    List<T> polled = new ArrayList<>();
+    if (isLegacyActive(queueName)) {
+      polled.addAll(poller.apply(queueName, count));
+      if (polled.isEmpty()) {
+        checkLegacyDrained(queueName);
+      }
+    }
+    int[] partitions = ownershipManager.getOwnedPartitions();
+    if (partitions.length == 0) {
+      return polled;
+    }
+    int start = Math.floorMod(cursor.getAndIncrement(), partitions.length);
+    for (int i = 0; i < partitions.length && polled.size() < count; ++i) {
+      int partition = partitions[(start + i) % partitions.length];
+      polled.addAll(poller.apply(partitionName(queueName, partition), count - polled.size()));
+    }
+    return polled;
+  }
+
+  /**
+   * Check if the unpartitioned queue might still have messages. A drained one is checked again
+   * after the recheck interval and becomes active if a message shows up.
+   */
+  private boolean isLegacyActive(String queueName) {
+    Long recheckTime = drainedLegacyQueues.get(queueName);
+    if (recheckTime == null) {
+      return true;
+    }
+    long now = System.currentTimeMillis();
+    if (now < recheckTime) {
+      return false;
+    }
+    if (delegate.getSize(queueName) > 0) {
+      drainedLegacyQueues.remove(queueName);
+      return true;
+    }
+    drainedLegacyQueues.put(queueName, now + LEGACY_RECHECK_INTERVAL_MILLIS);
+    return false;
+  }
+
+  /** Mark the unpartitioned queue drained if it has neither pending nor unacked messages. */
+  private void checkLegacyDrained(String queueName) {
+    if (delegate.getSize(queueName) > 0) {
+      return;
+    }
+    Map<String, Map<String, Long>> shards = delegate.queuesDetailVerbose().get(queueName);
+    if (shards != null) {
+      for (Map<String, Long> stats : shards.values()) {
+        if (stats.getOrDefault(UNACKED_KEY, 0L) > 0) {
+          return;
+        }
+      }
+    }
+    drainedLegacyQueues.put(queueName, System.currentTimeMillis() + LEGACY_RECHECK_INTERVAL_MILLIS);
+  }
+
+  private String partitionOf(String queueName, String id) {
+    return partitionName(queueName, ownershipManager.getPartition(id));
+  }
+
+  private static String partitionName(String queueName, int partition) {
+    return queueName + PARTITION_DELIMITER + partition;
+  }
+
+  private static String queueNameOf(String partitionName) {
+    int idx = partitionName.lastIndexOf(PARTITION_DELIMITER);
+    return idx < 0 ? partitionName : partitionName.substring(0, idx);
+  }
+}
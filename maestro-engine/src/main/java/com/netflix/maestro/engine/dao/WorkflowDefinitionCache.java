@@ -0,0 +1,306 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import com.netflix.maestro.annotations.Nullable;
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.definition.PropertiesSnapshot;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A node-local bounded cache of the raw maestro_workflow and maestro_workflow_version rows used by
+ * {@link MaestroWorkflowDao} to build workflow definitions. The rows are kept as the raw column
+ * values and parsed on every read, so the callers always get their own copies.
+ *
+ * <p>Workflow version rows are immutable once written, so they are cached without expiration and
+ * keyed by the workflow internal id and the version id. The internal id is unique across the
+ * workflow re-creations, so a deleted and then re-created workflow never hits the old versions.
+ *
+ * <p>Workflow rows, which resolve the version aliases (i.e. active, latest, and default) and hold
+ * the properties snapshot, are mutable. They expire after workflowTtlMillis and are invalidated
+ * when the workflow is changed or deleted on this node or a workflow version update or deletion
+ * job event is processed. A row loaded before an invalidation is not cached. If workflowTtlMillis
+ * is not positive, workflow rows are not cached.
+ *
+ * <p>The current properties snapshots are cached parsed together with a version stamp, i.e. the
+ * workflow internal id and modify_ts. A snapshot validated within workflowTtlMillis is served
+ * without touching DB. After that, the loader validates the stamp of the cached one against DB
+ * and only re-reads the snapshot if the stamp is changed. The cached {@link PropertiesSnapshot} is
+ * shared, so the callers must copy it before handing it out. They are also invalidated together
+ * with the workflow rows and a snapshot loaded before an invalidation is not cached.
+ *
+ * <p>All the maps keep at most maxSize entries in the least recently used order. If maxSize is not
+ * positive, the cache is disabled and the loader is always called.
+ */
+@Slf4j
+public class WorkflowDefinitionCache {
+  private static final String WORKFLOW_TYPE = "workflow";
+  private static final String WORKFLOW_VERSION_TYPE = "workflow_version";
+  private static final String PROPERTIES_SNAPSHOT_TYPE = "properties_snapshot";
+
+  private final int maxSize;
+  private final long workflowTtlMillis;
+  private final Clock clock;
+  private final MaestroMetrics metrics;
+  private final Map<String, WorkflowRow> workflows;
+  private final Map<String, VersionRow> versions;
+  private final Map<String, SnapshotRow> snapshots;
+  private long generation;
+
+  /** Constructor. */
+  public WorkflowDefinitionCache(int maxSize, long workflowTtlMillis, MaestroMetrics metrics) {
+    this(maxSize, workflowTtlMillis, Clock.systemUTC(), metrics);
+  }
+
+  @VisibleForTesting
+  WorkflowDefinitionCache(
+      int maxSize, long workflowTtlMillis, Clock clock, MaestroMetrics metrics) {
+    this.maxSize = maxSize;
+    this.workflowTtlMillis = workflowTtlMillis;
+    this.clock = clock;
+    this.metrics = metrics;
+    this.workflows = createLruMap(maxSize);
+    this.versions = createLruMap(maxSize);
+    this.snapshots = createLruMap(maxSize);
+  }
+
+  private static <V> Map<String, V> createLruMap(int maxSize) {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /** Raw column values of a maestro_workflow row. */
+  static final class WorkflowRow {
+    final long internalId;
+    final long activeVersionId;
+    @Nullable final Long activateTime;
+    @Nullable final String activatedBy;
+    final String propertiesSnapshot;
+    final long latestVersionId;
+    final long modifyTime;
+    private long expireAt;
+
+    WorkflowRow(
+        long internalId,
+        long activeVersionId,
+        @Nullable Long activateTime,
+        @Nullable String activatedBy,
+        String propertiesSnapshot,
+        long latestVersionId,
+        long modifyTime) {
+      this.internalId = internalId;
+      this.activeVersionId = activeVersionId;
+      this.activateTime = activateTime;
+      this.activatedBy = activatedBy;
+      this.propertiesSnapshot = propertiesSnapshot;
+      this.latestVersionId = latestVersionId;
+      this.modifyTime = modifyTime;
+    }
+  }
+
+  /** Raw column values of a maestro_workflow_version row. */
+  static final class VersionRow {
+    final String metadata;
+    final String definition;
+    @Nullable final String triggerUuids;
+
+    VersionRow(String metadata, String definition, @Nullable String triggerUuids) {
+      this.metadata = metadata;
+      this.definition = definition;
+      this.triggerUuids = triggerUuids;
+    }
+  }
+
+  /** Parsed current properties snapshot of a workflow with its version stamp. */
+  static final class SnapshotRow {
+    final long internalId;
+    final Timestamp modifyTime;
+    final PropertiesSnapshot propertiesSnapshot;
+    private long validateAt;
+
+    SnapshotRow(long internalId, Timestamp modifyTime, PropertiesSnapshot propertiesSnapshot) {
+      this.internalId = internalId;
+      this.modifyTime = modifyTime;
+      this.propertiesSnapshot = propertiesSnapshot;
+    }
+  }
+
+  /**
+   * Get the workflow row of the given workflow id and load it by the loader if absent or expired.
+   * The loader returns null if the workflow does not exist, which is not cached.
+   */
+  @Nullable
+  WorkflowRow getWorkflow(String workflowId, Supplier<WorkflowRow> loader) {
+    if (maxSize <= 0 || workflowTtlMillis <= 0) {
+      return loader.get();
+    }
+    long loadGeneration;
+    synchronized (workflows) {
+      WorkflowRow row = workflows.get(workflowId);
+      if (row != null && row.expireAt > clock.millis()) {
+        recordHit(WORKFLOW_TYPE);
+        return row;
+      }
+      if (row != null) {
+        workflows.remove(workflowId);
+      }
+      loadGeneration = generation;
+    }
+    recordMiss(WORKFLOW_TYPE);
+    WorkflowRow row = loader.get();
+    if (row != null) {
+      synchronized (workflows) {
+        if (loadGeneration == generation) {
+          row.expireAt = clock.millis() + workflowTtlMillis;
+          workflows.put(workflowId, row);
+        }
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Get the workflow version row of the given workflow internal id and version id and load it by
+   * the loader if absent.
+   */
+  VersionRow getVersion(long internalId, long versionId, Supplier<VersionRow> loader) {
+    if (maxSize <= 0) {
+      return loader.get();
+    }
+    String key = internalId + ":" + versionId;
+    synchronized (versions) {
+      VersionRow row = versions.get(key);
+      if (row != null) {
+        recordHit(WORKFLOW_VERSION_TYPE);
+        return row;
+      }
+    }
+    recordMiss(WORKFLOW_VERSION_TYPE);
+    VersionRow row = loader.get();
+    synchronized (versions) {
+      versions.put(key, row);
+    }
+    return row;
+  }
+
+  /**
+   * Get the current properties snapshot row of the given workflow id. A cached row validated
+   * within workflowTtlMillis is returned directly. Otherwise, the loader gets the cached row, which
+   * is null if absent, validates its version stamp, and returns the cached row itself if it is
+   * still current. Otherwise, it returns the newly loaded row or null if the workflow does not
+   * exist.
+   */
+  @Nullable
+  SnapshotRow getSnapshot(String workflowId, UnaryOperator<SnapshotRow> loader) {
+    if (maxSize <= 0) {
+      return loader.apply(null);
+    }
+    SnapshotRow cached;
+    long loadGeneration;
+    synchronized (workflows) {
+      loadGeneration = generation;
+    }
+    synchronized (snapshots) {
+      cached = snapshots.get(workflowId);
+      if (cached != null && cached.validateAt + workflowTtlMillis > clock.millis()) {
+        recordHit(PROPERTIES_SNAPSHOT_TYPE);
+        return cached;
+      }
+    }
+    SnapshotRow row = loader.apply(cached);
+    if (row != null && row == cached) {
+      recordHit(PROPERTIES_SNAPSHOT_TYPE);
+    } else {
+      recordMiss(PROPERTIES_SNAPSHOT_TYPE);
+    }
+    synchronized (workflows) {
+      synchronized (snapshots) {
+        if (row == null || loadGeneration != generation) {
+          snapshots.remove(workflowId);
+        } else {
+          row.validateAt = clock.millis();
+          snapshots.put(workflowId, row);
+        }
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Invalidate the cached workflow row and properties snapshot of the given workflow id. The cached
+   * version rows are kept as they are immutable and will be evicted by the size bound.
+   */
+  public void invalidate(String workflowId) {
+    if (maxSize <= 0) {
+      return;
+    }
+    synchronized (workflows) {
+      generation++;
+      if (workflows.remove(workflowId) != null) {
+        LOG.debug("Invalidated the cached workflow row of workflow [{}]", workflowId);
+      }
+    }
+    synchronized (snapshots) {
+      snapshots.remove(workflowId);
+    }
+  }
+
+  /** Get the number of cached workflow rows. */
+  public int workflowSize() {
+    synchronized (workflows) {
+      return workflows.size();
+    }
+  }
+
+  /** Get the number of cached workflow version rows. */
+  public int versionSize() {
+    synchronized (versions) {
+      return versions.size();
+    }
+  }
+
+  /** Get the number of cached properties snapshots. */
+  public int snapshotSize() {
+    synchronized (snapshots) {
+      return snapshots.size();
+    }
+  }
+
+  private void recordHit(String type) {
+    metrics.counter(
+        MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC,
+        getClass(),
+        MetricConstants.TYPE_TAG,
+        type);
+  }
+
+  private void recordMiss(String type) {
+    metrics.counter(
+        MetricConstants.WORKFLOW_DEFINITION_CACHE_MISS_METRIC,
+        getClass(),
+        MetricConstants.TYPE_TAG,
+        type);
+  }
+}
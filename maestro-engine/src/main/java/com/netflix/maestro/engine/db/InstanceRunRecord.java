@@ -0,0 +1,30 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.db;
+
+import com.netflix.maestro.models.instance.WorkflowInstance;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Wrapper class for a workflow instance run from DB and if any conductor workflow has already been
+ * launched with its uuid.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class InstanceRunRecord {
+  private final WorkflowInstance instance;
+  private final boolean executed;
+}
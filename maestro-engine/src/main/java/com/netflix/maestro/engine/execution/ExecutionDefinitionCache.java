@@ -0,0 +1,171 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.definition.Step;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded cache of the parsed {@link WorkflowSummary} and step definitions used by MaestroTask
+ * in the poll loop. Both are immutable for the whole workflow execution, so they are parsed from
+ * the conductor workflow input and task input data once per execution instead of every poll.
+ *
+ * <p>Entries are grouped by the conductor workflow execution id and the step definitions within
+ * an entry are keyed by the step id. The cache keeps at most maxSize executions in the least
+ * recently used order and an entry expires after ttlMillis since it is created. Entries are also
+ * invalidated once the workflow execution is finalized. If maxSize is not positive, the cache is
+ * disabled and the loader is always called.
+ */
+@Slf4j
+public class ExecutionDefinitionCache {
+  private static final String WORKFLOW_SUMMARY_TYPE = "workflow_summary";
+  private static final String STEP_DEFINITION_TYPE = "step_definition";
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final Clock clock;
+  private final MaestroMetrics metrics;
+  private final Map<String, Entry> entries;
+
+  /** Constructor. */
+  public ExecutionDefinitionCache(int maxSize, long ttlMillis, MaestroMetrics metrics) {
+    this(maxSize, ttlMillis, Clock.systemUTC(), metrics);
+  }
+
+  @VisibleForTesting
+  ExecutionDefinitionCache(int maxSize, long ttlMillis, Clock clock, MaestroMetrics metrics) {
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+    this.metrics = metrics;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  /** Cached parsed objects of a single workflow execution. */
+  private static final class Entry {
+    private final long expireAt;
+    private WorkflowSummary workflowSummary;
+    private final Map<String, Step> steps = new HashMap<>();
+
+    private Entry(long expireAt) {
+      this.expireAt = expireAt;
+    }
+  }
+
+  /**
+   * Get the workflow summary of the given workflow execution and parse it by the loader if absent.
+   */
+  public WorkflowSummary getWorkflowSummary(String executionId, Supplier<WorkflowSummary> loader) {
+    if (maxSize <= 0) {
+      return loader.get();
+    }
+    synchronized (entries) {
+      Entry entry = getEntry(executionId);
+      if (entry != null && entry.workflowSummary != null) {
+        recordHit(WORKFLOW_SUMMARY_TYPE);
+        return entry.workflowSummary;
+      }
+    }
+    recordMiss(WORKFLOW_SUMMARY_TYPE);
+    WorkflowSummary workflowSummary = loader.get();
+    synchronized (entries) {
+      getOrCreateEntry(executionId).workflowSummary = workflowSummary;
+    }
+    return workflowSummary;
+  }
+
+  /**
+   * Get the step definition of the given step in the workflow execution and parse it by the
+   * loader if absent.
+   */
+  public Step getStepDefinition(String executionId, String stepId, Supplier<Step> loader) {
+    if (maxSize <= 0) {
+      return loader.get();
+    }
+    synchronized (entries) {
+      Entry entry = getEntry(executionId);
+      Step step = entry == null ? null : entry.steps.get(stepId);
+      if (step != null) {
+        recordHit(STEP_DEFINITION_TYPE);
+        return step;
+      }
+    }
+    recordMiss(STEP_DEFINITION_TYPE);
+    Step step = loader.get();
+    synchronized (entries) {
+      getOrCreateEntry(executionId).steps.put(stepId, step);
+    }
+    return step;
+  }
+
+  /** Invalidate all the cached objects of the given workflow execution. */
+  public void invalidate(String executionId) {
+    if (maxSize <= 0) {
+      return;
+    }
+    synchronized (entries) {
+      if (entries.remove(executionId) != null) {
+        LOG.debug("Invalidated the cached definitions of workflow execution [{}]", executionId);
+      }
+    }
+  }
+
+  /** Get the number of workflow executions in the cache. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private Entry getEntry(String executionId) {
+    Entry entry = entries.get(executionId);
+    if (entry != null && entry.expireAt <= clock.millis()) {
+      entries.remove(executionId);
+      return null;
+    }
+    return entry;
+  }
+
+  private Entry getOrCreateEntry(String executionId) {
+    Entry entry = getEntry(executionId);
+    if (entry == null) {
+      entry = new Entry(clock.millis() + ttlMillis);
+      entries.put(executionId, entry);
+    }
+    return entry;
+  }
+
+  private void recordHit(String type) {
+    metrics.counter(
+        MetricConstants.DEFINITION_CACHE_HIT_METRIC, getClass(), MetricConstants.TYPE_TAG, type);
+  }
+
+  private void recordMiss(String type) {
+    metrics.counter(
+        MetricConstants.DEFINITION_CACHE_MISS_METRIC, getClass(), MetricConstants.TYPE_TAG, type);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import com.netflix.maestro.annotations.Nullable;
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.properties.AdaptiveCallbackDelayConfig;
+import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.instance.StepRuntimeState;
+import java.time.Clock;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Callback delay policy adapted to the observed durations of each workflow step.
+ *
+ * <p>It learns the running durations (from the execute time to the finish time) of the succeeded
+ * step instances per workflow id and step id with a streaming quantile sketch kept in memory. For
+ * a running step instance with enough samples, it skips the polling until the lower quantile of
+ * the expected duration, polls at the fixed callback delay within the dense window between the
+ * lower and upper quantiles, and then backs off exponentially by setting the delay to a ratio of
+ * the overdue time. The delay is always capped by the max callback delay. Wake up events (e.g.
+ * user actions or signals) reset the task queue offset, so they are not delayed by the backoff.
+ *
+ * <p>It falls back to the fixed callback delay policy for other statuses or the steps without
+ * enough samples.
+ */
+@Slf4j
+public class StepRuntimeAdaptiveCallbackDelayPolicy implements StepRuntimeCallbackDelayPolicy {
+  private static final double RELATIVE_ACCURACY = 0.02;
+  private static final long MAX_SAMPLE_COUNT = 10000;
+
+  private final StepRuntimeCallbackDelayPolicy fallbackPolicy;
+  private final AdaptiveCallbackDelayConfig config;
+  private final Clock clock;
+  private final Map<String, DurationSketch> sketches = new ConcurrentHashMap<>();
+
+  /** Constructor. */
+  public StepRuntimeAdaptiveCallbackDelayPolicy(
+      StepRuntimeCallbackDelayPolicy fallbackPolicy, AdaptiveCallbackDelayConfig config) {
+    this(fallbackPolicy, config, Clock.systemUTC());
+  }
+
+  @VisibleForTesting
+  StepRuntimeAdaptiveCallbackDelayPolicy(
+      StepRuntimeCallbackDelayPolicy fallbackPolicy,
+      AdaptiveCallbackDelayConfig config,
+      Clock clock) {
+    this.fallbackPolicy = fallbackPolicy;
+    this.config = config;
+    this.clock = clock;
+  }
+
+  @Override
+  public Long getCallBackDelayInSecs(StepRuntimeSummary runtimeSummary) {
+    return fallbackPolicy.getCallBackDelayInSecs(runtimeSummary);
+  }
+
+  @Override
+  public Long getCallBackDelayInSecs(
+      @Nullable String workflowId, StepRuntimeSummary runtimeSummary) {
+    Long fixedDelay = fallbackPolicy.getCallBackDelayInSecs(runtimeSummary);
+    if (workflowId == null || runtimeSummary == null || fixedDelay == null) {
+      return fixedDelay;
+    }
+    StepRuntimeState state = runtimeSummary.getRuntimeState();
+    if (state.getStatus() != StepInstance.Status.RUNNING || state.getExecuteTime() == null) {
+      return fixedDelay;
+    }
+    DurationSketch sketch = sketches.get(getKey(workflowId, runtimeSummary.getStepId()));
+    if (sketch == null || sketch.getCount() < config.getMinSamples()) {
+      return fixedDelay;
+    }
+    long elapsed = clock.millis() - state.getExecuteTime();
+    long lower = sketch.getQuantile(config.getLowerQuantile());
+    long upper = sketch.getQuantile(config.getUpperQuantile());
+    long delayInMillis;
+    if (elapsed < lower) {
+      delayInMillis = lower - elapsed;
+    } else if (elapsed <= upper) {
+      delayInMillis = TimeUnit.SECONDS.toMillis(fixedDelay);
+    } else {
+      delayInMillis = (long) ((elapsed - upper) * config.getBackoffFactor());
+    }
+    long delayInSecs = TimeUnit.MILLISECONDS.toSeconds(delayInMillis);
+    return Math.min(Math.max(delayInSecs, fixedDelay), config.getMaxCallbackDelayInSecs());
+  }
+
+  @Override
+  public void onStepTerminated(String workflowId, StepRuntimeSummary runtimeSummary) {
+    if (workflowId == null) {
+      return;
+    }
+    StepRuntimeState state = runtimeSummary.getRuntimeState();
+    if (state.getStatus() != StepInstance.Status.SUCCEEDED || state.getExecuteTime() == null) {
+      return;
+    }
+    Long endTime = state.getFinishTime() != null ? state.getFinishTime() : state.getEndTime();
+    if (endTime == null || endTime < state.getExecuteTime()) {
+      return;
+    }
+    String key = getKey(workflowId, runtimeSummary.getStepId());
+    DurationSketch sketch = sketches.get(key);
+    if (sketch == null) {
+      if (sketches.size() >= config.getMaxTrackedSteps()) {
+        LOG.debug("Skip tracking step [{}] as reaching the limit of tracked steps", key);
+        return;
+      }
+      sketch = sketches.computeIfAbsent(key, k -> new DurationSketch());
+    }
+    sketch.add(endTime - state.getExecuteTime());
+  }
+
+  @Override
+  public CallbackDelayPolicyType getType() {
+    return CallbackDelayPolicyType.ADAPTIVE_CALLBACK_DELAY;
+  }
+
+  private static String getKey(String workflowId, String stepId) {
+    return workflowId + ":" + stepId;
+  }
+
+  /**
+   * A streaming quantile sketch with a bounded relative error. Each value is counted in a bucket
+   * with logarithmically growing width, so the memory only grows with the log of the value range.
+   * Once the count reaches the limit, all the bucket counts are halved to fade the old samples.
+   */
+  @VisibleForTesting
+  static final class DurationSketch {
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+    private long count;
+
+    synchronized void add(long value) {
+      int index = value <= 0 ? 0 : (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+      buckets.merge(index, 1L, Long::sum);
+      count++;
+      if (count >= MAX_SAMPLE_COUNT) {
+        count = 0;
+        buckets.replaceAll((k, v) -> v / 2);
+        buckets.values().removeIf(v -> v == 0);
+        buckets.values().forEach(v -> count += v);
+      }
+    }
+
+    synchronized long getCount() {
+      return count;
+    }
+
+    synchronized long getQuantile(double quantile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = (long) (quantile * (count - 1));
+      long seen = 0;
+      for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+        seen += entry.getValue();
+        if (seen > rank) {
+          return bucketValue(entry.getKey());
+        }
+      }
+      return bucketValue(buckets.lastKey());
+    }
+
+    private static long bucketValue(int index) {
+      return index == 0 ? 0 : (long) (2 * Math.pow(GAMMA, index) / (GAMMA + 1));
+    }
+  }
+}
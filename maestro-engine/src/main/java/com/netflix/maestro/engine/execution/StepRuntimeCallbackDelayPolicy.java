@@ -12,17 +12,33 @@
  */
 package com.netflix.maestro.engine.execution;
 
+import com.netflix.maestro.annotations.Nullable;
+
 /** Interface to support step runtime callback configurations. */
 public interface StepRuntimeCallbackDelayPolicy {
   /** Get callback for the step instance current runtime state. */
   Long getCallBackDelayInSecs(StepRuntimeSummary runtimeSummary);
 
+  /**
+   * Get callback for the step instance current runtime state within the given workflow. By
+   * default, the workflow id is ignored.
+   */
+  default Long getCallBackDelayInSecs(
+      @Nullable String workflowId, StepRuntimeSummary runtimeSummary) {
+    return getCallBackDelayInSecs(runtimeSummary);
+  }
+
+  /** Notify the policy that a step instance of the given workflow is terminated. */
+  default void onStepTerminated(String workflowId, StepRuntimeSummary runtimeSummary) {}
+
   /** Get callback type. */
   CallbackDelayPolicyType getType();
 
   /** Supported callback policy enum. */
   enum CallbackDelayPolicyType {
     /** Fixed callback delay. */
-    FIXED_CALLBACK_DELAY;
+    FIXED_CALLBACK_DELAY,
+    /** Callback delay adapted to the observed step durations. */
+    ADAPTIVE_CALLBACK_DELAY;
   }
 }
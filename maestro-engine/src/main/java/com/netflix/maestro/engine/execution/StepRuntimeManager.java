@@ -12,29 +12,33 @@
  */
 package com.netflix.maestro.engine.execution;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.netflix.maestro.engine.db.StepAction;
+import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.metrics.MaestroMetrics;
 import com.netflix.maestro.engine.metrics.MetricConstants;
 import com.netflix.maestro.engine.params.ParamsManager;
 import com.netflix.maestro.engine.steps.StepRuntime;
 import com.netflix.maestro.engine.tracing.MaestroTracingManager;
 import com.netflix.maestro.exceptions.MaestroInternalError;
+import com.netflix.maestro.models.artifact.Artifact;
 import com.netflix.maestro.models.definition.Step;
 import com.netflix.maestro.models.definition.StepType;
 import com.netflix.maestro.models.definition.Tag;
+import com.netflix.maestro.models.definition.TagList;
 import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.instance.StepRuntimeState;
 import com.netflix.maestro.models.parameter.Parameter;
+import com.netflix.maestro.models.timeline.Timeline;
 import com.netflix.maestro.models.timeline.TimelineLogEvent;
 import com.netflix.maestro.utils.Checks;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /** step runtime manager to manage step runtime and their results. */
 public final class StepRuntimeManager {
   private final Map<StepType, StepRuntime> stepRuntimeMap;
-  private final ObjectMapper objectMapper;
   private final ParamsManager paramsManager;
   private final MaestroMetrics metrics;
   private final MaestroTracingManager tracingManager;
@@ -42,12 +46,10 @@ public final class StepRuntimeManager {
   /** StepRuntime manager constructor. */
   public StepRuntimeManager(
       Map<StepType, StepRuntime> stepRuntimeMap,
-      ObjectMapper objectMapper,
       ParamsManager paramsManager,
       MaestroMetrics metricRepo,
       MaestroTracingManager tracingManager) {
     this.stepRuntimeMap = Collections.unmodifiableMap(stepRuntimeMap);
-    this.objectMapper = objectMapper;
     this.paramsManager = paramsManager;
     this.metrics = metricRepo;
     this.tracingManager = tracingManager;
@@ -57,13 +59,95 @@ public final class StepRuntimeManager {
     return Checks.notNull(stepRuntimeMap.get(type), "Cannot found the step type %s", type);
   }
 
-  private StepRuntimeSummary cloneSummary(StepRuntimeSummary summary) {
-    StepAction latestAction = summary.getPendingAction();
-    StepRuntimeSummary cloned = objectMapper.convertValue(summary, StepRuntimeSummary.class);
-    cloned.setPendingAction(latestAction);
+  /**
+   * Copy the runtime summary for the step runtime to work on so its changes are only applied by
+   * merging the returned result. It copies the data structurally instead of a Jackson round trip of
+   * the whole summary. The copy owns its params, artifacts, timeline, pending records, tags,
+   * runtime state and retry state. Timeline events are immutable and shared. The transition,
+   * dependencies, outputs, tracing context, and restart inputs are read only for step runtimes and
+   * also shared.
+   */
+  @VisibleForTesting
+  StepRuntimeSummary cloneSummary(StepRuntimeSummary summary) {
+    StepRuntimeSummary cloned =
+        StepRuntimeSummary.builder()
+            .stepId(summary.getStepId())
+            .stepAttemptId(summary.getStepAttemptId())
+            .stepInstanceUuid(summary.getStepInstanceUuid())
+            .stepName(summary.getStepName())
+            .stepInstanceId(summary.getStepInstanceId())
+            .tags(new TagList(new ArrayList<>(summary.getTags().getTags())))
+            .type(summary.getType())
+            .subType(summary.getSubType())
+            .params(copyParams(summary.getParams()))
+            .transition(summary.getTransition())
+            .stepRetry(copyStepRetry(summary.getStepRetry()))
+            .timeoutInMillis(summary.getTimeoutInMillis())
+            .synced(summary.isSynced())
+            .dbOperation(summary.getDbOperation())
+            .runtimeState(copyRuntimeState(summary.getRuntimeState()))
+            .dependencies(summary.getDependencies())
+            .outputs(summary.getOutputs())
+            .artifacts(copyArtifacts(summary.getArtifacts()))
+            .timeline(new Timeline(summary.getTimeline().getTimelineEvents()))
+            .pendingRecords(new ArrayList<>(summary.getPendingRecords()))
+            .tracingContext(summary.getTracingContext())
+            .stepRunParams(summary.getStepRunParams())
+            .restartConfig(summary.getRestartConfig())
+            .build();
+    cloned.setPendingAction(summary.getPendingAction());
     return cloned;
   }
 
+  private static Map<String, Parameter> copyParams(Map<String, Parameter> params) {
+    if (params == null) {
+      return null;
+    }
+    Map<String, Parameter> copied = new LinkedHashMap<>();
+    params.forEach((k, v) -> copied.put(k, v.copy()));
+    return copied;
+  }
+
+  private static Map<String, Artifact> copyArtifacts(Map<String, Artifact> artifacts) {
+    Map<String, Artifact> copied = new LinkedHashMap<>();
+    artifacts.forEach((k, v) -> copied.put(k, v.copy()));
+    return copied;
+  }
+
+  private static StepInstance.StepRetry copyStepRetry(StepInstance.StepRetry stepRetry) {
+    if (stepRetry == null) {
+      return null;
+    }
+    StepInstance.StepRetry copied = new StepInstance.StepRetry();
+    copied.setErrorRetries(stepRetry.getErrorRetries());
+    copied.setErrorRetryLimit(stepRetry.getErrorRetryLimit());
+    copied.setPlatformRetries(stepRetry.getPlatformRetries());
+    copied.setPlatformRetryLimit(stepRetry.getPlatformRetryLimit());
+    copied.setTimeoutRetries(stepRetry.getTimeoutRetries());
+    copied.setTimeoutRetryLimit(stepRetry.getTimeoutRetryLimit());
+    copied.setManualRetries(stepRetry.getManualRetries());
+    copied.setRetryable(stepRetry.isRetryable());
+    copied.setBackoff(stepRetry.getBackoff());
+    return copied;
+  }
+
+  private static StepRuntimeState copyRuntimeState(StepRuntimeState state) {
+    StepRuntimeState copied = new StepRuntimeState();
+    copied.setStatus(state.getStatus());
+    copied.setCreateTime(state.getCreateTime());
+    copied.setInitializeTime(state.getInitializeTime());
+    copied.setPauseTime(state.getPauseTime());
+    copied.setWaitSignalTime(state.getWaitSignalTime());
+    copied.setEvaluateParamTime(state.getEvaluateParamTime());
+    copied.setWaitPermitTime(state.getWaitPermitTime());
+    copied.setStartTime(state.getStartTime());
+    copied.setExecuteTime(state.getExecuteTime());
+    copied.setFinishTime(state.getFinishTime());
+    copied.setEndTime(state.getEndTime());
+    copied.setModifyTime(state.getModifyTime());
+    return copied;
+  }
+
   private void markTerminatedWithMetric(
       StepRuntimeSummary runtimeSummary, StepRuntime.State stepState, StepInstance.Status status) {
     metrics.counter(
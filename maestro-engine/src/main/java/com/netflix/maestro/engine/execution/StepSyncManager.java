@@ -12,6 +12,8 @@
  */
 package com.netflix.maestro.engine.execution;
 
+import com.netflix.maestro.annotations.Nullable;
+import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceDao;
 import com.netflix.maestro.engine.db.DbOperation;
 import com.netflix.maestro.engine.jobevents.StepInstanceUpdateJobEvent;
@@ -19,22 +21,120 @@ import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.exceptions.MaestroInternalError;
 import com.netflix.maestro.models.error.Details;
 import com.netflix.maestro.models.instance.StepInstance;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.validation.constraints.NotNull;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Step synchronization manager to write the update to maestro step instance table and also publish
  * the events to the internal queue.
+ *
+ * <p>If the group commit is enabled, the sync requests from the concurrent maestro task executions
+ * are gathered by a writer thread for up to maxBatchDelayMillis or maxBatchSize requests. Then they
+ * are written to DB within a single transaction and their job events are published as a batch.
+ * Each caller is blocked until its own request is done. If the batch transaction fails, e.g. one
+ * insert conflicts, the requests are synced one by one, so a failure is only returned to its own
+ * caller. If the pending request queue is full or the writer is stopped, the request is synced
+ * directly in the caller thread. A caller waits for its request for up to syncTimeoutMillis and
+ * gets a retryable error after that if the writer has not picked it up yet. Once the writer has
+ * picked it up, the caller keeps waiting, as the writer still reads the caller's step instance and
+ * summary. If the writer thread dies unexpectedly, the group commit is stopped and its pending
+ * requests fail with a retryable error.
  */
+@Slf4j
+@SuppressWarnings({"PMD.DoNotUseThreads", "PMD.AvoidCatchingThrowable"})
 public final class StepSyncManager {
   private final MaestroStepInstanceDao instanceDao;
   private final MaestroJobEventPublisher jobEventPublisher;
+  private final int maxBatchSize;
+  private final long maxBatchDelayMillis;
+  private final long syncTimeoutMillis;
+  @Nullable private final ExecutorService executorService;
+  private final BlockingQueue<SyncRequest> requests;
+  private volatile boolean running;
 
-  /** Step synchronization manager constructor. */
+  /** Step synchronization manager constructor without the group commit. */
   public StepSyncManager(
       MaestroStepInstanceDao instanceDao, MaestroJobEventPublisher jobEventPublisher) {
+    this(instanceDao, jobEventPublisher, 1, 0, 1, 0, null);
+  }
+
+  /**
+   * Step synchronization manager constructor with the group commit.
+   *
+   * @param instanceDao step instance dao
+   * @param jobEventPublisher job event publisher
+   * @param maxBatchSize max number of sync requests written in a single transaction
+   * @param maxBatchDelayMillis max time to wait for more sync requests after the first one
+   * @param maxPendingRequests max number of sync requests waiting for the writer
+   * @param syncTimeoutMillis max time for a caller to wait for its sync request to be done
+   * @param executorService executor to run the writer thread, null to disable the group commit
+   */
+  public StepSyncManager(
+      MaestroStepInstanceDao instanceDao,
+      MaestroJobEventPublisher jobEventPublisher,
+      int maxBatchSize,
+      long maxBatchDelayMillis,
+      int maxPendingRequests,
+      long syncTimeoutMillis,
+      @Nullable ExecutorService executorService) {
     this.instanceDao = instanceDao;
     this.jobEventPublisher = jobEventPublisher;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelayMillis = maxBatchDelayMillis;
+    this.syncTimeoutMillis = syncTimeoutMillis;
+    this.executorService = executorService;
+    this.requests = new LinkedBlockingQueue<>(maxPendingRequests);
+  }
+
+  /** Start the writer thread if the group commit is enabled. */
+  public void postConstruct() {
+    if (executorService != null) {
+      running = true;
+      executorService.execute(this::runWriter);
+    }
+  }
+
+  @VisibleForTesting
+  void runWriter() {
+    while (running) {
+      List<SyncRequest> batch = Collections.emptyList();
+      try {
+        batch = nextBatch();
+        flush(batch);
+      } catch (InterruptedException e) {
+        break;
+      } catch (Throwable t) {
+        LOG.error("The step sync writer fails and stops the group commit", t);
+        running = false;
+        List<SyncRequest> pending = new ArrayList<>(batch);
+        requests.drainTo(pending);
+        Optional<Details> error =
+            Optional.of(Details.create(t, true, "Failed to sync a Maestro step state change"));
+        pending.forEach(request -> request.result.complete(error));
+        throw t;
+      }
+    }
+  }
+
+  /** Stop the writer thread and sync the pending requests. */
+  public void preDestroy() {
+    if (executorService != null) {
+      running = false;
+      executorService.shutdownNow();
+      List<SyncRequest> pending = new ArrayList<>();
+      requests.drainTo(pending);
+      pending.forEach(request -> request.result.complete(syncOne(request)));
+    }
   }
 
   /**
@@ -52,15 +152,61 @@ public final class StepSyncManager {
       @NotNull StepInstance instance,
       @NotNull WorkflowSummary workflowSummary,
       @NotNull StepRuntimeSummary stepSummary) {
+    SyncRequest request = new SyncRequest(instance, workflowSummary, stepSummary);
+    if (running && requests.offer(request)) {
+      if (!running && requests.remove(request)) {
+        return syncOne(request); // the writer is stopped and won't pick it up
+      }
+      try {
+        return request.result.get(syncTimeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (!requests.remove(request)) {
+          return awaitWriter(request, stepSummary);
+        }
+        LOG.warn(
+            "Timed out after [{}] ms while waiting for the step sync writer for step [{}][{}]",
+            syncTimeoutMillis,
+            stepSummary.getStepId(),
+            stepSummary.getStepAttemptId());
+        return Optional.of(Details.create(e, true, "Timed out while syncing a step change"));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (!requests.remove(request)) {
+          return awaitWriter(request, stepSummary);
+        }
+        return Optional.of(Details.create(e, true, "Interrupted while syncing a step change"));
+      } catch (Exception e) {
+        return Optional.of(Details.create(e, true, "Failed to sync a Maestro step state change"));
+      }
+    }
+    return syncOne(request);
+  }
+
+  /**
+   * Wait for a request the writer has already picked up without a timeout, as the writer still
+   * reads the mutable step instance and summary of the caller. The writer always completes the
+   * requests it has picked up, either after its DB and publish calls or when it stops.
+   */
+  private Optional<Details> awaitWriter(SyncRequest request, StepRuntimeSummary stepSummary) {
+    LOG.warn(
+        "The step sync writer is still syncing step [{}][{}] after [{}] ms, keep waiting",
+        stepSummary.getStepId(),
+        stepSummary.getStepAttemptId(),
+        syncTimeoutMillis);
+    return request.result.join();
+  }
+
+  private Optional<Details> syncOne(SyncRequest request) {
+    StepRuntimeSummary stepSummary = request.stepSummary;
     try {
       switch (stepSummary.getDbOperation()) {
         case INSERT:
         case UPSERT:
           instanceDao.insertOrUpsertStepInstance(
-              instance, stepSummary.getDbOperation() == DbOperation.UPSERT);
+              request.instance, stepSummary.getDbOperation() == DbOperation.UPSERT);
           break;
         case UPDATE:
-          instanceDao.updateStepInstance(workflowSummary, stepSummary);
+          instanceDao.updateStepInstance(request.workflowSummary, stepSummary);
           break;
         default:
           throw new MaestroInternalError(
@@ -71,11 +217,102 @@ public final class StepSyncManager {
       }
       if (!stepSummary.getPendingRecords().isEmpty()) {
         return jobEventPublisher.publish(
-            StepInstanceUpdateJobEvent.create(instance, stepSummary.getPendingRecords()));
+            StepInstanceUpdateJobEvent.create(request.instance, stepSummary.getPendingRecords()));
       }
       return Optional.empty();
     } catch (RuntimeException e) {
       return Optional.of(Details.create(e, true, "Failed to sync a Maestro step state change"));
     }
   }
+
+  /** Wait for the first request and then gather more requests within the batch delay. */
+  @VisibleForTesting
+  List<SyncRequest> nextBatch() throws InterruptedException {
+    List<SyncRequest> batch = new ArrayList<>();
+    batch.add(requests.take());
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+    while (batch.size() < maxBatchSize) {
+      long remaining = deadline - System.nanoTime();
+      SyncRequest next;
+      try {
+        next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break; // still flush the gathered requests
+      }
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+    }
+    return batch;
+  }
+
+  /** Write a batch of requests in a single transaction and then publish their job events. */
+  @VisibleForTesting
+  void flush(List<SyncRequest> batch) {
+    if (batch.size() == 1) {
+      SyncRequest request = batch.get(0);
+      request.result.complete(syncOne(request));
+      return;
+    }
+    try {
+      List<StepInstance> instances = new ArrayList<>(batch.size());
+      List<StepRuntimeSummary> stepSummaries = new ArrayList<>(batch.size());
+      for (SyncRequest request : batch) {
+        instances.add(request.instance);
+        stepSummaries.add(request.stepSummary);
+      }
+      instanceDao.batchSyncStepInstances(instances, stepSummaries);
+    } catch (RuntimeException e) {
+      LOG.warn(
+          "Failed to sync a batch of [{}] step changes, sync them one by one", batch.size(), e);
+      batch.forEach(request -> request.result.complete(syncOne(request)));
+      return;
+    }
+
+    List<SyncRequest> toPublish = new ArrayList<>();
+    List<StepInstanceUpdateJobEvent> jobEvents = new ArrayList<>();
+    for (SyncRequest request : batch) {
+      if (request.stepSummary.getPendingRecords().isEmpty()) {
+        request.result.complete(Optional.empty());
+      } else {
+        toPublish.add(request);
+        jobEvents.add(
+            StepInstanceUpdateJobEvent.create(
+                request.instance, request.stepSummary.getPendingRecords()));
+      }
+    }
+    if (toPublish.isEmpty()) {
+      return;
+    }
+    try {
+      List<Optional<Details>> results = jobEventPublisher.publishAll(jobEvents);
+      for (int i = 0; i < toPublish.size(); ++i) {
+        toPublish.get(i).result.complete(results.get(i));
+      }
+    } catch (RuntimeException e) {
+      Optional<Details> error =
+          Optional.of(Details.create(e, true, "Failed to sync a Maestro step state change"));
+      toPublish.forEach(request -> request.result.complete(error));
+    }
+  }
+
+  /** A pending sync request and its result. */
+  @VisibleForTesting
+  static final class SyncRequest {
+    private final StepInstance instance;
+    private final WorkflowSummary workflowSummary;
+    private final StepRuntimeSummary stepSummary;
+    @VisibleForTesting
+    final CompletableFuture<Optional<Details>> result = new CompletableFuture<>();
+
+    @VisibleForTesting
+    SyncRequest(
+        StepInstance instance, WorkflowSummary workflowSummary, StepRuntimeSummary stepSummary) {
+      this.instance = instance;
+      this.workflowSummary = workflowSummary;
+      this.stepSummary = stepSummary;
+    }
+  }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A registry of the waiting maestro tasks keyed by what they are waiting on, e.g. a signal name, a
+ * tag permit, or an action/breakpoint on the step itself. A task blocked in a waiting status
+ * subscribes here after each execution, and the producer of a matching change calls {@link
+ * #wakeUp} to reset the task queue offset so the task is polled immediately instead of after its
+ * callback delay.
+ *
+ * <p>The registry is kept in memory and it is best effort. If a wake up is missed, e.g. the task
+ * is executed by another node, the task is still polled after its callback delay. So waiting
+ * steps can use long callback delays to reduce the polling load. At most maxSubscribedTasks tasks
+ * are tracked and the extra ones are not subscribed.
+ *
+ * <p>A waiting task renews its subscription every time it is executed. Subscriptions not renewed
+ * within the ttl, e.g. the task is finished by another node, are expired and removed when a task
+ * subscribes, so stale tasks cannot fill up the registry. The ttl should be a few times the max
+ * callback delay of the waiting steps.
+ */
+@Slf4j
+public class StepWakeUpRegistry {
+  private static final String KEY_DELIMITER = ":";
+
+  /** Type of the thing that a waiting task subscribes to. */
+  public enum SubscriptionType {
+    /** Signal name of the signal dependencies. */
+    SIGNAL,
+    /** Tag name of the tag permits. */
+    TAG_PERMIT,
+    /** Step identity for the step actions and breakpoints. */
+    STEP
+  }
+
+  private final QueueDAO queueDAO;
+  private final MaestroMetrics metrics;
+  private final int maxSubscribedTasks;
+  private final long subscriptionTtlMillis;
+  private final Map<String, Map<String, String>> subscribers = new HashMap<>();
+  // in the subscribe order, which is also the expiration order as the ttl is fixed
+  private final Map<String, Subscription> subscriptions = new LinkedHashMap<>();
+
+  /** Constructor. */
+  public StepWakeUpRegistry(
+      QueueDAO queueDAO,
+      MaestroMetrics metrics,
+      int maxSubscribedTasks,
+      long subscriptionTtlMillis) {
+    this.queueDAO = queueDAO;
+    this.metrics = metrics;
+    this.maxSubscribedTasks = maxSubscribedTasks;
+    this.subscriptionTtlMillis = subscriptionTtlMillis;
+  }
+
+  /** Get the subscription name of a step instance for the step actions and breakpoints. */
+  public static String stepName(
+      String workflowId, long workflowInstanceId, long workflowRunId, String stepId) {
+    return String.join(
+        KEY_DELIMITER,
+        workflowId,
+        String.valueOf(workflowInstanceId),
+        String.valueOf(workflowRunId),
+        stepId);
+  }
+
+  private static String key(SubscriptionType type, String name) {
+    return type.name() + KEY_DELIMITER + name;
+  }
+
+  /**
+   * Subscribe a task to the given names, which replaces its previous subscriptions.
+   *
+   * @param taskId conductor task id
+   * @param queueName conductor task queue name
+   * @param names the names to subscribe grouped by the subscription type
+   * @return true if subscribed, otherwise false
+   */
+  public synchronized boolean subscribe(
+      String taskId, String queueName, Map<SubscriptionType, Collection<String>> names) {
+    unsubscribe(taskId);
+    long now = System.currentTimeMillis();
+    expire(now);
+    if (subscriptions.size() >= maxSubscribedTasks) {
+      metrics.counter(MetricConstants.STEP_WAKE_UP_REJECTED_METRIC, getClass());
+      return false;
+    }
+    Set<String> keys = new HashSet<>();
+    names.forEach(
+        (type, values) -> {
+          for (String name : values) {
+            String key = key(type, name);
+            keys.add(key);
+            subscribers.computeIfAbsent(key, k -> new HashMap<>()).put(taskId, queueName);
+          }
+        });
+    subscriptions.put(taskId, new Subscription(keys, now + subscriptionTtlMillis));
+    return true;
+  }
+
+  /** Remove the subscriptions not renewed within the ttl, which are at the head of the map. */
+  private void expire(long now) {
+    Iterator<Map.Entry<String, Subscription>> iterator = subscriptions.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Subscription> entry = iterator.next();
+      if (entry.getValue().expireTime > now) {
+        break;
+      }
+      iterator.remove();
+      removeSubscribers(entry.getKey(), entry.getValue().keys);
+      LOG.debug("Expired the stale wake up subscription of task [{}]", entry.getKey());
+      metrics.counter(MetricConstants.STEP_WAKE_UP_EXPIRED_METRIC, getClass());
+    }
+  }
+
+  /** Remove all the subscriptions of a task. */
+  public synchronized void unsubscribe(String taskId) {
+    Subscription subscription = subscriptions.remove(taskId);
+    if (subscription != null) {
+      removeSubscribers(taskId, subscription.keys);
+    }
+  }
+
+  private void removeSubscribers(String taskId, Set<String> keys) {
+    for (String key : keys) {
+      Map<String, String> tasks = subscribers.get(key);
+      if (tasks != null) {
+        tasks.remove(taskId);
+        if (tasks.isEmpty()) {
+          subscribers.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Wake up all the tasks subscribing to the given name. It is best effort and won't throw.
+   *
+   * @param type subscription type
+   * @param name the name to match
+   * @return the number of woken up tasks
+   */
+  public int wakeUp(SubscriptionType type, String name) {
+    Map<String, String> tasks;
+    synchronized (this) {
+      Map<String, String> subscribed = subscribers.get(key(type, name));
+      if (subscribed == null) {
+        return 0;
+      }
+      tasks = new HashMap<>(subscribed);
+    }
+    int count = 0;
+    for (Map.Entry<String, String> entry : tasks.entrySet()) {
+      try {
+        if (queueDAO.resetOffsetTime(entry.getValue(), entry.getKey())) {
+          metrics.counter(
+              MetricConstants.STEP_WAKE_UP_METRIC,
+              getClass(),
+              MetricConstants.TYPE_TAG,
+              type.name());
+          count++;
+        }
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to wake up task [{}] for [{}][{}]", entry.getKey(), type, name, e);
+      }
+    }
+    LOG.debug("Woke up [{}] tasks subscribing to [{}][{}]", count, type, name);
+    return count;
+  }
+
+  /** Get the number of the subscribed tasks. */
+  public synchronized int size() {
+    return subscriptions.size();
+  }
+
+  /** The subscribed keys of a task and when they expire. */
+  private static final class Subscription {
+    private final Set<String> keys;
+    private final long expireTime;
+
+    private Subscription(Set<String> keys, long expireTime) {
+      this.keys = keys;
+      this.expireTime = expireTime;
+    }
+  }
+}
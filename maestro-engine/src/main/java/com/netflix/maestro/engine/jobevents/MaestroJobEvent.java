@@ -53,6 +53,9 @@ public interface MaestroJobEvent {
   @JsonProperty(access = JsonProperty.Access.READ_ONLY)
   Type getType();
 
+  /** Get the workflow id that the event belongs to. */
+  String getWorkflowId();
+
   /** Supported maestro job event types for internal job queue. */
   enum Type {
     /** step instance job event to publish step instance status changes. */
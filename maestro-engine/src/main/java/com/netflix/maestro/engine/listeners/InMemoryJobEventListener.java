@@ -12,57 +12,160 @@
  */
 package com.netflix.maestro.engine.listeners;
 
+import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
 import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.engine.jobevents.RunWorkflowInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
 import com.netflix.maestro.engine.jobevents.TerminateInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.TerminateThenRunInstanceJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.engine.metrics.VirtualThreadPinningMonitor;
 import com.netflix.maestro.engine.processors.DeleteWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.PublishJobEventProcessor;
 import com.netflix.maestro.engine.processors.RunWorkflowInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.StartWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateThenRunInstanceJobProcessor;
+import com.netflix.maestro.engine.properties.JobEventListenerProperties;
+import com.netflix.maestro.engine.publisher.InMemoryJobEventQueue;
+import com.netflix.maestro.utils.Checks;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * In-memory job event listener to process maestro job events in the queue using job processors. It
  * is for the demo purpose, used together with InMemoryMaestroJobEventPublisher.
+ *
+ * <p>A dispatcher thread takes job events from the queue and routes each of them to one of the
+ * worker lanes by the hash of its workflow id. Each lane has its own bounded queue and a single
+ * worker thread, so job events for the same workflow id are processed in order while the ones for
+ * different workflows are processed in parallel. When a lane is full, the dispatcher blocks and
+ * job events are buffered in the queue. The executor service must have at least (lane count + 1)
+ * threads. A job event is acked to the queue after it is processed, no matter if it succeeds.
+ *
+ * <p>In the virtual thread mode, the lanes run on virtual threads so a lane blocked on DB calls
+ * does not hold a platform thread, and the number of job events processed concurrently is limited
+ * by a semaphore, which is usually sized to the DB connection pool.
  */
 @SuppressWarnings({"PMD.DoNotUseThreads"})
 @Slf4j
-@RequiredArgsConstructor
 public class InMemoryJobEventListener {
+  /** Default lane count in the virtual thread mode as lanes are cheap. */
+  public static final int DEFAULT_VIRTUAL_LANE_COUNT = 256;
+
+  private static final long PINNED_THRESHOLD_IN_MILLIS = 20;
+
   private final DeleteWorkflowJobProcessor deleteWorkflowJobProcessor;
   private final RunWorkflowInstancesJobProcessor runWorkflowInstancesJobProcessor;
   private final StartWorkflowJobProcessor startWorkflowJobProcessor;
   private final TerminateInstancesJobProcessor terminateInstancesJobProcessor;
   private final TerminateThenRunInstanceJobProcessor terminateThenRunInstanceJobProcessor;
   private final PublishJobEventProcessor publishJobEventProcessor;
-  private final LinkedBlockingQueue<MaestroJobEvent> queue;
+  private final InMemoryJobEventQueue queue;
   private final ExecutorService executorService;
+  private final MaestroMetrics metrics;
+  private final List<BlockingQueue<MaestroJobEvent>> lanes;
+  private final String executionMode;
+  private final Semaphore permits;
+  private final AtomicInteger inFlight;
+  private final VirtualThreadPinningMonitor pinningMonitor;
+
+  /** Constructor. */
+  public InMemoryJobEventListener(
+      DeleteWorkflowJobProcessor deleteWorkflowJobProcessor,
+      RunWorkflowInstancesJobProcessor runWorkflowInstancesJobProcessor,
+      StartWorkflowJobProcessor startWorkflowJobProcessor,
+      TerminateInstancesJobProcessor terminateInstancesJobProcessor,
+      TerminateThenRunInstanceJobProcessor terminateThenRunInstanceJobProcessor,
+      PublishJobEventProcessor publishJobEventProcessor,
+      InMemoryJobEventQueue queue,
+      ExecutorService executorService,
+      JobEventListenerProperties properties,
+      MaestroMetrics metrics) {
+    this.deleteWorkflowJobProcessor = deleteWorkflowJobProcessor;
+    this.runWorkflowInstancesJobProcessor = runWorkflowInstancesJobProcessor;
+    this.startWorkflowJobProcessor = startWorkflowJobProcessor;
+    this.terminateInstancesJobProcessor = terminateInstancesJobProcessor;
+    this.terminateThenRunInstanceJobProcessor = terminateThenRunInstanceJobProcessor;
+    this.publishJobEventProcessor = publishJobEventProcessor;
+    this.queue = queue;
+    this.executorService = executorService;
+    this.metrics = metrics;
+    int laneCount = getLaneCount(properties);
+    this.lanes = new ArrayList<>(laneCount);
+    for (int i = 0; i < laneCount; ++i) {
+      lanes.add(new ArrayBlockingQueue<>(properties.getLaneCapacity()));
+    }
+    this.inFlight = new AtomicInteger(0);
+    if (isVirtual(properties)) {
+      Checks.checkTrue(
+          properties.getMaxConcurrency() > 0,
+          "Max concurrency [%s] must be positive in the virtual thread mode",
+          properties.getMaxConcurrency());
+      this.executionMode = JobEventListenerProperties.ExecutionMode.VIRTUAL.name();
+      this.permits = new Semaphore(properties.getMaxConcurrency());
+      this.pinningMonitor =
+          new VirtualThreadPinningMonitor(Duration.ofMillis(PINNED_THRESHOLD_IN_MILLIS), metrics);
+    } else {
+      this.executionMode = JobEventListenerProperties.ExecutionMode.PLATFORM.name();
+      this.permits = null;
+      this.pinningMonitor = null;
+    }
+  }
+
+  private static boolean isVirtual(JobEventListenerProperties properties) {
+    return properties.getExecutionMode() == JobEventListenerProperties.ExecutionMode.VIRTUAL;
+  }
+
+  /**
+   * Get the number of worker lanes, which defaults to the number of available cores in the
+   * platform thread mode and {@link #DEFAULT_VIRTUAL_LANE_COUNT} in the virtual thread mode.
+   */
+  public static int getLaneCount(JobEventListenerProperties properties) {
+    if (properties.getLaneCount() > 0) {
+      return properties.getLaneCount();
+    }
+    if (isVirtual(properties)) {
+      return DEFAULT_VIRTUAL_LANE_COUNT;
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /** Create the executor service to run the lanes and the dispatcher based on the mode. */
+  public static ExecutorService createExecutorService(JobEventListenerProperties properties) {
+    if (isVirtual(properties)) {
+      return Executors.newVirtualThreadPerTaskExecutor();
+    }
+    return Executors.newFixedThreadPool(getLaneCount(properties) + 1);
+  }
 
   public void postConstruct() {
-    executorService.execute(
-        () -> {
-          while (true) {
-            try {
-              process(queue.take());
-            } catch (InterruptedException e) {
-              break;
-            } catch (RuntimeException e) {
-              LOG.error("Failed to process a maestro job event and discard it");
-            }
-          }
-        });
+    if (pinningMonitor != null) {
+      pinningMonitor.start();
+    }
+    for (int i = 0; i < lanes.size(); ++i) {
+      final int laneIdx = i;
+      executorService.execute(() -> runLane(laneIdx));
+    }
+    executorService.execute(this::runDispatcher);
   }
 
   public void preDestroy() {
+    if (pinningMonitor != null) {
+      pinningMonitor.stop();
+    }
     executorService.shutdown();
     try {
       if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
@@ -76,6 +179,136 @@ public class InMemoryJobEventListener {
     }
   }
 
+  private void runDispatcher() {
+    while (true) {
+      try {
+        dispatchOrAck(queue.take());
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Dispatch a maestro job event taken from the queue. If it fails, the job event is acked and
+   * discarded, so its journal offset does not stay pending forever.
+   */
+  @VisibleForTesting
+  void dispatchOrAck(MaestroJobEvent maestroJob) throws InterruptedException {
+    try {
+      dispatch(maestroJob);
+    } catch (RuntimeException e) {
+      LOG.error("Failed to dispatch a maestro job event [{}] and discard it", maestroJob, e);
+      queue.ack(maestroJob);
+    }
+  }
+
+  private void runLane(int laneIdx) {
+    BlockingQueue<MaestroJobEvent> lane = lanes.get(laneIdx);
+    while (true) {
+      try {
+        MaestroJobEvent maestroJob = lane.take();
+        acquirePermit();
+        try {
+          processWithMetrics(maestroJob);
+        } finally {
+          releasePermit();
+          queue.ack(maestroJob);
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Route a maestro job event to its worker lane. It blocks if the lane is full.
+   *
+   * @param maestroJob maestro job event to dispatch
+   * @throws InterruptedException if interrupted while waiting for the lane
+   */
+  @VisibleForTesting
+  void dispatch(MaestroJobEvent maestroJob) throws InterruptedException {
+    int laneIdx = getLaneIndex(maestroJob);
+    BlockingQueue<MaestroJobEvent> lane = lanes.get(laneIdx);
+    lane.put(maestroJob);
+    metrics.gauge(
+        MetricConstants.JOB_EVENT_LANE_DEPTH_METRIC,
+        lane.size(),
+        getClass(),
+        MetricConstants.LANE_TAG,
+        String.valueOf(laneIdx));
+  }
+
+  @VisibleForTesting
+  int getLaneIndex(MaestroJobEvent maestroJob) {
+    return Math.floorMod(Objects.hashCode(maestroJob.getWorkflowId()), lanes.size());
+  }
+
+  @VisibleForTesting
+  BlockingQueue<MaestroJobEvent> getLane(int laneIdx) {
+    return lanes.get(laneIdx);
+  }
+
+  /** Acquire a permit in the virtual thread mode and record the time waiting for it. */
+  @VisibleForTesting
+  void acquirePermit() throws InterruptedException {
+    if (permits == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    permits.acquire();
+    metrics.timer(
+        MetricConstants.JOB_EVENT_PERMIT_WAIT_METRIC,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        getClass(),
+        MetricConstants.MODE_TAG,
+        executionMode);
+  }
+
+  @VisibleForTesting
+  void releasePermit() {
+    if (permits != null) {
+      permits.release();
+    }
+  }
+
+  /**
+   * Process a maestro job event and record its latency. It never throws runtime exceptions. A
+   * failed job event is discarded and the caller still acks it.
+   */
+  @VisibleForTesting
+  void processWithMetrics(MaestroJobEvent maestroJob) {
+    long start = System.nanoTime();
+    String status = MetricConstants.STATUS_TAG_VALUE_SUCCESS;
+    recordInFlight(inFlight.incrementAndGet());
+    try {
+      process(maestroJob);
+    } catch (RuntimeException e) {
+      status = MetricConstants.STATUS_TAG_VALUE_FAILURE;
+      LOG.error("Failed to process a maestro job event [{}] and discard it", maestroJob, e);
+    } finally {
+      recordInFlight(inFlight.decrementAndGet());
+    }
+    metrics.timer(
+        MetricConstants.JOB_EVENT_PROCESS_LATENCY_METRIC,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        getClass(),
+        MetricConstants.TYPE_TAG,
+        String.valueOf(maestroJob.getType()),
+        MetricConstants.STATUS_TAG,
+        status);
+  }
+
+  private void recordInFlight(int count) {
+    metrics.gauge(
+        MetricConstants.JOB_EVENT_IN_FLIGHT_METRIC,
+        count,
+        getClass(),
+        MetricConstants.MODE_TAG,
+        executionMode);
+  }
+
   /**
    * Process a maestro job event locally for the demo purpose.
    *
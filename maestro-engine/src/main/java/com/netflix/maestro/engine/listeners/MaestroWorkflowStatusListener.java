@@ -88,6 +88,8 @@ public class MaestroWorkflowStatusListener implements WorkflowStatusListener {
 
   @Override
   public void onWorkflowFinalized(Workflow workflow) {
+    maestroTask.invalidateDefinitionCache(workflow.getWorkflowId());
+    maestroTask.unsubscribeWakeUps(workflow);
     WorkflowSummary summary = StepHelper.retrieveWorkflowSummary(objectMapper, workflow.getInput());
     WorkflowRuntimeSummary runtimeSummary = retrieveWorkflowRuntimeSummary(workflow);
     String reason = workflow.getReasonForIncompletion();
@@ -85,6 +85,102 @@ public class MetricConstants {
   /** Metrics runstrategy stopped instances. */
   public static final String RUNSTRATEGY_STOPPED_INSTANCES_METRIC = "runstrategy.stopped.instances";
 
+  /** Metrics runstrategy reserved instance id blocks. */
+  public static final String RUNSTRATEGY_INSTANCE_ID_BLOCK_RESERVED_METRIC =
+      "runstrategy.instance.id.block.reserved";
+
   /** Metrics jobevents publish failures. */
   public static final String JOB_EVENT_PUBLISH_FAILURE_METRIC = "jobevent.publish.failure";
+
+  /** Metrics for the number of pending job events in a listener lane. */
+  public static final String JOB_EVENT_LANE_DEPTH_METRIC = "jobevent.listener.lane.depth";
+
+  /** Metrics for the job event processing latency in the listener. */
+  public static final String JOB_EVENT_PROCESS_LATENCY_METRIC = "jobevent.listener.process.latency";
+
+  /** Tag for the job event listener lane index. */
+  public static final String LANE_TAG = "lane";
+
+  /** Metrics for the number of delayed job events parked in the publisher. */
+  public static final String JOB_EVENT_DELAYED_COUNT_METRIC = "jobevent.publisher.delayed.count";
+
+  /** Metrics for the lag between the visible time and the release time of a job event. */
+  public static final String JOB_EVENT_RELEASE_LAG_METRIC = "jobevent.publisher.release.lag";
+
+  /** Metrics for the number of job events dispatched from the outbox in a batch. */
+  public static final String JOB_EVENT_OUTBOX_DISPATCH_BATCH_METRIC =
+      "jobevent.outbox.dispatch.batch";
+
+  /** Metrics for the number of job events merged into a pending one. */
+  public static final String JOB_EVENT_COALESCED_METRIC = "jobevent.publisher.coalesced";
+
+  /** Metrics for the number of job events in the in-memory job event queue. */
+  public static final String JOB_EVENT_QUEUE_DEPTH_METRIC = "jobevent.queue.depth";
+
+  /** Metrics for the number of job events rejected by the in-memory job event queue. */
+  public static final String JOB_EVENT_QUEUE_REJECTION_METRIC = "jobevent.queue.rejection";
+
+  /** Metrics for the number of job events admitted after being throttled for the max time. */
+  public static final String JOB_EVENT_QUEUE_THROTTLED_METRIC = "jobevent.queue.throttled";
+
+  /** Metrics for the time a job event spent in the in-memory job event queue. */
+  public static final String JOB_EVENT_QUEUED_TIME_METRIC = "jobevent.queue.queued.time";
+
+  /** Metrics for the number of job events being processed by the listener. */
+  public static final String JOB_EVENT_IN_FLIGHT_METRIC = "jobevent.listener.inflight";
+
+  /** Metrics for the time waiting for a permit to process a job event in the listener. */
+  public static final String JOB_EVENT_PERMIT_WAIT_METRIC = "jobevent.listener.permit.wait";
+
+  /** Metrics for the number of the pinned virtual thread events. */
+  public static final String VIRTUAL_THREAD_PINNED_METRIC =
+      "jobevent.listener.virtualthread.pinned";
+
+  /** Metrics for the number of parsed definitions served from the execution definition cache. */
+  public static final String DEFINITION_CACHE_HIT_METRIC = "task.definition.cache.hit";
+
+  /** Metrics for the number of parsed definitions missing in the execution definition cache. */
+  public static final String DEFINITION_CACHE_MISS_METRIC = "task.definition.cache.miss";
+
+  /** Metrics for the number of reads served from the workflow definition cache. */
+  public static final String WORKFLOW_DEFINITION_CACHE_HIT_METRIC =
+      "workflow.definition.cache.hit";
+
+  /** Metrics for the number of reads missing in the workflow definition cache. */
+  public static final String WORKFLOW_DEFINITION_CACHE_MISS_METRIC =
+      "workflow.definition.cache.miss";
+
+  /** Metrics for the number of waiting tasks woken up by the step wake up registry. */
+  public static final String STEP_WAKE_UP_METRIC = "step.wakeup.registry.wakeup";
+
+  /** Metrics for the number of subscriptions rejected as the step wake up registry is full. */
+  public static final String STEP_WAKE_UP_REJECTED_METRIC = "step.wakeup.registry.rejected";
+
+  /** Metrics for the number of stale subscriptions expired by the step wake up registry. */
+  public static final String STEP_WAKE_UP_EXPIRED_METRIC = "step.wakeup.registry.expired";
+
+  /** Metrics for the number of partition rebalances due to the cluster membership changes. */
+  public static final String WORKFLOW_OWNERSHIP_REBALANCE_METRIC = "workflow.ownership.rebalance";
+
+  /** Metrics for the number of workflow reads served from the execution cache. */
+  public static final String EXECUTION_CACHE_HIT_METRIC = "execution.cache.hit";
+
+  /** Metrics for the number of workflow reads missing in the execution cache. */
+  public static final String EXECUTION_CACHE_MISS_METRIC = "execution.cache.miss";
+
+  /** Metrics for the number of workflow reads with stale entries in the execution cache. */
+  public static final String EXECUTION_CACHE_STALE_METRIC = "execution.cache.stale";
+
+  /** Metrics for the number of tasks written in a single batch task update. */
+  public static final String EXECUTION_TASK_UPDATE_BATCH_SIZE_METRIC =
+      "execution.task.update.batch.size";
+
+  /** Metrics for the number of workflow instances moved to the archive in a batch. */
+  public static final String INSTANCE_ARCHIVE_BATCH_METRIC = "instance.archive.batch";
+
+  /** Metrics for the number of failed archiving rounds. */
+  public static final String INSTANCE_ARCHIVE_FAILURE_METRIC = "instance.archive.failure";
+
+  /** Tag for the thread execution mode. */
+  public static final String MODE_TAG = "mode";
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.metrics;
+
+import java.time.Duration;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Monitor to count the virtual thread pinning events, which are reported by JFR when a virtual
+ * thread blocks while pinned to its carrier thread, e.g. within a synchronized block.
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  private final Duration threshold;
+  private final MaestroMetrics metrics;
+  private RecordingStream stream;
+
+  /** Constructor. */
+  public VirtualThreadPinningMonitor(Duration threshold, MaestroMetrics metrics) {
+    this.threshold = threshold;
+    this.metrics = metrics;
+  }
+
+  /** Start to stream the pinning events in the background. */
+  public synchronized void start() {
+    if (stream != null) {
+      return;
+    }
+    stream = new RecordingStream();
+    stream.enable(PINNED_EVENT).withThreshold(threshold);
+    stream.onEvent(
+        PINNED_EVENT,
+        event -> {
+          LOG.debug("Virtual thread is pinned for [{}]", event.getDuration());
+          metrics.counter(MetricConstants.VIRTUAL_THREAD_PINNED_METRIC, getClass());
+        });
+    stream.startAsync();
+    LOG.info("Started to monitor virtual thread pinning events over [{}]", threshold);
+  }
+
+  /** Stop streaming the pinning events. */
+  public synchronized void stop() {
+    if (stream != null) {
+      stream.close();
+      stream = null;
+    }
+  }
+}
@@ -13,6 +13,7 @@
 package com.netflix.maestro.engine.processors;
 
 import com.netflix.maestro.engine.dao.MaestroWorkflowDeletionDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
 import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
 import com.netflix.maestro.engine.publisher.MaestroNotificationPublisher;
 import com.netflix.maestro.exceptions.MaestroNotFoundException;
@@ -37,12 +38,14 @@ public class DeleteWorkflowJobProcessor implements MaestroEventProcessor<DeleteW
 
   private final MaestroWorkflowDeletionDao deletionDao;
   private final MaestroNotificationPublisher eventClient;
+  private final WorkflowDefinitionCache workflowDefinitionCache;
   private final String clusterName;
 
   @Override
   public void process(Supplier<DeleteWorkflowJobEvent> messageSupplier) {
     try {
       DeleteWorkflowJobEvent deletionEvent = messageSupplier.get();
+      workflowDefinitionCache.invalidate(deletionEvent.getWorkflowId());
       if (deletionDao.isDeletionInitialized(
           deletionEvent.getWorkflowId(), deletionEvent.getInternalId())) {
         MaestroEvent event = deletionEvent.toMaestroEvent(clusterName);
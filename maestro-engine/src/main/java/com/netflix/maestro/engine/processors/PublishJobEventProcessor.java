@@ -15,6 +15,8 @@ package com.netflix.maestro.engine.processors;
 import com.netflix.maestro.engine.concurrency.InstanceStepConcurrencyHandler;
 import com.netflix.maestro.engine.concurrency.TagPermitManager;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceActionDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.engine.jobevents.StepInstanceUpdateJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowInstanceUpdateJobEvent;
@@ -24,6 +26,7 @@ import com.netflix.maestro.engine.utils.WorkflowHelper;
 import com.netflix.maestro.exceptions.MaestroInternalError;
 import com.netflix.maestro.models.events.MaestroEvent;
 import com.netflix.maestro.models.events.StepInstanceStatusChangeEvent;
+import java.util.List;
 import java.util.function.Supplier;
 import lombok.AllArgsConstructor;
 
@@ -36,6 +39,8 @@ public class PublishJobEventProcessor implements MaestroEventProcessor<MaestroJo
   private final MaestroStepInstanceActionDao actionDao;
 
   private final InstanceStepConcurrencyHandler instanceStepConcurrencyHandler;
+  private final StepWakeUpRegistry wakeUpRegistry;
+  private final WorkflowDefinitionCache workflowDefinitionCache;
 
   private final String clusterName;
 
@@ -61,7 +66,10 @@ public class PublishJobEventProcessor implements MaestroEventProcessor<MaestroJo
   private void processStepInstanceUpdateJobEvent(StepInstanceUpdateJobEvent jobEvent) {
     if (jobEvent.hasTerminal()) {
       // Once reaching a terminal state, release tag permits held by this step.
-      tagPermitManager.releaseTagPermits(jobEvent.getStepUuid());
+      List<String> releasedTags = tagPermitManager.releaseTagPermits(jobEvent.getStepUuid());
+      // wake up the steps waiting for the released tag permits
+      releasedTags.forEach(
+          tag -> wakeUpRegistry.wakeUp(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, tag));
       actionDao.cleanUp(jobEvent); // clean up its step action
       // unregister the step from instance_step_concurrency step uuid set
       instanceStepConcurrencyHandler.unregisterStep(
@@ -105,6 +113,7 @@ public class PublishJobEventProcessor implements MaestroEventProcessor<MaestroJo
   }
 
   private void processWorkflowVersionJobEvent(WorkflowVersionUpdateJobEvent jobEvent) {
+    workflowDefinitionCache.invalidate(jobEvent.getWorkflowId());
     workflowHelper.publishStartWorkflowEvent(jobEvent.getWorkflowId(), true);
 
     MaestroEvent changeEvent = jobEvent.toMaestroEvent(clusterName);
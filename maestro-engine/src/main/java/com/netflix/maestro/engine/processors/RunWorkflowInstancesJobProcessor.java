@@ -13,12 +13,19 @@
 package com.netflix.maestro.engine.processors;
 
 import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
+import com.netflix.maestro.engine.db.InstanceRunRecord;
+import com.netflix.maestro.engine.db.InstanceRunUuid;
 import com.netflix.maestro.engine.handlers.WorkflowRunner;
 import com.netflix.maestro.engine.jobevents.RunWorkflowInstancesJobEvent;
 import com.netflix.maestro.exceptions.MaestroInternalError;
-import com.netflix.maestro.exceptions.MaestroNotFoundException;
 import com.netflix.maestro.exceptions.MaestroRetryableError;
 import com.netflix.maestro.models.instance.WorkflowInstance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +33,11 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Processor to consume {@link RunWorkflowInstancesJobEvent} and kick off conductor workflow
  * instances for all trigger cases. All workflow instances are launched by this processor.
+ *
+ * <p>All the workflow instance runs in a job event are loaded together with their uuid execution
+ * status in a single query and then the launchable ones are started concurrently using the given
+ * executor. If any of them fails, the whole job event is retried and the already launched ones are
+ * skipped by the uuid dedup check.
  */
 @Slf4j
 @AllArgsConstructor
@@ -33,71 +45,89 @@ public class RunWorkflowInstancesJobProcessor
     implements MaestroEventProcessor<RunWorkflowInstancesJobEvent> {
   private final MaestroWorkflowInstanceDao instanceDao;
   private final WorkflowRunner workflowRunner;
+  private final ExecutorService executorService;
 
-  @SuppressWarnings({"PMD.AvoidCatchingNPE"})
   @Override
   public void process(Supplier<RunWorkflowInstancesJobEvent> runWorkflowInstancesJobEventSupplier) {
     RunWorkflowInstancesJobEvent jobEvent = runWorkflowInstancesJobEventSupplier.get();
     String workflowId = jobEvent.getWorkflowId();
-    jobEvent
-        .getInstanceRunUuids()
-        .forEach(
-            instanceRunUuid -> {
-              try {
-                WorkflowInstance instance =
-                    instanceDao.getWorkflowInstanceRun(
-                        workflowId, instanceRunUuid.getInstanceId(), instanceRunUuid.getRunId());
-                if (instance.getStatus() == WorkflowInstance.Status.CREATED) {
-                  if (instanceRunUuid.getUuid().equals(instance.getWorkflowUuid())) {
-                    if (!instanceDao.existWorkflowWithSameUuid(instanceRunUuid.getUuid())) {
-                      String executionId = runWorkflowInstance(instance);
-                      LOG.info(
-                          "Run a workflow instance {} with an internal execution_id [{}]",
-                          instance.getIdentity(),
-                          executionId);
-                    } else {
-                      LOG.warn(
-                          "Workflow instance [{}][{}] has already been executed. Skip it for dedup",
-                          workflowId,
-                          instanceRunUuid);
-                    }
-                  } else {
-                    LOG.warn(
-                        "Workflow instance: [{}][{}] in job event does not match DB row uuid [{}] and skip it",
-                        workflowId,
-                        instanceRunUuid,
-                        instance.getWorkflowUuid());
-                  }
-                } else {
-                  LOG.info(
-                      "workflow instance: [{}][{}] is not in created (i.e. queued) state and skip it",
-                      workflowId,
-                      instanceRunUuid);
-                }
-              } catch (MaestroNotFoundException e) {
-                // this is the case that DB is rollback but msg is sent.
-                LOG.warn(
-                    "Not found workflow instance: [{}][{}] and skip it in job listener",
-                    workflowId,
-                    instanceRunUuid);
-              } catch (NullPointerException e) {
-                // not retryable
-                LOG.error(
-                    "Cannot retry if there is a NullPointerException for workflow {}", workflowId);
-                throw new MaestroInternalError(e, "Something is null");
-              } catch (RuntimeException e) {
-                LOG.error("Retry it as getting a runtime error", e);
-                throw new MaestroRetryableError(
-                    e, "Failed to run a workflow and will retry to run it.");
-              }
-            });
+    try {
+      Map<InstanceRunUuid, InstanceRunRecord> records =
+          instanceDao.getWorkflowInstanceRunsWithExecuted(
+              workflowId, jobEvent.getInstanceRunUuids());
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (InstanceRunUuid instanceRunUuid : jobEvent.getInstanceRunUuids()) {
+        InstanceRunRecord record = records.get(instanceRunUuid);
+        if (isLaunchable(workflowId, instanceRunUuid, record)) {
+          futures.add(
+              CompletableFuture.runAsync(
+                  () -> runWorkflowInstance(record.getInstance()), executorService));
+        }
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      throw handleError(workflowId, e.getCause() == null ? e : e.getCause());
+    } catch (RuntimeException e) {
+      throw handleError(workflowId, e);
+    }
+  }
+
+  private boolean isLaunchable(
+      String workflowId, InstanceRunUuid instanceRunUuid, InstanceRunRecord record) {
+    if (record == null) {
+      // this is the case that DB is rollback but msg is sent.
+      LOG.warn(
+          "Not found workflow instance: [{}][{}] and skip it in job listener",
+          workflowId,
+          instanceRunUuid);
+      return false;
+    }
+    WorkflowInstance instance = record.getInstance();
+    if (instance.getStatus() != WorkflowInstance.Status.CREATED) {
+      LOG.info(
+          "workflow instance: [{}][{}] is not in created (i.e. queued) state and skip it",
+          workflowId,
+          instanceRunUuid);
+      return false;
+    }
+    if (!instanceRunUuid.getUuid().equals(instance.getWorkflowUuid())) {
+      LOG.warn(
+          "Workflow instance: [{}][{}] in job event does not match DB row uuid [{}] and skip it",
+          workflowId,
+          instanceRunUuid,
+          instance.getWorkflowUuid());
+      return false;
+    }
+    if (record.isExecuted()) {
+      LOG.warn(
+          "Workflow instance [{}][{}] has already been executed. Skip it for dedup",
+          workflowId,
+          instanceRunUuid);
+      return false;
+    }
+    return true;
+  }
+
+  private RuntimeException handleError(String workflowId, Throwable e) {
+    if (e instanceof NullPointerException) {
+      // not retryable
+      LOG.error("Cannot retry if there is a NullPointerException for workflow {}", workflowId);
+      return new MaestroInternalError(e, "Something is null");
+    }
+    LOG.error("Retry it as getting a runtime error", e);
+    return new MaestroRetryableError(e, "Failed to run a workflow and will retry to run it.");
   }
 
-  private String runWorkflowInstance(WorkflowInstance instance) {
+  private void runWorkflowInstance(WorkflowInstance instance) {
+    String executionId;
     if (instance.isFreshRun()) {
-      return workflowRunner.start(instance);
+      executionId = workflowRunner.start(instance);
     } else {
-      return workflowRunner.restart(instance);
+      executionId = workflowRunner.restart(instance);
     }
+    LOG.info(
+        "Run a workflow instance {} with an internal execution_id [{}]",
+        instance.getIdentity(),
+        executionId);
   }
 }
@@ -16,6 +16,7 @@ import com.netflix.conductor.core.execution.ApplicationException;
 import com.netflix.conductor.core.execution.MaestroWorkflowExecutor;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.jobevents.StepInstanceWakeUpEvent;
 import com.netflix.maestro.exceptions.MaestroRetryableError;
 import com.netflix.maestro.models.artifact.Artifact;
@@ -40,6 +41,7 @@ public class StepInstanceWakeUpEventProcessor
   private final MaestroWorkflowExecutor workflowExecutor;
   private final MaestroStepInstanceDao stepInstanceDao;
   private final MaestroWorkflowInstanceDao workflowInstanceDao;
+  private final StepWakeUpRegistry wakeUpRegistry;
 
   /**
    * Get the event and process.
@@ -61,6 +63,17 @@ public class StepInstanceWakeUpEventProcessor
    * user action is requested on a step, especially the nested step like foreach and subworkflow.
    */
   private void processForStepEntity(StepInstanceWakeUpEvent jobEvent) {
+    // wake up the step if it is blocked in a waiting status, e.g. waiting for signals.
+    if (jobEvent.getStepId() != null) {
+      wakeUpRegistry.wakeUp(
+          StepWakeUpRegistry.SubscriptionType.STEP,
+          StepWakeUpRegistry.stepName(
+              jobEvent.getWorkflowId(),
+              jobEvent.getWorkflowInstanceId(),
+              jobEvent.getWorkflowRunId(),
+              jobEvent.getStepId()));
+    }
+
     // handle the simple leaf step case.
     if (jobEvent.getStepType() != null && jobEvent.getStepType().isLeaf()) {
       if (jobEvent.getStepStatus() != null
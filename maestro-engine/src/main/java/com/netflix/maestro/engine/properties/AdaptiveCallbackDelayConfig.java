@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * StepRuntime adaptive callback Properties. Please check {@link
+ * com.netflix.maestro.engine.execution.StepRuntimeAdaptiveCallbackDelayPolicy} about how they are
+ * used.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@Builder
+public class AdaptiveCallbackDelayConfig {
+  /** Flag to use the adaptive callback delay policy. */
+  private final boolean enabled;
+
+  /** Min number of observed step durations before adapting the callback delay of a step. */
+  private final int minSamples;
+
+  /** Max number of tracked workflow steps. New steps beyond it use the fixed callback delay. */
+  private final int maxTrackedSteps;
+
+  /** Quantile of the observed durations to start the dense polling, e.g. 0.1. */
+  private final double lowerQuantile;
+
+  /** Quantile of the observed durations to end the dense polling, e.g. 0.9. */
+  private final double upperQuantile;
+
+  /** Ratio of the overdue time used as the callback delay after the dense polling window. */
+  private final double backoffFactor;
+
+  /** Max callback delay in seconds. */
+  private final long maxCallbackDelayInSecs;
+}
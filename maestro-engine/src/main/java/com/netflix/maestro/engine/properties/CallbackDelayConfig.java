@@ -19,11 +19,12 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
 
-/** StepRuntime fixed callback Properties. */
+/** StepRuntime callback Properties. */
 @Getter
 @AllArgsConstructor
 @ToString
 @Builder
 public class CallbackDelayConfig {
   private Map<StepInstance.Status, Map<String, Long>> fixedCallbackDelayInSecs;
+  private AdaptiveCallbackDelayConfig adaptiveCallbackDelay;
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Local job event journal properties for the in-memory mode. Please check {@link
+ * com.netflix.maestro.engine.publisher.JobEventJournal} about how they are used.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@Builder
+public class JobEventJournalProperties {
+  /** Flag to enable the journal. */
+  private final boolean enabled;
+
+  /** Directory to keep the journal segment files and the checkpoint file. */
+  private final String directory;
+
+  /** Size of each memory-mapped segment file in bytes. A new segment is rolled once it is full. */
+  private final int segmentSizeBytes;
+
+  /** Number of fully consumed segments to keep before deleting them during compaction. */
+  private final int retainedSegments;
+
+  /** Flag to force the appended bytes to the storage device for each append. */
+  private final boolean syncOnAppend;
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.properties;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * In-memory job event listener properties. Please check {@link
+ * com.netflix.maestro.engine.listeners.InMemoryJobEventListener} about how they are used.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@Builder(toBuilder = true)
+public class JobEventListenerProperties {
+  /** Number of worker lanes. If it is not positive, the number of available cores is used. */
+  private final int laneCount;
+
+  /** Max number of pending job events in each lane. */
+  private final int laneCapacity;
+
+  /** Thread type to run the lanes. If it is null, platform threads are used. */
+  private final ExecutionMode executionMode;
+
+  /**
+   * Max number of job events processed concurrently in the virtual thread mode. If it is not
+   * positive, the size of the DB connection pool is used.
+   */
+  private final int maxConcurrency;
+
+  /** Thread type to run the listener lanes. */
+  public enum ExecutionMode {
+    /** each lane runs on a platform thread from a fixed thread pool. */
+    PLATFORM,
+    /** each lane runs on a virtual thread and the concurrency is limited by a semaphore. */
+    VIRTUAL
+  }
+}
@@ -14,6 +14,7 @@ package com.netflix.maestro.engine.properties;
 
 import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
 import com.netflix.conductor.core.config.SystemPropertiesConfiguration;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /** Maestro Conductor configuration properties. */
@@ -29,6 +30,32 @@ public class MaestroConductorProperties extends SystemPropertiesConfiguration
       "max.task.update.interval.ms";
   private static final long MAX_TASK_UPDATE_INTERVAL_DEFAULT_VALUE = TimeUnit.MINUTES.toMillis(2);
 
+  private static final String JOB_EVENT_OUTBOX_ENABLED_PROPERTY_NAME = "job.event.outbox.enabled";
+  private static final boolean JOB_EVENT_OUTBOX_ENABLED_DEFAULT_VALUE = false;
+  private static final String JOB_EVENT_OUTBOX_BATCH_SIZE_PROPERTY_NAME =
+      "job.event.outbox.batch.size";
+  private static final int JOB_EVENT_OUTBOX_BATCH_SIZE_DEFAULT_VALUE = 100;
+  private static final String JOB_EVENT_OUTBOX_POLL_INTERVAL_PROPERTY_NAME =
+      "job.event.outbox.poll.interval.ms";
+  private static final long JOB_EVENT_OUTBOX_POLL_INTERVAL_DEFAULT_VALUE = 1000;
+  private static final String JOB_EVENT_OUTBOX_LEASE_PROPERTY_NAME = "job.event.outbox.lease.ms";
+  private static final long JOB_EVENT_OUTBOX_LEASE_DEFAULT_VALUE = TimeUnit.MINUTES.toMillis(1);
+
+  private static final String EXECUTION_CACHE_MAX_WORKFLOWS_PROPERTY_NAME =
+      "execution.cache.max.workflows";
+  private static final int EXECUTION_CACHE_MAX_WORKFLOWS_DEFAULT_VALUE = 0;
+
+  /**
+   * If enabled, the workflow and step instance tables use the hash-sharded layout, i.e. the keys
+   * lead with a shard bucket computed from the workflow instance id after the workflow id.
+   */
+  public static final String INSTANCE_SHARDING_ENABLED_PROPERTY_NAME = "instance.sharding.enabled";
+
+  public static final boolean INSTANCE_SHARDING_ENABLED_DEFAULT_VALUE = false;
+
+  /** Flyway location of the migration to switch the instance tables to the sharded layout. */
+  public static final String INSTANCE_SHARDING_MIGRATION_LOCATION = "db/migration-sharded";
+
   public boolean isCompressionEnabled() {
     return getBooleanProperty(COMPRESSION_ENABLED_PROPERTY_NAME, COMPRESSION_DEFAULT_VALUE);
   }
@@ -41,4 +68,56 @@ public class MaestroConductorProperties extends SystemPropertiesConfiguration
     return getLongProperty(
         MAX_TASK_UPDATE_INTERVAL_PROPERTY_NAME, MAX_TASK_UPDATE_INTERVAL_DEFAULT_VALUE);
   }
+
+  public boolean isJobEventOutboxEnabled() {
+    return getBooleanProperty(
+        JOB_EVENT_OUTBOX_ENABLED_PROPERTY_NAME, JOB_EVENT_OUTBOX_ENABLED_DEFAULT_VALUE);
+  }
+
+  public int getJobEventOutboxBatchSize() {
+    return getIntProperty(
+        JOB_EVENT_OUTBOX_BATCH_SIZE_PROPERTY_NAME, JOB_EVENT_OUTBOX_BATCH_SIZE_DEFAULT_VALUE);
+  }
+
+  public long getJobEventOutboxPollIntervalInMillis() {
+    return getLongProperty(
+        JOB_EVENT_OUTBOX_POLL_INTERVAL_PROPERTY_NAME, JOB_EVENT_OUTBOX_POLL_INTERVAL_DEFAULT_VALUE);
+  }
+
+  public long getJobEventOutboxLeaseInMillis() {
+    return getLongProperty(
+        JOB_EVENT_OUTBOX_LEASE_PROPERTY_NAME, JOB_EVENT_OUTBOX_LEASE_DEFAULT_VALUE);
+  }
+
+  public int getExecutionCacheMaxWorkflows() {
+    return getIntProperty(
+        EXECUTION_CACHE_MAX_WORKFLOWS_PROPERTY_NAME, EXECUTION_CACHE_MAX_WORKFLOWS_DEFAULT_VALUE);
+  }
+
+  public boolean isInstanceShardingEnabled() {
+    return getBooleanProperty(
+        INSTANCE_SHARDING_ENABLED_PROPERTY_NAME, INSTANCE_SHARDING_ENABLED_DEFAULT_VALUE);
+  }
+
+  /** Add the sharded layout migration if the instance sharding is enabled. */
+  @Override
+  public String[] getFlywayLocations() {
+    String[] locations = CockroachDBConfiguration.super.getFlywayLocations();
+    if (!isInstanceShardingEnabled()
+        || Arrays.asList(locations).contains(INSTANCE_SHARDING_MIGRATION_LOCATION)) {
+      return locations;
+    }
+    String[] withSharding = Arrays.copyOf(locations, locations.length + 1);
+    withSharding[locations.length] = INSTANCE_SHARDING_MIGRATION_LOCATION;
+    return withSharding;
+  }
+
+  /**
+   * Allow out of order migrations if the instance sharding is enabled, as the sharded layout
+   * migration is usually enabled after the newer migrations in the default location are applied.
+   */
+  @Override
+  public boolean isFlywayOutOfOrder() {
+    return isInstanceShardingEnabled() || CockroachDBConfiguration.super.isFlywayOutOfOrder();
+  }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.exceptions.MaestroRetryableError;
+import com.netflix.maestro.models.error.Details;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory job event queue shared by InMemoryMaestroJobEventPublisher and
+ * InMemoryJobEventListener with a priority-aware admission control in front of it.
+ *
+ * <p>Critical job events (start, wake up, run instances and termination events) are always
+ * admitted, as some of them are not resent if rejected, e.g. the start workflow job event sent
+ * after an instance ends. Status change events, which are sent after the DB change is committed
+ * and make up most of the volume, are throttled instead of rejected. Once the queue depth reaches
+ * the capacity, the producer is blocked until the depth falls below the capacity or the max block
+ * time is reached, so the producers are slowed down to bound the depth. Normal job events are
+ * rejected with a retryable error once the queue depth reaches the capacity, and low priority job
+ * events (workflow version update notifications) are shed first once the depth reaches the low
+ * priority capacity.
+ *
+ * <p>If a {@link JobEventJournal} is provided, every job event is appended to the journal before
+ * being added to the queue and acked once the listener finishes processing it, so the queued job
+ * events can be replayed after a restart.
+ */
+@Slf4j
+public class InMemoryJobEventQueue {
+  /** Admission priority of a job event. */
+  @VisibleForTesting
+  enum Priority {
+    /** always admitted. */
+    CRITICAL,
+    /** admitted after waiting up to the max block time if the depth is at the capacity. */
+    THROTTLED,
+    /** admitted if the depth is below the capacity. */
+    NORMAL,
+    /** admitted if the depth is below the low priority capacity. */
+    LOW
+  }
+
+  /** Offset for the job events not in the journal. */
+  public static final long NO_OFFSET = -1;
+
+  private final LinkedBlockingQueue<QueuedJobEvent> queue;
+  private final int capacity;
+  private final int lowPriorityCapacity;
+  private final long maxBlockMs;
+  private final Object notFull;
+  private final AtomicInteger blockedProducers;
+  private final JobEventJournal journal;
+  private final Map<MaestroJobEvent, Deque<Long>> inFlightOffsets;
+  private final MaestroMetrics metrics;
+
+  /** Constructor without a journal. */
+  public InMemoryJobEventQueue(
+      int capacity, int lowPriorityCapacity, long maxBlockMs, MaestroMetrics metrics) {
+    this(capacity, lowPriorityCapacity, maxBlockMs, null, metrics);
+  }
+
+  /** Constructor. The journal is nullable. */
+  public InMemoryJobEventQueue(
+      int capacity,
+      int lowPriorityCapacity,
+      long maxBlockMs,
+      JobEventJournal journal,
+      MaestroMetrics metrics) {
+    this.queue = new LinkedBlockingQueue<>();
+    this.capacity = capacity;
+    this.lowPriorityCapacity = Math.min(capacity, lowPriorityCapacity);
+    this.maxBlockMs = maxBlockMs;
+    this.notFull = new Object();
+    this.blockedProducers = new AtomicInteger(0);
+    this.journal = journal;
+    this.inFlightOffsets = new IdentityHashMap<>();
+    this.metrics = metrics;
+  }
+
+  @VisibleForTesting
+  static Priority getPriority(MaestroJobEvent.Type type) {
+    switch (type) {
+      case START_WORKFLOW_JOB_EVENT:
+      case STEP_INSTANCE_WAKE_UP_JOB_EVENT:
+      case RUN_WORKFLOW_INSTANCES_JOB_EVENT:
+      case TERMINATE_INSTANCES_JOB_EVENT:
+      case TERMINATE_THEN_RUN_JOB_EVENT:
+        return Priority.CRITICAL;
+      case STEP_INSTANCE_UPDATE_JOB_EVENT:
+      case WORKFLOW_INSTANCE_UPDATE_JOB_EVENT:
+        return Priority.THROTTLED;
+      case WORKFLOW_VERSION_UPDATE_JOB_EVENT:
+        return Priority.LOW;
+      default:
+        return Priority.NORMAL;
+    }
+  }
+
+  /**
+   * Admit a job event into the queue based on its priority and the current queue depth.
+   *
+   * @param jobEvent job event to add
+   * @return retryable error details if rejected, otherwise empty.
+   */
+  public Optional<Details> offer(MaestroJobEvent jobEvent) {
+    Priority priority = getPriority(jobEvent.getType());
+    if (priority == Priority.THROTTLED) {
+      awaitNotFull(jobEvent);
+    }
+    Optional<Details> rejection = checkAdmission(jobEvent, priority, queue.size());
+    if (rejection.isPresent()) {
+      return rejection;
+    }
+    put(jobEvent);
+    return Optional.empty();
+  }
+
+  /**
+   * Admit a batch of job events into the queue. The producer is blocked at most once for the
+   * whole batch and the admitted job events are appended to the journal together.
+   *
+   * @param jobEvents job events to add
+   * @return the admission result of each job event in the same order
+   */
+  public List<Optional<Details>> offerAll(List<? extends MaestroJobEvent> jobEvents) {
+    for (MaestroJobEvent jobEvent : jobEvents) {
+      if (getPriority(jobEvent.getType()) == Priority.THROTTLED) {
+        awaitNotFull(jobEvent);
+        break;
+      }
+    }
+    List<Optional<Details>> results = new ArrayList<>(jobEvents.size());
+    List<MaestroJobEvent> admitted = new ArrayList<>(jobEvents.size());
+    int depth = queue.size();
+    for (MaestroJobEvent jobEvent : jobEvents) {
+      Optional<Details> rejection =
+          checkAdmission(jobEvent, getPriority(jobEvent.getType()), depth + admitted.size());
+      if (rejection.isEmpty()) {
+        admitted.add(jobEvent);
+      }
+      results.add(rejection);
+    }
+    long[] offsets = journal == null ? null : journal.appendAll(admitted, 0);
+    long enqueueNanos = System.nanoTime();
+    for (int i = 0; i < admitted.size(); ++i) {
+      queue.add(
+          new QueuedJobEvent(
+              admitted.get(i), enqueueNanos, offsets == null ? NO_OFFSET : offsets[i]));
+    }
+    metrics.gauge(MetricConstants.JOB_EVENT_QUEUE_DEPTH_METRIC, queue.size(), getClass());
+    return results;
+  }
+
+  /** Check if a job event with the given priority can be admitted at the given queue depth. */
+  private Optional<Details> checkAdmission(MaestroJobEvent jobEvent, Priority priority, int depth) {
+    if ((priority == Priority.NORMAL && depth >= capacity)
+        || (priority == Priority.LOW && depth >= lowPriorityCapacity)) {
+      LOG.warn(
+          "Reject a [{}] priority maestro job event [{}] as the queue depth is [{}]",
+          priority,
+          jobEvent,
+          depth);
+      metrics.counter(
+          MetricConstants.JOB_EVENT_QUEUE_REJECTION_METRIC,
+          getClass(),
+          MetricConstants.TYPE_TAG,
+          jobEvent.getType().name());
+      return Optional.of(
+          Details.create(
+              new MaestroRetryableError(
+                  "The job event queue depth [%s] is over the limit for [%s] priority",
+                  depth, priority),
+              true,
+              "Failed to admit a Maestro job event, please retry it later"));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Block the producer until the depth falls below the capacity or the max block time is reached.
+   * The job event is admitted either way as it must not be dropped.
+   */
+  private void awaitNotFull(MaestroJobEvent jobEvent) {
+    if (queue.size() < capacity) {
+      return;
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMs);
+    blockedProducers.incrementAndGet();
+    try {
+      synchronized (notFull) {
+        long remainingNanos = deadline - System.nanoTime();
+        while (queue.size() >= capacity && remainingNanos > 0) {
+          TimeUnit.NANOSECONDS.timedWait(notFull, remainingNanos);
+          remainingNanos = deadline - System.nanoTime();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      blockedProducers.decrementAndGet();
+    }
+    if (queue.size() >= capacity) {
+      LOG.debug("Admit a throttled maestro job event [{}] after the max block time", jobEvent);
+      metrics.counter(
+          MetricConstants.JOB_EVENT_QUEUE_THROTTLED_METRIC,
+          getClass(),
+          MetricConstants.TYPE_TAG,
+          jobEvent.getType().name());
+    }
+  }
+
+  /**
+   * Add a job event into the queue without the admission control. It is used for the job events
+   * which have already been admitted and accounted for somewhere else, e.g. delayed job events.
+   *
+   * @param jobEvent job event to add
+   */
+  public void put(MaestroJobEvent jobEvent) {
+    put(jobEvent, append(jobEvent, 0));
+  }
+
+  /**
+   * Add a job event, which has already been appended to the journal, into the queue without the
+   * admission control.
+   *
+   * @param jobEvent job event to add
+   * @param offset the journal offset of the job event or {@link #NO_OFFSET}
+   */
+  public void put(MaestroJobEvent jobEvent, long offset) {
+    queue.add(new QueuedJobEvent(jobEvent, System.nanoTime(), offset));
+    metrics.gauge(MetricConstants.JOB_EVENT_QUEUE_DEPTH_METRIC, queue.size(), getClass());
+  }
+
+  /**
+   * Append a job event to the journal if there is one.
+   *
+   * @param jobEvent job event to append
+   * @param visibleTime the epoch millis when the job event becomes visible
+   * @return the journal offset of the job event or {@link #NO_OFFSET} if there is no journal
+   */
+  public long append(MaestroJobEvent jobEvent, long visibleTime) {
+    return journal == null ? NO_OFFSET : journal.append(jobEvent, visibleTime);
+  }
+
+  /**
+   * Open the journal and get the job events to replay.
+   *
+   * @return the unacked job events in the journal, empty if there is no journal
+   */
+  public List<JobEventJournal.Record> replay() {
+    return journal == null ? Collections.emptyList() : journal.open();
+  }
+
+  /**
+   * Ack a job event taken from the queue after it is processed.
+   *
+   * @param jobEvent the processed job event
+   */
+  public void ack(MaestroJobEvent jobEvent) {
+    if (journal == null) {
+      return;
+    }
+    Long offset = null;
+    synchronized (inFlightOffsets) {
+      Deque<Long> offsets = inFlightOffsets.get(jobEvent);
+      if (offsets != null) {
+        offset = offsets.poll();
+        if (offsets.isEmpty()) {
+          inFlightOffsets.remove(jobEvent);
+        }
+      }
+    }
+    if (offset != null) {
+      journal.ack(offset);
+    }
+  }
+
+  /**
+   * Take a job event from the queue and record the time it spent in the queue. It blocks until a
+   * job event is available.
+   *
+   * @return the job event
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public MaestroJobEvent take() throws InterruptedException {
+    QueuedJobEvent queued = queue.take();
+    if (blockedProducers.get() > 0) {
+      synchronized (notFull) {
+        notFull.notifyAll();
+      }
+    }
+    if (queued.offset != NO_OFFSET) {
+      synchronized (inFlightOffsets) {
+        inFlightOffsets
+            .computeIfAbsent(queued.jobEvent, k -> new ArrayDeque<>())
+            .add(queued.offset);
+      }
+    }
+    metrics.timer(
+        MetricConstants.JOB_EVENT_QUEUED_TIME_METRIC,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queued.enqueueNanos),
+        getClass(),
+        MetricConstants.TYPE_TAG,
+        queued.jobEvent.getType().name());
+    return queued.jobEvent;
+  }
+
+  /** Get the number of job events in the queue. */
+  public int size() {
+    return queue.size();
+  }
+
+  /** A job event with its enqueue time. */
+  private static final class QueuedJobEvent {
+    private final MaestroJobEvent jobEvent;
+    private final long enqueueNanos;
+    private final long offset;
+
+    private QueuedJobEvent(MaestroJobEvent jobEvent, long enqueueNanos, long offset) {
+      this.jobEvent = jobEvent;
+      this.enqueueNanos = enqueueNanos;
+      this.offset = offset;
+    }
+  }
+}
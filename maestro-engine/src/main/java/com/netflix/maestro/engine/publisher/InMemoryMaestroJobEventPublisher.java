@@ -12,23 +12,103 @@
  */
 package com.netflix.maestro.engine.publisher;
 
+import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.exceptions.MaestroRetryableError;
 import com.netflix.maestro.models.error.Details;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.LinkedBlockingQueue;
-import lombok.AllArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * In-memory Maestro job event publisher to publish a maestro job event to an in-memory queue. This
- * is used for the demo purpose, used together with InMemoryJobEventListener. It ignores
- * invisibleMs.
+ * is used for the demo purpose, used together with InMemoryJobEventListener.
+ *
+ * <p>A job event with a positive invisibleMs is parked in a delay queue ordered by its visible
+ * time and a releaser thread moves it to the job event queue once it becomes visible. The number
+ * of parked job events is bounded and publishing a delayed job event fails with a retryable error
+ * if the limit is reached. A released job event skips the queue admission control because the
+ * number of parked job events is already bounded.
+ *
+ * <p>If the queue has a journal, the parked job events are journaled as well with their visible
+ * time. During startup, the unacked job events in the journal are replayed before releasing any
+ * parked job event, including the ones still invisible. A replayed start job event still within
+ * the coalescing window keeps coalescing the new ones for the same workflow id.
+ *
+ * <p>If the coalescing window is positive, a {@link
+ * com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent} is parked for the window and the
+ * other start job events for the same workflow id published during the window are merged into it.
+ * It is safe because a start job event only triggers a dequeue based on the latest state in DB.
+ * Start job events with an invisible time longer than the window are not coalesced.
  */
+@SuppressWarnings({"PMD.DoNotUseThreads"})
 @Slf4j
-@AllArgsConstructor
 public class InMemoryMaestroJobEventPublisher implements MaestroJobEventPublisher {
+  private final InMemoryJobEventQueue queue;
+  private final DelayQueue<DelayedJobEvent> delayQueue;
+  private final int maxDelayedEvents;
+  private final long coalescingWindowMs;
+  private final Set<String> pendingStartWorkflowIds;
+  private final ExecutorService executorService;
+  private final MaestroMetrics metrics;
 
-  private final LinkedBlockingQueue<MaestroJobEvent> queue;
+  /** Constructor. */
+  public InMemoryMaestroJobEventPublisher(
+      InMemoryJobEventQueue queue,
+      int maxDelayedEvents,
+      long coalescingWindowMs,
+      ExecutorService executorService,
+      MaestroMetrics metrics) {
+    this(
+        queue, new DelayQueue<>(), maxDelayedEvents, coalescingWindowMs, executorService, metrics);
+  }
+
+  @VisibleForTesting
+  InMemoryMaestroJobEventPublisher(
+      InMemoryJobEventQueue queue,
+      DelayQueue<DelayedJobEvent> delayQueue,
+      int maxDelayedEvents,
+      long coalescingWindowMs,
+      ExecutorService executorService,
+      MaestroMetrics metrics) {
+    this.queue = queue;
+    this.delayQueue = delayQueue;
+    this.maxDelayedEvents = maxDelayedEvents;
+    this.coalescingWindowMs = coalescingWindowMs;
+    this.pendingStartWorkflowIds = ConcurrentHashMap.newKeySet();
+    this.executorService = executorService;
+    this.metrics = metrics;
+  }
+
+  public void postConstruct() {
+    replay();
+    executorService.execute(
+        () -> {
+          while (true) {
+            try {
+              release(delayQueue.take());
+            } catch (InterruptedException e) {
+              break;
+            }
+          }
+        });
+  }
+
+  public void preDestroy() {
+    executorService.shutdownNow();
+    if (!delayQueue.isEmpty()) {
+      LOG.warn("Discard [{}] delayed maestro job events during shutdown", delayQueue.size());
+    }
+  }
 
   /**
    * Publish a maestro job event locally. It should not throw any exception.
@@ -41,11 +121,149 @@ public class InMemoryMaestroJobEventPublisher implements MaestroJobEventPublishe
   public Optional<Details> publish(MaestroJobEvent maestroJob, long invisibleMs) {
     try {
       LOG.info("publish a maestro job event: [{}] with delay [{}]", maestroJob, invisibleMs);
-      // in memory execution mode, ignore the invisible time
-      queue.put(maestroJob);
+      if (isCoalescing(maestroJob, invisibleMs)) {
+        coalesce(maestroJob);
+      } else if (invisibleMs > 0) {
+        park(maestroJob, invisibleMs);
+      } else {
+        return queue.offer(maestroJob);
+      }
       return Optional.empty();
     } catch (Exception e) {
       return Optional.of(Details.create(e, true, "Failed to publish a Maestro job event"));
     }
   }
+
+  /**
+   * Publish a batch of maestro job events locally with a single queue admission and journal
+   * append. If any of them is coalesced, they are published one by one. It should not throw any
+   * exception.
+   *
+   * @param jobEvents maestro job events to publish
+   * @return the publish result of each job event in the same order.
+   */
+  @Override
+  public List<Optional<Details>> publishAll(List<? extends MaestroJobEvent> jobEvents) {
+    for (MaestroJobEvent jobEvent : jobEvents) {
+      if (isCoalescing(jobEvent, DEFAULT_INVISIBLE_TIME)) {
+        return MaestroJobEventPublisher.super.publishAll(jobEvents);
+      }
+    }
+    try {
+      LOG.info("publish a batch of [{}] maestro job events", jobEvents.size());
+      return queue.offerAll(jobEvents);
+    } catch (Exception e) {
+      return Collections.nCopies(
+          jobEvents.size(),
+          Optional.of(Details.create(e, true, "Failed to publish a Maestro job event")));
+    }
+  }
+
+  private void replay() {
+    List<JobEventJournal.Record> records = queue.replay();
+    long now = System.currentTimeMillis();
+    for (JobEventJournal.Record record : records) {
+      long invisibleMs = record.getVisibleTime() - now;
+      if (invisibleMs > 0) {
+        if (isCoalescing(record.getJobEvent(), invisibleMs)) {
+          pendingStartWorkflowIds.add(record.getJobEvent().getWorkflowId());
+        }
+        delayQueue.put(
+            new DelayedJobEvent(
+                record.getJobEvent(),
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(invisibleMs),
+                record.getOffset()));
+      } else {
+        queue.put(record.getJobEvent(), record.getOffset());
+      }
+    }
+    if (!records.isEmpty()) {
+      LOG.info("Replayed [{}] maestro job events from the journal", records.size());
+    }
+  }
+
+  private boolean isCoalescing(MaestroJobEvent maestroJob, long invisibleMs) {
+    return coalescingWindowMs > 0
+        && invisibleMs <= coalescingWindowMs
+        && maestroJob.getType() == MaestroJobEvent.Type.START_WORKFLOW_JOB_EVENT;
+  }
+
+  private void coalesce(MaestroJobEvent maestroJob) {
+    String workflowId = maestroJob.getWorkflowId();
+    if (!pendingStartWorkflowIds.add(workflowId)) {
+      LOG.debug("coalesce a start workflow job event for workflow [{}]", workflowId);
+      metrics.counter(
+          MetricConstants.JOB_EVENT_COALESCED_METRIC,
+          getClass(),
+          MetricConstants.TYPE_TAG,
+          maestroJob.getType().name());
+      return;
+    }
+    try {
+      park(maestroJob, coalescingWindowMs);
+    } catch (RuntimeException e) {
+      pendingStartWorkflowIds.remove(workflowId);
+      throw e;
+    }
+  }
+
+  private void park(MaestroJobEvent maestroJob, long invisibleMs) {
+    int size = delayQueue.size();
+    if (size >= maxDelayedEvents) {
+      throw new MaestroRetryableError(
+          "Too many [%s] delayed maestro job events, please retry it later", size);
+    }
+    long offset = queue.append(maestroJob, System.currentTimeMillis() + invisibleMs);
+    delayQueue.put(
+        new DelayedJobEvent(
+            maestroJob, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(invisibleMs), offset));
+    metrics.gauge(MetricConstants.JOB_EVENT_DELAYED_COUNT_METRIC, size + 1, getClass());
+  }
+
+  @VisibleForTesting
+  void release(DelayedJobEvent delayed) {
+    if (delayed.jobEvent.getType() == MaestroJobEvent.Type.START_WORKFLOW_JOB_EVENT) {
+      pendingStartWorkflowIds.remove(delayed.jobEvent.getWorkflowId());
+    }
+    queue.put(delayed.jobEvent, delayed.offset);
+    metrics.timer(
+        MetricConstants.JOB_EVENT_RELEASE_LAG_METRIC,
+        TimeUnit.NANOSECONDS.toMillis(Math.max(0, System.nanoTime() - delayed.visibleNanos)),
+        getClass());
+    metrics.gauge(MetricConstants.JOB_EVENT_DELAYED_COUNT_METRIC, delayQueue.size(), getClass());
+  }
+
+  /** A job event parked until its visible time. */
+  @VisibleForTesting
+  static final class DelayedJobEvent implements Delayed {
+    private final MaestroJobEvent jobEvent;
+    private final long visibleNanos;
+    private final long offset;
+
+    DelayedJobEvent(MaestroJobEvent jobEvent, long visibleNanos, long offset) {
+      this.jobEvent = jobEvent;
+      this.visibleNanos = visibleNanos;
+      this.offset = offset;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(visibleNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(visibleNanos, ((DelayedJobEvent) other).visibleNanos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+  }
 }
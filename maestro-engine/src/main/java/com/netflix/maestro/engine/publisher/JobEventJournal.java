@@ -0,0 +1,339 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.netflix.maestro.annotations.VisibleForTesting;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.properties.JobEventJournalProperties;
+import com.netflix.maestro.exceptions.MaestroInternalError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only local journal for the job events in the in-memory mode, so the queued job events
+ * are not lost if the process is restarted.
+ *
+ * <p>The journal is a list of fixed size memory-mapped segment files. Each record is written as
+ * [payload length (int)][visible time in epoch millis (long)][json payload]. The offset of a
+ * record is its logical byte position across segments, where the segment with the base offset B
+ * covers [B, B + segment size). A zero length marks the end of the written data in a segment.
+ * Records are read directly from the mapped buffers without copying them to the heap first.
+ *
+ * <p>Appended records stay pending until they are acked. The checkpoint is the smallest pending
+ * offset (or the end offset if nothing is pending) and is written to a memory-mapped checkpoint
+ * file on every ack. During startup, all the records after the checkpoint are replayed. Delivery
+ * is at least once as records acked out of order after the checkpoint are replayed again.
+ *
+ * <p>Segments are rolled once the active one cannot fit the next record. Fully consumed segments
+ * are compacted (i.e. deleted) when rolling, except the last few retained ones. Without syncing
+ * on append, the journal survives a process crash but not an OS crash.
+ */
+@Slf4j
+public class JobEventJournal {
+  private static final String SEGMENT_FILE_FORMAT = "segment-%020d.log";
+  private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("segment-(\\d{20})\\.log");
+  private static final String CHECKPOINT_FILE = "checkpoint";
+  private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final int retainedSegments;
+  private final boolean syncOnAppend;
+  private final ObjectMapper objectMapper;
+  private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+  private final NavigableSet<Long> pending = new TreeSet<>();
+  private MappedByteBuffer checkpointBuffer;
+  private long writeOffset;
+
+  /** Constructor. */
+  public JobEventJournal(JobEventJournalProperties properties, ObjectMapper objectMapper) {
+    this.directory = Paths.get(properties.getDirectory());
+    this.segmentSize = properties.getSegmentSizeBytes();
+    this.retainedSegments = properties.getRetainedSegments();
+    this.syncOnAppend = properties.isSyncOnAppend();
+    this.objectMapper = objectMapper;
+  }
+
+  /** A record replayed from the journal. */
+  @Getter
+  public static final class Record {
+    private final long offset;
+    private final long visibleTime;
+    private final MaestroJobEvent jobEvent;
+
+    Record(long offset, long visibleTime, MaestroJobEvent jobEvent) {
+      this.offset = offset;
+      this.visibleTime = visibleTime;
+      this.jobEvent = jobEvent;
+    }
+  }
+
+  /**
+   * Open the journal by mapping the existing segments and loading the checkpoint, then return all
+   * the records after the checkpoint, which are marked as pending again.
+   *
+   * @return records to replay in the offset order
+   */
+  public synchronized List<Record> open() {
+    try {
+      Files.createDirectories(directory);
+      checkpointBuffer = map(directory.resolve(CHECKPOINT_FILE), Long.BYTES);
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Matcher matcher = SEGMENT_FILE_PATTERN.matcher(file.getFileName().toString());
+          if (matcher.matches()) {
+            segments.put(Long.parseLong(matcher.group(1)), map(file, segmentSize));
+          }
+        }
+      }
+      if (segments.isEmpty()) {
+        segments.put(0L, map(segmentPath(0L), segmentSize));
+      }
+      long checkpoint = Math.max(checkpointBuffer.getLong(0), segments.firstKey());
+      List<Record> records = new ArrayList<>();
+      writeOffset = scan(checkpoint, records);
+      for (Record record : records) {
+        pending.add(record.offset);
+      }
+      writeCheckpoint();
+      LOG.info(
+          "Opened job event journal at [{}] with [{}] segments and [{}] records to replay",
+          directory,
+          segments.size(),
+          records.size());
+      return records;
+    } catch (IOException e) {
+      throw new MaestroInternalError(e, "Failed to open the job event journal at " + directory);
+    }
+  }
+
+  /**
+   * Append a job event to the journal.
+   *
+   * @param jobEvent job event to append
+   * @param visibleTime the epoch millis when the job event becomes visible
+   * @return the offset of the appended record
+   */
+  public long append(MaestroJobEvent jobEvent, long visibleTime) {
+    byte[] payload = serialize(jobEvent);
+    synchronized (this) {
+      try {
+        long offset = write(jobEvent, payload, visibleTime);
+        force(offset, writeOffset);
+        return offset;
+      } catch (IOException e) {
+        throw new MaestroInternalError(e, "Failed to append a job event to the journal");
+      }
+    }
+  }
+
+  /**
+   * Append a batch of job events to the journal with a single lock acquisition and, if syncing on
+   * append, a single sync over the written range.
+   *
+   * @param jobEvents job events to append
+   * @param visibleTime the epoch millis when the job events become visible
+   * @return the offsets of the appended records in the same order
+   */
+  public long[] appendAll(List<? extends MaestroJobEvent> jobEvents, long visibleTime) {
+    List<byte[]> payloads = new ArrayList<>(jobEvents.size());
+    for (MaestroJobEvent jobEvent : jobEvents) {
+      payloads.add(serialize(jobEvent));
+    }
+    long[] offsets = new long[jobEvents.size()];
+    if (offsets.length == 0) {
+      return offsets;
+    }
+    synchronized (this) {
+      try {
+        for (int i = 0; i < offsets.length; ++i) {
+          offsets[i] = write(jobEvents.get(i), payloads.get(i), visibleTime);
+        }
+        force(offsets[0], writeOffset);
+        return offsets;
+      } catch (IOException e) {
+        throw new MaestroInternalError(e, "Failed to append job events to the journal");
+      }
+    }
+  }
+
+  private byte[] serialize(MaestroJobEvent jobEvent) {
+    try {
+      return objectMapper.writeValueAsBytes(jobEvent);
+    } catch (IOException e) {
+      throw new MaestroInternalError(e, "Failed to serialize job event [%s]", jobEvent);
+    }
+  }
+
+  /** Write a record to the active segment, rolling it if needed, and return its offset. */
+  private long write(MaestroJobEvent jobEvent, byte[] payload, long visibleTime)
+      throws IOException {
+    int recordSize = HEADER_SIZE + payload.length;
+    if (recordSize > segmentSize) {
+      throw new MaestroInternalError(
+          "Job event [%s] of [%s] bytes is larger than the journal segment size [%s]",
+          jobEvent, recordSize, segmentSize);
+    }
+    Map.Entry<Long, MappedByteBuffer> active = segments.lastEntry();
+    int position = (int) (writeOffset - active.getKey());
+    if (position + recordSize > segmentSize) {
+      active = roll(active.getKey() + segmentSize);
+      position = 0;
+    }
+    long offset = active.getKey() + position;
+    MappedByteBuffer buffer = active.getValue();
+    buffer.putLong(position + Integer.BYTES, visibleTime);
+    buffer.put(position + HEADER_SIZE, payload);
+    // write the length last so a partially written record is never read
+    buffer.putInt(position, payload.length);
+    pending.add(offset);
+    writeOffset = offset + recordSize;
+    return offset;
+  }
+
+  /** Sync the written range [from, to) across segments if syncing on append. */
+  private void force(long from, long to) {
+    if (!syncOnAppend) {
+      return;
+    }
+    for (Map.Entry<Long, MappedByteBuffer> entry :
+        segments.subMap(segments.floorKey(from), true, to, false).entrySet()) {
+      long base = entry.getKey();
+      int start = (int) Math.max(0, from - base);
+      int end = (int) Math.min(segmentSize, to - base);
+      if (end > start) {
+        entry.getValue().force(start, end - start);
+      }
+    }
+  }
+
+  /**
+   * Ack a record after its job event is processed and move the checkpoint forward if possible.
+   *
+   * @param offset the offset of the record
+   */
+  public synchronized void ack(long offset) {
+    if (pending.remove(offset)) {
+      writeCheckpoint();
+    }
+  }
+
+  /** Get the current checkpoint offset. */
+  public synchronized long getCheckpoint() {
+    return pending.isEmpty() ? writeOffset : pending.first();
+  }
+
+  @VisibleForTesting
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  private void writeCheckpoint() {
+    checkpointBuffer.putLong(0, getCheckpoint());
+    if (syncOnAppend) {
+      checkpointBuffer.force();
+    }
+  }
+
+  /** Scan records from the given offset and return the end offset of the written data. */
+  private long scan(long from, List<Record> records) throws IOException {
+    long offset = from;
+    long first = segments.floorKey(from);
+    for (Map.Entry<Long, MappedByteBuffer> entry : segments.tailMap(first, true).entrySet()) {
+      long base = entry.getKey();
+      ByteBuffer buffer = entry.getValue();
+      int position = (int) Math.max(0, offset - base);
+      while (position + HEADER_SIZE <= segmentSize) {
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+          break;
+        }
+        long visibleTime = buffer.getLong(position + Integer.BYTES);
+        // zero-copy read from the mapped segment
+        ByteBuffer payload = buffer.slice(position + HEADER_SIZE, length);
+        MaestroJobEvent jobEvent =
+            objectMapper.readValue(
+                new ByteBufferBackedInputStream(payload), MaestroJobEvent.class);
+        records.add(new Record(base + position, visibleTime, jobEvent));
+        position += HEADER_SIZE + length;
+      }
+      offset = base + position;
+    }
+    if (offset < segments.lastKey()) {
+      offset = segments.lastKey();
+    }
+    return offset;
+  }
+
+  private Map.Entry<Long, MappedByteBuffer> roll(long base) throws IOException {
+    segments.put(base, map(segmentPath(base), segmentSize));
+    // skip the unused tail of the previous segment
+    writeOffset = base;
+    LOG.info("Rolled a new job event journal segment with base offset [{}]", base);
+    compact();
+    return segments.lastEntry();
+  }
+
+  /** Delete the fully consumed segments except the last few retained ones. */
+  private void compact() throws IOException {
+    long checkpoint = getCheckpoint();
+    List<Long> consumed = new ArrayList<>();
+    for (Long base : segments.headMap(segments.lastKey(), false).keySet()) {
+      if (base + segmentSize <= checkpoint) {
+        consumed.add(base);
+      }
+    }
+    Iterator<Long> iterator = consumed.iterator();
+    for (int toDelete = consumed.size() - retainedSegments; toDelete > 0; --toDelete) {
+      Long base = iterator.next();
+      segments.remove(base);
+      Files.deleteIfExists(segmentPath(base));
+      LOG.info("Compacted a consumed job event journal segment with base offset [{}]", base);
+    }
+  }
+
+  private Path segmentPath(long base) {
+    return directory.resolve(String.format(SEGMENT_FILE_FORMAT, base));
+  }
+
+  private static MappedByteBuffer map(Path file, int size) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import com.netflix.maestro.engine.dao.MaestroJobEventDao;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.error.Details;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dispatcher to move job events from the outbox table to the job event publisher. Each round
+ * claims a batch of visible job events, publishes them, and then deletes the published ones in a
+ * single statement. The ones failed to publish are kept and claimed again after the lease expires.
+ * It keeps claiming until the outbox is drained and then waits for the next poll interval.
+ */
+@SuppressWarnings({"PMD.DoNotUseThreads"})
+@Slf4j
+@AllArgsConstructor
+public class MaestroJobEventDispatcher {
+  private final MaestroJobEventDao jobEventDao;
+  private final MaestroJobEventPublisher publisher;
+  private final ScheduledExecutorService executorService;
+  private final int batchSize;
+  private final long pollIntervalMs;
+  private final long leaseMs;
+  private final MaestroMetrics metrics;
+
+  public void postConstruct() {
+    executorService.scheduleWithFixedDelay(
+        this::dispatchAll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void preDestroy() {
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.info("executor shutdown is timed out and calling shutdownNow");
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException ex) {
+      LOG.info("executor shutdown is interrupted and calling shutdownNow");
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Dispatch job events until the outbox is drained. It never throws runtime exceptions. */
+  void dispatchAll() {
+    try {
+      int claimed;
+      do {
+        claimed = dispatch();
+      } while (claimed >= batchSize && !executorService.isShutdown());
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to dispatch job events from the outbox and will retry it later", e);
+    }
+  }
+
+  /**
+   * Dispatch a batch of job events from the outbox.
+   *
+   * @return the number of claimed job events
+   */
+  int dispatch() {
+    Map<String, MaestroJobEvent> jobEvents = jobEventDao.claimJobEvents(batchSize, leaseMs);
+    if (jobEvents.isEmpty()) {
+      return 0;
+    }
+    List<String> published = new ArrayList<>(jobEvents.size());
+    jobEvents.forEach(
+        (eventId, jobEvent) -> {
+          Optional<Details> error = publisher.publish(jobEvent);
+          if (error.isPresent()) {
+            LOG.warn(
+                "Failed to publish a job event [{}] from the outbox due to [{}]",
+                eventId,
+                error.get());
+            metrics.counter(
+                MetricConstants.JOB_EVENT_PUBLISH_FAILURE_METRIC,
+                getClass(),
+                MetricConstants.TYPE_TAG,
+                String.valueOf(jobEvent.getType()));
+          } else {
+            published.add(eventId);
+          }
+        });
+    int deleted = jobEventDao.deleteJobEvents(published);
+    metrics.distributionSummary(
+        MetricConstants.JOB_EVENT_OUTBOX_DISPATCH_BATCH_METRIC, deleted, getClass());
+    LOG.debug("Dispatched [{}/{}] job events from the outbox", deleted, jobEvents.size());
+    return jobEvents.size();
+  }
+}
@@ -15,6 +15,8 @@ package com.netflix.maestro.engine.publisher;
 import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.exceptions.MaestroRetryableError;
 import com.netflix.maestro.models.error.Details;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /** Maestro job event publisher responsible for only publishing {@link MaestroJobEvent}. */
@@ -45,6 +47,22 @@ public interface MaestroJobEventPublisher {
    */
   Optional<Details> publish(MaestroJobEvent jobEvent, long invisibleMs);
 
+  /**
+   * Publish a batch of maestro job events to the internal job queue.
+   *
+   * <p>If failed, it should not throw an exception instead using putting errors to Details.
+   *
+   * @param jobEvents maestro job events to publish
+   * @return the publish result of each job event in the same order.
+   */
+  default List<Optional<Details>> publishAll(List<? extends MaestroJobEvent> jobEvents) {
+    List<Optional<Details>> results = new ArrayList<>(jobEvents.size());
+    for (MaestroJobEvent jobEvent : jobEvents) {
+      results.add(publish(jobEvent));
+    }
+    return results;
+  }
+
   /**
    * Publish maestro job event to the internal job queue.
    *
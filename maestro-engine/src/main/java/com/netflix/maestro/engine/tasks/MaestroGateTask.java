@@ -23,9 +23,14 @@ import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.utils.StepHelper;
 import com.netflix.maestro.engine.utils.TaskHelper;
 import com.netflix.maestro.models.instance.StepRuntimeState;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -36,39 +41,105 @@ import lombok.extern.slf4j.Slf4j;
  * to optimize the logic for maestro.
  *
  * <p>Here, we overwrite the default conductor EXCLUSIVE_JOIN task to reuse its task mapper.
+ *
+ * <p>The joinOn steps confirmed to be complete in the DB are tracked incrementally in a bitset
+ * persisted within the task output data. So for a wide fan-in gate, a confirmation only queries
+ * the step states of the unconfirmed joinOn steps. The bitset is discarded and rebuilt by a full
+ * reconciliation after the reconcile interval.
  */
 @Slf4j
 public class MaestroGateTask extends WorkflowSystemTask {
+  /** Output data field of the bitset words of the joinOn steps confirmed to be complete. */
+  static final String JOINED_STEPS_FIELD = "maestro_joined_steps";
+
+  /** Output data field of the time of the last full reconciliation of the joined steps. */
+  static final String JOINED_RECONCILE_TIME_FIELD = "maestro_joined_reconcile_time";
+
+  private static final long DEFAULT_RECONCILE_INTERVAL_IN_MILLIS = TimeUnit.MINUTES.toMillis(10);
 
   private final MaestroStepInstanceDao stepInstanceDao;
   private final ObjectMapper objectMapper;
+  private final long reconcileIntervalInMillis;
 
   /** Constructor. */
   public MaestroGateTask(MaestroStepInstanceDao stepInstanceDao, ObjectMapper objectMapper) {
+    this(stepInstanceDao, objectMapper, DEFAULT_RECONCILE_INTERVAL_IN_MILLIS);
+  }
+
+  /** Constructor with the interval for the full reconciliation of the joined steps. */
+  public MaestroGateTask(
+      MaestroStepInstanceDao stepInstanceDao,
+      ObjectMapper objectMapper,
+      long reconcileIntervalInMillis) {
     // Overwrite the conductor exclusive join task with maestro optimized gate join logic
     super(SystemTaskType.EXCLUSIVE_JOIN.name());
     this.stepInstanceDao = stepInstanceDao;
     this.objectMapper = objectMapper;
+    this.reconcileIntervalInMillis = reconcileIntervalInMillis;
   }
 
   /**
    * The execution is not expected to throw an exception. If it happens, the exception will be
    * handled by the upstream caller (i.e. MaestroWorkflowExecutor will retry).
+   *
+   * <p>It also returns true if more joinOn steps are confirmed, so the progress is persisted.
    */
   @Override
   public boolean execute(Workflow workflow, Task task, WorkflowExecutor executor) {
     Map<String, Task> taskMap = TaskHelper.getTaskMap(workflow);
     Optional<Task.Status> done = executeJoin(task, taskMap);
-    if (done.isPresent() && confirmDone(workflow, task)) { // update task status if it is done
-      task.setStatus(done.get());
-      return true;
+    if (done.isPresent()) {
+      List<String> joinOn = getJoinOnSteps(task);
+      BitSet joined = loadJoinedSteps(task, joinOn.size());
+      int confirmed = joined.cardinality();
+      if (confirmDone(workflow, task, joinOn, joined)) { // update task status if it is done
+        task.setStatus(done.get());
+        return true;
+      }
+      if (joined.cardinality() > confirmed) {
+        task.getOutputData()
+            .put(
+                JOINED_STEPS_FIELD,
+                Arrays.stream(joined.toLongArray()).boxed().collect(Collectors.toList()));
+        return true;
+      }
     }
     return false;
   }
 
-  private boolean confirmDone(Workflow workflow, Task task) {
-    List<String> joinOn = getJoinOnSteps(task);
-    LOG.debug("Confirming steps [{}] are actually completed.", joinOn);
+  /**
+   * Load the joined steps from the task output data. It returns an empty bitset and starts a full
+   * reconciliation if absent, invalid or expired.
+   */
+  private BitSet loadJoinedSteps(Task task, int size) {
+    Map<String, Object> outputData = task.getOutputData();
+    Object reconcileTime = outputData.get(JOINED_RECONCILE_TIME_FIELD);
+    Object words = outputData.get(JOINED_STEPS_FIELD);
+    long now = System.currentTimeMillis();
+    if (reconcileTime instanceof Number
+        && words instanceof List
+        && now - ((Number) reconcileTime).longValue() <= reconcileIntervalInMillis) {
+      BitSet joined =
+          BitSet.valueOf(
+              ((List<?>) words).stream().mapToLong(w -> ((Number) w).longValue()).toArray());
+      if (joined.length() <= size) {
+        return joined;
+      }
+    }
+    outputData.remove(JOINED_STEPS_FIELD);
+    outputData.put(JOINED_RECONCILE_TIME_FIELD, now);
+    return new BitSet(size);
+  }
+
+  private boolean confirmDone(Workflow workflow, Task task, List<String> joinOn, BitSet joined) {
+    List<String> pending = new ArrayList<>();
+    for (int i = joined.nextClearBit(0); i < joinOn.size(); i = joined.nextClearBit(i + 1)) {
+      pending.add(joinOn.get(i));
+    }
+    if (pending.isEmpty()) {
+      return true;
+    }
+    LOG.debug("Confirming steps [{}] are actually completed.", pending);
     WorkflowSummary workflowSummary =
         StepHelper.retrieveWorkflowSummary(objectMapper, workflow.getInput());
 
@@ -77,19 +148,25 @@ public class MaestroGateTask extends WorkflowSystemTask {
             workflowSummary.getWorkflowId(),
             workflowSummary.getWorkflowInstanceId(),
             workflowSummary.getWorkflowRunId(),
-            joinOn);
-    for (String joinOnRef : joinOn) {
+            pending);
+    boolean allDone = true;
+    for (int i = joined.nextClearBit(0); i < joinOn.size(); i = joined.nextClearBit(i + 1)) {
+      String joinOnRef = joinOn.get(i);
       StepRuntimeState state = status.get(joinOnRef);
       if (state == null || !state.getStatus().isComplete()) {
         LOG.info(
             "Steps [{}] is not completed yet although the task status is done. Will try the task [{}] again.",
             joinOnRef,
             task.getTaskId());
-        return false;
+        allDone = false;
+      } else {
+        joined.set(i);
       }
     }
-    LOG.debug("Confirmed steps [{}] are actually completed.", joinOn);
-    return true;
+    if (allDone) {
+      LOG.debug("Confirmed steps [{}] are actually completed.", pending);
+    }
+    return allDone;
   }
 
   /**
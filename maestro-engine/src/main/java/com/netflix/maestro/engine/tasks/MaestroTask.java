@@ -17,6 +17,7 @@ import com.netflix.conductor.common.metadata.tasks.Task;
 import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.core.execution.WorkflowExecutor;
 import com.netflix.conductor.core.execution.tasks.WorkflowSystemTask;
+import com.netflix.conductor.core.utils.QueueUtils;
 import com.netflix.maestro.annotations.Nullable;
 import com.netflix.maestro.annotations.VisibleForTesting;
 import com.netflix.maestro.engine.concurrency.InstanceStepConcurrencyHandler;
@@ -28,9 +29,11 @@ import com.netflix.maestro.engine.db.StepAction;
 import com.netflix.maestro.engine.eval.InstanceWrapper;
 import com.netflix.maestro.engine.eval.MaestroParamExtensionRepo;
 import com.netflix.maestro.engine.eval.ParamEvaluator;
+import com.netflix.maestro.engine.execution.ExecutionDefinitionCache;
 import com.netflix.maestro.engine.execution.StepRuntimeManager;
 import com.netflix.maestro.engine.execution.StepRuntimeSummary;
 import com.netflix.maestro.engine.execution.StepSyncManager;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.handlers.SignalHandler;
 import com.netflix.maestro.engine.metrics.MaestroMetrics;
@@ -62,6 +65,8 @@ import com.netflix.maestro.models.error.Details;
 import com.netflix.maestro.models.instance.RestartConfig;
 import com.netflix.maestro.models.instance.RunPolicy;
 import com.netflix.maestro.models.instance.StepDependencies;
+import com.netflix.maestro.models.instance.StepDependencyMatchStatus;
+import com.netflix.maestro.models.instance.StepDependencyStatus;
 import com.netflix.maestro.models.instance.StepInstance;
 import com.netflix.maestro.models.instance.StepInstanceTransition;
 import com.netflix.maestro.models.instance.StepRuntimeState;
@@ -75,7 +80,10 @@ import com.netflix.maestro.utils.DurationParser;
 import com.netflix.maestro.utils.MapHelper;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -100,6 +108,7 @@ public class MaestroTask extends WorkflowSystemTask {
   private static final Set<String> RETRYABLE_SQL_ERROR_STATES = Collections.singleton("08006");
   private static final Set<String> RETRYABLE_SQL_ERROR_MSGS =
       Collections.singleton("Connection is closed");
+  private static final String SIGNAL_NAME_PARAM = "name";
 
   private final StepRuntimeManager stepRuntimeManager;
   private final StepSyncManager stepSyncManager;
@@ -114,6 +123,8 @@ public class MaestroTask extends WorkflowSystemTask {
   private final MaestroMetrics metrics;
   private final MaestroTracingManager tracingManager;
   private final MaestroParamExtensionRepo paramExtensionRepo;
+  private final ExecutionDefinitionCache definitionCache;
+  private final StepWakeUpRegistry wakeUpRegistry;
 
   /** Maestro task constructor. */
   public MaestroTask(
@@ -129,7 +140,9 @@ public class MaestroTask extends WorkflowSystemTask {
       InstanceStepConcurrencyHandler instanceStepConcurrencyHandler,
       MaestroMetrics metricRepo,
       @Nullable MaestroTracingManager tracingManager,
-      @Nullable MaestroParamExtensionRepo extensionRepo) {
+      @Nullable MaestroParamExtensionRepo extensionRepo,
+      ExecutionDefinitionCache definitionCache,
+      StepWakeUpRegistry wakeUpRegistry) {
     super(Constants.MAESTRO_TASK_NAME);
     this.stepRuntimeManager = stepRuntimeManager;
     this.stepSyncManager = stepSyncManager;
@@ -147,6 +160,8 @@ public class MaestroTask extends WorkflowSystemTask {
       LOG.info("Tracing manager is null, all tracing will be skipped.");
     }
     this.paramExtensionRepo = extensionRepo;
+    this.definitionCache = definitionCache;
+    this.wakeUpRegistry = wakeUpRegistry;
   }
 
   @Override
@@ -638,9 +653,16 @@ public class MaestroTask extends WorkflowSystemTask {
   @Override
   public boolean execute(Workflow workflow, Task task, WorkflowExecutor executor) {
     try {
+      // workflow summary and step definition are immutable, so reuse the parsed ones across polls
       WorkflowSummary workflowSummary =
-          StepHelper.retrieveWorkflowSummary(objectMapper, workflow.getInput());
-      Step stepDefinition = StepHelper.retrieveStepDefinition(objectMapper, task.getInputData());
+          definitionCache.getWorkflowSummary(
+              workflow.getWorkflowId(),
+              () -> StepHelper.retrieveWorkflowSummary(objectMapper, workflow.getInput()));
+      Step stepDefinition =
+          definitionCache.getStepDefinition(
+              workflow.getWorkflowId(),
+              task.getReferenceTaskName(),
+              () -> StepHelper.retrieveStepDefinition(objectMapper, task.getInputData()));
       StepRuntimeSummary runtimeSummary =
           StepHelper.retrieveRuntimeSummary(objectMapper, task.getOutputData());
 
@@ -660,6 +682,7 @@ public class MaestroTask extends WorkflowSystemTask {
         return false;
       }
 
+      updateWakeUpSubscription(task, workflowSummary, runtimeSummary);
       updateRetryDelayTimeToTimeline(runtimeSummary);
 
       if (runtimeSummary.isSynced()) {
@@ -928,6 +951,64 @@ public class MaestroTask extends WorkflowSystemTask {
     }
   }
 
+  /**
+   * Subscribe a waiting step to what it waits on, so a matching change wakes it up immediately
+   * instead of waiting for the callback delay. It is best effort and won't throw.
+   */
+  private void updateWakeUpSubscription(
+      Task task, WorkflowSummary workflowSummary, StepRuntimeSummary runtimeSummary) {
+    try {
+      StepInstance.Status status = runtimeSummary.getRuntimeState().getStatus();
+      if (status != StepInstance.Status.PAUSED
+          && status != StepInstance.Status.WAITING_FOR_SIGNALS
+          && status != StepInstance.Status.WAITING_FOR_PERMITS) {
+        wakeUpRegistry.unsubscribe(task.getTaskId());
+        return;
+      }
+      Map<StepWakeUpRegistry.SubscriptionType, Collection<String>> names =
+          new EnumMap<>(StepWakeUpRegistry.SubscriptionType.class);
+      names.put(
+          StepWakeUpRegistry.SubscriptionType.STEP,
+          Collections.singletonList(
+              StepWakeUpRegistry.stepName(
+                  workflowSummary.getWorkflowId(),
+                  workflowSummary.getWorkflowInstanceId(),
+                  workflowSummary.getWorkflowRunId(),
+                  runtimeSummary.getStepId())));
+      if (status == StepInstance.Status.WAITING_FOR_SIGNALS) {
+        names.put(
+            StepWakeUpRegistry.SubscriptionType.SIGNAL, getPendingSignalNames(runtimeSummary));
+      } else if (status == StepInstance.Status.WAITING_FOR_PERMITS) {
+        List<String> tagNames = new ArrayList<>();
+        List<Tag> allTags = workflowSummary.deriveRuntimeTagPermits(runtimeSummary);
+        allTags.addAll(runtimeSummary.getTags().getTags());
+        allTags.forEach(tag -> tagNames.add(tag.getName()));
+        names.put(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, tagNames);
+      }
+      wakeUpRegistry.subscribe(task.getTaskId(), QueueUtils.getQueueName(task), names);
+    } catch (RuntimeException e) {
+      LOG.warn(
+          "Failed to update the wake up subscription for step {}, ignore it",
+          runtimeSummary.getIdentity(),
+          e);
+    }
+  }
+
+  private List<String> getPendingSignalNames(StepRuntimeSummary runtimeSummary) {
+    List<String> signalNames = new ArrayList<>();
+    if (runtimeSummary.getDependencies() != null
+        && runtimeSummary.getDependencies().containsKey(StepDependencyType.SIGNAL)) {
+      for (StepDependencyStatus dependency :
+          runtimeSummary.getDependencies().get(StepDependencyType.SIGNAL).getStatuses()) {
+        if (dependency.getStatus() == StepDependencyMatchStatus.PENDING
+            && dependency.getParams().containsParam(SIGNAL_NAME_PARAM)) {
+          signalNames.add(dependency.getParams().getEvaluatedResultForParam(SIGNAL_NAME_PARAM));
+        }
+      }
+    }
+    return signalNames;
+  }
+
   private boolean signalsReady(WorkflowSummary workflowSummary, StepRuntimeSummary runtimeSummary) {
     return signalHandler.signalsReady(workflowSummary, runtimeSummary);
   }
@@ -1105,6 +1186,25 @@ public class MaestroTask extends WorkflowSystemTask {
     }
   }
 
+  /**
+   * Invalidate the cached workflow summary and step definitions of a finalized workflow execution.
+   *
+   * @param executionId conductor workflow execution id
+   */
+  public void invalidateDefinitionCache(String executionId) {
+    definitionCache.invalidate(executionId);
+  }
+
+  /**
+   * Remove the wake up subscriptions of all the tasks of a finalized workflow execution, as its
+   * tasks might not be canceled, e.g. they are finished by another node.
+   *
+   * @param workflow finalized conductor workflow execution
+   */
+  public void unsubscribeWakeUps(Workflow workflow) {
+    workflow.getTasks().forEach(task -> wakeUpRegistry.unsubscribe(task.getTaskId()));
+  }
+
   /**
    * Cancel conductor task execution. Throw exceptions if failed and then will be retried.
    *
@@ -1114,6 +1214,7 @@ public class MaestroTask extends WorkflowSystemTask {
    */
   @Override
   public void cancel(Workflow workflow, Task task, WorkflowExecutor executor) {
+    wakeUpRegistry.unsubscribe(task.getTaskId());
     WorkflowSummary workflowSummary =
         StepHelper.retrieveWorkflowSummary(objectMapper, workflow.getInput());
 
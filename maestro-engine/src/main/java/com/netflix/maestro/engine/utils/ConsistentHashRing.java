@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * Immutable consistent hash ring with virtual nodes. Each member is placed at multiple points on
+ * the ring and a key is owned by the member of the first point at or after the key's hash. Adding
+ * or removing a member only moves the keys next to its points, which is about 1/N of all keys.
+ */
+public final class ConsistentHashRing {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  @Getter private final List<String> members;
+  private final long[] points;
+  private final String[] owners;
+
+  /**
+   * Constructor.
+   *
+   * @param members ring members
+   * @param virtualNodes number of points for each member on the ring
+   */
+  public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+    this.members = members.stream().distinct().sorted().collect(Collectors.toList());
+    int size = this.members.size() * virtualNodes;
+    long[] hashes = new long[size];
+    String[] names = new String[size];
+    Integer[] order = new Integer[size];
+    int idx = 0;
+    for (String member : this.members) {
+      for (int i = 0; i < virtualNodes; ++i) {
+        hashes[idx] = hash(member + "#" + i);
+        names[idx] = member;
+        order[idx] = idx;
+        idx++;
+      }
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+    this.points = new long[size];
+    this.owners = new String[size];
+    for (int i = 0; i < size; ++i) {
+      points[i] = hashes[order[i]];
+      owners[i] = names[order[i]];
+    }
+  }
+
+  /**
+   * Get the owner of a key.
+   *
+   * @param key the key
+   * @return the owner member or null if the ring is empty
+   */
+  public String getOwner(String key) {
+    if (points.length == 0) {
+      return null;
+    }
+    int idx = Arrays.binarySearch(points, hash(key));
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+    return owners[idx == points.length ? 0 : idx];
+  }
+
+  /** 64-bit FNV-1a hash with a final avalanche mix so close keys spread over the ring. */
+  public static long hash(String key) {
+    long hash = FNV_OFFSET_BASIS;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b;
+      hash *= FNV_PRIME;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb93a6f1d8ce5L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -99,6 +99,25 @@ public final class StepHelper {
         objectMapper, data, Constants.WORKFLOW_SUMMARY_FIELD, WorkflowSummary.class);
   }
 
+  /**
+   * Utility method to retrieve the maestro workflow id from the workflow summary in the key-value
+   * data without converting the whole workflow summary.
+   *
+   * @param data all data in a map
+   * @return the workflow id or null if unavailable
+   */
+  public static String retrieveWorkflowId(Map<String, Object> data) {
+    Object summary = data == null ? null : data.get(Constants.WORKFLOW_SUMMARY_FIELD);
+    if (summary instanceof WorkflowSummary) {
+      return ((WorkflowSummary) summary).getWorkflowId();
+    }
+    if (summary instanceof Map) {
+      Object workflowId = ((Map<?, ?>) summary).get("workflow_id");
+      return workflowId == null ? null : workflowId.toString();
+    }
+    return null;
+  }
+
   /**
    * Utility method to retrieve workflow runtime summary from the key-value data.
    *
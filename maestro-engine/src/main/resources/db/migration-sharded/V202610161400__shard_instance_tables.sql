@@ -0,0 +1,33 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- OPTIONAL HASH-SHARDED LAYOUT FOR MAESTRO WORKFLOW AND STEP INSTANCE TABLES
+-- It is only applied if conductor.configs.instance-sharding-enabled is true, which adds this flyway location and
+-- enables flyway out of order migrations, so it can still be applied after the newer migrations in db/migration.
+-- A shard bucket computed from the workflow instance id follows the workflow id in the keys. So the instances of a
+-- hot workflow (e.g. a foreach inline workflow) are written to 16 key ranges instead of one, while all runs and steps
+-- of an instance stay in the same range. The CHECK constraints let the optimizer derive the shard of a point lookup
+-- and split a range scan over a workflow into per shard scans. The number of shards must match the CHECK constraints.
+-- Primary keys are dropped and added in the same statement to avoid keeping the old key as a secondary index.
+-- Clusters created before the default primary key name changed have to use `primary` as the constraint name.
+-- --------------------------------------------------------------------------------------------------------------
+
+ALTER TABLE maestro_workflow_instance ADD COLUMN IF NOT EXISTS instance_shard INT8
+  AS (mod(instance_id, 16)) STORED NOT NULL
+  CHECK (instance_shard IN (0,1,2,3,4,5,6,7,8,9,10,11,12,13,14,15)) FAMILY cf1;
+
+ALTER TABLE maestro_workflow_instance
+  DROP CONSTRAINT maestro_workflow_instance_pkey,
+  ADD CONSTRAINT maestro_workflow_instance_pkey PRIMARY KEY (workflow_id, instance_shard, instance_id DESC, run_id DESC);
+
+DROP INDEX IF EXISTS maestro_workflow_instance@foreach_index;
+
+CREATE INDEX IF NOT EXISTS foreach_index ON maestro_workflow_instance (workflow_id, instance_shard, run_id DESC, instance_id DESC)
+  STORING (status, runtime_overview) WHERE initiator_type='FOREACH';
+
+ALTER TABLE maestro_step_instance ADD COLUMN IF NOT EXISTS instance_shard INT8
+  AS (mod(workflow_instance_id, 16)) STORED NOT NULL
+  CHECK (instance_shard IN (0,1,2,3,4,5,6,7,8,9,10,11,12,13,14,15)) FAMILY cf1;
+
+ALTER TABLE maestro_step_instance
+  DROP CONSTRAINT maestro_step_instance_pkey,
+  ADD CONSTRAINT maestro_step_instance_pkey
+    PRIMARY KEY (workflow_id, instance_shard, workflow_instance_id DESC, step_id, workflow_run_id DESC, step_attempt_id DESC);
@@ -0,0 +1,12 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- SCHEMA FOR MAESTRO JOB EVENT OUTBOX TABLE
+-- --------------------------------------------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS maestro_job_event (  -- job events written together with the state changes
+  event_id          STRING NOT NULL DEFAULT gen_random_uuid()::STRING,
+  payload           JSONB NOT NULL,
+  visible_ts        INT8 NOT NULL,  -- epoch millis when it can be dispatched or until when it is claimed
+  create_ts         TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (event_id),
+  INDEX visibility_index (visible_ts ASC)
+);
@@ -0,0 +1,10 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- SCHEMA FOR MAESTRO CLUSTER MEMBER TABLE
+-- --------------------------------------------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS maestro_cluster_member (  -- live maestro nodes sharing the partitioned queues
+  member_id         STRING NOT NULL,
+  heartbeat_ts      TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  create_ts         TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (member_id)
+);
@@ -0,0 +1,31 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- SCHEMA FOR MAESTRO WORKFLOW AND STEP INSTANCE ARCHIVE TABLES
+-- --------------------------------------------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS maestro_workflow_instance_archive (  -- terminal workflow runs moved out of maestro_workflow_instance
+  workflow_id       STRING NOT NULL,
+  instance_id       INT8 NOT NULL,
+  run_id            INT8 NOT NULL,
+  uuid              STRING NOT NULL,  -- kept for the uuid dedup of the run strategy
+  compressor        STRING NOT NULL,
+  payload           STRING NOT NULL,  -- base64 encoded compressed workflow instance json
+  archive_ts        TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (workflow_id, instance_id DESC, run_id DESC),
+  UNIQUE INDEX archive_unique_index (workflow_id, uuid)
+);
+
+CREATE TABLE IF NOT EXISTS maestro_step_instance_archive (  -- step instances moved out together with their workflow runs
+  workflow_id               STRING NOT NULL,
+  workflow_instance_id      INT8 NOT NULL,
+  workflow_run_id           INT8 NOT NULL,
+  step_id                   STRING NOT NULL,
+  step_attempt_id           INT8 NOT NULL,
+  compressor                STRING NOT NULL,
+  payload                   STRING NOT NULL,  -- base64 encoded compressed step instance json
+  archive_ts                TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP NOT NULL,
+  PRIMARY KEY (workflow_id, workflow_instance_id DESC, step_id, workflow_run_id DESC, step_attempt_id DESC)
+);
+
+-- for the archiver to find the terminal runs ended before the retention age
+CREATE INDEX IF NOT EXISTS archival_index ON maestro_workflow_instance (end_ts ASC) STORING (initiator_type)
+  WHERE status IN ('SUCCEEDED','STOPPED','TIMED_OUT','FAILED_1','FAILED_2');
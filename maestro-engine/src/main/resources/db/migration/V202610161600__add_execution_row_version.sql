@@ -0,0 +1,11 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- ROW VERSION OF THE CONDUCTOR EXECUTION TABLES
+-- It is set by the DB to a new unique value on every insert or update of a row, including the writes not made by
+-- MaestroCockroachDBExecutionDao. So its execution cache can cheaply check if a cached row is stale.
+-- --------------------------------------------------------------------------------------------------------------
+
+ALTER TABLE workflow_instance ADD COLUMN IF NOT EXISTS row_version INT8
+  NOT NULL DEFAULT unique_rowid() ON UPDATE unique_rowid();
+
+ALTER TABLE task ADD COLUMN IF NOT EXISTS row_version INT8
+  NOT NULL DEFAULT unique_rowid() ON UPDATE unique_rowid();
@@ -15,20 +15,25 @@ package com.netflix.conductor.cockroachdb.dao;
 import static com.netflix.conductor.cockroachdb.dao.CockroachDBBaseDAO.PAYLOAD_COLUMN;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.common.utils.JsonMapperProvider;
 import com.netflix.maestro.engine.compression.GZIPCompressor;
 import com.netflix.maestro.engine.compression.StringCodec;
 import com.netflix.maestro.engine.dao.MaestroDaoBaseTest;
+import com.netflix.maestro.engine.metrics.MetricConstants;
 import com.netflix.maestro.engine.properties.MaestroConductorProperties;
 import com.netflix.maestro.models.Constants;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,7 +42,10 @@ public class MaestroCockroachDBExecutionDaoTest extends MaestroDaoBaseTest {
   private static final String TEST_TASK_ID = "test-task-id";
   private static final long MAX_UPDATE_INTERVAL = 3600000;
 
+  private static final String TEST_WORKFLOW_ID = "test-workflow-id";
+
   private MaestroCockroachDBExecutionDao maestroExecutionDao;
+  private MaestroCockroachDBExecutionDao cachedExecutionDao;
   private CockroachDBExecutionDAO executionDao;
   private Task task;
   private ObjectMapper mapper;
@@ -59,6 +67,13 @@ public class MaestroCockroachDBExecutionDaoTest extends MaestroDaoBaseTest {
     }
   }
 
+  private static class MaestroCacheTestProperties extends MaestroTestProperties {
+    @Override
+    public int getExecutionCacheMaxWorkflows() {
+      return 10;
+    }
+  }
+
   @Before
   public void setUp() {
     MaestroTestProperties testProperties = new MaestroTestProperties();
@@ -76,17 +91,30 @@ public class MaestroCockroachDBExecutionDaoTest extends MaestroDaoBaseTest {
         new StringCodec(Stream.of(new GZIPCompressor()).collect(Collectors.toList()));
     maestroExecutionDao =
         new MaestroCockroachDBExecutionDao(
-            dataSource, mapper, stringCodec, indexDAO, testProperties);
+            dataSource, mapper, stringCodec, indexDAO, testProperties, metricRepo);
+    cachedExecutionDao =
+        new MaestroCockroachDBExecutionDao(
+            dataSource,
+            mapper,
+            stringCodec,
+            indexDAO,
+            new MaestroCacheTestProperties(),
+            metricRepo);
 
     task = new Task();
     task.setTaskId(TEST_TASK_ID);
     task.setTaskType(Constants.MAESTRO_TASK_NAME);
     task.setTaskDefName("test-def-name");
     task.setStatus(Task.Status.IN_PROGRESS);
-    task.setWorkflowInstanceId("test-workflow-id");
+    task.setWorkflowInstanceId(TEST_WORKFLOW_ID);
     task.setOutputData(twoItemMap("foo", 123L, "bar", twoItemMap("abc", "", "def", null)));
   }
 
+  @After
+  public void tearDown() {
+    executionDao.removeWorkflow(TEST_WORKFLOW_ID);
+  }
+
   @Test
   public void testUpdateTask() {
     // should update DB if this is new
@@ -174,6 +202,123 @@ public class MaestroCockroachDBExecutionDaoTest extends MaestroDaoBaseTest {
     Assert.assertEquals(task.getInputData(), dbTask.getInputData());
   }
 
+  @Test
+  public void testUpdateTasks() {
+    Task task2 = createTask2();
+    maestroExecutionDao.updateTasks(Arrays.asList(task, task2));
+    Task actual = maestroExecutionDao.getTask(TEST_TASK_ID);
+    assertEquals("b1a2db354f803423e990fad1b9265b6f", actual.getWorkerId());
+    assertEquals(1, actual.getPollCount());
+    assertEquals(1, maestroExecutionDao.getTask("test-task-id-2").getPollCount());
+
+    // only the changed task is written to DB
+    task.getOutputData().put("bat", true);
+    task2.setPollCount(10);
+    maestroExecutionDao.updateTasks(Arrays.asList(task, task2));
+    actual = maestroExecutionDao.getTask(TEST_TASK_ID);
+    assertEquals("2858a83f63639306837f276e545b57ed", actual.getWorkerId());
+    assertEquals(2, actual.getPollCount());
+    assertEquals(1, maestroExecutionDao.getTask("test-task-id-2").getPollCount());
+  }
+
+  @Test
+  public void testGetWorkflowFromCache() {
+    Workflow workflow = new Workflow();
+    workflow.setWorkflowId(TEST_WORKFLOW_ID);
+    workflow.setWorkflowName("test-workflow");
+    executionDao.createWorkflow(workflow);
+    Task task2 = createTask2();
+    task.setSeq(1);
+    executionDao.createTasks(Arrays.asList(task, task2));
+
+    long misses = getCount(MetricConstants.EXECUTION_CACHE_MISS_METRIC);
+    long hits = getCount(MetricConstants.EXECUTION_CACHE_HIT_METRIC);
+    long stales = getCount(MetricConstants.EXECUTION_CACHE_STALE_METRIC);
+    Workflow actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(2, actual.getTasks().size());
+    assertEquals(misses + 1, getCount(MetricConstants.EXECUTION_CACHE_MISS_METRIC));
+
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(TEST_TASK_ID, actual.getTasks().get(0).getTaskId());
+    assertEquals("test-task-id-2", actual.getTasks().get(1).getTaskId());
+    assertEquals(hits + 1, getCount(MetricConstants.EXECUTION_CACHE_HIT_METRIC));
+
+    // a write through the cached dao keeps the cached entry fresh
+    task.getOutputData().put("bat", true);
+    cachedExecutionDao.updateTask(task);
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(true, actual.getTasks().get(0).getOutputData().get("bat"));
+    assertEquals(hits + 2, getCount(MetricConstants.EXECUTION_CACHE_HIT_METRIC));
+
+    workflow.setStatus(Workflow.WorkflowStatus.PAUSED);
+    cachedExecutionDao.updateWorkflow(workflow);
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(Workflow.WorkflowStatus.PAUSED, actual.getStatus());
+    assertEquals(2, actual.getTasks().size());
+    assertEquals(hits + 3, getCount(MetricConstants.EXECUTION_CACHE_HIT_METRIC));
+
+    task.getOutputData().put("baz", "qux");
+    task2.setRetryCount(1);
+    cachedExecutionDao.updateTasks(Arrays.asList(task, task2));
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals("qux", actual.getTasks().get(0).getOutputData().get("baz"));
+    assertEquals(1, actual.getTasks().get(1).getRetryCount());
+    assertEquals(hits + 4, getCount(MetricConstants.EXECUTION_CACHE_HIT_METRIC));
+
+    // a write by another node makes the cached entry stale
+    task2.setStatus(Task.Status.COMPLETED);
+    executionDao.updateTask(task2);
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(Task.Status.COMPLETED, actual.getTasks().get(1).getStatus());
+    assertEquals(true, actual.getTasks().get(0).getOutputData().get("bat"));
+    assertEquals(stales + 1, getCount(MetricConstants.EXECUTION_CACHE_STALE_METRIC));
+
+    assertTrue(executionDao.removeTask("test-task-id-2"));
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(1, actual.getTasks().size());
+    assertEquals(stales + 2, getCount(MetricConstants.EXECUTION_CACHE_STALE_METRIC));
+
+    assertTrue(executionDao.removeWorkflow(TEST_WORKFLOW_ID));
+    assertNull(cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true));
+  }
+
+  @Test
+  public void testGetWorkflowFromCacheReturnsCopies() {
+    Workflow workflow = new Workflow();
+    workflow.setWorkflowId(TEST_WORKFLOW_ID);
+    workflow.setWorkflowName("test-workflow");
+    executionDao.createWorkflow(workflow);
+    executionDao.createTasks(Collections.singletonList(task));
+    cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+
+    // mutating the returned or the written objects does not change the cached entry
+    Workflow actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    actual.setStatus(Workflow.WorkflowStatus.FAILED);
+    actual.getTasks().get(0).getOutputData().put("bat", true);
+    cachedExecutionDao.updateTask(task);
+    task.getOutputData().put("baz", "qux");
+
+    actual = cachedExecutionDao.getWorkflow(TEST_WORKFLOW_ID, true);
+    assertEquals(Workflow.WorkflowStatus.RUNNING, actual.getStatus());
+    assertNull(actual.getTasks().get(0).getOutputData().get("bat"));
+    assertNull(actual.getTasks().get(0).getOutputData().get("baz"));
+    assertTrue(actual.getTasks().get(0).getOutputData().containsKey("foo"));
+  }
+
+  private Task createTask2() {
+    Task task2 = new Task();
+    task2.setTaskId("test-task-id-2");
+    task2.setTaskType(Constants.MAESTRO_TASK_NAME);
+    task2.setStatus(Task.Status.IN_PROGRESS);
+    task2.setWorkflowInstanceId(TEST_WORKFLOW_ID);
+    task2.setSeq(2);
+    return task2;
+  }
+
+  private long getCount(String metric) {
+    return metricRepo.getCounter(metric, MaestroCockroachDBExecutionDao.class).count();
+  }
+
   private String getTaskPayload() {
     return maestroExecutionDao.withRetryableQuery(
         "SELECT payload FROM task WHERE task_id = ?",
@@ -135,26 +135,26 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
     // stepRuntimeSummary object
     task.getOutputData()
         .put(Constants.STEP_RUNTIME_SUMMARY_FIELD, StepRuntimeSummary.builder().build());
-    when(callbackPolicy.getCallBackDelayInSecs(any())).thenReturn(30L);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any());
+    when(callbackPolicy.getCallBackDelayInSecs(any(), any())).thenReturn(30L);
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
     // run time summary not present
     task.getOutputData().clear();
     task = new Task();
-    when(callbackPolicy.getCallBackDelayInSecs(any())).thenReturn(30L);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
+    when(callbackPolicy.getCallBackDelayInSecs(any(), any())).thenReturn(30L);
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
     assertEquals(0, task.getCallbackAfterSeconds());
-    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any());
+    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any(), any());
     // null taskResult
-    maestroWorkflowExecutor.configureCallbackInterval(null);
-    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, null);
+    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any(), any());
     // map object as runtime summary
     task.getOutputData().clear();
     task.getOutputData().put(Constants.STEP_RUNTIME_SUMMARY_FIELD, new HashMap<>());
-    when(callbackPolicy.getCallBackDelayInSecs(any())).thenReturn(30L);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any());
+    when(callbackPolicy.getCallBackDelayInSecs(any(), any())).thenReturn(30L);
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
   }
 
@@ -170,23 +170,23 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
         .put(
             Constants.STEP_RUNTIME_SUMMARY_FIELD,
             StepRuntimeSummary.builder().runtimeState(state).type(StepType.FOREACH).build());
-    when(callbackPolicy.getCallBackDelayInSecs(any())).thenReturn(30L);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any());
+    when(callbackPolicy.getCallBackDelayInSecs(any(), any())).thenReturn(30L);
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any(), any());
     assertEquals(0L, task.getCallbackAfterSeconds());
 
     // if it happens too late
     state.setCreateTime(
         System.currentTimeMillis() - 2 * Constants.FIRST_POLL_TIME_BUFFER_IN_MILLIS);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
 
     // if it polled too many times
     state.setCreateTime(System.currentTimeMillis());
     task.setPollCount(Constants.FIRST_POLLING_COUNT_LIMIT + 1);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(3)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(3)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
   }
 
@@ -202,23 +202,23 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
         .put(
             Constants.STEP_RUNTIME_SUMMARY_FIELD,
             StepRuntimeSummary.builder().runtimeState(state).type(StepType.NOOP).build());
-    when(callbackPolicy.getCallBackDelayInSecs(any())).thenReturn(30L);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any());
+    when(callbackPolicy.getCallBackDelayInSecs(any(), any())).thenReturn(30L);
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(1)).getCallBackDelayInSecs(any(), any());
     assertEquals(0L, task.getCallbackAfterSeconds());
 
     // if it happens too late
     state.setCreateTime(
         System.currentTimeMillis() - 2 * Constants.FIRST_POLL_TIME_BUFFER_IN_MILLIS);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(2)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
 
     // if it polled too many times
     state.setCreateTime(System.currentTimeMillis());
     task.setPollCount(Constants.FIRST_POLLING_COUNT_LIMIT + 1);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(3)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(3)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
   }
 
@@ -229,21 +229,21 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
     task.setReferenceTaskName(Constants.DEFAULT_START_STEP_NAME);
     task.setCallbackAfterSeconds(30L);
     task.setPollCount(Constants.FIRST_POLLING_COUNT_LIMIT);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any(), any());
     assertEquals(0L, task.getCallbackAfterSeconds());
 
     // if it is not start task
     task.setCallbackAfterSeconds(30L);
     task.setReferenceTaskName(Constants.DEFAULT_END_STEP_NAME);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
 
     // if it polled too many times
     task.setPollCount(Constants.FIRST_POLLING_COUNT_LIMIT + 1);
-    maestroWorkflowExecutor.configureCallbackInterval(task);
-    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any());
+    maestroWorkflowExecutor.configureCallbackInterval(workflow, task);
+    verify(callbackPolicy, times(0)).getCallBackDelayInSecs(any(), any());
     assertEquals(30L, task.getCallbackAfterSeconds());
   }
 
@@ -273,16 +273,15 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
 
     List<String> erroredTasks = maestroWorkflowExecutor.cancelNonTerminalTasks(workflow);
     assertTrue(erroredTasks.isEmpty());
-    ArgumentCaptor<Task> argumentCaptor = ArgumentCaptor.forClass(Task.class);
-    verify(executionDAOFacade, times(3)).updateTask(argumentCaptor.capture());
-    assertEquals(3, argumentCaptor.getAllValues().size());
-    assertEquals(
-        Constants.DEFAULT_START_STEP_NAME, argumentCaptor.getAllValues().get(0).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor.getAllValues().get(0).getStatus());
-    assertEquals(Constants.MAESTRO_TASK_NAME, argumentCaptor.getAllValues().get(1).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor.getAllValues().get(1).getStatus());
-    assertEquals(SystemTaskType.JOIN.name(), argumentCaptor.getAllValues().get(2).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor.getAllValues().get(2).getStatus());
+    List<Task> updated = captureUpdatedTasks();
+    assertEquals(3, updated.size());
+    assertEquals(Constants.DEFAULT_START_STEP_NAME, updated.get(0).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(0).getStatus());
+    assertEquals(Constants.MAESTRO_TASK_NAME, updated.get(1).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(1).getStatus());
+    assertEquals(SystemTaskType.JOIN.name(), updated.get(2).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(2).getStatus());
+    verify(executionDAOFacade, times(0)).updateTask(any());
     verify(workflowStatusListener, times(1)).onWorkflowFinalizedIfEnabled(any(Workflow.class));
     verify(queueDAO, times(1)).remove(any(), any());
   }
@@ -316,11 +315,29 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
         MaestroRetryableError.class,
         "Error canceling tasks ",
         () -> maestroWorkflowExecutor.cancelNonTerminalTasks(workflow));
-    ArgumentCaptor<Task> argumentCaptor = ArgumentCaptor.forClass(Task.class);
-    verify(executionDAOFacade, times(1)).updateTask(argumentCaptor.capture());
-    assertEquals(1, argumentCaptor.getAllValues().size());
-    assertEquals(Constants.MAESTRO_TASK_NAME, argumentCaptor.getAllValues().get(0).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor.getAllValues().get(0).getStatus());
+    List<Task> updated = captureUpdatedTasks();
+    assertEquals(1, updated.size());
+    assertEquals(Constants.MAESTRO_TASK_NAME, updated.get(0).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(0).getStatus());
+    verify(queueDAO, times(0)).remove(any(), any());
+  }
+
+  @Test
+  public void testCancelNonTerminalTasksUpdateFailed() {
+    Task maestroTask = new Task();
+    maestroTask.setTaskId(UUID.randomUUID().toString());
+    maestroTask.setTaskType(Constants.MAESTRO_TASK_NAME);
+    maestroTask.setReferenceTaskName("maestroTask");
+    maestroTask.setStatus(Task.Status.SCHEDULED);
+    workflow.getTasks().add(maestroTask);
+
+    doThrow(new RuntimeException("test-update")).when(executionDAOFacade).updateTasks(any());
+    AssertHelper.assertThrows(
+        "Failing to update the canceled tasks will fail cancelNonTerminalTasks call.",
+        MaestroRetryableError.class,
+        "Error canceling tasks [[maestroTask]]",
+        () -> maestroWorkflowExecutor.cancelNonTerminalTasks(workflow));
+    verify(workflowStatusListener, times(0)).onWorkflowFinalizedIfEnabled(any(Workflow.class));
     verify(queueDAO, times(0)).remove(any(), any());
   }
 
@@ -347,14 +364,12 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
         "test-finalize",
         () -> maestroWorkflowExecutor.cancelNonTerminalTasks(workflow));
 
-    ArgumentCaptor<Task> argumentCaptor2 = ArgumentCaptor.forClass(Task.class);
-    verify(executionDAOFacade, times(2)).updateTask(argumentCaptor2.capture());
-    assertEquals(2, argumentCaptor2.getAllValues().size());
-    assertEquals(
-        Constants.DEFAULT_START_STEP_NAME, argumentCaptor2.getAllValues().get(0).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor2.getAllValues().get(0).getStatus());
-    assertEquals(Constants.MAESTRO_TASK_NAME, argumentCaptor2.getAllValues().get(1).getTaskType());
-    assertEquals(Task.Status.CANCELED, argumentCaptor2.getAllValues().get(1).getStatus());
+    List<Task> updated = captureUpdatedTasks();
+    assertEquals(2, updated.size());
+    assertEquals(Constants.DEFAULT_START_STEP_NAME, updated.get(0).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(0).getStatus());
+    assertEquals(Constants.MAESTRO_TASK_NAME, updated.get(1).getTaskType());
+    assertEquals(Task.Status.CANCELED, updated.get(1).getStatus());
     verify(workflowStatusListener, times(1)).onWorkflowFinalizedIfEnabled(any(Workflow.class));
     verify(queueDAO, times(0)).remove(any(), any());
   }
@@ -569,4 +584,11 @@ public class MaestroWorkflowExecutorTest extends MaestroEngineBaseTest {
     // fall back to input of executeSystemTask
     assertEquals(30, maestroTask.getCallbackAfterSeconds());
   }
+
+  @SuppressWarnings("unchecked")
+  private List<Task> captureUpdatedTasks() {
+    ArgumentCaptor<List<Task>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+    verify(executionDAOFacade, times(1)).updateTasks(argumentCaptor.capture());
+    return argumentCaptor.getValue();
+  }
 }
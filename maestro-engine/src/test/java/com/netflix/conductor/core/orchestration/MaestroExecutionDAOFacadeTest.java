@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.core.orchestration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.netflix.conductor.cockroachdb.dao.CockroachDBExecutionDAO;
+import com.netflix.conductor.common.metadata.tasks.Task;
+import com.netflix.conductor.core.execution.ApplicationException;
+import com.netflix.conductor.dao.IndexDAO;
+import com.netflix.conductor.dao.PollDataDAO;
+import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.dao.RateLimitingDAO;
+import com.netflix.maestro.AssertHelper;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.properties.MaestroConductorProperties;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class MaestroExecutionDAOFacadeTest extends MaestroEngineBaseTest {
+  @Mock private CockroachDBExecutionDAO executionDAO;
+  @Mock private QueueDAO queueDAO;
+  @Mock private IndexDAO indexDAO;
+  @Mock private RateLimitingDAO rateLimitingDao;
+  @Mock private PollDataDAO pollDataDAO;
+  @Mock private MaestroConductorProperties props;
+
+  private MaestroExecutionDAOFacade facade;
+  private Task task1;
+  private Task task2;
+
+  @Before
+  public void setUp() {
+    facade =
+        new MaestroExecutionDAOFacade(
+            executionDAO, queueDAO, indexDAO, rateLimitingDao, pollDataDAO, MAPPER, props);
+    task1 = new Task();
+    task1.setTaskId("task-1");
+    task1.setWorkflowInstanceId("workflow-1");
+    task1.setStatus(Task.Status.IN_PROGRESS);
+    task2 = new Task();
+    task2.setTaskId("task-2");
+    task2.setWorkflowInstanceId("workflow-1");
+    task2.setStatus(Task.Status.CANCELED);
+  }
+
+  @Test
+  public void testUpdateTasksInBatch() {
+    List<Task> tasks = Arrays.asList(task1, task2);
+    facade.updateTasks(tasks);
+    verify(executionDAO, times(1)).updateTasks(tasks);
+    verify(executionDAO, times(0)).updateTask(any());
+    verify(indexDAO, times(2)).indexTask(any());
+    assertTrue(task1.getUpdateTime() > 0);
+    assertEquals(0, task1.getEndTime());
+    assertTrue(task2.getUpdateTime() > 0);
+    assertTrue(task2.getEndTime() > 0);
+  }
+
+  @Test
+  public void testUpdateSingleTask() {
+    facade.updateTasks(Collections.singletonList(task1));
+    verify(executionDAO, times(0)).updateTasks(any());
+    verify(executionDAO, times(1)).updateTask(task1);
+  }
+
+  @Test
+  public void testUpdateTasksFailed() {
+    doThrow(new RuntimeException("test-error")).when(executionDAO).updateTasks(any());
+    AssertHelper.assertThrows(
+        "Failing to update tasks in a batch throws a backend error",
+        ApplicationException.class,
+        "Error updating [2] tasks in workflow: workflow-1",
+        () -> facade.updateTasks(Arrays.asList(task1, task2)));
+  }
+}
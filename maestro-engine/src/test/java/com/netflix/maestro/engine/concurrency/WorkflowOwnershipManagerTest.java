@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.concurrency;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.dao.MaestroClusterMemberDao;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class WorkflowOwnershipManagerTest extends MaestroEngineBaseTest {
+  private static final int PARTITIONS = 32;
+
+  @Mock private MaestroClusterMemberDao memberDao;
+  @Mock private ScheduledExecutorService executorService;
+  private WorkflowOwnershipManager manager;
+
+  @Before
+  public void before() {
+    manager =
+        new WorkflowOwnershipManager(
+            memberDao, "node-1", PARTITIONS, 64, 5000, 15000, executorService, metricRepo);
+  }
+
+  private long rebalanceCount() {
+    return metricRepo
+        .getCounter(
+            MetricConstants.WORKFLOW_OWNERSHIP_REBALANCE_METRIC, WorkflowOwnershipManager.class)
+        .count();
+  }
+
+  @Test
+  public void testOwnAllPartitionsBeforeRefresh() {
+    assertEquals(PARTITIONS, manager.getOwnedPartitions().length);
+    assertTrue(manager.isOwned("wf-1"));
+    assertEquals("node-1", manager.getOwner("wf-1"));
+  }
+
+  @Test
+  public void testPostConstructAndPreDestroy() {
+    when(memberDao.getLiveMembers(15000)).thenReturn(Collections.singletonList("node-1"));
+    manager.postConstruct();
+    verify(memberDao, times(1)).heartbeat("node-1");
+    verify(executorService, times(1))
+        .scheduleWithFixedDelay(any(), eq(5000L), eq(5000L), eq(TimeUnit.MILLISECONDS));
+    manager.preDestroy();
+    verify(executorService, times(1)).shutdownNow();
+    verify(memberDao, times(1)).removeMember("node-1");
+  }
+
+  @Test
+  public void testRebalanceOnMembershipChange() {
+    long count = rebalanceCount();
+    when(memberDao.getLiveMembers(15000)).thenReturn(Collections.singletonList("node-1"));
+    manager.refresh();
+    assertEquals(count, rebalanceCount());
+    assertEquals(PARTITIONS, manager.getOwnedPartitions().length);
+
+    when(memberDao.getLiveMembers(15000)).thenReturn(Arrays.asList("node-1", "node-2"));
+    manager.refresh();
+    assertEquals(count + 1, rebalanceCount());
+    verify(memberDao, times(1)).removeExpiredMembers(15000);
+    int owned = manager.getOwnedPartitions().length;
+    assertTrue(owned > 0 && owned < PARTITIONS);
+    for (int i = 0; i < 100; ++i) {
+      String workflowId = "wf-" + i;
+      assertEquals(manager.isOwned(workflowId), "node-1".equals(manager.getOwner(workflowId)));
+    }
+
+    when(memberDao.getLiveMembers(15000)).thenReturn(Collections.singletonList("node-2"));
+    manager.refresh(); // the local node is always a member
+    assertEquals(count + 1, rebalanceCount());
+    assertEquals(owned, manager.getOwnedPartitions().length);
+  }
+
+  @Test
+  public void testRefreshError() {
+    doThrow(new RuntimeException("test")).when(memberDao).heartbeat("node-1");
+    manager.refresh();
+    assertEquals(PARTITIONS, manager.getOwnedPartitions().length);
+    verify(memberDao, times(0)).getLiveMembers(anyLong());
+  }
+
+  @Test
+  public void testGetPartition() {
+    int partition = manager.getPartition("wf-1");
+    assertTrue(partition >= 0 && partition < PARTITIONS);
+    assertEquals(partition, manager.getPartition("wf-1"));
+    when(memberDao.getLiveMembers(15000)).thenReturn(Arrays.asList("node-1", "node-2"));
+    manager.refresh();
+    assertEquals(partition, manager.getPartition("wf-1"));
+    assertArrayEquals(
+        manager.getOwnedPartitions(),
+        Arrays.stream(manager.getOwnedPartitions()).sorted().toArray());
+  }
+}
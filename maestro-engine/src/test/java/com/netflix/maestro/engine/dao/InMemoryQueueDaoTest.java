@@ -15,113 +15,214 @@ package com.netflix.maestro.engine.dao;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
 
+import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mock;
 
 public class InMemoryQueueDaoTest extends MaestroEngineBaseTest {
+  private static final String QUEUE_NAME = "test-queue";
+  private static final String ID = "abcd-1234-defg-5678";
+
+  @Mock private Clock clock;
   private InMemoryQueueDao queueDao;
-  private Map<String, ConcurrentLinkedDeque<String>> internalQueue;
+  private Map<String, InMemoryQueueDao.MessageQueue> internalQueue;
 
   @Before
   public void setUp() {
+    when(clock.millis()).thenReturn(1000L);
     internalQueue = new ConcurrentHashMap<>();
-    queueDao = new InMemoryQueueDao(internalQueue);
+    queueDao = new InMemoryQueueDao(internalQueue, clock);
   }
 
   @Test
   public void testPush() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    queueDao.push(queueName, id, 123);
+    queueDao.push(QUEUE_NAME, ID, 123);
     assertEquals(1, internalQueue.size());
-    assertTrue(internalQueue.containsKey(queueName));
-    assertEquals(1, internalQueue.get(queueName).size());
-    assertEquals(id, internalQueue.get(queueName).peek());
+    assertTrue(internalQueue.containsKey(QUEUE_NAME));
+    assertEquals(1, internalQueue.get(QUEUE_NAME).size());
+    assertTrue(internalQueue.get(QUEUE_NAME).contains(ID));
+  }
+
+  @Test
+  public void testPushWithOffset() {
+    queueDao.push(QUEUE_NAME, ID, 10);
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 2, 100));
+    when(clock.millis()).thenReturn(10999L);
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 2, 100));
+    when(clock.millis()).thenReturn(11000L);
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 2, 100));
+  }
+
+  @Test
+  public void testPushMessages() {
+    queueDao.push(
+        QUEUE_NAME,
+        Arrays.asList(new Message("id1", null, null, 1), new Message("id2", null, null, 5)));
+    assertEquals(2, queueDao.getSize(QUEUE_NAME));
+    assertEquals(Arrays.asList("id2", "id1"), queueDao.pop(QUEUE_NAME, 2, 100));
   }
 
   @Test
   public void testPushIfNotExists() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertTrue(queueDao.pushIfNotExists(queueName, id, 123));
+    assertTrue(queueDao.pushIfNotExists(QUEUE_NAME, ID, 123));
     assertEquals(1, internalQueue.size());
-    assertTrue(internalQueue.containsKey(queueName));
-    assertEquals(1, internalQueue.get(queueName).size());
-    assertEquals(id, internalQueue.get(queueName).peek());
+    assertEquals(1, internalQueue.get(QUEUE_NAME).size());
 
-    assertFalse(queueDao.pushIfNotExists(queueName, id, 123));
+    assertFalse(queueDao.pushIfNotExists(QUEUE_NAME, ID, 123));
     assertEquals(1, internalQueue.size());
-    assertTrue(internalQueue.containsKey(queueName));
-    assertEquals(1, internalQueue.get(queueName).size());
-    assertEquals(id, internalQueue.get(queueName).peek());
+    assertEquals(1, internalQueue.get(QUEUE_NAME).size());
+
+    queueDao.pop(QUEUE_NAME, 1, 100);
+    assertFalse(queueDao.pushIfNotExists(QUEUE_NAME, ID, 0));
   }
 
   @Test
   public void testPop() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertEquals(Collections.emptyList(), queueDao.pop(queueName, 2, 100));
-    queueDao.pushIfNotExists(queueName, id, 123);
-    assertEquals(Collections.singletonList(id), queueDao.pop(queueName, 2, 100));
-    assertEquals(Collections.emptyList(), queueDao.pop(queueName, 2, 100));
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 2, 100));
+    queueDao.pushIfNotExists(QUEUE_NAME, ID, 0);
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 2, 100));
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 2, 100));
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    assertTrue(queueDao.containsMessage(QUEUE_NAME, ID));
+  }
+
+  @Test
+  public void testPopWithPriority() {
+    queueDao.push(QUEUE_NAME, "low", 0, 0);
+    queueDao.push(QUEUE_NAME, "high", 10, 0);
+    queueDao.push(QUEUE_NAME, "delayed", 99, 5);
+    queueDao.push(QUEUE_NAME, "low2", 0, 0);
+    assertEquals(Arrays.asList("high", "low", "low2"), queueDao.pop(QUEUE_NAME, 5, 100));
+  }
+
+  @Test
+  public void testPopLeaseExpired() {
+    queueDao.push(QUEUE_NAME, ID, 0);
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100, 10));
+    when(clock.millis()).thenReturn(10999L);
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 1, 100));
+    when(clock.millis()).thenReturn(11000L);
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100));
+  }
+
+  @Test
+  public void testPollMessages() {
+    queueDao.push(QUEUE_NAME, ID, 3, 0);
+    List<Message> messages = queueDao.pollMessages(QUEUE_NAME, 2, 100);
+    assertEquals(1, messages.size());
+    assertEquals(ID, messages.get(0).getId());
+    assertEquals(ID, messages.get(0).getReceipt());
+    assertEquals(3, messages.get(0).getPriority());
+  }
+
+  @Test
+  public void testAck() {
+    queueDao.push(QUEUE_NAME, ID, 0);
+    assertFalse(queueDao.ack(QUEUE_NAME, ID));
+    queueDao.pop(QUEUE_NAME, 1, 100);
+    assertTrue(queueDao.ack(QUEUE_NAME, ID));
+    assertFalse(queueDao.containsMessage(QUEUE_NAME, ID));
+    assertFalse(queueDao.ack(QUEUE_NAME, ID));
+  }
+
+  @Test
+  public void testSetUnackTimeout() {
+    assertFalse(queueDao.setUnackTimeout(QUEUE_NAME, ID, 1000));
+    queueDao.push(QUEUE_NAME, ID, 0);
+    queueDao.pop(QUEUE_NAME, 1, 100);
+    assertTrue(queueDao.setUnackTimeout(QUEUE_NAME, ID, 5000));
+    when(clock.millis()).thenReturn(5999L);
+    queueDao.processUnacks(QUEUE_NAME);
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    when(clock.millis()).thenReturn(6000L);
+    queueDao.processUnacks(QUEUE_NAME);
+    assertEquals(1, queueDao.getSize(QUEUE_NAME));
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100));
   }
 
   @Test
   public void testRemove() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertEquals(0, queueDao.getSize(queueName));
-    queueDao.pushIfNotExists(queueName, id, 123);
-    assertEquals(1, queueDao.getSize(queueName));
-    queueDao.remove(queueName, id);
-    assertEquals(0, queueDao.getSize(queueName));
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    queueDao.pushIfNotExists(QUEUE_NAME, ID, 123);
+    assertEquals(1, queueDao.getSize(QUEUE_NAME));
+    queueDao.remove(QUEUE_NAME, ID);
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    assertFalse(queueDao.containsMessage(QUEUE_NAME, ID));
   }
 
   @Test
   public void testGetSize() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertEquals(0, queueDao.getSize(queueName));
-    queueDao.pushIfNotExists(queueName, id, 123);
-    assertEquals(1, queueDao.getSize(queueName));
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    queueDao.pushIfNotExists(QUEUE_NAME, ID, 123);
+    assertEquals(1, queueDao.getSize(QUEUE_NAME));
+  }
+
+  @Test
+  public void testFlush() {
+    queueDao.push(QUEUE_NAME, ID, 0);
+    queueDao.flush(QUEUE_NAME);
+    assertEquals(0, queueDao.getSize(QUEUE_NAME));
+    assertFalse(queueDao.containsMessage(QUEUE_NAME, ID));
   }
 
   @Test
   public void testQueuesDetail() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    queueDao.pushIfNotExists(queueName, id, 123);
-    assertEquals(Collections.singletonMap(queueName, 1L), queueDao.queuesDetail());
+    queueDao.pushIfNotExists(QUEUE_NAME, ID, 123);
+    assertEquals(Collections.singletonMap(QUEUE_NAME, 1L), queueDao.queuesDetail());
+  }
+
+  @Test
+  public void testQueuesDetailVerbose() {
+    queueDao.push(QUEUE_NAME, ID, 0);
+    queueDao.push(QUEUE_NAME, "id2", 0);
+    queueDao.pop(QUEUE_NAME, 1, 100);
+    Map<String, Long> shard = queueDao.queuesDetailVerbose().get(QUEUE_NAME).get("a");
+    assertEquals(1L, shard.get("size").longValue());
+    assertEquals(1L, shard.get("uacked").longValue());
+  }
+
+  @Test
+  public void testResetOffsetTime() {
+    assertFalse(queueDao.resetOffsetTime(QUEUE_NAME, ID));
+    queueDao.push(QUEUE_NAME, ID, 100);
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 1, 100));
+    assertTrue(queueDao.resetOffsetTime(QUEUE_NAME, ID));
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100));
   }
 
   @Test
   public void testPostpone() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertTrue(queueDao.postpone(queueName, id, 0, 0));
+    assertTrue(queueDao.postpone(QUEUE_NAME, ID, 0, 0));
     assertEquals(1, internalQueue.size());
-    assertEquals(1, internalQueue.get(queueName).size());
-    assertEquals(id, internalQueue.get(queueName).peek());
+    assertEquals(1, internalQueue.get(QUEUE_NAME).size());
+
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100));
+    assertTrue(queueDao.postpone(QUEUE_NAME, ID, 0, 30));
+    assertEquals(0, internalQueue.get(QUEUE_NAME).unackedSize());
+    assertEquals(Collections.emptyList(), queueDao.pop(QUEUE_NAME, 1, 100));
+    when(clock.millis()).thenReturn(31000L);
+    assertEquals(Collections.singletonList(ID), queueDao.pop(QUEUE_NAME, 1, 100));
   }
 
   @Test
   public void testContainsMessage() {
-    String queueName = "test-queue";
-    String id = "abcd-1234-defg-5678";
-    assertFalse(queueDao.containsMessage(queueName, id));
+    assertFalse(queueDao.containsMessage(QUEUE_NAME, ID));
     assertEquals(1, internalQueue.size());
-    assertTrue(internalQueue.get(queueName).isEmpty());
+    assertEquals(0, internalQueue.get(QUEUE_NAME).size());
 
-    assertTrue(queueDao.pushIfNotExists(queueName, id, 123));
-    assertTrue(queueDao.containsMessage(queueName, id));
+    assertTrue(queueDao.pushIfNotExists(QUEUE_NAME, ID, 123));
+    assertTrue(queueDao.containsMessage(QUEUE_NAME, ID));
     assertEquals(1, internalQueue.size());
-    assertEquals(1, internalQueue.get(queueName).size());
-    assertEquals(id, internalQueue.get(queueName).peek());
+    assertEquals(1, internalQueue.get(QUEUE_NAME).size());
   }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import com.netflix.maestro.AssertHelper;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.exceptions.MaestroRetryableError;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstanceIdAllocatorTest extends MaestroEngineBaseTest {
+  private static final String WORKFLOW_ID = "sample-wf";
+
+  private InstanceIdAllocator allocator;
+  private long latestInstanceId;
+  private long internalId;
+  private List<Long> reserved;
+
+  @Before
+  public void setUp() {
+    allocator = new InstanceIdAllocator(10);
+    latestInstanceId = 5;
+    internalId = 1;
+    reserved = new ArrayList<>();
+  }
+
+  private InstanceIdAllocator.Block reserve(String workflowId, long size) {
+    reserved.add(size);
+    latestInstanceId += size;
+    return new InstanceIdAllocator.Block(internalId, latestInstanceId, size);
+  }
+
+  @Test
+  public void testAllocate() {
+    assertEquals(6, allocator.allocate(WORKFLOW_ID, 1, this::reserve).firstId);
+    assertEquals(7, allocator.allocate(WORKFLOW_ID, 1, this::reserve).firstId);
+    assertEquals(8, allocator.allocate(WORKFLOW_ID, 3, this::reserve).firstId);
+    assertEquals(5, allocator.remaining(WORKFLOW_ID));
+    assertEquals(Arrays.asList(10L), reserved);
+    assertEquals(15, latestInstanceId);
+  }
+
+  @Test
+  public void testAllocateBeyondBlock() {
+    assertEquals(6, allocator.allocate(WORKFLOW_ID, 8, this::reserve).firstId);
+    assertEquals(16, allocator.allocate(WORKFLOW_ID, 3, this::reserve).firstId);
+    assertEquals(26, allocator.allocate(WORKFLOW_ID, 12, this::reserve).firstId);
+    assertEquals(0, allocator.remaining(WORKFLOW_ID));
+    assertEquals(38, allocator.allocate(WORKFLOW_ID, 1, this::reserve).firstId);
+    assertEquals(Arrays.asList(10L, 10L, 12L, 10L), reserved);
+  }
+
+  @Test
+  public void testValidateForRecreatedWorkflow() {
+    InstanceIdAllocator.Allocation allocation = allocator.allocate(WORKFLOW_ID, 1, this::reserve);
+    assertEquals(6, allocation.firstId);
+    assertEquals(1, allocation.internalId);
+    allocator.validate(WORKFLOW_ID, allocation, 1);
+    assertEquals(9, allocator.remaining(WORKFLOW_ID));
+
+    internalId = 2;
+    AssertHelper.assertThrows(
+        "workflow is recreated after reserving ids",
+        MaestroRetryableError.class,
+        "Workflow [sample-wf] has been changed while reserving its instance ids",
+        () -> allocator.validate(WORKFLOW_ID, allocation, 2));
+    assertEquals(0, allocator.remaining(WORKFLOW_ID));
+
+    InstanceIdAllocator.Allocation retried = allocator.allocate(WORKFLOW_ID, 1, this::reserve);
+    assertEquals(16, retried.firstId);
+    assertEquals(2, retried.internalId);
+    allocator.validate(WORKFLOW_ID, retried, 2);
+    assertEquals(9, allocator.remaining(WORKFLOW_ID));
+
+    // a stale allocation does not drop the block of the re-created workflow
+    AssertHelper.assertThrows(
+        "allocation is from a dropped block",
+        MaestroRetryableError.class,
+        "Workflow [sample-wf] has been changed while reserving its instance ids",
+        () -> allocator.validate(WORKFLOW_ID, allocation, 2));
+    assertEquals(9, allocator.remaining(WORKFLOW_ID));
+    assertEquals(Arrays.asList(10L, 10L), reserved);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MaestroClusterMemberDaoTest extends MaestroDaoBaseTest {
+  private static final long TTL = 60000;
+
+  private MaestroClusterMemberDao memberDao;
+
+  @Before
+  public void setUp() {
+    memberDao = new MaestroClusterMemberDao(dataSource, MAPPER, config);
+    memberDao.removeExpiredMembers(0);
+  }
+
+  @After
+  public void tearDown() {
+    memberDao.removeExpiredMembers(0);
+  }
+
+  @Test
+  public void testHeartbeatAndGetLiveMembers() {
+    assertTrue(memberDao.getLiveMembers(TTL).isEmpty());
+    memberDao.heartbeat("node-2");
+    memberDao.heartbeat("node-1");
+    memberDao.heartbeat("node-1");
+    assertEquals(Arrays.asList("node-1", "node-2"), memberDao.getLiveMembers(TTL));
+    assertTrue(memberDao.getLiveMembers(0).isEmpty());
+  }
+
+  @Test
+  public void testRemoveMember() {
+    memberDao.heartbeat("node-1");
+    memberDao.heartbeat("node-2");
+    assertEquals(1, memberDao.removeMember("node-1"));
+    assertEquals(0, memberDao.removeMember("node-1"));
+    assertEquals(Collections.singletonList("node-2"), memberDao.getLiveMembers(TTL));
+  }
+
+  @Test
+  public void testRemoveExpiredMembers() {
+    memberDao.heartbeat("node-1");
+    assertEquals(0, memberDao.removeExpiredMembers(TTL));
+    assertEquals(1, memberDao.removeExpiredMembers(0));
+    assertTrue(memberDao.getLiveMembers(TTL).isEmpty());
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.netflix.maestro.AssertHelper;
+import com.netflix.maestro.engine.MaestroTestHelper;
+import com.netflix.maestro.engine.compression.GZIPCompressor;
+import com.netflix.maestro.engine.compression.StringCodec;
+import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
+import com.netflix.maestro.engine.publisher.NoOpMaestroJobEventPublisher;
+import com.netflix.maestro.engine.utils.TriggerSubscriptionClient;
+import com.netflix.maestro.exceptions.MaestroNotFoundException;
+import com.netflix.maestro.models.Constants;
+import com.netflix.maestro.models.Defaults;
+import com.netflix.maestro.models.definition.Properties;
+import com.netflix.maestro.models.definition.User;
+import com.netflix.maestro.models.definition.WorkflowDefinition;
+import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.instance.WorkflowInstance;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class MaestroInstanceArchiveDaoTest extends MaestroDaoBaseTest {
+  private static final String TEST_WORKFLOW_ID = "sample-dag-test-3";
+  private static final String TEST_WORKFLOW_INSTANCE =
+      "fixtures/instances/sample-workflow-instance-created.json";
+  private static final String TEST_STEP_INSTANCE =
+      "fixtures/instances/sample-step-instance-running.json";
+
+  private final NoOpMaestroJobEventPublisher publisher = mock(NoOpMaestroJobEventPublisher.class);
+  private MaestroInstanceArchiveDao archiveDao;
+  private MaestroWorkflowDao workflowDao;
+  private MaestroWorkflowInstanceDao instanceDao;
+  private MaestroWorkflowInstanceDao archivedInstanceDao;
+  private MaestroStepInstanceDao stepDao;
+  private MaestroStepInstanceDao archivedStepDao;
+  private WorkflowInstance wfi;
+  private StepInstance si;
+  private long cutoffTime;
+
+  @Before
+  public void setUp() throws Exception {
+    archiveDao =
+        new MaestroInstanceArchiveDao(
+            dataSource,
+            MAPPER,
+            config,
+            new StringCodec(Collections.singletonList(new GZIPCompressor())),
+            "gzip");
+    instanceDao = new MaestroWorkflowInstanceDao(dataSource, MAPPER, config, publisher);
+    archivedInstanceDao =
+        new MaestroWorkflowInstanceDao(dataSource, MAPPER, config, publisher, null, archiveDao);
+    stepDao = new MaestroStepInstanceDao(dataSource, MAPPER, config);
+    archivedStepDao = new MaestroStepInstanceDao(dataSource, MAPPER, config, archiveDao);
+
+    workflowDao =
+        new MaestroWorkflowDao(
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
+    WorkflowDefinition definition =
+        loadObject(
+            "fixtures/workflows/definition/sample-minimal-wf.json", WorkflowDefinition.class);
+    definition.setWorkflow(definition.getWorkflow().toBuilder().id(TEST_WORKFLOW_ID).build());
+    Properties properties = new Properties();
+    properties.setOwner(User.builder().name("tester").build());
+    workflowDao.addWorkflowDefinition(definition, properties);
+
+    wfi = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    wfi.setWorkflowInstanceId(0L);
+    MaestroRunStrategyDao runStrategyDao =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, metricRepo);
+    assertEquals(1, runStrategyDao.startWithRunStrategy(wfi, Defaults.DEFAULT_RUN_STRATEGY));
+    si = loadObject(TEST_STEP_INSTANCE, StepInstance.class);
+    stepDao.insertOrUpsertStepInstance(si, false);
+    cutoffTime = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+  }
+
+  @After
+  public void tearDown() {
+    MaestroTestHelper.removeWorkflow(dataSource, TEST_WORKFLOW_ID);
+    MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 1);
+    MaestroTestHelper.removeArchivedWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 1);
+  }
+
+  @Test
+  public void testArchiveInstances() {
+    archiveDao.archiveInstances(cutoffTime, 100, instanceDao, stepDao);
+    assertNull(archiveDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, Constants.LATEST_ONE));
+
+    assertTrue(
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.STOPPED, "test"));
+    assertTrue(archiveDao.archiveInstances(cutoffTime, 100, instanceDao, stepDao) >= 1);
+
+    AssertHelper.assertThrows(
+        "archived workflow instance is moved out of the instance table",
+        MaestroNotFoundException.class,
+        "workflow instance [sample-dag-test-3][1][1] not found",
+        () -> instanceDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1));
+    AssertHelper.assertThrows(
+        "archived step instance is moved out of the instance table",
+        MaestroNotFoundException.class,
+        "workflow instance [sample-dag-test-3][1][1]'s step instance [job1][1] not found",
+        () -> stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1"));
+
+    WorkflowInstance archived = archivedInstanceDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1);
+    assertEquals(WorkflowInstance.Status.STOPPED, archived.getStatus());
+    assertEquals(wfi.getWorkflowUuid(), archived.getWorkflowUuid());
+    assertNotNull(archived.getEndTime());
+    assertEquals(archived, archivedInstanceDao.getLatestWorkflowInstanceRun(TEST_WORKFLOW_ID, 1));
+
+    StepInstance step = archivedStepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1");
+    assertEquals(si.getStepUuid(), step.getStepUuid());
+    assertEquals(si.getRuntimeState().getStatus(), step.getRuntimeState().getStatus());
+    assertEquals(
+        step,
+        archivedStepDao.getStepInstance(
+            TEST_WORKFLOW_ID, 1, 1, "job1", Constants.LATEST_INSTANCE_RUN));
+    AssertHelper.assertThrows(
+        "non-existing step instance is neither in the instance table nor in the archive",
+        MaestroNotFoundException.class,
+        "workflow instance [sample-dag-test-3][1][1]'s step instance [job1][2] not found",
+        () -> archivedStepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "2"));
+  }
+
+  @Test
+  public void testDedupArchivedInstanceUuid() throws Exception {
+    assertTrue(
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.STOPPED, "test"));
+    assertTrue(archiveDao.archiveInstances(cutoffTime, 100, instanceDao, stepDao) >= 1);
+
+    WorkflowInstance duplicate = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    duplicate.setWorkflowInstanceId(0L);
+    assertEquals(wfi.getWorkflowUuid(), duplicate.getWorkflowUuid());
+    MaestroRunStrategyDao runStrategyDao =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, metricRepo);
+    assertEquals(
+        0, runStrategyDao.startWithRunStrategy(duplicate, Defaults.DEFAULT_RUN_STRATEGY));
+  }
+
+  @Test
+  public void testArchiveInstancesSkipLastFailedRun() {
+    assertTrue(
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.FAILED, "test"));
+    archiveDao.archiveInstances(cutoffTime, 100, instanceDao, stepDao);
+    assertNull(archiveDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1));
+    assertEquals(
+        WorkflowInstance.Status.FAILED,
+        instanceDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1).getStatus());
+    assertNotNull(stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1"));
+  }
+
+  @Test
+  public void testArchiveInstancesSkipRecentRun() {
+    assertTrue(
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.STOPPED, "test"));
+    archiveDao.archiveInstances(
+        System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1), 100, instanceDao, stepDao);
+    assertNull(archiveDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1));
+    assertNull(archiveDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1"));
+  }
+
+  @Test
+  public void testDeleteArchivedInstances() {
+    assertTrue(
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.STOPPED, "test"));
+    assertTrue(archiveDao.archiveInstances(cutoffTime, 100, instanceDao, stepDao) >= 1);
+    assertNotNull(archiveDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1));
+
+    reset(publisher);
+    ArgumentCaptor<DeleteWorkflowJobEvent> argumentCaptor =
+        ArgumentCaptor.forClass(DeleteWorkflowJobEvent.class);
+    workflowDao.deleteWorkflow(TEST_WORKFLOW_ID, User.create("tester"));
+    verify(publisher, times(1)).publishOrThrow(argumentCaptor.capture(), any());
+    AssertHelper.assertThrows(
+        "archived workflow instance of a deleted workflow is not returned",
+        MaestroNotFoundException.class,
+        "workflow instance [sample-dag-test-3][1][1] not found",
+        () -> archivedInstanceDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, 1));
+    AssertHelper.assertThrows(
+        "archived step instance of a deleted workflow is not returned",
+        MaestroNotFoundException.class,
+        "workflow instance [sample-dag-test-3][1][1]'s step instance [job1][1] not found",
+        () -> archivedStepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1"));
+
+    MaestroWorkflowDeletionDao deletionDao =
+        new MaestroWorkflowDeletionDao(dataSource, MAPPER, config);
+    deletionDao.deleteWorkflowData(
+        TEST_WORKFLOW_ID, argumentCaptor.getValue().getInternalId(), TimeUnit.MINUTES.toNanos(1));
+    assertNull(archiveDao.getWorkflowInstanceRun(TEST_WORKFLOW_ID, 1, Constants.LATEST_ONE));
+    assertNull(
+        archiveDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", Constants.LATEST_INSTANCE_RUN));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class MaestroInstanceArchiverTest extends MaestroEngineBaseTest {
+  @Mock private MaestroInstanceArchiveDao archiveDao;
+  @Mock private MaestroWorkflowInstanceDao instanceDao;
+  @Mock private MaestroStepInstanceDao stepInstanceDao;
+  @Mock private WorkflowOwnershipManager ownershipManager;
+  @Mock private ScheduledExecutorService executorService;
+  @Mock private MaestroMetrics metrics;
+
+  private MaestroInstanceArchiver archiver;
+
+  @Before
+  public void setUp() {
+    when(ownershipManager.isOwned(any())).thenReturn(true);
+    archiver =
+        new MaestroInstanceArchiver(
+            archiveDao,
+            instanceDao,
+            stepInstanceDao,
+            ownershipManager,
+            executorService,
+            2,
+            3600000,
+            1000,
+            0,
+            metrics);
+  }
+
+  @Test
+  public void testPostConstruct() {
+    archiver.postConstruct();
+    verify(executorService, times(1))
+        .scheduleWithFixedDelay(any(), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testArchive() {
+    when(archiveDao.archiveInstances(123L, 2, instanceDao, stepInstanceDao)).thenReturn(2);
+    assertEquals(2, archiver.archive(123L));
+    verify(metrics, times(1))
+        .distributionSummary(
+            MetricConstants.INSTANCE_ARCHIVE_BATCH_METRIC, 2, MaestroInstanceArchiver.class);
+  }
+
+  @Test
+  public void testArchiveAllUntilDrained() {
+    when(archiveDao.archiveInstances(anyLong(), eq(2), any(), any())).thenReturn(2, 2, 1);
+    archiver.archiveAll();
+    verify(archiveDao, times(3)).archiveInstances(anyLong(), eq(2), any(), any());
+  }
+
+  @Test
+  public void testArchiveAllWithError() {
+    when(archiveDao.archiveInstances(anyLong(), eq(2), any(), any()))
+        .thenThrow(new RuntimeException("test"));
+    archiver.archiveAll();
+    verify(archiveDao, times(1)).archiveInstances(anyLong(), eq(2), any(), any());
+    verify(metrics, times(1))
+        .counter(MetricConstants.INSTANCE_ARCHIVE_FAILURE_METRIC, MaestroInstanceArchiver.class);
+  }
+
+  @Test
+  public void testArchiveAllIfNotOwned() {
+    when(ownershipManager.isOwned(any())).thenReturn(false);
+    archiver.archiveAll();
+    verify(archiveDao, never()).archiveInstances(anyLong(), anyInt(), any(), any());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MaestroJobEventDaoTest extends MaestroDaoBaseTest {
+  private MaestroJobEventDao jobEventDao;
+
+  @Before
+  public void setUp() {
+    jobEventDao = new MaestroJobEventDao(dataSource, MAPPER, config);
+    drain();
+  }
+
+  @After
+  public void tearDown() {
+    drain();
+  }
+
+  private void drain() {
+    Map<String, MaestroJobEvent> jobEvents = jobEventDao.claimJobEvents(1000, 0);
+    jobEventDao.deleteJobEvents(new ArrayList<>(jobEvents.keySet()));
+  }
+
+  @Test
+  public void testAddClaimAndDeleteJobEvents() throws Exception {
+    try (Connection conn = dataSource.getConnection()) {
+      conn.setAutoCommit(false);
+      jobEventDao.addJobEvents(
+          conn,
+          Arrays.asList(
+              StartWorkflowJobEvent.create("sample-wf-1"),
+              StartWorkflowJobEvent.create("sample-wf-2")),
+          0);
+      conn.commit();
+    }
+    Map<String, MaestroJobEvent> jobEvents = jobEventDao.claimJobEvents(10, 100000);
+    assertEquals(2, jobEvents.size());
+    assertTrue(jobEvents.values().stream().allMatch(e -> e instanceof StartWorkflowJobEvent));
+    assertTrue(jobEventDao.claimJobEvents(10, 100000).isEmpty());
+    assertEquals(2, jobEventDao.deleteJobEvents(new ArrayList<>(jobEvents.keySet())));
+    assertEquals(0, jobEventDao.deleteJobEvents(Collections.emptyList()));
+  }
+
+  @Test
+  public void testClaimWithLeaseExpired() throws Exception {
+    try (Connection conn = dataSource.getConnection()) {
+      conn.setAutoCommit(false);
+      jobEventDao.addJobEvent(conn, StartWorkflowJobEvent.create("sample-wf"), 0);
+      conn.commit();
+    }
+    Map<String, MaestroJobEvent> jobEvents = jobEventDao.claimJobEvents(10, 0);
+    assertEquals(1, jobEvents.size());
+    assertEquals(jobEvents.keySet(), jobEventDao.claimJobEvents(10, 0).keySet());
+  }
+
+  @Test
+  public void testAddWithDelayAndRollback() throws Exception {
+    try (Connection conn = dataSource.getConnection()) {
+      conn.setAutoCommit(false);
+      jobEventDao.addJobEvent(conn, StartWorkflowJobEvent.create("sample-wf"), 100000);
+      conn.commit();
+      jobEventDao.addJobEvent(conn, StartWorkflowJobEvent.create("sample-wf-2"), 0);
+      conn.rollback();
+    }
+    assertTrue(jobEventDao.claimJobEvents(10, 0).isEmpty());
+  }
+}
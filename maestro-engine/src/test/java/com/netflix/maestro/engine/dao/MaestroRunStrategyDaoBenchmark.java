@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.netflix.maestro.engine.Benchmark;
+import com.netflix.maestro.engine.MaestroTestHelper;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
+import com.netflix.maestro.engine.publisher.NoOpMaestroJobEventPublisher;
+import com.netflix.maestro.engine.utils.TriggerSubscriptionClient;
+import com.netflix.maestro.models.definition.Properties;
+import com.netflix.maestro.models.definition.RunStrategy;
+import com.netflix.maestro.models.definition.User;
+import com.netflix.maestro.models.definition.WorkflowDefinition;
+import com.netflix.maestro.models.instance.WorkflowInstance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Contention benchmark of starting instances of a single workflow concurrently from two nodes,
+ * comparing the workflow row lock with the node-local instance id blocks.
+ */
+@Category(Benchmark.class)
+@Slf4j
+public class MaestroRunStrategyDaoBenchmark extends MaestroDaoBaseTest {
+  private static final String TEST_WORKFLOW_ID = "sample-dag-test-3";
+  private static final String TEST_WORKFLOW_INSTANCE =
+      "fixtures/instances/sample-workflow-instance-created.json";
+  private static final int THREADS = 8;
+  private static final int STARTS_PER_THREAD = 10;
+
+  private final MaestroJobEventPublisher publisher = mock(NoOpMaestroJobEventPublisher.class);
+
+  @Before
+  public void setUp() throws Exception {
+    MaestroWorkflowDao workflowDao =
+        new MaestroWorkflowDao(
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
+    WorkflowDefinition definition =
+        loadObject(
+            "fixtures/workflows/definition/sample-minimal-wf.json", WorkflowDefinition.class);
+    definition.setWorkflow(definition.getWorkflow().toBuilder().id(TEST_WORKFLOW_ID).build());
+    Properties properties = new Properties();
+    properties.setOwner(User.builder().name("tester").build());
+    workflowDao.addWorkflowDefinition(definition, properties);
+  }
+
+  @After
+  public void tearDown() {
+    MaestroTestHelper.removeWorkflow(dataSource, TEST_WORKFLOW_ID);
+  }
+
+  @Test
+  public void benchmarkStartWithRunStrategyContention() throws Exception {
+    MaestroRunStrategyDao locked =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, metricRepo);
+    long lockedNanos = startConcurrently(locked, locked);
+
+    long reserved = reservedBlocks();
+    MaestroRunStrategyDao node1 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 16);
+    MaestroRunStrategyDao node2 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 16);
+    long blockNanos = startConcurrently(node1, node2);
+    assertTrue(reservedBlocks() - reserved <= THREADS * STARTS_PER_THREAD / 4);
+
+    LOG.info(
+        "Started [{}] instances by [{}] threads: locked [{}] ms, with id blocks [{}] ms",
+        THREADS * STARTS_PER_THREAD,
+        THREADS,
+        TimeUnit.NANOSECONDS.toMillis(lockedNanos),
+        TimeUnit.NANOSECONDS.toMillis(blockNanos));
+  }
+
+  private long reservedBlocks() {
+    return metricRepo
+        .getCounter(
+            MetricConstants.RUNSTRATEGY_INSTANCE_ID_BLOCK_RESERVED_METRIC,
+            MaestroRunStrategyDao.class)
+        .count();
+  }
+
+  private WorkflowInstance newInstance(String uuid) throws Exception {
+    WorkflowInstance instance = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    instance.setWorkflowInstanceId(0L);
+    instance.setWorkflowRunId(0L);
+    instance.setWorkflowUuid(uuid);
+    return instance;
+  }
+
+  /**
+   * Start instances concurrently, half of the threads use the first dao and the other half use the
+   * second one. It checks ids are unique and increasing per thread and returns the elapsed time.
+   */
+  private long startConcurrently(MaestroRunStrategyDao first, MaestroRunStrategyDao second)
+      throws Exception {
+    List<List<WorkflowInstance>> instances = new ArrayList<>();
+    for (int t = 0; t < THREADS; ++t) {
+      List<WorkflowInstance> list = new ArrayList<>();
+      for (int i = 0; i < STARTS_PER_THREAD; ++i) {
+        list.add(newInstance("uuid-" + System.identityHashCode(first) + "-" + t + "-" + i));
+      }
+      instances.add(list);
+    }
+    Set<Long> ids = ConcurrentHashMap.newKeySet();
+    CountDownLatch ready = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int t = 0; t < THREADS; ++t) {
+        MaestroRunStrategyDao node = t % 2 == 0 ? first : second;
+        List<WorkflowInstance> list = instances.get(t);
+        futures.add(
+            executor.submit(
+                () -> {
+                  ready.await();
+                  long previous = 0;
+                  for (WorkflowInstance instance : list) {
+                    assertEquals(
+                        1, node.startWithRunStrategy(instance, RunStrategy.create("PARALLEL")));
+                    assertTrue(instance.getWorkflowInstanceId() > previous);
+                    previous = instance.getWorkflowInstanceId();
+                    ids.add(previous);
+                  }
+                  return null;
+                }));
+      }
+      long start = System.nanoTime();
+      ready.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      long elapsed = System.nanoTime() - start;
+      assertEquals(THREADS * STARTS_PER_THREAD, ids.size());
+      return elapsed;
+    } finally {
+      executor.shutdownNow();
+      for (long id : ids) {
+        MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, id);
+      }
+    }
+  }
+}
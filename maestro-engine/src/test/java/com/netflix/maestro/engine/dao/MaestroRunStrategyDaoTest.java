@@ -24,6 +24,7 @@ import static org.mockito.Mockito.verify;
 import com.netflix.maestro.AssertHelper;
 import com.netflix.maestro.engine.MaestroTestHelper;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.engine.jobevents.RunWorkflowInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
 import com.netflix.maestro.engine.jobevents.TerminateThenRunInstanceJobEvent;
@@ -45,9 +46,16 @@ import com.netflix.maestro.models.instance.RunPolicy;
 import com.netflix.maestro.models.instance.WorkflowInstance;
 import com.netflix.maestro.models.timeline.Timeline;
 import com.netflix.maestro.models.timeline.TimelineLogEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -66,7 +74,12 @@ public class MaestroRunStrategyDaoTest extends MaestroDaoBaseTest {
   public void setUp() throws Exception {
     MaestroWorkflowDao workflowDao =
         new MaestroWorkflowDao(
-            dataSource, MAPPER, config, publisher, mock(TriggerSubscriptionClient.class));
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
     WorkflowDefinition definition =
         loadObject(
             "fixtures/workflows/definition/sample-minimal-wf.json", WorkflowDefinition.class);
@@ -139,6 +152,33 @@ public class MaestroRunStrategyDaoTest extends MaestroDaoBaseTest {
     MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 2);
   }
 
+  @Test
+  public void testStartAndDequeueWithJobEventOutbox() {
+    MaestroJobEventDao jobEventDao = new MaestroJobEventDao(dataSource, MAPPER, config);
+    MaestroRunStrategyDao outboxRunStrategyDao =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, jobEventDao, metricRepo);
+    wfi.setWorkflowInstanceId(0L);
+    wfi.setWorkflowRunId(0L);
+    wfi.setWorkflowUuid("test-uuid");
+    int res = outboxRunStrategyDao.startWithRunStrategy(wfi, RunStrategy.create("PARALLEL"));
+    assertEquals(1, res);
+    res =
+        outboxRunStrategyDao.dequeueWithRunStrategy(
+            TEST_WORKFLOW_ID, RunStrategy.create("PARALLEL"));
+    assertEquals(2, res);
+    verifyPublish(0, 0, 0, 0, 0);
+
+    Map<String, MaestroJobEvent> jobEvents = jobEventDao.claimJobEvents(10, 0);
+    assertEquals(3, jobEvents.size());
+    assertEquals(
+        1L, jobEvents.values().stream().filter(e -> e instanceof StartWorkflowJobEvent).count());
+    assertEquals(
+        2L,
+        jobEvents.values().stream().filter(e -> e instanceof RunWorkflowInstancesJobEvent).count());
+    assertEquals(3, jobEventDao.deleteJobEvents(new ArrayList<>(jobEvents.keySet())));
+    MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 2);
+  }
+
   @Test
   public void testStartWithRunStrategyForDeletedWorkflow() {
     MaestroTestHelper.removeWorkflow(dataSource, TEST_WORKFLOW_ID);
@@ -580,4 +620,123 @@ public class MaestroRunStrategyDaoTest extends MaestroDaoBaseTest {
     verifyPublish(0, 0, 0, 0, 1);
     MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 2);
   }
+
+  private WorkflowInstance newInstance(String uuid) throws Exception {
+    WorkflowInstance instance = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    instance.setWorkflowInstanceId(0L);
+    instance.setWorkflowRunId(0L);
+    instance.setWorkflowUuid(uuid);
+    return instance;
+  }
+
+  @Test
+  public void testStartWithInstanceIdBlock() throws Exception {
+    MaestroRunStrategyDao node1 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 10);
+    MaestroRunStrategyDao node2 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 10);
+    RunStrategy runStrategy = RunStrategy.create("PARALLEL");
+
+    WorkflowInstance instance = newInstance("uuid-1");
+    assertEquals(1, node1.startWithRunStrategy(instance, runStrategy));
+    assertEquals(2, instance.getWorkflowInstanceId());
+    instance = newInstance("uuid-2");
+    assertEquals(1, node2.startWithRunStrategy(instance, runStrategy));
+    assertEquals(12, instance.getWorkflowInstanceId());
+    instance = newInstance("uuid-3");
+    assertEquals(1, node1.startWithRunStrategy(instance, runStrategy));
+    assertEquals(3, instance.getWorkflowInstanceId());
+    assertEquals(0, node1.startWithRunStrategy(newInstance("uuid-1"), runStrategy));
+
+    List<WorkflowInstance> batch = prepareBatch();
+    int[] res = node2.startBatchWithRunStrategy(TEST_WORKFLOW_ID, runStrategy, batch);
+    assertArrayEquals(new int[] {1, 0, 1}, res);
+    assertEquals(13, batch.get(0).getWorkflowInstanceId());
+    assertEquals(0, batch.get(1).getWorkflowInstanceId());
+    assertEquals(14, batch.get(2).getWorkflowInstanceId());
+
+    // the locked path continues after the reserved blocks
+    instance = newInstance("uuid-4");
+    assertEquals(1, runStrategyDao.startWithRunStrategy(instance, runStrategy));
+    assertEquals(22, instance.getWorkflowInstanceId());
+    verifyPublish(5, 0, 0, 0, 0);
+
+    for (long id : new long[] {2, 3, 12, 13, 14, 22}) {
+      MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, id);
+    }
+  }
+
+  @Test
+  public void testConcurrentStartWithSameUuidAndInstanceIdBlock() throws Exception {
+    MaestroRunStrategyDao node1 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 10);
+    MaestroRunStrategyDao node2 =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, null, metricRepo, 10);
+    RunStrategy runStrategy = RunStrategy.create("PARALLEL");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    List<Long> startedIds = new ArrayList<>();
+    try {
+      for (int i = 0; i < 5; ++i) {
+        WorkflowInstance instance1 = newInstance("same-uuid-" + i);
+        WorkflowInstance instance2 = newInstance("same-uuid-" + i);
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<Integer> res1 =
+            executor.submit(
+                () -> {
+                  latch.await();
+                  return node1.startWithRunStrategy(instance1, runStrategy);
+                });
+        Future<Integer> res2 =
+            executor.submit(
+                () -> {
+                  latch.await();
+                  return node2.startWithRunStrategy(instance2, runStrategy);
+                });
+        latch.countDown();
+        assertEquals(1, res1.get(30, TimeUnit.SECONDS) + res2.get(30, TimeUnit.SECONDS));
+        WorkflowInstance started = res1.get() == 1 ? instance1 : instance2;
+        WorkflowInstance skipped = res1.get() == 1 ? instance2 : instance1;
+        startedIds.add(started.getWorkflowInstanceId());
+        assertEquals(0, skipped.getWorkflowInstanceId());
+        assertEquals(
+            started.getWorkflowUuid(),
+            dao.getLatestWorkflowInstanceRun(TEST_WORKFLOW_ID, started.getWorkflowInstanceId())
+                .getWorkflowUuid());
+      }
+
+      List<WorkflowInstance> batch1 = Arrays.asList(newInstance("uuid-a"), newInstance("uuid-b"));
+      List<WorkflowInstance> batch2 = Arrays.asList(newInstance("uuid-b"), newInstance("uuid-c"));
+      CountDownLatch latch = new CountDownLatch(1);
+      Future<int[]> res1 =
+          executor.submit(
+              () -> {
+                latch.await();
+                return node1.startBatchWithRunStrategy(TEST_WORKFLOW_ID, runStrategy, batch1);
+              });
+      Future<int[]> res2 =
+          executor.submit(
+              () -> {
+                latch.await();
+                return node2.startBatchWithRunStrategy(TEST_WORKFLOW_ID, runStrategy, batch2);
+              });
+      latch.countDown();
+      int[] started1 = res1.get(30, TimeUnit.SECONDS);
+      int[] started2 = res2.get(30, TimeUnit.SECONDS);
+      assertEquals(1, started1[0]);
+      assertEquals(1, started2[1]);
+      assertEquals(1, started1[1] + started2[0]);
+      for (WorkflowInstance instance : Arrays.asList(batch1.get(0), batch1.get(1), batch2.get(0))) {
+        if (instance.getWorkflowInstanceId() != 0) {
+          startedIds.add(instance.getWorkflowInstanceId());
+        }
+      }
+      startedIds.add(batch2.get(1).getWorkflowInstanceId());
+      assertEquals(9, startedIds.size());
+    } finally {
+      executor.shutdownNow();
+      for (long id : startedIds) {
+        MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, id);
+      }
+    }
+  }
 }
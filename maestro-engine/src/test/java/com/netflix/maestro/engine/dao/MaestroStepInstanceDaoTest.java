@@ -23,6 +23,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import com.netflix.conductor.core.execution.ApplicationException;
 import com.netflix.maestro.AssertHelper;
 import com.netflix.maestro.engine.MaestroTestHelper;
+import com.netflix.maestro.engine.db.DbOperation;
 import com.netflix.maestro.engine.execution.StepRuntimeSummary;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.exceptions.MaestroNotFoundException;
@@ -172,6 +173,85 @@ public class MaestroStepInstanceDaoTest extends MaestroDaoBaseTest {
     Assertions.assertThat(instance).usingRecursiveComparison().isEqualTo(si);
   }
 
+  @Test
+  public void testBatchSyncStepInstances() throws Exception {
+    StepInstance retry = loadObject(TEST_STEP_INSTANCE, StepInstance.class);
+    retry.setStepAttemptId(2);
+    StepRuntimeSummary insert =
+        StepRuntimeSummary.builder()
+            .stepId("job1")
+            .stepAttemptId(2)
+            .stepInstanceId(1)
+            .dbOperation(DbOperation.INSERT)
+            .build();
+    si.getRuntimeState().setStatus(StepInstance.Status.FAILED);
+    si.setArtifacts(Collections.emptyMap());
+    si.setTimeline(new Timeline(Collections.emptyList()));
+    StepRuntimeSummary update =
+        StepRuntimeSummary.builder()
+            .stepId("job1")
+            .stepAttemptId(1)
+            .stepInstanceId(1)
+            .dbOperation(DbOperation.UPDATE)
+            .runtimeState(si.getRuntimeState())
+            .artifacts(si.getArtifacts())
+            .dependencies(si.getDependencies())
+            .outputs(si.getOutputs())
+            .timeline(si.getTimeline())
+            .build();
+    stepDao.batchSyncStepInstances(Arrays.asList(si, retry), Arrays.asList(update, insert));
+    StepInstance instance = stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1");
+    assertEquals(StepInstance.Status.FAILED, instance.getRuntimeState().getStatus());
+    Assertions.assertThat(instance).usingRecursiveComparison().isEqualTo(si);
+    StepInstance latest = stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "latest");
+    assertEquals(2, latest.getStepAttemptId());
+    assertEquals(StepInstance.Status.RUNNING, latest.getRuntimeState().getStatus());
+  }
+
+  @Test
+  public void testBatchSyncMultipleStepInstancesPerStatement() throws Exception {
+    StepInstance retry2 = loadObject(TEST_STEP_INSTANCE, StepInstance.class);
+    retry2.setStepAttemptId(2);
+    StepInstance retry3 = loadObject(TEST_STEP_INSTANCE, StepInstance.class);
+    retry3.setStepAttemptId(3);
+    stepDao.batchSyncStepInstances(
+        Arrays.asList(retry2, retry3),
+        Arrays.asList(batchSummary(2, DbOperation.INSERT), batchSummary(3, DbOperation.INSERT)));
+    assertEquals(
+        3, stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "latest").getStepAttemptId());
+
+    StepRuntimeSummary update2 = batchSummary(2, DbOperation.UPDATE);
+    update2.getRuntimeState().setStatus(StepInstance.Status.FAILED);
+    StepRuntimeSummary update3 = batchSummary(3, DbOperation.UPDATE);
+    update3.getRuntimeState().setStatus(StepInstance.Status.SUCCEEDED);
+    stepDao.batchSyncStepInstances(Arrays.asList(retry2, retry3), Arrays.asList(update2, update3));
+    assertEquals(
+        StepInstance.Status.RUNNING,
+        stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1").getRuntimeState().getStatus());
+    assertEquals(
+        StepInstance.Status.FAILED,
+        stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "2").getRuntimeState().getStatus());
+    assertEquals(
+        StepInstance.Status.SUCCEEDED,
+        stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "3").getRuntimeState().getStatus());
+  }
+
+  private StepRuntimeSummary batchSummary(long stepAttemptId, DbOperation dbOperation) {
+    StepRuntimeState runtimeState = new StepRuntimeState();
+    runtimeState.setStatus(StepInstance.Status.RUNNING);
+    return StepRuntimeSummary.builder()
+        .stepId("job1")
+        .stepAttemptId(stepAttemptId)
+        .stepInstanceId(1)
+        .dbOperation(dbOperation)
+        .runtimeState(runtimeState)
+        .artifacts(Collections.emptyMap())
+        .dependencies(si.getDependencies())
+        .outputs(si.getOutputs())
+        .timeline(new Timeline(Collections.emptyList()))
+        .build();
+  }
+
   @Test
   public void testGetStepInstance() {
     StepInstance instance = stepDao.getStepInstance(TEST_WORKFLOW_ID, 1, 1, "job1", "1");
@@ -16,6 +16,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -112,7 +113,14 @@ public class MaestroWorkflowDaoTest extends MaestroDaoBaseTest {
   public void setUp() {
     publisher = mock(MaestroJobEventPublisher.class);
     triggerClient = mock(TriggerSubscriptionClient.class);
-    workflowDao = new MaestroWorkflowDao(dataSource, MAPPER, config, publisher, triggerClient);
+    workflowDao =
+        new MaestroWorkflowDao(
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            triggerClient,
+            new WorkflowDefinitionCache(0, 0, metricRepo));
     instanceDao = new MaestroWorkflowInstanceDao(dataSource, MAPPER, config, publisher);
     runStrategyDao = new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, metricRepo);
   }
@@ -584,6 +592,86 @@ public class MaestroWorkflowDaoTest extends MaestroDaoBaseTest {
     assertEquals(1L, definition.getMetadata().getWorkflowVersionId().longValue());
   }
 
+  @Test
+  public void testGetWorkflowDefinitionFromCache() throws Exception {
+    WorkflowDefinitionCache cache = new WorkflowDefinitionCache(10, 60000, metricRepo);
+    workflowDao =
+        new MaestroWorkflowDao(dataSource, MAPPER, config, publisher, triggerClient, cache);
+    WorkflowDefinition wfd = loadWorkflow(TEST_WORKFLOW_ID1);
+    workflowDao.addWorkflowDefinition(wfd, wfd.getPropertiesSnapshot().extractProperties());
+    WorkflowDefinition definition = workflowDao.getWorkflowDefinition(TEST_WORKFLOW_ID1, "active");
+    assertEquals(wfd, definition);
+    assertEquals(1, cache.workflowSize());
+    assertEquals(1, cache.versionSize());
+
+    WorkflowDefinition cached = workflowDao.getWorkflowDefinition(TEST_WORKFLOW_ID1, "1");
+    assertEquals(definition, cached);
+    assertNotSame(definition.getWorkflow(), cached.getWorkflow());
+    assertNotSame(definition.getPropertiesSnapshot(), cached.getPropertiesSnapshot());
+
+    workflowDao.deactivate(TEST_WORKFLOW_ID1, User.create("test"));
+    assertEquals(0, cache.workflowSize());
+    WorkflowDefinition def = workflowDao.getWorkflowDefinition(TEST_WORKFLOW_ID1, "latest");
+    assertEquals(false, def.getIsActive());
+    assertEquals(wfd.getWorkflow(), def.getWorkflow());
+    assertEquals(1, cache.versionSize());
+
+    workflowDao.deleteWorkflow(TEST_WORKFLOW_ID1, User.create("tester"));
+    assertEquals(0, cache.workflowSize());
+    AssertHelper.assertThrows(
+        "The workflow should have been deleted",
+        MaestroNotFoundException.class,
+        "has not been created yet or has been deleted",
+        () -> workflowDao.getWorkflowDefinition(TEST_WORKFLOW_ID1, "latest"));
+  }
+
+  @Test
+  public void testGetRunStrategyFromCache() throws Exception {
+    // a zero ttl validates the cached snapshot against DB on every read
+    WorkflowDefinitionCache cache = new WorkflowDefinitionCache(10, 0, metricRepo);
+    workflowDao =
+        new MaestroWorkflowDao(dataSource, MAPPER, config, publisher, triggerClient, cache);
+    WorkflowDefinition wfd = loadWorkflow(TEST_WORKFLOW_ID2);
+    workflowDao.addWorkflowDefinition(wfd, wfd.getPropertiesSnapshot().extractProperties());
+    assertEquals(Defaults.DEFAULT_RUN_STRATEGY, workflowDao.getRunStrategy(TEST_WORKFLOW_ID2));
+    assertEquals(1, cache.snapshotSize());
+    PropertiesSnapshot snapshot =
+        workflowDao.getWorkflowPropertiesSnapshot(
+            TEST_WORKFLOW_ID2, Constants.LATEST_INSTANCE_RUN);
+    // the mutable properties snapshot is not shared with the cache
+    PropertiesSnapshot another =
+        workflowDao.getWorkflowPropertiesSnapshot(
+            TEST_WORKFLOW_ID2, Constants.LATEST_INSTANCE_RUN);
+    assertNotSame(snapshot, another);
+    assertEquals(snapshot, another);
+    assertSame(
+        workflowDao.getRunStrategy(TEST_WORKFLOW_ID2),
+        workflowDao.getRunStrategy(TEST_WORKFLOW_ID2));
+
+    // properties updated by another node with its own cache are detected by the version stamp
+    MaestroWorkflowDao anotherDao =
+        new MaestroWorkflowDao(
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            triggerClient,
+            new WorkflowDefinitionCache(10, 60000, metricRepo));
+    Properties props = new Properties();
+    props.setRunStrategy(RunStrategy.create("PARALLEL"));
+    anotherDao.updateWorkflowProperties(
+        TEST_WORKFLOW_ID2, User.create("test"), props, PROPERTIES_UPDATE);
+    assertEquals(1, cache.snapshotSize());
+    assertEquals(RunStrategy.create("PARALLEL"), workflowDao.getRunStrategy(TEST_WORKFLOW_ID2));
+
+    // properties updated locally invalidate the cached one
+    props.setRunStrategy(RunStrategy.create("SEQUENTIAL"));
+    workflowDao.updateWorkflowProperties(
+        TEST_WORKFLOW_ID2, User.create("test"), props, PROPERTIES_UPDATE);
+    assertEquals(0, cache.snapshotSize());
+    assertEquals(RunStrategy.create("SEQUENTIAL"), workflowDao.getRunStrategy(TEST_WORKFLOW_ID2));
+  }
+
   @Test
   public void testGetWorkflowDefinitionWithErrors() throws Exception {
     WorkflowDefinition wfd = loadWorkflow(TEST_WORKFLOW_ID1);
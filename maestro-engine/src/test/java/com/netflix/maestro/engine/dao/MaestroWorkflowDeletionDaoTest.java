@@ -49,7 +49,12 @@ public class MaestroWorkflowDeletionDaoTest extends MaestroDaoBaseTest {
     deletionDao = new MaestroWorkflowDeletionDao(dataSource, MAPPER, config);
     workflowDao =
         new MaestroWorkflowDao(
-            dataSource, MAPPER, config, publisher, mock(TriggerSubscriptionClient.class));
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
   }
 
   @After
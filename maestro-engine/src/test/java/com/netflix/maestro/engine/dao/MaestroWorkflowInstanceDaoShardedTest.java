@@ -0,0 +1,223 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.netflix.conductor.cockroachdb.CockroachDBConfiguration;
+import com.netflix.conductor.cockroachdb.CockroachDBDataSourceProvider;
+import com.netflix.maestro.engine.MaestroDBTestConfiguration;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.MaestroTestHelper;
+import com.netflix.maestro.engine.db.ForeachIterationOverview;
+import com.netflix.maestro.engine.properties.MaestroConductorProperties;
+import com.netflix.maestro.engine.publisher.NoOpMaestroJobEventPublisher;
+import com.netflix.maestro.engine.utils.TriggerSubscriptionClient;
+import com.netflix.maestro.models.Defaults;
+import com.netflix.maestro.models.definition.Properties;
+import com.netflix.maestro.models.definition.User;
+import com.netflix.maestro.models.definition.WorkflowDefinition;
+import com.netflix.maestro.models.error.Details;
+import com.netflix.maestro.models.initiator.ForeachInitiator;
+import com.netflix.maestro.models.instance.WorkflowInstance;
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the workflow instance DAO against the sharded layout. The sharded migration is enabled
+ * after all the other migrations have been applied to cover enabling the sharding later.
+ */
+public class MaestroWorkflowInstanceDaoShardedTest extends MaestroEngineBaseTest {
+  private static final String TEST_WORKFLOW_ID = "sample-dag-test-3";
+  private static final String TEST_WORKFLOW_INSTANCE =
+      "fixtures/instances/sample-workflow-instance-created.json";
+  private static final String SHARDED_JDBC_URL = "jdbc:tc:cockroach:v22.2.19:///maestro_sharded";
+
+  private static CockroachDBConfiguration config;
+  private static DataSource dataSource;
+
+  private MaestroWorkflowInstanceDao instanceDao;
+  private WorkflowInstance wfi;
+  private final NoOpMaestroJobEventPublisher publisher = mock(NoOpMaestroJobEventPublisher.class);
+
+  @BeforeClass
+  public static void init() {
+    MaestroEngineBaseTest.init();
+    CockroachDBConfiguration unsharded =
+        new MaestroDBTestConfiguration() {
+          @Override
+          public String getJdbcUrl() {
+            return SHARDED_JDBC_URL;
+          }
+        };
+    ((HikariDataSource) new CockroachDBDataSourceProvider(unsharded).get()).close();
+
+    config =
+        new MaestroDBTestConfiguration() {
+          @Override
+          public String getJdbcUrl() {
+            return SHARDED_JDBC_URL;
+          }
+
+          @Override
+          public String[] getFlywayLocations() {
+            return new String[] {"db/migration", "db/migration-sharded"};
+          }
+
+          @Override
+          public boolean isFlywayOutOfOrder() {
+            return true;
+          }
+
+          @Override
+          public boolean getBooleanProperty(String name, boolean defaultValue) {
+            if (MaestroConductorProperties.INSTANCE_SHARDING_ENABLED_PROPERTY_NAME.equals(name)) {
+              return true;
+            }
+            return super.getBooleanProperty(name, defaultValue);
+          }
+        };
+    dataSource = new CockroachDBDataSourceProvider(config).get();
+  }
+
+  @AfterClass
+  public static void destroy() {
+    ((HikariDataSource) dataSource).close();
+    MaestroEngineBaseTest.destroy();
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    instanceDao = new MaestroWorkflowInstanceDao(dataSource, MAPPER, config, publisher);
+    MaestroRunStrategyDao runStrategyDao =
+        new MaestroRunStrategyDao(dataSource, MAPPER, config, publisher, metricRepo);
+    MaestroWorkflowDao workflowDao =
+        new MaestroWorkflowDao(
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
+    WorkflowDefinition definition =
+        loadObject(
+            "fixtures/workflows/definition/sample-minimal-wf.json", WorkflowDefinition.class);
+    definition.setWorkflow(definition.getWorkflow().toBuilder().id(TEST_WORKFLOW_ID).build());
+    Properties properties = new Properties();
+    properties.setOwner(User.builder().name("tester").build());
+    workflowDao.addWorkflowDefinition(definition, properties);
+
+    wfi = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    wfi.setWorkflowInstanceId(0L);
+    wfi.setInitiator(new ForeachInitiator());
+    int res = runStrategyDao.startWithRunStrategy(wfi, Defaults.DEFAULT_RUN_STRATEGY);
+    assertEquals(1, res);
+    assertEquals(1, wfi.getWorkflowInstanceId());
+  }
+
+  @After
+  public void tearDown() {
+    MaestroTestHelper.removeWorkflow(dataSource, TEST_WORKFLOW_ID);
+    MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 1);
+  }
+
+  @Test
+  public void testInstanceShardColumn() throws Exception {
+    WorkflowInstance instance = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    instance.setWorkflowUuid("wfi-uuid");
+    instance.setWorkflowInstanceId(17L);
+    Optional<Details> res =
+        instanceDao.runWorkflowInstances(TEST_WORKFLOW_ID, Arrays.asList(instance), 1);
+    assertFalse(res.isPresent());
+
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement stmt =
+            conn.prepareStatement(
+                "SELECT instance_shard FROM maestro_workflow_instance "
+                    + "WHERE workflow_id=? AND instance_id=?")) {
+      stmt.setString(1, TEST_WORKFLOW_ID);
+      stmt.setLong(2, 17);
+      try (ResultSet result = stmt.executeQuery()) {
+        assertTrue(result.next());
+        assertEquals(1, result.getLong(1));
+      }
+    } finally {
+      MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 17);
+    }
+  }
+
+  @Test
+  public void testRunWorkflowInstances() throws Exception {
+    WorkflowInstance wfi1 = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    wfi1.setWorkflowUuid("wfi1-uuid");
+    wfi1.setWorkflowInstanceId(100L);
+    WorkflowInstance wfi2 = loadObject(TEST_WORKFLOW_INSTANCE, WorkflowInstance.class);
+    wfi2.setWorkflowUuid("wfi2-uuid");
+    wfi2.setWorkflowInstanceId(101L);
+
+    Optional<Details> res =
+        instanceDao.runWorkflowInstances(TEST_WORKFLOW_ID, Arrays.asList(wfi1, wfi2), 2);
+    assertFalse(res.isPresent());
+    // retrying the same instances hits the conflict on the sharded primary key
+    res = instanceDao.runWorkflowInstances(TEST_WORKFLOW_ID, Arrays.asList(wfi1, wfi2), 2);
+    assertFalse(res.isPresent());
+
+    WorkflowInstance actual = instanceDao.getLatestWorkflowInstanceRun(TEST_WORKFLOW_ID, 101);
+    assertEquals(101, actual.getWorkflowInstanceId());
+    assertEquals(1, actual.getWorkflowRunId());
+    assertEquals("wfi2-uuid", actual.getWorkflowUuid());
+    assertEquals(WorkflowInstance.Status.CREATED, actual.getStatus());
+
+    MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 100);
+    MaestroTestHelper.removeWorkflowInstance(dataSource, TEST_WORKFLOW_ID, 101);
+  }
+
+  @Test
+  public void testGetLatestWorkflowInstanceRun() {
+    WorkflowInstance actual =
+        instanceDao.getLatestWorkflowInstanceRun(TEST_WORKFLOW_ID, wfi.getWorkflowInstanceId());
+    assertEquals(wfi.getWorkflowUuid(), actual.getWorkflowUuid());
+    assertEquals(1, actual.getWorkflowRunId());
+    assertEquals(WorkflowInstance.Status.CREATED, actual.getStatus());
+  }
+
+  @Test
+  public void testGetForeachIterationOverview() {
+    List<ForeachIterationOverview> stats =
+        instanceDao.getForeachIterationOverviewWithCheckpoint(TEST_WORKFLOW_ID, 1, 0, false);
+    assertEquals(1, stats.size());
+    assertEquals(1L, stats.get(0).getInstanceId());
+    assertEquals(WorkflowInstance.Status.CREATED, stats.get(0).getStatus());
+
+    boolean res =
+        instanceDao.tryTerminateQueuedInstance(wfi, WorkflowInstance.Status.STOPPED, "test-reason");
+    assertTrue(res);
+    stats = instanceDao.getForeachIterationOverviewWithCheckpoint(TEST_WORKFLOW_ID, 1, 0, false);
+    assertEquals(1, stats.size());
+    assertEquals(WorkflowInstance.Status.STOPPED, stats.get(0).getStatus());
+  }
+}
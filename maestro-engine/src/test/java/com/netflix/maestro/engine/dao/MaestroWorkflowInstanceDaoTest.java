@@ -27,6 +27,8 @@ import static org.mockito.Mockito.verify;
 import com.netflix.maestro.AssertHelper;
 import com.netflix.maestro.engine.MaestroTestHelper;
 import com.netflix.maestro.engine.db.ForeachIterationOverview;
+import com.netflix.maestro.engine.db.InstanceRunRecord;
+import com.netflix.maestro.engine.db.InstanceRunUuid;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.jobevents.RunWorkflowInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
@@ -61,6 +63,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 import org.junit.After;
@@ -86,7 +89,12 @@ public class MaestroWorkflowInstanceDaoTest extends MaestroDaoBaseTest {
 
     MaestroWorkflowDao workflowDao =
         new MaestroWorkflowDao(
-            dataSource, MAPPER, config, publisher, mock(TriggerSubscriptionClient.class));
+            dataSource,
+            MAPPER,
+            config,
+            publisher,
+            mock(TriggerSubscriptionClient.class),
+            new WorkflowDefinitionCache(0, 0, metricRepo));
     WorkflowDefinition definition =
         loadObject(
             "fixtures/workflows/definition/sample-minimal-wf.json", WorkflowDefinition.class);
@@ -386,6 +394,23 @@ public class MaestroWorkflowInstanceDaoTest extends MaestroDaoBaseTest {
     assertEquals(WorkflowInstance.Status.CREATED, status);
   }
 
+  @Test
+  public void testGetWorkflowInstanceRunsWithExecuted() {
+    InstanceRunUuid existing = new InstanceRunUuid(1L, 1L, wfi.getWorkflowUuid());
+    InstanceRunUuid missing = new InstanceRunUuid(2L, 1L, "uuid2");
+    Map<InstanceRunUuid, InstanceRunRecord> records =
+        instanceDao.getWorkflowInstanceRunsWithExecuted(
+            TEST_WORKFLOW_ID, Arrays.asList(existing, missing));
+    assertEquals(1, records.size());
+    assertEquals(wfi.getWorkflowUuid(), records.get(existing).getInstance().getWorkflowUuid());
+    assertEquals(WorkflowInstance.Status.CREATED, records.get(existing).getInstance().getStatus());
+    assertFalse(records.get(existing).isExecuted());
+    assertTrue(
+        instanceDao
+            .getWorkflowInstanceRunsWithExecuted(TEST_WORKFLOW_ID, Collections.emptyList())
+            .isEmpty());
+  }
+
   @Test
   public void testUpdateWorkflowInstanceToEnd() {
     WorkflowSummary summary = new WorkflowSummary();
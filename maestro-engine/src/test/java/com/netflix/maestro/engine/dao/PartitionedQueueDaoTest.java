@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class PartitionedQueueDaoTest extends MaestroEngineBaseTest {
+  private static final String QUEUE_NAME = "test-queue";
+  private static final int PARTITIONS = 8;
+  private static final int MESSAGES = 50;
+
+  @Mock private MaestroClusterMemberDao memberDao;
+  @Mock private ScheduledExecutorService executorService;
+
+  private InMemoryQueueDao delegate;
+  private WorkflowOwnershipManager manager1;
+  private PartitionedQueueDao node1;
+  private PartitionedQueueDao node2;
+
+  @Before
+  public void setUp() {
+    when(memberDao.getLiveMembers(15000)).thenReturn(Arrays.asList("node-1", "node-2"));
+    delegate = new InMemoryQueueDao();
+    manager1 = manager("node-1");
+    node1 = new PartitionedQueueDao(delegate, manager1);
+    node2 = new PartitionedQueueDao(delegate, manager("node-2"));
+  }
+
+  private WorkflowOwnershipManager manager(String memberId) {
+    WorkflowOwnershipManager manager =
+        new WorkflowOwnershipManager(
+            memberDao, memberId, PARTITIONS, 64, 5000, 15000, executorService, metricRepo);
+    manager.refresh();
+    return manager;
+  }
+
+  @Test
+  public void testPopOnlyOwnedPartitions() {
+    for (int i = 0; i < MESSAGES; ++i) {
+      node1.push(QUEUE_NAME, "wf-" + i, 0);
+    }
+    assertEquals(MESSAGES, node1.getSize(QUEUE_NAME));
+    assertEquals(MESSAGES, node2.getSize(QUEUE_NAME));
+
+    List<String> popped1 = node1.pop(QUEUE_NAME, MESSAGES, 100);
+    List<String> popped2 = node2.pop(QUEUE_NAME, MESSAGES, 100);
+    assertEquals(MESSAGES, popped1.size() + popped2.size());
+    assertFalse(popped1.isEmpty());
+    assertFalse(popped2.isEmpty());
+    popped1.forEach(id -> assertTrue(manager1.isOwned(id)));
+    popped2.forEach(id -> assertFalse(manager1.isOwned(id)));
+    assertEquals(0, node1.getSize(QUEUE_NAME));
+  }
+
+  @Test
+  public void testPopWithCount() {
+    List<Message> messages = new ArrayList<>();
+    for (int i = 0; i < MESSAGES; ++i) {
+      messages.add(new Message("wf-" + i, null, null, 0));
+    }
+    node1.push(QUEUE_NAME, messages);
+    Set<String> polled = new HashSet<>();
+    List<Message> batch;
+    do {
+      batch = node1.pollMessages(QUEUE_NAME, 3, 100);
+      assertTrue(batch.size() <= 3);
+      batch.forEach(m -> assertTrue(polled.add(m.getId())));
+    } while (!batch.isEmpty());
+    polled.forEach(id -> assertTrue(manager1.isOwned(id)));
+    assertEquals(MESSAGES - polled.size(), node2.pop(QUEUE_NAME, MESSAGES, 100).size());
+  }
+
+  @Test
+  public void testMessageOperations() {
+    assertTrue(node1.pushIfNotExists(QUEUE_NAME, "wf-1", 100));
+    assertFalse(node2.pushIfNotExists(QUEUE_NAME, "wf-1", 0));
+    assertTrue(node2.containsMessage(QUEUE_NAME, "wf-1"));
+    assertTrue(node2.resetOffsetTime(QUEUE_NAME, "wf-1"));
+    PartitionedQueueDao owner = manager1.isOwned("wf-1") ? node1 : node2;
+    assertEquals(Arrays.asList("wf-1"), owner.pop(QUEUE_NAME, 1, 100));
+    assertTrue(node1.setUnackTimeout(QUEUE_NAME, "wf-1", 0));
+    owner.processUnacks(QUEUE_NAME);
+    assertEquals(1, node1.getSize(QUEUE_NAME));
+    assertEquals(Arrays.asList("wf-1"), owner.pop(QUEUE_NAME, 1, 100));
+    assertTrue(node2.ack(QUEUE_NAME, "wf-1"));
+    assertFalse(node1.containsMessage(QUEUE_NAME, "wf-1"));
+
+    assertTrue(node1.postpone(QUEUE_NAME, "wf-2", 0, 100));
+    node2.remove(QUEUE_NAME, "wf-2");
+    assertFalse(node1.containsMessage(QUEUE_NAME, "wf-2"));
+  }
+
+  @Test
+  public void testQueuesDetailAndFlush() {
+    for (int i = 0; i < MESSAGES; ++i) {
+      node1.push(QUEUE_NAME, "wf-" + i, 0);
+    }
+    int popped = node1.pop(QUEUE_NAME, MESSAGES, 100).size();
+    assertEquals(MESSAGES - popped, node1.queuesDetail().get(QUEUE_NAME).longValue());
+    Map<String, Long> shard = node2.queuesDetailVerbose().get(QUEUE_NAME).get("a");
+    assertEquals(MESSAGES - popped, shard.get("size").longValue());
+    assertEquals(popped, shard.get("uacked").longValue());
+
+    node2.flush(QUEUE_NAME);
+    assertEquals(0, node1.getSize(QUEUE_NAME));
+    assertTrue(node1.pop(QUEUE_NAME, MESSAGES, 100).isEmpty());
+  }
+
+  @Test
+  public void testDrainLegacyQueue() {
+    delegate.push(QUEUE_NAME, "legacy-1", 0);
+    delegate.push(QUEUE_NAME, "legacy-2", 0);
+    node1.push(QUEUE_NAME, "wf-1", 0);
+    assertEquals(3, node2.getSize(QUEUE_NAME));
+    assertTrue(node2.containsMessage(QUEUE_NAME, "legacy-1"));
+    assertFalse(node2.pushIfNotExists(QUEUE_NAME, "legacy-1", 0));
+
+    List<String> popped = node2.pop(QUEUE_NAME, 2, 100);
+    assertEquals(Arrays.asList("legacy-1", "legacy-2"), popped);
+    assertTrue(node2.ack(QUEUE_NAME, "legacy-1"));
+    assertTrue(node1.setUnackTimeout(QUEUE_NAME, "legacy-2", 0));
+    node1.processUnacks(QUEUE_NAME);
+    assertEquals(Arrays.asList("legacy-2"), node1.pop(QUEUE_NAME, 1, 100));
+    assertTrue(node1.ack(QUEUE_NAME, "legacy-2"));
+
+    PartitionedQueueDao owner = manager1.isOwned("wf-1") ? node1 : node2;
+    assertEquals(Arrays.asList("wf-1"), owner.pop(QUEUE_NAME, 10, 100));
+    assertEquals(0, delegate.getSize(QUEUE_NAME));
+    assertFalse(node1.containsMessage(QUEUE_NAME, "legacy-1"));
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.definition.PropertiesSnapshot;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class WorkflowDefinitionCacheTest extends MaestroEngineBaseTest {
+  @Mock private Clock clock;
+  private WorkflowDefinitionCache cache;
+  private AtomicInteger loadCount;
+
+  @Before
+  public void setUp() {
+    when(clock.millis()).thenReturn(1000L);
+    cache = new WorkflowDefinitionCache(2, 100, clock, metricRepo);
+    loadCount = new AtomicInteger();
+  }
+
+  private Supplier<WorkflowDefinitionCache.WorkflowRow> workflowLoader() {
+    return () -> {
+      loadCount.incrementAndGet();
+      return new WorkflowDefinitionCache.WorkflowRow(1L, 1L, 1L, "{}", "{}", 1L, 1L);
+    };
+  }
+
+  private Supplier<WorkflowDefinitionCache.VersionRow> versionLoader() {
+    return () -> {
+      loadCount.incrementAndGet();
+      return new WorkflowDefinitionCache.VersionRow("{}", "{}", null);
+    };
+  }
+
+  @Test
+  public void testGetWorkflow() {
+    long hits = getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "workflow");
+    long misses = getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_MISS_METRIC, "workflow");
+    WorkflowDefinitionCache.WorkflowRow row = cache.getWorkflow("wf1", workflowLoader());
+    assertSame(row, cache.getWorkflow("wf1", workflowLoader()));
+    assertEquals(1, loadCount.get());
+    assertEquals(1, cache.workflowSize());
+    assertEquals(
+        hits + 1, getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "workflow"));
+    assertEquals(
+        misses + 1, getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_MISS_METRIC, "workflow"));
+  }
+
+  @Test
+  public void testGetNonExistingWorkflow() {
+    assertNull(cache.getWorkflow("wf1", () -> null));
+    assertEquals(0, cache.workflowSize());
+  }
+
+  @Test
+  public void testWorkflowExpiration() {
+    cache.getWorkflow("wf1", workflowLoader());
+    when(clock.millis()).thenReturn(1099L);
+    cache.getWorkflow("wf1", workflowLoader());
+    assertEquals(1, loadCount.get());
+    when(clock.millis()).thenReturn(1100L);
+    cache.getWorkflow("wf1", workflowLoader());
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void testGetVersion() {
+    long hits = getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "workflow_version");
+    WorkflowDefinitionCache.VersionRow row = cache.getVersion(1L, 1L, versionLoader());
+    assertSame(row, cache.getVersion(1L, 1L, versionLoader()));
+    cache.getVersion(2L, 1L, versionLoader());
+    assertEquals(2, loadCount.get());
+    assertEquals(2, cache.versionSize());
+    assertEquals(
+        hits + 1,
+        getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "workflow_version"));
+    // versions never expire
+    when(clock.millis()).thenReturn(100000L);
+    cache.getVersion(1L, 1L, versionLoader());
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void testGetSnapshot() {
+    long hits =
+        getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "properties_snapshot");
+    WorkflowDefinitionCache.SnapshotRow row = snapshotRow(1000L);
+    assertSame(
+        row,
+        cache.getSnapshot(
+            "wf1",
+            cached -> {
+              assertNull(cached);
+              return row;
+            }));
+    // served without validating it within the ttl
+    assertSame(row, cache.getSnapshot("wf1", cached -> fail()));
+    assertEquals(1, cache.snapshotSize());
+
+    when(clock.millis()).thenReturn(1100L);
+    assertSame(row, cache.getSnapshot("wf1", cached -> cached));
+    assertSame(row, cache.getSnapshot("wf1", cached -> fail()));
+    assertEquals(
+        hits + 3,
+        getCount(MetricConstants.WORKFLOW_DEFINITION_CACHE_HIT_METRIC, "properties_snapshot"));
+
+    when(clock.millis()).thenReturn(1200L);
+    WorkflowDefinitionCache.SnapshotRow updated = snapshotRow(2000L);
+    assertSame(updated, cache.getSnapshot("wf1", cached -> updated));
+    assertSame(updated, cache.getSnapshot("wf1", cached -> fail()));
+
+    when(clock.millis()).thenReturn(1300L);
+    assertNull(cache.getSnapshot("wf1", cached -> null));
+    assertEquals(0, cache.snapshotSize());
+  }
+
+  @Test
+  public void testSkipCachingSnapshotLoadedBeforeInvalidation() {
+    cache.getSnapshot(
+        "wf1",
+        cached -> {
+          cache.invalidate("wf1");
+          return snapshotRow(1000L);
+        });
+    assertEquals(0, cache.snapshotSize());
+  }
+
+  private WorkflowDefinitionCache.SnapshotRow snapshotRow(long modifyTime) {
+    return new WorkflowDefinitionCache.SnapshotRow(
+        1L, new Timestamp(modifyTime), PropertiesSnapshot.builder().workflowId("wf1").build());
+  }
+
+  private static WorkflowDefinitionCache.SnapshotRow fail() {
+    throw new AssertionError("the cached snapshot should not be validated within the ttl");
+  }
+
+  @Test
+  public void testSizeEviction() {
+    cache.getVersion(1L, 1L, versionLoader());
+    cache.getVersion(1L, 2L, versionLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    cache.getVersion(1L, 3L, versionLoader());
+    assertEquals(2, cache.versionSize());
+    assertEquals(3, loadCount.get());
+    cache.getVersion(1L, 1L, versionLoader());
+    assertEquals(3, loadCount.get());
+    cache.getVersion(1L, 2L, versionLoader());
+    assertEquals(4, loadCount.get());
+  }
+
+  @Test
+  public void testInvalidate() {
+    cache.getWorkflow("wf1", workflowLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    cache.getSnapshot("wf1", cached -> snapshotRow(1000L));
+    cache.invalidate("wf1");
+    assertEquals(0, cache.workflowSize());
+    assertEquals(0, cache.snapshotSize());
+    assertEquals(1, cache.versionSize());
+    cache.getWorkflow("wf1", workflowLoader());
+    assertEquals(3, loadCount.get());
+  }
+
+  @Test
+  public void testSkipCachingRowLoadedBeforeInvalidation() {
+    cache.getWorkflow(
+        "wf1",
+        () -> {
+          cache.invalidate("wf1");
+          return workflowLoader().get();
+        });
+    assertEquals(0, cache.workflowSize());
+  }
+
+  @Test
+  public void testDisabled() {
+    cache = new WorkflowDefinitionCache(0, 100, clock, metricRepo);
+    cache.getWorkflow("wf1", workflowLoader());
+    cache.getWorkflow("wf1", workflowLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    assertEquals(4, loadCount.get());
+    assertEquals(0, cache.workflowSize());
+    assertEquals(0, cache.versionSize());
+  }
+
+  @Test
+  public void testWorkflowRowCachingDisabled() {
+    cache = new WorkflowDefinitionCache(2, 0, clock, metricRepo);
+    cache.getWorkflow("wf1", workflowLoader());
+    cache.getWorkflow("wf1", workflowLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    cache.getVersion(1L, 1L, versionLoader());
+    assertEquals(3, loadCount.get());
+    assertEquals(0, cache.workflowSize());
+    assertEquals(1, cache.versionSize());
+  }
+
+  private long getCount(String metric, String type) {
+    return metricRepo
+        .getCounter(metric, WorkflowDefinitionCache.class, MetricConstants.TYPE_TAG, type)
+        .count();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.definition.Step;
+import com.netflix.maestro.models.definition.TypedStep;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class ExecutionDefinitionCacheTest extends MaestroEngineBaseTest {
+  @Mock private Clock clock;
+  private ExecutionDefinitionCache cache;
+  private AtomicInteger loadCount;
+
+  @Before
+  public void setUp() {
+    when(clock.millis()).thenReturn(1000L);
+    cache = new ExecutionDefinitionCache(2, 100, clock, metricRepo);
+    loadCount = new AtomicInteger();
+  }
+
+  private Supplier<WorkflowSummary> summaryLoader() {
+    return () -> {
+      loadCount.incrementAndGet();
+      return new WorkflowSummary();
+    };
+  }
+
+  private Supplier<Step> stepLoader() {
+    return () -> {
+      loadCount.incrementAndGet();
+      return new TypedStep();
+    };
+  }
+
+  @Test
+  public void testGetWorkflowSummary() {
+    long hits = getCount(MetricConstants.DEFINITION_CACHE_HIT_METRIC, "workflow_summary");
+    WorkflowSummary summary = cache.getWorkflowSummary("exec1", summaryLoader());
+    assertSame(summary, cache.getWorkflowSummary("exec1", summaryLoader()));
+    assertEquals(1, loadCount.get());
+    assertEquals(
+        hits + 1, getCount(MetricConstants.DEFINITION_CACHE_HIT_METRIC, "workflow_summary"));
+  }
+
+  @Test
+  public void testGetStepDefinition() {
+    Step step1 = cache.getStepDefinition("exec1", "job1", stepLoader());
+    Step step2 = cache.getStepDefinition("exec1", "job2", stepLoader());
+    assertSame(step1, cache.getStepDefinition("exec1", "job1", stepLoader()));
+    assertSame(step2, cache.getStepDefinition("exec1", "job2", stepLoader()));
+    assertEquals(2, loadCount.get());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testExpiration() {
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    when(clock.millis()).thenReturn(1099L);
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    assertEquals(1, loadCount.get());
+    when(clock.millis()).thenReturn(1100L);
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  public void testSizeEviction() {
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    cache.getWorkflowSummary("exec2", summaryLoader());
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    cache.getWorkflowSummary("exec3", summaryLoader());
+    assertEquals(2, cache.size());
+    assertEquals(3, loadCount.get());
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    assertEquals(3, loadCount.get());
+    cache.getWorkflowSummary("exec2", summaryLoader());
+    assertEquals(4, loadCount.get());
+  }
+
+  @Test
+  public void testInvalidate() {
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    cache.getStepDefinition("exec1", "job1", stepLoader());
+    cache.invalidate("exec1");
+    assertEquals(0, cache.size());
+    cache.getStepDefinition("exec1", "job1", stepLoader());
+    assertEquals(3, loadCount.get());
+  }
+
+  @Test
+  public void testDisabled() {
+    cache = new ExecutionDefinitionCache(0, 100, clock, metricRepo);
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    cache.getWorkflowSummary("exec1", summaryLoader());
+    assertEquals(2, loadCount.get());
+    assertEquals(0, cache.size());
+  }
+
+  private long getCount(String metric, String type) {
+    return metricRepo
+        .getCounter(metric, ExecutionDefinitionCache.class, MetricConstants.TYPE_TAG, type)
+        .count();
+  }
+}
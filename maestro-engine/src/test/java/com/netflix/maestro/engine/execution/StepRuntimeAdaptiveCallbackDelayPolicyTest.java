@@ -0,0 +1,142 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.properties.AdaptiveCallbackDelayConfig;
+import com.netflix.maestro.models.definition.StepType;
+import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.instance.StepRuntimeState;
+import java.time.Clock;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class StepRuntimeAdaptiveCallbackDelayPolicyTest extends MaestroEngineBaseTest {
+  private static final String WORKFLOW_ID = "sample-wf";
+  private static final long EXECUTE_TIME = 1000000L;
+
+  @Mock private StepRuntimeCallbackDelayPolicy fixedPolicy;
+  @Mock private Clock clock;
+  private StepRuntimeAdaptiveCallbackDelayPolicy policy;
+
+  @Before
+  public void before() {
+    AdaptiveCallbackDelayConfig config =
+        AdaptiveCallbackDelayConfig.builder()
+            .enabled(true)
+            .minSamples(3)
+            .maxTrackedSteps(1)
+            .lowerQuantile(0.1)
+            .upperQuantile(0.9)
+            .backoffFactor(0.5)
+            .maxCallbackDelayInSecs(300)
+            .build();
+    when(fixedPolicy.getCallBackDelayInSecs(any())).thenReturn(3L);
+    policy = new StepRuntimeAdaptiveCallbackDelayPolicy(fixedPolicy, config, clock);
+  }
+
+  private StepRuntimeSummary summary(String stepId, StepInstance.Status status, Long endTime) {
+    StepRuntimeState state = new StepRuntimeState();
+    state.setStatus(status);
+    state.setExecuteTime(EXECUTE_TIME);
+    state.setFinishTime(endTime);
+    return StepRuntimeSummary.builder()
+        .stepId(stepId)
+        .type(StepType.NOTEBOOK)
+        .runtimeState(state)
+        .build();
+  }
+
+  private void learn(int samples, long durationInMillis) {
+    for (int i = 0; i < samples; ++i) {
+      policy.onStepTerminated(
+          WORKFLOW_ID,
+          summary("job1", StepInstance.Status.SUCCEEDED, EXECUTE_TIME + durationInMillis));
+    }
+  }
+
+  private long delayAt(long elapsedInSecs) {
+    when(clock.millis()).thenReturn(EXECUTE_TIME + elapsedInSecs * 1000);
+    return policy.getCallBackDelayInSecs(
+        WORKFLOW_ID, summary("job1", StepInstance.Status.RUNNING, null));
+  }
+
+  @Test
+  public void testFallbackWithoutEnoughSamples() {
+    assertEquals(3L, delayAt(10));
+    learn(2, 100000);
+    assertEquals(3L, delayAt(10));
+    policy.onStepTerminated(
+        WORKFLOW_ID, summary("job1", StepInstance.Status.FATALLY_FAILED, EXECUTE_TIME + 100000));
+    assertEquals(3L, delayAt(10));
+    assertEquals(
+        3L,
+        policy
+            .getCallBackDelayInSecs(null, summary("job1", StepInstance.Status.RUNNING, null))
+            .longValue());
+  }
+
+  @Test
+  public void testAdaptiveCallbackDelay() {
+    learn(5, 100000);
+    long delay = delayAt(10);
+    assertTrue("delay: " + delay, delay >= 87 && delay <= 93);
+    assertEquals(3L, delayAt(100));
+    delay = delayAt(300);
+    assertTrue("delay: " + delay, delay >= 98 && delay <= 102);
+    assertEquals(300L, delayAt(2000));
+    assertEquals(
+        3L,
+        policy
+            .getCallBackDelayInSecs(
+                WORKFLOW_ID, summary("job1", StepInstance.Status.WAITING_FOR_SIGNALS, null))
+            .longValue());
+  }
+
+  @Test
+  public void testMaxTrackedSteps() {
+    learn(5, 100000);
+    for (int i = 0; i < 5; ++i) {
+      policy.onStepTerminated(
+          WORKFLOW_ID, summary("job2", StepInstance.Status.SUCCEEDED, EXECUTE_TIME + 100000));
+    }
+    when(clock.millis()).thenReturn(EXECUTE_TIME + 10000);
+    assertEquals(
+        3L,
+        policy
+            .getCallBackDelayInSecs(
+                WORKFLOW_ID, summary("job2", StepInstance.Status.RUNNING, null))
+            .longValue());
+  }
+
+  @Test
+  public void testDurationSketch() {
+    StepRuntimeAdaptiveCallbackDelayPolicy.DurationSketch sketch =
+        new StepRuntimeAdaptiveCallbackDelayPolicy.DurationSketch();
+    assertEquals(0, sketch.getQuantile(0.5));
+    for (int i = 1; i <= 1000; ++i) {
+      sketch.add(i);
+    }
+    assertEquals(1000, sketch.getCount());
+    long median = sketch.getQuantile(0.5);
+    assertTrue("median: " + median, median >= 490 && median <= 510);
+    long p90 = sketch.getQuantile(0.9);
+    assertTrue("p90: " + p90, p90 >= 882 && p90 <= 918);
+  }
+}
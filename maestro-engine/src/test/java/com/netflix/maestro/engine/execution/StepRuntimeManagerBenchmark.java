@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.maestro.engine.Benchmark;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Micro-benchmark of cloning the step runtime summaries, comparing the structural copy in {@link
+ * StepRuntimeManager} (after) with the Jackson round trip of the whole summary (before). It fails
+ * if the structural copy is not faster.
+ */
+@Category(Benchmark.class)
+@Slf4j
+public class StepRuntimeManagerBenchmark extends MaestroEngineBaseTest {
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int MEASURED_ITERATIONS = 100_000;
+
+  private StepRuntimeManager runtimeManager;
+  private final List<StepRuntimeSummary> summaries = new ArrayList<>();
+  private long sink; // keeps the clones from being optimized away
+
+  @Before
+  public void setUp() throws Exception {
+    runtimeManager = new StepRuntimeManager(Collections.emptyMap(), null, metricRepo, null);
+    for (int i = 1; i <= 3; ++i) {
+      summaries.add(
+          loadObject(
+              "fixtures/execution/sample-step-runtime-summary-" + i + ".json",
+              StepRuntimeSummary.class));
+    }
+  }
+
+  @Test
+  public void benchmarkCloneSummary() {
+    UnaryOperator<StepRuntimeSummary> jackson =
+        summary -> MAPPER.convertValue(summary, StepRuntimeSummary.class);
+    UnaryOperator<StepRuntimeSummary> structural = runtimeManager::cloneSummary;
+    run(jackson, WARMUP_ITERATIONS);
+    run(structural, WARMUP_ITERATIONS);
+
+    long jacksonNanos = run(jackson, MEASURED_ITERATIONS);
+    long structuralNanos = run(structural, MEASURED_ITERATIONS);
+    LOG.info(
+        "Cloned [{}] step runtime summaries: before (jackson round trip) [{}] ns/op, after"
+            + " (structural copy) [{}] ns/op, speedup [{}]x",
+        MEASURED_ITERATIONS,
+        jacksonNanos / MEASURED_ITERATIONS,
+        structuralNanos / MEASURED_ITERATIONS,
+        String.format("%.1f", (double) jacksonNanos / structuralNanos));
+    LOG.info(
+        "Total time: before (jackson round trip) [{}] ms, after (structural copy) [{}] ms",
+        TimeUnit.NANOSECONDS.toMillis(jacksonNanos),
+        TimeUnit.NANOSECONDS.toMillis(structuralNanos));
+    assertTrue(sink > 0);
+    assertTrue(
+        String.format(
+            "structural copy [%s] ns is expected to be faster than jackson round trip [%s] ns",
+            structuralNanos, jacksonNanos),
+        structuralNanos < jacksonNanos);
+  }
+
+  private long run(UnaryOperator<StepRuntimeSummary> cloner, int iterations) {
+    int size = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      size += cloner.apply(summaries.get(i % summaries.size())).getParams().size();
+    }
+    long elapsed = System.nanoTime() - start;
+    sink += size;
+    return elapsed;
+  }
+}
@@ -33,6 +33,7 @@ import com.netflix.maestro.models.definition.StepType;
 import com.netflix.maestro.models.definition.Tag;
 import com.netflix.maestro.models.definition.TypedStep;
 import com.netflix.maestro.models.instance.StepInstance;
+import com.netflix.maestro.models.parameter.AbstractParameter;
 import com.netflix.maestro.models.parameter.MapParamDefinition;
 import com.netflix.maestro.models.parameter.MapParameter;
 import com.netflix.maestro.models.parameter.ParamDefinition;
@@ -128,8 +129,31 @@ public class StepRuntimeManagerTest extends MaestroEngineBaseTest {
                 return Collections.singletonList(Tag.create("test"));
               }
             });
-    runtimeManager =
-        new StepRuntimeManager(stepRuntimeMap, MAPPER, paramsManager, metricRepo, null);
+    runtimeManager = new StepRuntimeManager(stepRuntimeMap, paramsManager, metricRepo, null);
+  }
+
+  @Test
+  public void testCloneSummary() throws Exception {
+    for (int i = 1; i <= 3; ++i) {
+      StepRuntimeSummary summary =
+          loadObject(
+              "fixtures/execution/sample-step-runtime-summary-" + i + ".json",
+              StepRuntimeSummary.class);
+      StepRuntimeSummary cloned = runtimeManager.cloneSummary(summary);
+      assertEquals(MAPPER.convertValue(summary, StepRuntimeSummary.class), cloned);
+      assertEquals(summary, cloned);
+
+      cloned.addTimeline(TimelineLogEvent.info("hello world"));
+      cloned.getParams().get("param1").setEvaluatedTime(0L);
+      ((AbstractParameter) cloned.getParams().get("param1")).getMeta().put("foo", "bar");
+      cloned.getArtifacts().remove("artifact1");
+      cloned.getRuntimeState().setStatus(StepInstance.Status.STOPPED);
+      assertEquals(
+          loadObject(
+              "fixtures/execution/sample-step-runtime-summary-" + i + ".json",
+              StepRuntimeSummary.class),
+          summary);
+    }
   }
 
   @Test
@@ -14,8 +14,10 @@ package com.netflix.maestro.engine.execution;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -28,8 +30,14 @@ import com.netflix.maestro.engine.jobevents.StepInstanceUpdateJobEvent;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.models.error.Details;
 import com.netflix.maestro.models.instance.StepInstance;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -144,4 +152,133 @@ public class StepSyncManagerTest extends MaestroEngineBaseTest {
     assertTrue(details.isPresent());
     assertEquals("test error", details.get().getMessage());
   }
+
+  private StepRuntimeSummary summary(DbOperation dbOperation, boolean withPendingRecord) {
+    return StepRuntimeSummary.builder()
+        .stepId("test-summary")
+        .stepAttemptId(2)
+        .stepInstanceId(1)
+        .dbOperation(dbOperation)
+        .pendingRecords(
+            withPendingRecord
+                ? Collections.singletonList(
+                    mock(StepInstanceUpdateJobEvent.StepInstancePendingRecord.class))
+                : Collections.emptyList())
+        .build();
+  }
+
+  @Test
+  public void testGroupCommitFlush() {
+    StepSyncManager.SyncRequest request1 =
+        new StepSyncManager.SyncRequest(
+            instance, workflowSummary, summary(DbOperation.INSERT, false));
+    StepSyncManager.SyncRequest request2 =
+        new StepSyncManager.SyncRequest(
+            instance, workflowSummary, summary(DbOperation.UPDATE, true));
+    when(publisher.publishAll(any()))
+        .thenReturn(Collections.singletonList(Optional.of(Details.create("test error"))));
+    syncManager.flush(Arrays.asList(request1, request2));
+    verify(instanceDao, times(1)).batchSyncStepInstances(any(), any());
+    verify(publisher, times(1)).publishAll(any());
+    assertFalse(request1.result.join().isPresent());
+    assertEquals("test error", request2.result.join().get().getMessage());
+  }
+
+  @Test
+  public void testGroupCommitFlushFallback() {
+    StepRuntimeSummary summary1 = summary(DbOperation.UPSERT, false);
+    StepRuntimeSummary summary2 = summary(DbOperation.UPDATE, false);
+    StepSyncManager.SyncRequest request1 =
+        new StepSyncManager.SyncRequest(instance, workflowSummary, summary1);
+    StepSyncManager.SyncRequest request2 =
+        new StepSyncManager.SyncRequest(instance, workflowSummary, summary2);
+    doThrow(new RuntimeException("conflict"))
+        .when(instanceDao)
+        .batchSyncStepInstances(any(), any());
+    doThrow(new RuntimeException("update error"))
+        .when(instanceDao)
+        .updateStepInstance(workflowSummary, summary2);
+    syncManager.flush(Arrays.asList(request1, request2));
+    verify(instanceDao, times(1)).insertOrUpsertStepInstance(instance, true);
+    verify(instanceDao, times(1)).updateStepInstance(workflowSummary, summary2);
+    assertFalse(request1.result.join().isPresent());
+    assertTrue(request2.result.join().isPresent());
+  }
+
+  @Test
+  public void testGroupCommitSync() {
+    StepSyncManager groupCommitManager =
+        new StepSyncManager(
+            instanceDao, publisher, 10, 1, 10, 10000, Executors.newSingleThreadExecutor());
+    groupCommitManager.postConstruct();
+    StepRuntimeSummary stepRuntimeSummary = summary(DbOperation.UPDATE, true);
+    Optional<Details> details =
+        groupCommitManager.sync(instance, workflowSummary, stepRuntimeSummary);
+    assertFalse(details.isPresent());
+    verify(instanceDao, times(1)).updateStepInstance(workflowSummary, stepRuntimeSummary);
+    verify(publisher, times(1)).publish(any());
+    groupCommitManager.preDestroy();
+
+    details = groupCommitManager.sync(instance, workflowSummary, stepRuntimeSummary);
+    assertFalse(details.isPresent());
+    verify(instanceDao, times(2)).updateStepInstance(workflowSummary, stepRuntimeSummary);
+  }
+
+  @Test
+  public void testGroupCommitSyncTimeout() {
+    StepSyncManager groupCommitManager =
+        new StepSyncManager(instanceDao, publisher, 10, 1, 10, 10, mock(ExecutorService.class));
+    groupCommitManager.postConstruct();
+    Optional<Details> details =
+        groupCommitManager.sync(instance, workflowSummary, summary(DbOperation.UPDATE, false));
+    assertTrue(details.isPresent());
+    assertTrue(details.get().isRetryable());
+    assertEquals("Timed out while syncing a step change", details.get().getMessage());
+  }
+
+  @Test
+  public void testGroupCommitSyncWaitsForPickedUpRequest() throws Exception {
+    StepSyncManager groupCommitManager =
+        new StepSyncManager(instanceDao, publisher, 10, 1, 10, 10, mock(ExecutorService.class));
+    groupCommitManager.postConstruct();
+    StepRuntimeSummary stepRuntimeSummary = summary(DbOperation.UPDATE, false);
+    CompletableFuture<Optional<Details>> future =
+        CompletableFuture.supplyAsync(
+            () -> groupCommitManager.sync(instance, workflowSummary, stepRuntimeSummary));
+    List<StepSyncManager.SyncRequest> batch = groupCommitManager.nextBatch();
+    assertEquals(1, batch.size());
+    Thread.sleep(100);
+    // the caller keeps waiting after the timeout as the writer has picked up its request
+    assertFalse(future.isDone());
+    groupCommitManager.flush(batch);
+    Optional<Details> details = future.get(10, TimeUnit.SECONDS);
+    assertFalse(details.isPresent());
+    verify(instanceDao, times(1)).updateStepInstance(workflowSummary, stepRuntimeSummary);
+  }
+
+  @Test
+  public void testWriterErrorFailsPendingRequests() throws Exception {
+    StepSyncManager groupCommitManager =
+        new StepSyncManager(instanceDao, publisher, 10, 1, 10, 10000, mock(ExecutorService.class));
+    groupCommitManager.postConstruct();
+    StepRuntimeSummary stepRuntimeSummary = summary(DbOperation.UPDATE, false);
+    doThrow(new Error("writer error"))
+        .when(instanceDao)
+        .updateStepInstance(workflowSummary, stepRuntimeSummary);
+    CompletableFuture<Optional<Details>> future =
+        CompletableFuture.supplyAsync(
+            () -> groupCommitManager.sync(instance, workflowSummary, stepRuntimeSummary));
+    Error error = assertThrows(Error.class, groupCommitManager::runWriter);
+    assertEquals("writer error", error.getMessage());
+    Optional<Details> details = future.get(10, TimeUnit.SECONDS);
+    assertTrue(details.isPresent());
+    assertTrue(details.get().isRetryable());
+
+    // the group commit is stopped and the request is synced directly
+    assertTrue(
+        groupCommitManager
+            .sync(instance, workflowSummary, summary(DbOperation.INSERT, false))
+            .isEmpty());
+    verify(instanceDao, times(1)).insertOrUpsertStepInstance(instance, false);
+  }
 }
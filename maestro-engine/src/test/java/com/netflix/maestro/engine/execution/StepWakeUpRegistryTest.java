@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class StepWakeUpRegistryTest extends MaestroEngineBaseTest {
+  private static final String QUEUE_NAME = "maestro_task";
+
+  @Mock private QueueDAO queueDAO;
+  private StepWakeUpRegistry registry;
+
+  @Before
+  public void before() {
+    when(queueDAO.resetOffsetTime(any(), any())).thenReturn(true);
+    registry = new StepWakeUpRegistry(queueDAO, metricRepo, 2, 60000);
+  }
+
+  private Map<StepWakeUpRegistry.SubscriptionType, Collection<String>> names(
+      StepWakeUpRegistry.SubscriptionType type, String... values) {
+    Map<StepWakeUpRegistry.SubscriptionType, Collection<String>> names =
+        new EnumMap<>(StepWakeUpRegistry.SubscriptionType.class);
+    names.put(type, Arrays.asList(values));
+    return names;
+  }
+
+  @Test
+  public void testSubscribeAndWakeUp() {
+    assertTrue(
+        registry.subscribe(
+            "task1", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1", "s2")));
+    assertTrue(
+        registry.subscribe(
+            "task2", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1")));
+    assertEquals(2, registry.size());
+
+    assertEquals(2, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    verify(queueDAO, times(1)).resetOffsetTime(QUEUE_NAME, "task1");
+    verify(queueDAO, times(1)).resetOffsetTime(QUEUE_NAME, "task2");
+    assertEquals(1, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s2"));
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, "s1"));
+    assertEquals(
+        3L,
+        metricRepo
+            .getCounter(
+                MetricConstants.STEP_WAKE_UP_METRIC,
+                StepWakeUpRegistry.class,
+                MetricConstants.TYPE_TAG,
+                "SIGNAL")
+            .count());
+  }
+
+  @Test
+  public void testResubscribeAndUnsubscribe() {
+    registry.subscribe(
+        "task1", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    registry.subscribe(
+        "task1", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, "tag1"));
+    assertEquals(1, registry.size());
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    assertEquals(1, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, "tag1"));
+
+    registry.unsubscribe("task1");
+    assertEquals(0, registry.size());
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, "tag1"));
+  }
+
+  @Test
+  public void testMaxSubscribedTasks() {
+    registry.subscribe("task1", QUEUE_NAME, Collections.emptyMap());
+    registry.subscribe("task2", QUEUE_NAME, Collections.emptyMap());
+    assertFalse(
+        registry.subscribe(
+            "task3", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.STEP, "step")));
+    assertEquals(2, registry.size());
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.STEP, "step"));
+    assertEquals(
+        1L,
+        metricRepo
+            .getCounter(MetricConstants.STEP_WAKE_UP_REJECTED_METRIC, StepWakeUpRegistry.class)
+            .count());
+  }
+
+  @Test
+  public void testExpireStaleSubscriptions() {
+    registry = new StepWakeUpRegistry(queueDAO, metricRepo, 2, 0);
+    registry.subscribe(
+        "task1", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    // the stale subscriptions are expired first, so the registry is never full of them
+    assertTrue(
+        registry.subscribe(
+            "task2", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s2")));
+    assertTrue(
+        registry.subscribe(
+            "task3", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s3")));
+    assertEquals(1, registry.size());
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s2"));
+    assertEquals(1, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s3"));
+    assertEquals(
+        2L,
+        metricRepo
+            .getCounter(MetricConstants.STEP_WAKE_UP_EXPIRED_METRIC, StepWakeUpRegistry.class)
+            .count());
+  }
+
+  @Test
+  public void testWakeUpIgnoreError() {
+    registry.subscribe(
+        "task1", QUEUE_NAME, names(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+    when(queueDAO.resetOffsetTime(QUEUE_NAME, "task1")).thenThrow(new RuntimeException("test"));
+    assertEquals(0, registry.wakeUp(StepWakeUpRegistry.SubscriptionType.SIGNAL, "s1"));
+  }
+
+  @Test
+  public void testStepName() {
+    assertEquals("wf:1:2:job1", StepWakeUpRegistry.stepName("wf", 1, 2, "job1"));
+  }
+}
@@ -12,7 +12,14 @@
  */
 package com.netflix.maestro.engine.listeners;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -28,14 +35,17 @@ import com.netflix.maestro.engine.jobevents.TerminateInstancesJobEvent;
 import com.netflix.maestro.engine.jobevents.TerminateThenRunInstanceJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowInstanceUpdateJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowVersionUpdateJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
 import com.netflix.maestro.engine.processors.DeleteWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.PublishJobEventProcessor;
 import com.netflix.maestro.engine.processors.RunWorkflowInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.StartWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateThenRunInstanceJobProcessor;
+import com.netflix.maestro.engine.properties.JobEventListenerProperties;
+import com.netflix.maestro.engine.publisher.InMemoryJobEventQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -49,8 +59,9 @@ public class InMemoryJobEventListenerTest extends MaestroEngineBaseTest {
   @Mock private TerminateInstancesJobProcessor terminateInstancesJobProcessor;
   @Mock private TerminateThenRunInstanceJobProcessor terminateThenRunInstanceJobProcessor;
   @Mock private PublishJobEventProcessor publishJobEventProcessor;
-  @Mock private LinkedBlockingQueue<MaestroJobEvent> queue;
+  @Mock private InMemoryJobEventQueue queue;
   @Mock private ExecutorService executorService;
+  @Mock private MaestroMetrics metrics;
   private InMemoryJobEventListener jobEventListener;
 
   @Before
@@ -64,7 +75,149 @@ public class InMemoryJobEventListenerTest extends MaestroEngineBaseTest {
             terminateThenRunInstanceJobProcessor,
             publishJobEventProcessor,
             queue,
-            executorService);
+            executorService,
+            JobEventListenerProperties.builder().laneCount(4).laneCapacity(10).build(),
+            metrics);
+  }
+
+  @Test
+  public void testPostConstruct() {
+    jobEventListener.postConstruct();
+    verify(executorService, times(5)).execute(any());
+  }
+
+  @Test
+  public void testGetLaneCount() {
+    assertEquals(
+        3,
+        InMemoryJobEventListener.getLaneCount(
+            JobEventListenerProperties.builder().laneCount(3).laneCapacity(10).build()));
+    assertEquals(
+        Runtime.getRuntime().availableProcessors(),
+        InMemoryJobEventListener.getLaneCount(
+            JobEventListenerProperties.builder().laneCount(0).laneCapacity(10).build()));
+  }
+
+  @Test
+  public void testVirtualThreadMode() throws Exception {
+    JobEventListenerProperties properties =
+        JobEventListenerProperties.builder()
+            .laneCapacity(10)
+            .executionMode(JobEventListenerProperties.ExecutionMode.VIRTUAL)
+            .maxConcurrency(1)
+            .build();
+    assertEquals(
+        InMemoryJobEventListener.DEFAULT_VIRTUAL_LANE_COUNT,
+        InMemoryJobEventListener.getLaneCount(properties));
+    InMemoryJobEventListener listener =
+        new InMemoryJobEventListener(
+            deleteWorkflowJobProcessor,
+            runWorkflowInstancesJobProcessor,
+            startWorkflowJobProcessor,
+            terminateInstancesJobProcessor,
+            terminateThenRunInstanceJobProcessor,
+            publishJobEventProcessor,
+            queue,
+            executorService,
+            properties,
+            metrics);
+    listener.acquirePermit();
+    listener.processWithMetrics(StartWorkflowJobEvent.create("sample-wf"));
+    listener.releasePermit();
+    verify(metrics, times(1))
+        .timer(
+            eq(MetricConstants.JOB_EVENT_PERMIT_WAIT_METRIC),
+            anyLong(),
+            eq(InMemoryJobEventListener.class),
+            eq(MetricConstants.MODE_TAG),
+            eq("VIRTUAL"));
+    verify(metrics, times(1))
+        .gauge(
+            MetricConstants.JOB_EVENT_IN_FLIGHT_METRIC,
+            1.0,
+            InMemoryJobEventListener.class,
+            MetricConstants.MODE_TAG,
+            "VIRTUAL");
+
+    ExecutorService virtualExecutor = InMemoryJobEventListener.createExecutorService(properties);
+    assertTrue(virtualExecutor.submit(() -> Thread.currentThread().isVirtual()).get());
+    virtualExecutor.shutdown();
+  }
+
+  @Test
+  public void testDispatchKeepsWorkflowOrder() throws Exception {
+    StartWorkflowJobEvent event1 = StartWorkflowJobEvent.create("sample-wf");
+    DeleteWorkflowJobEvent event2 = DeleteWorkflowJobEvent.create("sample-wf", 1L, null);
+    jobEventListener.dispatch(event1);
+    jobEventListener.dispatch(event2);
+    int laneIdx = jobEventListener.getLaneIndex(event1);
+    assertEquals(laneIdx, jobEventListener.getLaneIndex(event2));
+    assertEquals(2, jobEventListener.getLane(laneIdx).size());
+    assertEquals(event1, jobEventListener.getLane(laneIdx).take());
+    assertEquals(event2, jobEventListener.getLane(laneIdx).take());
+    verify(metrics, times(1))
+        .gauge(
+            MetricConstants.JOB_EVENT_LANE_DEPTH_METRIC,
+            2.0,
+            InMemoryJobEventListener.class,
+            MetricConstants.LANE_TAG,
+            String.valueOf(laneIdx));
+  }
+
+  @Test
+  public void testDispatchOrAckOnFailure() throws Exception {
+    StartWorkflowJobEvent event = StartWorkflowJobEvent.create("sample-wf");
+    doThrow(new RuntimeException("test"))
+        .when(metrics)
+        .gauge(
+            eq(MetricConstants.JOB_EVENT_LANE_DEPTH_METRIC),
+            anyDouble(),
+            eq(InMemoryJobEventListener.class),
+            eq(MetricConstants.LANE_TAG),
+            any());
+    jobEventListener.dispatchOrAck(event);
+    verify(queue, times(1)).ack(event);
+  }
+
+  @Test
+  public void testDispatchAcrossLanes() {
+    boolean spread = false;
+    int laneIdx = jobEventListener.getLaneIndex(StartWorkflowJobEvent.create("wf-0"));
+    for (int i = 1; i < 16; ++i) {
+      int idx = jobEventListener.getLaneIndex(StartWorkflowJobEvent.create("wf-" + i));
+      assertTrue(idx >= 0 && idx < 4);
+      spread = spread || idx != laneIdx;
+    }
+    assertTrue(spread);
+    assertNotEquals(-1, jobEventListener.getLaneIndex(Mockito.mock(StartWorkflowJobEvent.class)));
+  }
+
+  @Test
+  public void testProcessWithMetrics() {
+    StartWorkflowJobEvent event = StartWorkflowJobEvent.create("sample-wf");
+    jobEventListener.processWithMetrics(event);
+    verify(startWorkflowJobProcessor, times(1)).process(any());
+    verify(metrics, times(1))
+        .timer(
+            eq(MetricConstants.JOB_EVENT_PROCESS_LATENCY_METRIC),
+            anyLong(),
+            eq(InMemoryJobEventListener.class),
+            eq(MetricConstants.TYPE_TAG),
+            eq("START_WORKFLOW_JOB_EVENT"),
+            eq(MetricConstants.STATUS_TAG),
+            eq(MetricConstants.STATUS_TAG_VALUE_SUCCESS));
+
+    doThrow(new RuntimeException("test")).when(startWorkflowJobProcessor).process(any());
+    jobEventListener.processWithMetrics(event);
+    verify(metrics, times(1))
+        .timer(
+            eq(MetricConstants.JOB_EVENT_PROCESS_LATENCY_METRIC),
+            anyLong(),
+            eq(InMemoryJobEventListener.class),
+            eq(MetricConstants.TYPE_TAG),
+            eq("START_WORKFLOW_JOB_EVENT"),
+            eq(MetricConstants.STATUS_TAG),
+            eq(MetricConstants.STATUS_TAG_VALUE_FAILURE));
   }
 
   @Test
@@ -177,6 +177,8 @@ public class MaestroWorkflowStatusListenerTest extends MaestroEngineBaseTest {
                 "status",
                 "COMPLETED")
             .count());
+    verify(maestroTask, times(2)).invalidateDefinitionCache("test-workflow-id");
+    verify(maestroTask, times(2)).unsubscribeWakeUps(workflow);
   }
 
   @Test
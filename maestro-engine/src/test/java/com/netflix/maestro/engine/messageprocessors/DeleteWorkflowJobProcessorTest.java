@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 import com.netflix.maestro.AssertHelper;
 import com.netflix.maestro.engine.MaestroEngineBaseTest;
 import com.netflix.maestro.engine.dao.MaestroWorkflowDeletionDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
 import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
 import com.netflix.maestro.engine.processors.DeleteWorkflowJobProcessor;
 import com.netflix.maestro.engine.publisher.MaestroNotificationPublisher;
@@ -36,6 +37,7 @@ public class DeleteWorkflowJobProcessorTest extends MaestroEngineBaseTest {
 
   @Mock private MaestroWorkflowDeletionDao deletionDao;
   @Mock private MaestroNotificationPublisher eventClient;
+  @Mock private WorkflowDefinitionCache workflowDefinitionCache;
 
   private final String workflowId = "sample-minimal-wf";
   private DeleteWorkflowJobProcessor processor;
@@ -43,7 +45,8 @@ public class DeleteWorkflowJobProcessorTest extends MaestroEngineBaseTest {
 
   @Before
   public void before() throws Exception {
-    processor = new DeleteWorkflowJobProcessor(deletionDao, eventClient, "test");
+    processor =
+        new DeleteWorkflowJobProcessor(deletionDao, eventClient, workflowDefinitionCache, "test");
     jobEvent = DeleteWorkflowJobEvent.create(workflowId, 12345L, User.create("tester"));
   }
 
@@ -51,6 +54,7 @@ public class DeleteWorkflowJobProcessorTest extends MaestroEngineBaseTest {
   public void testStartDeleteWorkflow() {
     when(deletionDao.isDeletionInitialized(workflowId, 12345L)).thenReturn(true);
     processor.process(() -> jobEvent);
+    verify(workflowDefinitionCache, times(1)).invalidate(workflowId);
     verify(eventClient, times(1)).send(any());
     verify(deletionDao, times(1)).deleteWorkflowData(eq(workflowId), eq(12345L), anyLong());
   }
@@ -12,12 +12,15 @@
  */
 package com.netflix.maestro.engine.messageprocessors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -27,11 +30,17 @@ import com.netflix.maestro.engine.MaestroEngineBaseTest;
 import com.netflix.maestro.engine.concurrency.InstanceStepConcurrencyHandler;
 import com.netflix.maestro.engine.concurrency.TagPermitManager;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceActionDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
+import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
 import com.netflix.maestro.engine.jobevents.StepInstanceUpdateJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowInstanceUpdateJobEvent;
 import com.netflix.maestro.engine.jobevents.WorkflowVersionUpdateJobEvent;
 import com.netflix.maestro.engine.processors.PublishJobEventProcessor;
+import com.netflix.maestro.engine.publisher.InMemoryJobEventQueue;
+import com.netflix.maestro.engine.publisher.InMemoryMaestroJobEventPublisher;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.engine.publisher.MaestroNotificationPublisher;
 import com.netflix.maestro.engine.utils.WorkflowHelper;
@@ -44,6 +53,7 @@ import com.netflix.maestro.models.instance.StepInstance;
 import com.netflix.maestro.models.instance.WorkflowInstance;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Stream;
 import org.junit.Before;
 import org.junit.Test;
@@ -57,6 +67,8 @@ public class PublishJobEventProcessorTest extends MaestroEngineBaseTest {
   @Mock private MaestroStepInstanceActionDao actionDao;
 
   @Mock private InstanceStepConcurrencyHandler handler;
+  @Mock private StepWakeUpRegistry wakeUpRegistry;
+  @Mock private WorkflowDefinitionCache workflowDefinitionCache;
 
   @Mock private StepInstanceUpdateJobEvent jobEvent1;
   @Mock private StepInstanceStatusChangeEvent changeEvent1;
@@ -78,6 +90,8 @@ public class PublishJobEventProcessorTest extends MaestroEngineBaseTest {
             tagPermitManager,
             actionDao,
             handler,
+            wakeUpRegistry,
+            workflowDefinitionCache,
             clusterName);
     when(jobEvent1.getType()).thenCallRealMethod();
     when(jobEvent2.getType()).thenCallRealMethod();
@@ -119,6 +133,35 @@ public class PublishJobEventProcessorTest extends MaestroEngineBaseTest {
     verify(eventClient, times(1)).send(changeEvent3);
   }
 
+  @Test
+  public void testConsumeTerminalWorkflowInstanceUpdateJobEventWithFullQueue() throws Exception {
+    InMemoryJobEventQueue queue = new InMemoryJobEventQueue(1, 1, 0, metricRepo);
+    queue.put(new DeleteWorkflowJobEvent());
+    InMemoryMaestroJobEventPublisher localPublisher =
+        new InMemoryMaestroJobEventPublisher(queue, 10, 0, mock(ExecutorService.class), metricRepo);
+    processor =
+        new PublishJobEventProcessor(
+            new WorkflowHelper(null, null, null, null, localPublisher),
+            eventClient,
+            tagPermitManager,
+            actionDao,
+            handler,
+            wakeUpRegistry,
+            workflowDefinitionCache,
+            clusterName);
+    when(changeEvent2.getNewStatus()).thenReturn(WorkflowInstance.Status.SUCCEEDED);
+    when(jobEvent2.getWorkflowId()).thenReturn(workflowId);
+    when(jobEvent2.toMaestroEventStream(clusterName)).thenReturn(Stream.of(changeEvent2));
+
+    processor.process(() -> jobEvent2);
+    assertEquals(2, queue.size());
+    assertTrue(queue.take() instanceof DeleteWorkflowJobEvent);
+    MaestroJobEvent startEvent = queue.take();
+    assertTrue(startEvent instanceof StartWorkflowJobEvent);
+    assertEquals(workflowId, startEvent.getWorkflowId());
+    verify(eventClient, times(1)).send(changeEvent2);
+  }
+
   @Test
   public void testConsumeWorkflowInstanceUpdateJobEventWithPublisherThrow() {
     when(changeEvent2.getNewStatus()).thenReturn(WorkflowInstance.Status.SUCCEEDED);
@@ -144,6 +187,7 @@ public class PublishJobEventProcessorTest extends MaestroEngineBaseTest {
     when(jobEvent3.toMaestroEvent(clusterName))
         .thenReturn(WorkflowDefinitionChangeEvent.builder().build());
     processor.process(() -> jobEvent3);
+    verify(workflowDefinitionCache, times(1)).invalidate("foo");
     verify(publisher, times(1)).publishOrThrow(any());
     verify(eventClient, times(1)).send(any());
   }
@@ -167,8 +211,11 @@ public class PublishJobEventProcessorTest extends MaestroEngineBaseTest {
   public void testReleaseTagPermitAndCleanUpStepActionIfTerminal() {
     when(jobEvent1.toMaestroEvent(clusterName)).thenReturn(changeEvent1);
     when(jobEvent1.hasTerminal()).thenReturn(true);
+    when(tagPermitManager.releaseTagPermits(any())).thenReturn(Collections.singletonList("tag1"));
     processor.process(() -> jobEvent1);
     verify(tagPermitManager, times(1)).releaseTagPermits(jobEvent1.getStepUuid());
+    verify(wakeUpRegistry, times(1))
+        .wakeUp(StepWakeUpRegistry.SubscriptionType.TAG_PERMIT, "tag1");
     verify(actionDao, times(1)).cleanUp(jobEvent1);
     verify(jobEvent1, times(1)).getType();
     verify(eventClient, times(1)).send(changeEvent1);
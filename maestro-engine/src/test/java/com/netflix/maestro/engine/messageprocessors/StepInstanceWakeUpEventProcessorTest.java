@@ -17,6 +17,7 @@ import com.netflix.maestro.AssertHelper;
 import com.netflix.maestro.engine.MaestroEngineBaseTest;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.jobevents.StepInstanceWakeUpEvent;
 import com.netflix.maestro.engine.processors.StepInstanceWakeUpEventProcessor;
 import com.netflix.maestro.exceptions.MaestroRetryableError;
@@ -42,6 +43,7 @@ public class StepInstanceWakeUpEventProcessorTest extends MaestroEngineBaseTest
   @Mock private MaestroWorkflowExecutor workflowExecutor;
   @Mock private MaestroStepInstanceDao stepInstanceDao;
   @Mock private MaestroWorkflowInstanceDao workflowInstanceDao;
+  @Mock private StepWakeUpRegistry wakeUpRegistry;
   @Mock private StepInstance stepInstance;
   @Mock private Step stepDefinition;
   @Mock private StepRuntimeState stepRuntimeState;
@@ -73,7 +75,7 @@ public class StepInstanceWakeUpEventProcessorTest extends MaestroEngineBaseTest
   public void before() {
     subject =
         new StepInstanceWakeUpEventProcessor(
-            workflowExecutor, stepInstanceDao, workflowInstanceDao);
+            workflowExecutor, stepInstanceDao, workflowInstanceDao, wakeUpRegistry);
     event = new StepInstanceWakeUpEvent();
     event.setWorkflowId(workflowId);
     event.setWorkflowInstanceId(workflowInstanceId);
@@ -123,6 +125,10 @@ public class StepInstanceWakeUpEventProcessorTest extends MaestroEngineBaseTest
     event.setEntityType(StepInstanceWakeUpEvent.EntityType.STEP);
     event.setStepStatus(StepInstance.Status.FATALLY_FAILED);
     subject.process(() -> event);
+    Mockito.verify(wakeUpRegistry, Mockito.times(1))
+        .wakeUp(
+            StepWakeUpRegistry.SubscriptionType.STEP,
+            StepWakeUpRegistry.stepName(workflowId, workflowInstanceId, workflowRunId, stepId));
     Mockito.verifyNoInteractions(stepInstanceDao);
     Mockito.verifyNoInteractions(workflowExecutor);
     Mockito.verifyNoInteractions(workflowInstanceDao);
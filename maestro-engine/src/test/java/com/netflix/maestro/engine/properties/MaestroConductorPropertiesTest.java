@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MaestroConductorPropertiesTest {
+  private final Map<String, String> configs = new HashMap<>();
+  private MaestroConductorProperties properties;
+
+  @Before
+  public void setUp() {
+    properties =
+        new MaestroConductorProperties() {
+          @Override
+          public String getProperty(String name, String defaultValue) {
+            return configs.getOrDefault(name, defaultValue);
+          }
+        };
+  }
+
+  @Test
+  public void testFlywayLocations() {
+    assertFalse(properties.isInstanceShardingEnabled());
+    assertFalse(properties.isFlywayOutOfOrder());
+    assertArrayEquals(new String[] {"db/migration"}, properties.getFlywayLocations());
+
+    configs.put("instance.sharding.enabled", "true");
+    assertTrue(properties.isInstanceShardingEnabled());
+    assertTrue(properties.isFlywayOutOfOrder());
+    assertArrayEquals(
+        new String[] {"db/migration", "db/migration-sharded"}, properties.getFlywayLocations());
+
+    configs.put("flyway.locations", "db/migration,db/migration-sharded");
+    assertArrayEquals(
+        new String[] {"db/migration", "db/migration-sharded"}, properties.getFlywayLocations());
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.jobevents.DeleteWorkflowJobEvent;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
+import com.netflix.maestro.engine.jobevents.StepInstanceUpdateJobEvent;
+import com.netflix.maestro.engine.jobevents.WorkflowInstanceUpdateJobEvent;
+import com.netflix.maestro.engine.jobevents.WorkflowVersionUpdateJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.error.Details;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class InMemoryJobEventQueueTest extends MaestroEngineBaseTest {
+  @Mock private MaestroMetrics metrics;
+
+  private InMemoryJobEventQueue queue;
+
+  @Before
+  public void setUp() {
+    queue = new InMemoryJobEventQueue(2, 1, 0, metrics);
+  }
+
+  @Test
+  public void testGetPriority() {
+    assertEquals(
+        InMemoryJobEventQueue.Priority.CRITICAL,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.TERMINATE_INSTANCES_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.THROTTLED,
+        InMemoryJobEventQueue.getPriority(
+            MaestroJobEvent.Type.WORKFLOW_INSTANCE_UPDATE_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.CRITICAL,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.RUN_WORKFLOW_INSTANCES_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.CRITICAL,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.START_WORKFLOW_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.CRITICAL,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.STEP_INSTANCE_WAKE_UP_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.THROTTLED,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.STEP_INSTANCE_UPDATE_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.NORMAL,
+        InMemoryJobEventQueue.getPriority(MaestroJobEvent.Type.DELETE_WORKFLOW_JOB_EVENT));
+    assertEquals(
+        InMemoryJobEventQueue.Priority.LOW,
+        InMemoryJobEventQueue.getPriority(
+            MaestroJobEvent.Type.WORKFLOW_VERSION_UPDATE_JOB_EVENT));
+  }
+
+  @Test
+  public void testOfferWithAdmissionControl() throws Exception {
+    MaestroJobEvent deleteEvent = new DeleteWorkflowJobEvent();
+    MaestroJobEvent versionEvent = new WorkflowVersionUpdateJobEvent();
+    MaestroJobEvent startEvent = StartWorkflowJobEvent.create("sample-wf");
+
+    assertFalse(queue.offer(deleteEvent).isPresent());
+    Optional<Details> error = queue.offer(versionEvent);
+    assertTrue(error.isPresent());
+    assertTrue(error.get().isRetryable());
+    assertFalse(queue.offer(deleteEvent).isPresent());
+    assertTrue(queue.offer(deleteEvent).isPresent());
+    assertFalse(queue.offer(startEvent).isPresent());
+    assertEquals(3, queue.size());
+    verify(metrics, times(1))
+        .counter(
+            MetricConstants.JOB_EVENT_QUEUE_REJECTION_METRIC,
+            InMemoryJobEventQueue.class,
+            MetricConstants.TYPE_TAG,
+            "WORKFLOW_VERSION_UPDATE_JOB_EVENT");
+    verify(metrics, times(1))
+        .counter(
+            MetricConstants.JOB_EVENT_QUEUE_REJECTION_METRIC,
+            InMemoryJobEventQueue.class,
+            MetricConstants.TYPE_TAG,
+            "DELETE_WORKFLOW_JOB_EVENT");
+    verify(metrics, times(1))
+        .gauge(MetricConstants.JOB_EVENT_QUEUE_DEPTH_METRIC, 3.0, InMemoryJobEventQueue.class);
+
+    assertEquals(deleteEvent, queue.take());
+    verify(metrics, times(1))
+        .timer(
+            eq(MetricConstants.JOB_EVENT_QUEUED_TIME_METRIC),
+            anyLong(),
+            eq(InMemoryJobEventQueue.class),
+            eq(MetricConstants.TYPE_TAG),
+            eq("DELETE_WORKFLOW_JOB_EVENT"));
+  }
+
+  @Test
+  public void testOfferThrottledJobEvent() throws Exception {
+    queue = new InMemoryJobEventQueue(2, 1, 50, metrics);
+    MaestroJobEvent updateEvent = new StepInstanceUpdateJobEvent();
+    assertFalse(queue.offer(updateEvent).isPresent());
+    assertFalse(queue.offer(updateEvent).isPresent());
+    verify(metrics, times(0))
+        .counter(
+            MetricConstants.JOB_EVENT_QUEUE_THROTTLED_METRIC,
+            InMemoryJobEventQueue.class,
+            MetricConstants.TYPE_TAG,
+            "STEP_INSTANCE_UPDATE_JOB_EVENT");
+
+    long start = System.nanoTime();
+    assertFalse(queue.offer(updateEvent).isPresent());
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals(3, queue.size());
+    verify(metrics, times(1))
+        .counter(
+            MetricConstants.JOB_EVENT_QUEUE_THROTTLED_METRIC,
+            InMemoryJobEventQueue.class,
+            MetricConstants.TYPE_TAG,
+            "STEP_INSTANCE_UPDATE_JOB_EVENT");
+  }
+
+  @Test
+  public void testOfferThrottledJobEventUnblockedByTake() throws Exception {
+    queue = new InMemoryJobEventQueue(1, 1, TimeUnit.MINUTES.toMillis(1), metrics);
+    MaestroJobEvent updateEvent = new WorkflowInstanceUpdateJobEvent();
+    assertFalse(queue.offer(updateEvent).isPresent());
+    CompletableFuture<Optional<Details>> blocked =
+        CompletableFuture.supplyAsync(() -> queue.offer(updateEvent));
+    assertEquals(updateEvent, queue.take());
+    assertFalse(blocked.get(10, TimeUnit.SECONDS).isPresent());
+    assertEquals(1, queue.size());
+    verify(metrics, times(0))
+        .counter(
+            MetricConstants.JOB_EVENT_QUEUE_THROTTLED_METRIC,
+            InMemoryJobEventQueue.class,
+            MetricConstants.TYPE_TAG,
+            "WORKFLOW_INSTANCE_UPDATE_JOB_EVENT");
+  }
+
+  @Test
+  public void testPutWithoutAdmissionControl() {
+    queue.put(StartWorkflowJobEvent.create("sample-wf"));
+    queue.put(StartWorkflowJobEvent.create("sample-wf"));
+    queue.put(new WorkflowVersionUpdateJobEvent());
+    assertEquals(3, queue.size());
+  }
+
+  @Test
+  public void testJournalAppendAndAck() throws Exception {
+    JobEventJournal journal = mock(JobEventJournal.class);
+    MaestroJobEvent startEvent = StartWorkflowJobEvent.create("sample-wf");
+    when(journal.append(startEvent, 0)).thenReturn(12L);
+    queue = new InMemoryJobEventQueue(2, 1, 0, journal, metrics);
+
+    assertFalse(queue.offer(startEvent).isPresent());
+    verify(journal, times(1)).append(startEvent, 0);
+    assertEquals(startEvent, queue.take());
+    queue.ack(startEvent);
+    verify(journal, times(1)).ack(12L);
+    queue.ack(startEvent);
+    verify(journal, times(1)).ack(anyLong());
+  }
+
+  @Test
+  public void testOfferAllWithJournal() throws Exception {
+    JobEventJournal journal = mock(JobEventJournal.class);
+    MaestroJobEvent startEvent = StartWorkflowJobEvent.create("sample-wf");
+    MaestroJobEvent deleteEvent = new DeleteWorkflowJobEvent();
+    when(journal.appendAll(Arrays.asList(startEvent, deleteEvent), 0))
+        .thenReturn(new long[] {3L, 7L});
+    queue = new InMemoryJobEventQueue(2, 1, 0, journal, metrics);
+
+    List<Optional<Details>> results =
+        queue.offerAll(
+            Arrays.asList(
+                startEvent, deleteEvent, deleteEvent, new WorkflowVersionUpdateJobEvent()));
+    assertEquals(4, results.size());
+    assertFalse(results.get(0).isPresent());
+    assertFalse(results.get(1).isPresent());
+    assertTrue(results.get(2).isPresent());
+    assertTrue(results.get(3).isPresent());
+    assertEquals(2, queue.size());
+    verify(journal, times(1)).appendAll(Arrays.asList(startEvent, deleteEvent), 0);
+    verify(journal, times(0)).append(any(), anyLong());
+    verify(metrics, times(1))
+        .gauge(MetricConstants.JOB_EVENT_QUEUE_DEPTH_METRIC, 2.0, InMemoryJobEventQueue.class);
+
+    assertEquals(startEvent, queue.take());
+    queue.ack(startEvent);
+    verify(journal, times(1)).ack(3L);
+    assertEquals(deleteEvent, queue.take());
+    queue.ack(deleteEvent);
+    verify(journal, times(1)).ack(7L);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
+import com.netflix.maestro.engine.jobevents.WorkflowVersionUpdateJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.engine.properties.JobEventJournalProperties;
+import com.netflix.maestro.models.error.Details;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+public class InMemoryMaestroJobEventPublisherTest extends MaestroEngineBaseTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+  @Mock private ExecutorService executorService;
+  @Mock private MaestroMetrics metrics;
+
+  private InMemoryJobEventQueue queue;
+  private DelayQueue<InMemoryMaestroJobEventPublisher.DelayedJobEvent> delayQueue;
+  private InMemoryMaestroJobEventPublisher publisher;
+  private final MaestroJobEvent jobEvent = StartWorkflowJobEvent.create("sample-wf");
+
+  @Before
+  public void setUp() {
+    queue = new InMemoryJobEventQueue(10, 5, 0, metrics);
+    delayQueue = new DelayQueue<>();
+    publisher =
+        new InMemoryMaestroJobEventPublisher(queue, delayQueue, 2, 0, executorService, metrics);
+  }
+
+  @Test
+  public void testPostConstruct() {
+    publisher.postConstruct();
+    verify(executorService, times(1)).execute(any());
+  }
+
+  @Test
+  public void testPublishWithoutDelay() throws Exception {
+    assertFalse(publisher.publish(jobEvent).isPresent());
+    assertEquals(jobEvent, queue.take());
+    assertTrue(delayQueue.isEmpty());
+  }
+
+  @Test
+  public void testPublishWithDelay() throws Exception {
+    assertFalse(publisher.publish(jobEvent, 100000).isPresent());
+    assertEquals(0, queue.size());
+    assertEquals(1, delayQueue.size());
+    assertNull(delayQueue.poll());
+    verify(metrics, times(1))
+        .gauge(
+            MetricConstants.JOB_EVENT_DELAYED_COUNT_METRIC,
+            1.0,
+            InMemoryMaestroJobEventPublisher.class);
+
+    assertFalse(publisher.publish(jobEvent, 1).isPresent());
+    InMemoryMaestroJobEventPublisher.DelayedJobEvent delayed =
+        delayQueue.poll(10, TimeUnit.SECONDS);
+    publisher.release(delayed);
+    assertEquals(jobEvent, queue.take());
+    assertEquals(1, delayQueue.size());
+    verify(metrics, times(1))
+        .timer(
+            eq(MetricConstants.JOB_EVENT_RELEASE_LAG_METRIC),
+            anyLong(),
+            eq(InMemoryMaestroJobEventPublisher.class));
+  }
+
+  @Test
+  public void testPublishWithDelayOverLimit() {
+    assertFalse(publisher.publish(jobEvent, 100000).isPresent());
+    assertFalse(publisher.publish(jobEvent, 100000).isPresent());
+    Optional<Details> error = publisher.publish(jobEvent, 100000);
+    assertTrue(error.isPresent());
+    assertTrue(error.get().isRetryable());
+    assertEquals(2, delayQueue.size());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testPublishAll() throws Exception {
+    MaestroJobEvent versionEvent = new WorkflowVersionUpdateJobEvent();
+    queue = new InMemoryJobEventQueue(10, 2, 0, metrics);
+    publisher =
+        new InMemoryMaestroJobEventPublisher(queue, delayQueue, 2, 0, executorService, metrics);
+    List<Optional<Details>> results =
+        publisher.publishAll(Arrays.asList(jobEvent, versionEvent, versionEvent));
+    assertEquals(3, results.size());
+    assertFalse(results.get(0).isPresent());
+    assertFalse(results.get(1).isPresent());
+    assertTrue(results.get(2).isPresent());
+    assertEquals(jobEvent, queue.take());
+    assertEquals(versionEvent, queue.take());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testPublishAllWithCoalescing() {
+    publisher =
+        new InMemoryMaestroJobEventPublisher(queue, delayQueue, 2, 10, executorService, metrics);
+    List<Optional<Details>> results =
+        publisher.publishAll(Arrays.asList(jobEvent, new WorkflowVersionUpdateJobEvent()));
+    assertEquals(2, results.size());
+    assertFalse(results.get(0).isPresent());
+    assertFalse(results.get(1).isPresent());
+    assertEquals(1, delayQueue.size());
+    assertEquals(1, queue.size());
+  }
+
+  @Test
+  public void testCoalesceStartWorkflowJobEvents() throws Exception {
+    publisher =
+        new InMemoryMaestroJobEventPublisher(queue, delayQueue, 2, 10, executorService, metrics);
+    assertFalse(publisher.publish(jobEvent).isPresent());
+    assertFalse(publisher.publish(StartWorkflowJobEvent.create("sample-wf")).isPresent());
+    assertFalse(publisher.publish(StartWorkflowJobEvent.create("other-wf")).isPresent());
+    assertEquals(0, queue.size());
+    assertEquals(2, delayQueue.size());
+    verify(metrics, times(1))
+        .counter(
+            MetricConstants.JOB_EVENT_COALESCED_METRIC,
+            InMemoryMaestroJobEventPublisher.class,
+            MetricConstants.TYPE_TAG,
+            "START_WORKFLOW_JOB_EVENT");
+
+    publisher.release(delayQueue.poll(10, TimeUnit.SECONDS));
+    publisher.release(delayQueue.poll(10, TimeUnit.SECONDS));
+    assertEquals(2, queue.size());
+    assertFalse(publisher.publish(jobEvent).isPresent());
+    assertEquals(1, delayQueue.size());
+
+    assertFalse(publisher.publish(jobEvent, 100000).isPresent());
+    assertEquals(2, delayQueue.size());
+  }
+
+  @Test
+  public void testReplayKeepsCoalescingStartWorkflowJobEvents() {
+    JobEventJournalProperties properties =
+        JobEventJournalProperties.builder()
+            .enabled(true)
+            .directory(folder.getRoot().getAbsolutePath())
+            .segmentSizeBytes(4096)
+            .retainedSegments(0)
+            .syncOnAppend(false)
+            .build();
+    JobEventJournal journal = new JobEventJournal(properties, MAPPER);
+    journal.open();
+    journal.append(jobEvent, System.currentTimeMillis() + 50000);
+
+    queue = new InMemoryJobEventQueue(10, 5, 0, new JobEventJournal(properties, MAPPER), metrics);
+    publisher =
+        new InMemoryMaestroJobEventPublisher(
+            queue, delayQueue, 2, 100000, executorService, metrics);
+    publisher.postConstruct();
+    assertEquals(1, delayQueue.size());
+
+    assertFalse(publisher.publish(StartWorkflowJobEvent.create("sample-wf")).isPresent());
+    assertEquals(1, delayQueue.size());
+    assertEquals(0, queue.size());
+  }
+}
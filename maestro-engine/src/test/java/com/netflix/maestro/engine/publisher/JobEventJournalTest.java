@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
+import com.netflix.maestro.engine.properties.JobEventJournalProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobEventJournalTest extends MaestroEngineBaseTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private JobEventJournalProperties properties;
+
+  @Before
+  public void setUp() {
+    properties =
+        JobEventJournalProperties.builder()
+            .enabled(true)
+            .directory(folder.getRoot().getAbsolutePath())
+            .segmentSizeBytes(256)
+            .retainedSegments(0)
+            .syncOnAppend(false)
+            .build();
+  }
+
+  @Test
+  public void testAppendAckAndReplay() {
+    JobEventJournal journal = new JobEventJournal(properties, MAPPER);
+    assertTrue(journal.open().isEmpty());
+    long offset1 = journal.append(StartWorkflowJobEvent.create("wf1"), 0);
+    long offset2 = journal.append(StartWorkflowJobEvent.create("wf2"), 12345);
+    long offset3 = journal.append(StartWorkflowJobEvent.create("wf3"), 0);
+    assertEquals(0, offset1);
+    assertEquals(offset1, journal.getCheckpoint());
+    journal.ack(offset1);
+    journal.ack(offset3);
+    assertEquals(offset2, journal.getCheckpoint());
+
+    List<JobEventJournal.Record> records = new JobEventJournal(properties, MAPPER).open();
+    assertEquals(2, records.size());
+    assertEquals(offset2, records.get(0).getOffset());
+    assertEquals(12345, records.get(0).getVisibleTime());
+    assertEquals("wf2", records.get(0).getJobEvent().getWorkflowId());
+    assertEquals(offset3, records.get(1).getOffset());
+    assertEquals("wf3", records.get(1).getJobEvent().getWorkflowId());
+  }
+
+  @Test
+  public void testAppendAllAcrossSegments() {
+    properties =
+        JobEventJournalProperties.builder()
+            .enabled(true)
+            .directory(folder.getRoot().getAbsolutePath())
+            .segmentSizeBytes(256)
+            .retainedSegments(0)
+            .syncOnAppend(true)
+            .build();
+    JobEventJournal journal = new JobEventJournal(properties, MAPPER);
+    journal.open();
+    List<StartWorkflowJobEvent> jobEvents = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      jobEvents.add(StartWorkflowJobEvent.create("wf" + i));
+    }
+    long[] offsets = journal.appendAll(jobEvents, 12345);
+    assertEquals(5, offsets.length);
+    assertEquals(0, offsets[0]);
+    assertTrue(offsets[4] >= 256);
+    assertEquals(0, journal.appendAll(Collections.emptyList(), 0).length);
+    journal.ack(offsets[0]);
+
+    List<JobEventJournal.Record> records = new JobEventJournal(properties, MAPPER).open();
+    assertEquals(4, records.size());
+    for (int i = 0; i < 4; ++i) {
+      assertEquals(offsets[i + 1], records.get(i).getOffset());
+      assertEquals(12345, records.get(i).getVisibleTime());
+      assertEquals("wf" + (i + 1), records.get(i).getJobEvent().getWorkflowId());
+    }
+  }
+
+  @Test
+  public void testRollAndCompact() {
+    JobEventJournal journal = new JobEventJournal(properties, MAPPER);
+    journal.open();
+    long last = 0;
+    for (int i = 0; i < 10; ++i) {
+      long offset = journal.append(StartWorkflowJobEvent.create("wf" + i), 0);
+      journal.ack(offset);
+      last = offset;
+    }
+    assertTrue(last >= 256);
+    assertEquals(1, journal.getSegmentCount());
+    assertEquals(1, folder.getRoot().list((dir, name) -> name.startsWith("segment-")).length);
+
+    JobEventJournal reopened = new JobEventJournal(properties, MAPPER);
+    assertTrue(reopened.open().isEmpty());
+    assertEquals(journal.getCheckpoint(), reopened.getCheckpoint());
+    long offset = reopened.append(StartWorkflowJobEvent.create("wf"), 0);
+    assertEquals(journal.getCheckpoint(), offset);
+  }
+}
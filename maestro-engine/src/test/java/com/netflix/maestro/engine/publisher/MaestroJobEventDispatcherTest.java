@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.netflix.maestro.engine.MaestroEngineBaseTest;
+import com.netflix.maestro.engine.dao.MaestroJobEventDao;
+import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
+import com.netflix.maestro.engine.jobevents.StartWorkflowJobEvent;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
+import com.netflix.maestro.engine.metrics.MetricConstants;
+import com.netflix.maestro.models.error.Details;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+public class MaestroJobEventDispatcherTest extends MaestroEngineBaseTest {
+  @Mock private MaestroJobEventDao jobEventDao;
+  @Mock private MaestroJobEventPublisher publisher;
+  @Mock private ScheduledExecutorService executorService;
+  @Mock private MaestroMetrics metrics;
+
+  private MaestroJobEventDispatcher dispatcher;
+  private final MaestroJobEvent jobEvent1 = StartWorkflowJobEvent.create("sample-wf-1");
+  private final MaestroJobEvent jobEvent2 = StartWorkflowJobEvent.create("sample-wf-2");
+
+  @Before
+  public void setUp() {
+    dispatcher =
+        new MaestroJobEventDispatcher(
+            jobEventDao, publisher, executorService, 2, 1000, 60000, metrics);
+  }
+
+  @Test
+  public void testPostConstruct() {
+    dispatcher.postConstruct();
+    verify(executorService, times(1))
+        .scheduleWithFixedDelay(any(), eq(1000L), eq(1000L), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testDispatch() {
+    Map<String, MaestroJobEvent> jobEvents = new LinkedHashMap<>();
+    jobEvents.put("id1", jobEvent1);
+    jobEvents.put("id2", jobEvent2);
+    when(jobEventDao.claimJobEvents(2, 60000)).thenReturn(jobEvents);
+    when(publisher.publish(jobEvent1)).thenReturn(Optional.empty());
+    when(publisher.publish(jobEvent2)).thenReturn(Optional.of(Details.create("test error")));
+    when(jobEventDao.deleteJobEvents(any())).thenReturn(1);
+
+    assertEquals(2, dispatcher.dispatch());
+    verify(jobEventDao, times(1)).deleteJobEvents(Collections.singletonList("id1"));
+    verify(metrics, times(1))
+        .counter(
+            MetricConstants.JOB_EVENT_PUBLISH_FAILURE_METRIC,
+            MaestroJobEventDispatcher.class,
+            MetricConstants.TYPE_TAG,
+            "START_WORKFLOW_JOB_EVENT");
+    verify(metrics, times(1))
+        .distributionSummary(
+            MetricConstants.JOB_EVENT_OUTBOX_DISPATCH_BATCH_METRIC,
+            1,
+            MaestroJobEventDispatcher.class);
+  }
+
+  @Test
+  public void testDispatchAllUntilDrained() {
+    Map<String, MaestroJobEvent> jobEvents = new LinkedHashMap<>();
+    jobEvents.put("id1", jobEvent1);
+    jobEvents.put("id2", jobEvent2);
+    when(jobEventDao.claimJobEvents(2, 60000))
+        .thenReturn(jobEvents, Collections.singletonMap("id3", jobEvent1));
+    when(publisher.publish(any())).thenReturn(Optional.empty());
+
+    dispatcher.dispatchAll();
+    verify(jobEventDao, times(2)).claimJobEvents(anyInt(), anyLong());
+    verify(publisher, times(3)).publish(any());
+    verify(jobEventDao, times(2)).deleteJobEvents(any());
+  }
+
+  @Test
+  public void testDispatchAllWithError() {
+    when(jobEventDao.claimJobEvents(2, 60000)).thenThrow(new RuntimeException("test error"));
+    dispatcher.dispatchAll();
+    verify(jobEventDao, times(1)).claimJobEvents(anyInt(), anyLong());
+  }
+}
@@ -19,6 +19,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.netflix.conductor.common.metadata.tasks.Task;
@@ -94,4 +96,76 @@ public class MaestroGateTaskTest extends MaestroEngineBaseTest {
     assertFalse(gateTask.execute(workflow, joinTask, null));
     assertNull(joinTask.getStatus());
   }
+
+  private Workflow wideFanInWorkflow() {
+    joinTask.setInputData(Collections.singletonMap("joinOn", Arrays.asList("job1", "job3")));
+    Task task3 = new Task();
+    task3.setStatus(Task.Status.COMPLETED);
+    task3.setTaskId("test-task3-id");
+    task3.setReferenceTaskName("job3");
+    task3.setWorkflowTask(new WorkflowTask());
+    workflow.getTasks().get(0).setStatus(Task.Status.COMPLETED);
+    workflow.setTasks(Arrays.asList(workflow.getTasks().get(0), task3, joinTask));
+    return workflow;
+  }
+
+  @Test
+  public void testExecuteIncrementallyTracksJoinedSteps() {
+    Workflow wf = wideFanInWorkflow();
+    StepRuntimeState succeeded = new StepRuntimeState();
+    succeeded.setStatus(StepInstance.Status.SUCCEEDED);
+    StepRuntimeState running = new StepRuntimeState();
+    running.setStatus(StepInstance.Status.RUNNING);
+    Map<String, StepRuntimeState> states = new HashMap<>();
+    states.put("job1", running);
+    states.put("job3", succeeded);
+    when(stepInstanceDao.getStepStates(anyString(), anyLong(), anyLong(), anyList()))
+        .thenReturn(states);
+
+    assertTrue(gateTask.execute(wf, joinTask, null)); // job3 is confirmed and persisted
+    assertNull(joinTask.getStatus());
+    assertEquals(
+        Collections.singletonList(2L),
+        joinTask.getOutputData().get(MaestroGateTask.JOINED_STEPS_FIELD));
+    verify(stepInstanceDao, times(1))
+        .getStepStates("testWorkflowId", 123, 1, Arrays.asList("job1", "job3"));
+
+    assertFalse(gateTask.execute(wf, joinTask, null)); // no progress
+    verify(stepInstanceDao, times(1))
+        .getStepStates("testWorkflowId", 123, 1, Collections.singletonList("job1"));
+
+    states.put("job1", succeeded);
+    assertTrue(gateTask.execute(wf, joinTask, null));
+    assertEquals(Task.Status.COMPLETED, joinTask.getStatus());
+    verify(stepInstanceDao, times(2))
+        .getStepStates("testWorkflowId", 123, 1, Collections.singletonList("job1"));
+  }
+
+  @Test
+  public void testExecuteReconcilesExpiredJoinedSteps() {
+    Workflow wf = wideFanInWorkflow();
+    joinTask.getOutputData().put(MaestroGateTask.JOINED_STEPS_FIELD, Arrays.asList(3));
+    joinTask.getOutputData().put(MaestroGateTask.JOINED_RECONCILE_TIME_FIELD, 0L);
+    when(stepInstanceDao.getStepStates(anyString(), anyLong(), anyLong(), anyList()))
+        .thenReturn(Collections.emptyMap());
+
+    assertFalse(gateTask.execute(wf, joinTask, null));
+    assertNull(joinTask.getStatus());
+    verify(stepInstanceDao, times(1))
+        .getStepStates("testWorkflowId", 123, 1, Arrays.asList("job1", "job3"));
+    assertFalse(joinTask.getOutputData().containsKey(MaestroGateTask.JOINED_STEPS_FIELD));
+  }
+
+  @Test
+  public void testExecuteSkipsConfirmedJoinedSteps() {
+    Workflow wf = wideFanInWorkflow();
+    joinTask.getOutputData().put(MaestroGateTask.JOINED_STEPS_FIELD, Arrays.asList(3));
+    joinTask
+        .getOutputData()
+        .put(MaestroGateTask.JOINED_RECONCILE_TIME_FIELD, System.currentTimeMillis());
+
+    assertTrue(gateTask.execute(wf, joinTask, null));
+    assertEquals(Task.Status.COMPLETED, joinTask.getStatus());
+    verify(stepInstanceDao, times(0)).getStepStates(anyString(), anyLong(), anyLong(), anyList());
+  }
 }
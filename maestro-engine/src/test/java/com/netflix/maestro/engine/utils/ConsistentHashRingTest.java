@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.maestro.engine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+  private static final int KEYS = 10000;
+
+  @Test
+  public void testEmptyRing() {
+    ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 16);
+    assertNull(ring.getOwner("wf-1"));
+    assertTrue(ring.getMembers().isEmpty());
+  }
+
+  @Test
+  public void testMembersAreSortedAndDeduplicated() {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("b", "a", "b"), 16);
+    assertEquals(Arrays.asList("a", "b"), ring.getMembers());
+  }
+
+  @Test
+  public void testBalancedOwnership() {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3", "n4"), 128);
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < KEYS; ++i) {
+      counts.merge(ring.getOwner("wf-" + i), 1, Integer::sum);
+    }
+    assertEquals(4, counts.size());
+    counts.values().forEach(c -> assertTrue(c > KEYS / 8 && c < KEYS / 2));
+  }
+
+  @Test
+  public void testMinimalMovementOnMembershipChange() {
+    ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("n1", "n2", "n3"), 128);
+    ConsistentHashRing grown =
+        new ConsistentHashRing(Arrays.asList("n1", "n2", "n3", "n4"), 128);
+    int moved = 0;
+    for (int i = 0; i < KEYS; ++i) {
+      String owner = ring.getOwner("wf-" + i);
+      String newOwner = grown.getOwner("wf-" + i);
+      if (!owner.equals(newOwner)) {
+        assertEquals("n4", newOwner);
+        moved++;
+      }
+    }
+    assertTrue(moved > KEYS / 8 && moved < KEYS / 2);
+  }
+
+  @Test
+  public void testDeterministicOwner() {
+    ConsistentHashRing ring1 = new ConsistentHashRing(Arrays.asList("n1", "n2"), 16);
+    ConsistentHashRing ring2 = new ConsistentHashRing(Arrays.asList("n2", "n1"), 16);
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(ring1.getOwner("wf-" + i), ring2.getOwner("wf-" + i));
+    }
+  }
+}
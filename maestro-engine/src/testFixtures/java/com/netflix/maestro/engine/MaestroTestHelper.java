@@ -117,4 +117,27 @@ public final class MaestroTestHelper {
       throw new RuntimeException(e);
     }
   }
+
+  // deletion function for unit tests and integration tests
+  public static int removeArchivedWorkflowInstance(
+      DataSource dataSource, String workflowId, long workflowInstanceId) {
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement removeWorkflowInstances =
+            conn.prepareStatement(
+                "DELETE FROM maestro_workflow_instance_archive WHERE workflow_id=? AND instance_id=?");
+        PreparedStatement removeStepInstances =
+            conn.prepareStatement(
+                "DELETE FROM maestro_step_instance_archive WHERE workflow_id=? AND workflow_instance_id=?")) {
+      removeWorkflowInstances.setString(1, workflowId);
+      removeWorkflowInstances.setLong(2, workflowInstanceId);
+      int removedCount = removeWorkflowInstances.executeUpdate();
+      removeStepInstances.setString(1, workflowId);
+      removeStepInstances.setLong(2, workflowInstanceId);
+      removedCount += removeStepInstances.executeUpdate();
+      conn.commit();
+      return removedCount;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
 }
@@ -32,6 +32,7 @@ import com.netflix.conductor.core.execution.mapper.UserDefinedTaskMapper;
 import com.netflix.conductor.core.execution.tasks.SystemTaskWorkerCoordinator;
 import com.netflix.conductor.core.metadata.MetadataMapperService;
 import com.netflix.conductor.core.orchestration.ExecutionDAOFacade;
+import com.netflix.conductor.core.orchestration.MaestroExecutionDAOFacade;
 import com.netflix.conductor.core.utils.DummyPayloadStorage;
 import com.netflix.conductor.core.utils.ExternalPayloadStorageUtils;
 import com.netflix.conductor.core.utils.Lock;
@@ -57,10 +58,10 @@ import com.netflix.maestro.server.properties.ConductorProperties;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Provider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -86,7 +87,7 @@ public class ConductorConfiguration {
       matchIfMissing = true)
   public QueueDAO queueDAO() {
     LOG.info("Creating memory based queueDAO within Spring boot...");
-    return new InMemoryQueueDao(new ConcurrentHashMap<>());
+    return new InMemoryQueueDao();
   }
 
   @Bean
@@ -160,7 +161,7 @@ public class ConductorConfiguration {
       @Qualifier(CONDUCTOR_QUALIFIER) ObjectMapper objectMapper,
       ConductorProperties props) {
     LOG.info("Creating executionDAOFacade within Spring boot...");
-    return new ExecutionDAOFacade(
+    return new MaestroExecutionDAOFacade(
         executionDAO, queueDAO, indexDAO, rateLimitingDao, pollDataDAO, objectMapper, props);
   }
 
@@ -184,10 +185,8 @@ public class ConductorConfiguration {
   }
 
   @Bean
-  @ConditionalOnProperty(
-      value = "maestro.redis.enabled",
-      havingValue = "false",
-      matchIfMissing = true)
+  @ConditionalOnExpression(
+      "!${maestro.redis.enabled:false} and '${maestro.lock.type:noop}'.equals('noop')")
   public Lock noopLock() {
     LOG.info("Creating noop lock within Spring boot...");
     return new NoopLock();
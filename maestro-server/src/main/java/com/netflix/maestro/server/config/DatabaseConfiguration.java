@@ -16,8 +16,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.cockroachdb.CockroachDBDataSourceProvider;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBEventHandlerDAO;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBIndexDAO;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBLockDAO;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBMetadataDAO;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBPollDataDAO;
+import com.netflix.conductor.cockroachdb.dao.CockroachDBQueueDAO;
 import com.netflix.conductor.cockroachdb.dao.CockroachDBRateLimitingDAO;
 import com.netflix.conductor.cockroachdb.dao.MaestroCockroachDBExecutionDao;
 import com.netflix.conductor.dao.EventHandlerDAO;
@@ -25,9 +27,14 @@ import com.netflix.conductor.dao.ExecutionDAO;
 import com.netflix.conductor.dao.IndexDAO;
 import com.netflix.conductor.dao.MetadataDAO;
 import com.netflix.conductor.dao.PollDataDAO;
+import com.netflix.conductor.dao.QueueDAO;
 import com.netflix.conductor.dao.RateLimitingDAO;
 import com.netflix.maestro.engine.compression.GZIPCompressor;
 import com.netflix.maestro.engine.compression.StringCodec;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import com.netflix.maestro.engine.dao.MaestroClusterMemberDao;
+import com.netflix.maestro.engine.dao.MaestroInstanceArchiveDao;
+import com.netflix.maestro.engine.dao.MaestroJobEventDao;
 import com.netflix.maestro.engine.dao.MaestroRunStrategyDao;
 import com.netflix.maestro.engine.dao.MaestroStepBreakpointDao;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceActionDao;
@@ -36,15 +43,22 @@ import com.netflix.maestro.engine.dao.MaestroWorkflowDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowDeletionDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
 import com.netflix.maestro.engine.dao.OutputDataDao;
+import com.netflix.maestro.engine.dao.PartitionedQueueDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
 import com.netflix.maestro.engine.metrics.MaestroMetrics;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.engine.utils.TriggerSubscriptionClient;
 import com.netflix.maestro.models.Constants;
 import com.netflix.maestro.server.properties.ConductorProperties;
 import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
 import javax.sql.DataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -86,10 +100,18 @@ public class DatabaseConfiguration {
       IndexDAO indexDAO,
       @Qualifier(ConductorConfiguration.CONDUCTOR_QUALIFIER) ObjectMapper objectMapper,
       StringCodec stringCodec,
-      ConductorProperties props) {
+      ConductorProperties props,
+      MaestroMetrics metricRepo,
+      Optional<CockroachDBLockDAO> cockroachDBLock) {
     LOG.info("Creating executionDAO within Spring boot...");
     return new MaestroCockroachDBExecutionDao(
-        crdbDataSource, objectMapper, stringCodec, indexDAO, props);
+        crdbDataSource,
+        objectMapper,
+        stringCodec,
+        indexDAO,
+        props,
+        metricRepo,
+        cockroachDBLock.orElse(null));
   }
 
   @Bean
@@ -115,6 +137,53 @@ public class DatabaseConfiguration {
     return new CockroachDBPollDataDAO(crdbDataSource, objectMapper, props);
   }
 
+  @Bean
+  @ConditionalOnProperty(value = "maestro.queue.type", havingValue = "cockroachdb")
+  public QueueDAO queueDAO(
+      DataSource crdbDataSource,
+      @Qualifier(ConductorConfiguration.CONDUCTOR_QUALIFIER) ObjectMapper objectMapper,
+      ConductorProperties props,
+      Optional<WorkflowOwnershipManager> workflowOwnershipManager) {
+    LOG.info("Creating cockroachdb based queueDAO within Spring boot...");
+    QueueDAO queueDAO = new CockroachDBQueueDAO(crdbDataSource, objectMapper, props);
+    if (workflowOwnershipManager.isPresent()) {
+      LOG.info("Partitioning the queues by the workflow ownership...");
+      return new PartitionedQueueDao(queueDAO, workflowOwnershipManager.get());
+    }
+    return queueDAO;
+  }
+
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
+  @ConditionalOnProperty(value = "maestro.ownership.enabled", havingValue = "true")
+  public WorkflowOwnershipManager workflowOwnershipManager(
+      MaestroClusterMemberDao maestroClusterMemberDao,
+      @Value("${maestro.ownership.partition-count:16}") int partitionCount,
+      @Value("${maestro.ownership.virtual-nodes:64}") int virtualNodes,
+      @Value("${maestro.ownership.heartbeat-interval-millis:5000}") long heartbeatIntervalInMillis,
+      @Value("${maestro.ownership.member-ttl-millis:15000}") long memberTtlInMillis,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating workflowOwnershipManager within Spring boot...");
+    return new WorkflowOwnershipManager(
+        maestroClusterMemberDao,
+        UUID.randomUUID().toString(),
+        partitionCount,
+        virtualNodes,
+        heartbeatIntervalInMillis,
+        memberTtlInMillis,
+        Executors.newSingleThreadScheduledExecutor(),
+        metricRepo);
+  }
+
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
+  @ConditionalOnProperty(value = "maestro.lock.type", havingValue = "cockroachdb")
+  public CockroachDBLockDAO cockroachDBLock(
+      DataSource crdbDataSource,
+      @Qualifier(ConductorConfiguration.CONDUCTOR_QUALIFIER) ObjectMapper objectMapper,
+      ConductorProperties props) {
+    LOG.info("Creating cockroachdb based lock within Spring boot...");
+    return new CockroachDBLockDAO(crdbDataSource, objectMapper, props);
+  }
+
   @Bean
   public IndexDAO indexDAO(
       DataSource crdbDataSource,
@@ -131,10 +200,26 @@ public class DatabaseConfiguration {
       @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
       ConductorProperties props,
       MaestroJobEventPublisher maestroJobEventPublisher,
-      TriggerSubscriptionClient triggerSubscriptionClient) {
+      TriggerSubscriptionClient triggerSubscriptionClient,
+      WorkflowDefinitionCache workflowDefinitionCache) {
     LOG.info("Creating maestroWorkflowDao within Spring boot...");
     return new MaestroWorkflowDao(
-        crdbDataSource, objectMapper, props, maestroJobEventPublisher, triggerSubscriptionClient);
+        crdbDataSource,
+        objectMapper,
+        props,
+        maestroJobEventPublisher,
+        triggerSubscriptionClient,
+        workflowDefinitionCache);
+  }
+
+  @Bean
+  public WorkflowDefinitionCache workflowDefinitionCache(
+      @Value("${maestro.workflow.definition-cache.max-size:10000}") int maxSize,
+      @Value("${maestro.workflow.definition-cache.workflow-ttl-millis:1000}")
+          long workflowTtlMillis,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating workflowDefinitionCache within Spring boot...");
+    return new WorkflowDefinitionCache(maxSize, workflowTtlMillis, metricRepo);
   }
 
   @Bean
@@ -151,10 +236,29 @@ public class DatabaseConfiguration {
       DataSource crdbDataSource,
       @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
       ConductorProperties props,
-      MaestroJobEventPublisher maestroJobEventPublisher) {
+      MaestroJobEventPublisher maestroJobEventPublisher,
+      MaestroJobEventDao maestroJobEventDao,
+      MaestroInstanceArchiveDao maestroInstanceArchiveDao,
+      @Value("${maestro.archive.enabled:false}") boolean archiveEnabled) {
     LOG.info("Creating maestroWorkflowInstanceDao within Spring boot...");
     return new MaestroWorkflowInstanceDao(
-        crdbDataSource, objectMapper, props, maestroJobEventPublisher);
+        crdbDataSource,
+        objectMapper,
+        props,
+        maestroJobEventPublisher,
+        props.isJobEventOutboxEnabled() ? maestroJobEventDao : null,
+        archiveEnabled ? maestroInstanceArchiveDao : null);
+  }
+
+  @Bean
+  public MaestroInstanceArchiveDao maestroInstanceArchiveDao(
+      DataSource crdbDataSource,
+      @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
+      ConductorProperties props,
+      StringCodec stringCodec) {
+    LOG.info("Creating maestroInstanceArchiveDao within Spring boot...");
+    return new MaestroInstanceArchiveDao(
+        crdbDataSource, objectMapper, props, stringCodec, props.getCompressorName());
   }
 
   @Bean
@@ -163,19 +267,48 @@ public class DatabaseConfiguration {
       @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
       ConductorProperties props,
       MaestroJobEventPublisher maestroJobEventPublisher,
-      MaestroMetrics metricRepo) {
+      MaestroJobEventDao maestroJobEventDao,
+      MaestroMetrics metricRepo,
+      @Value("${maestro.run-strategy.instance-id-block-size:1}") long instanceIdBlockSize) {
     LOG.info("Creating maestroRunStrategyDao within Spring boot...");
     return new MaestroRunStrategyDao(
-        crdbDataSource, objectMapper, props, maestroJobEventPublisher, metricRepo);
+        crdbDataSource,
+        objectMapper,
+        props,
+        maestroJobEventPublisher,
+        props.isJobEventOutboxEnabled() ? maestroJobEventDao : null,
+        metricRepo,
+        instanceIdBlockSize);
   }
 
   @Bean
-  public MaestroStepInstanceDao maestroStepInstanceDao(
+  public MaestroJobEventDao maestroJobEventDao(
       DataSource crdbDataSource,
       @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
       ConductorProperties props) {
+    LOG.info("Creating maestroJobEventDao within Spring boot...");
+    return new MaestroJobEventDao(crdbDataSource, objectMapper, props);
+  }
+
+  @Bean
+  public MaestroClusterMemberDao maestroClusterMemberDao(
+      DataSource crdbDataSource,
+      @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
+      ConductorProperties props) {
+    LOG.info("Creating maestroClusterMemberDao within Spring boot...");
+    return new MaestroClusterMemberDao(crdbDataSource, objectMapper, props);
+  }
+
+  @Bean
+  public MaestroStepInstanceDao maestroStepInstanceDao(
+      DataSource crdbDataSource,
+      @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
+      ConductorProperties props,
+      MaestroInstanceArchiveDao maestroInstanceArchiveDao,
+      @Value("${maestro.archive.enabled:false}") boolean archiveEnabled) {
     LOG.info("Creating maestroStepInstanceDAO within Spring boot...");
-    return new MaestroStepInstanceDao(crdbDataSource, objectMapper, props);
+    return new MaestroStepInstanceDao(
+        crdbDataSource, objectMapper, props, archiveEnabled ? maestroInstanceArchiveDao : null);
   }
 
   @Bean
@@ -12,31 +12,48 @@
  */
 package com.netflix.maestro.server.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.maestro.engine.concurrency.InstanceStepConcurrencyHandler;
 import com.netflix.maestro.engine.concurrency.TagPermitManager;
+import com.netflix.maestro.engine.concurrency.WorkflowOwnershipManager;
+import com.netflix.maestro.engine.dao.MaestroInstanceArchiveDao;
+import com.netflix.maestro.engine.dao.MaestroInstanceArchiver;
+import com.netflix.maestro.engine.dao.MaestroJobEventDao;
 import com.netflix.maestro.engine.dao.MaestroRunStrategyDao;
 import com.netflix.maestro.engine.dao.MaestroStepInstanceActionDao;
+import com.netflix.maestro.engine.dao.MaestroStepInstanceDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowDeletionDao;
 import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
+import com.netflix.maestro.engine.dao.WorkflowDefinitionCache;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.handlers.WorkflowRunner;
-import com.netflix.maestro.engine.jobevents.MaestroJobEvent;
 import com.netflix.maestro.engine.listeners.InMemoryJobEventListener;
+import com.netflix.maestro.engine.metrics.MaestroMetrics;
 import com.netflix.maestro.engine.processors.DeleteWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.PublishJobEventProcessor;
 import com.netflix.maestro.engine.processors.RunWorkflowInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.StartWorkflowJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateInstancesJobProcessor;
 import com.netflix.maestro.engine.processors.TerminateThenRunInstanceJobProcessor;
+import com.netflix.maestro.engine.properties.JobEventJournalProperties;
+import com.netflix.maestro.engine.properties.JobEventListenerProperties;
+import com.netflix.maestro.engine.publisher.InMemoryJobEventQueue;
 import com.netflix.maestro.engine.publisher.InMemoryMaestroJobEventPublisher;
+import com.netflix.maestro.engine.publisher.JobEventJournal;
+import com.netflix.maestro.engine.publisher.MaestroJobEventDispatcher;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.engine.publisher.MaestroNotificationPublisher;
 import com.netflix.maestro.engine.publisher.NoOpMaestroNotificationPublisher;
 import com.netflix.maestro.engine.utils.WorkflowHelper;
+import com.netflix.maestro.models.Constants;
 import com.netflix.maestro.models.definition.User;
 import com.netflix.maestro.server.interceptor.UserInfoInterceptor;
+import com.netflix.maestro.server.properties.ConductorProperties;
+import com.netflix.maestro.server.properties.MaestroProperties;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -48,6 +65,7 @@ import org.springframework.context.annotation.Configuration;
 @Slf4j
 public class MaestroServerConfiguration {
   private static final String EVENT_QUEUE_QUALIFIER = "EventPublisherQueue";
+  private static final String RUN_INSTANCES_EXECUTOR_QUALIFIER = "RunInstancesExecutor";
 
   @Bean
   public UserInfoInterceptor userInfoInterceptor(User.UserBuilder callerBuilder) {
@@ -65,18 +83,31 @@ public class MaestroServerConfiguration {
   public DeleteWorkflowJobProcessor deleteWorkflowJobProcessor(
       MaestroWorkflowDeletionDao workflowDataDeletionDao,
       MaestroNotificationPublisher notificationPublisher,
+      WorkflowDefinitionCache workflowDefinitionCache,
       @Value("${maestro.cluster.name}") String clusterName) {
     LOG.info(
         "Creating deleteWorkflowJobProcessor for cluster [{}] within Spring boot...", clusterName);
     return new DeleteWorkflowJobProcessor(
-        workflowDataDeletionDao, notificationPublisher, clusterName);
+        workflowDataDeletionDao, notificationPublisher, workflowDefinitionCache, clusterName);
+  }
+
+  @Bean(name = RUN_INSTANCES_EXECUTOR_QUALIFIER, destroyMethod = "shutdown")
+  @SuppressWarnings({"PMD.DoNotUseThreads"})
+  public ExecutorService runInstancesExecutorService(
+      @Value("${maestro.processor.run-instances-parallelism:8}") int parallelism) {
+    LOG.info("Creating runInstancesExecutorService with [{}] threads...", parallelism);
+    return Executors.newFixedThreadPool(
+        parallelism, Thread.ofPlatform().name("run-instances-", 0).daemon(true).factory());
   }
 
   @Bean
   public RunWorkflowInstancesJobProcessor runWorkflowInstancesJobProcessor(
-      MaestroWorkflowInstanceDao maestroWorkflowInstanceDao, WorkflowRunner workflowRunner) {
+      MaestroWorkflowInstanceDao maestroWorkflowInstanceDao,
+      WorkflowRunner workflowRunner,
+      @Qualifier(RUN_INSTANCES_EXECUTOR_QUALIFIER) ExecutorService runInstancesExecutorService) {
     LOG.info("Creating runWorkflowInstancesJobProcessor within Spring boot...");
-    return new RunWorkflowInstancesJobProcessor(maestroWorkflowInstanceDao, workflowRunner);
+    return new RunWorkflowInstancesJobProcessor(
+        maestroWorkflowInstanceDao, workflowRunner, runInstancesExecutorService);
   }
 
   @Bean
@@ -111,6 +142,8 @@ public class MaestroServerConfiguration {
       MaestroNotificationPublisher notificationPublisher,
       MaestroStepInstanceActionDao maestroStepInstanceActionDao,
       InstanceStepConcurrencyHandler instanceStepConcurrencyHandler,
+      StepWakeUpRegistry stepWakeUpRegistry,
+      WorkflowDefinitionCache workflowDefinitionCache,
       @Value("${maestro.cluster.name}") String clusterName) {
     LOG.info(
         "Creating publishJobEventProcessor for cluster [{}] within Spring boot...", clusterName);
@@ -120,24 +153,94 @@ public class MaestroServerConfiguration {
         TagPermitManager.NOOP_TAG_PERMIT_MANAGER,
         maestroStepInstanceActionDao,
         instanceStepConcurrencyHandler,
+        stepWakeUpRegistry,
+        workflowDefinitionCache,
         clusterName);
   }
 
-  @Bean
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
   @ConditionalOnProperty(
       value = "maestro.publisher.type",
       havingValue = "in-memory",
       matchIfMissing = true)
   public MaestroJobEventPublisher inMemoryMaestroJobEventPublisher(
-      @Qualifier(EVENT_QUEUE_QUALIFIER) LinkedBlockingQueue<MaestroJobEvent> queue) {
+      @Qualifier(EVENT_QUEUE_QUALIFIER) InMemoryJobEventQueue queue,
+      @Value("${maestro.publisher.max-delayed-events:10000}") int maxDelayedEvents,
+      @Value("${maestro.publisher.start-event-coalescing-window-ms:0}") long coalescingWindowMs,
+      MaestroMetrics metricRepo) {
     LOG.info("Creating inMemoryMaestroJobEventPublisher within Spring boot...");
-    return new InMemoryMaestroJobEventPublisher(queue);
+    return new InMemoryMaestroJobEventPublisher(
+        queue,
+        maxDelayedEvents,
+        coalescingWindowMs,
+        Executors.newSingleThreadExecutor(),
+        metricRepo);
+  }
+
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
+  @ConditionalOnProperty(value = "conductor.configs.job-event-outbox-enabled", havingValue = "true")
+  public MaestroJobEventDispatcher maestroJobEventDispatcher(
+      MaestroJobEventDao maestroJobEventDao,
+      MaestroJobEventPublisher maestroJobEventPublisher,
+      ConductorProperties props,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating maestroJobEventDispatcher within Spring boot...");
+    return new MaestroJobEventDispatcher(
+        maestroJobEventDao,
+        maestroJobEventPublisher,
+        Executors.newSingleThreadScheduledExecutor(),
+        props.getJobEventOutboxBatchSize(),
+        props.getJobEventOutboxPollIntervalInMillis(),
+        props.getJobEventOutboxLeaseInMillis(),
+        metricRepo);
+  }
+
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
+  @ConditionalOnProperty(value = "maestro.archive.enabled", havingValue = "true")
+  public MaestroInstanceArchiver maestroInstanceArchiver(
+      MaestroInstanceArchiveDao maestroInstanceArchiveDao,
+      MaestroWorkflowInstanceDao maestroWorkflowInstanceDao,
+      MaestroStepInstanceDao maestroStepInstanceDao,
+      Optional<WorkflowOwnershipManager> workflowOwnershipManager,
+      @Value("${maestro.archive.batch-size:10}") int batchSize,
+      @Value("${maestro.archive.max-age-millis:7776000000}") long maxAgeMillis,
+      @Value("${maestro.archive.interval-millis:600000}") long intervalMillis,
+      @Value("${maestro.archive.batch-delay-millis:1000}") long batchDelayMillis,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating maestroInstanceArchiver within Spring boot...");
+    if (!workflowOwnershipManager.isPresent()) {
+      LOG.warn("Workflow ownership is disabled and every maestro node runs the archiver");
+    }
+    return new MaestroInstanceArchiver(
+        maestroInstanceArchiveDao,
+        maestroWorkflowInstanceDao,
+        maestroStepInstanceDao,
+        workflowOwnershipManager.orElse(null),
+        Executors.newSingleThreadScheduledExecutor(),
+        batchSize,
+        maxAgeMillis,
+        intervalMillis,
+        batchDelayMillis,
+        metricRepo);
   }
 
   @Bean(name = EVENT_QUEUE_QUALIFIER)
-  public LinkedBlockingQueue<MaestroJobEvent> queue() {
-    LOG.info("Creating LinkedBlockingQueue within Spring boot...");
-    return new LinkedBlockingQueue<>();
+  public InMemoryJobEventQueue queue(
+      @Value("${maestro.publisher.queue-capacity:10000}") int capacity,
+      @Value("${maestro.publisher.low-priority-queue-capacity:5000}") int lowPriorityCapacity,
+      @Value("${maestro.publisher.queue-max-block-millis:100}") long maxBlockMillis,
+      MaestroProperties properties,
+      @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating InMemoryJobEventQueue within Spring boot...");
+    JobEventJournalProperties journalProperties = properties.getJobEventJournal();
+    JobEventJournal journal = null;
+    if (journalProperties != null && journalProperties.isEnabled()) {
+      LOG.info("Creating JobEventJournal with [{}] within Spring boot...", journalProperties);
+      journal = new JobEventJournal(journalProperties, objectMapper);
+    }
+    return new InMemoryJobEventQueue(
+        capacity, lowPriorityCapacity, maxBlockMillis, journal, metricRepo);
   }
 
   @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
@@ -148,8 +251,16 @@ public class MaestroServerConfiguration {
       TerminateInstancesJobProcessor terminateInstancesJobProcessor,
       TerminateThenRunInstanceJobProcessor terminateThenRunInstanceJobProcessor,
       PublishJobEventProcessor publishJobEventProcessor,
-      @Qualifier(EVENT_QUEUE_QUALIFIER) LinkedBlockingQueue<MaestroJobEvent> queue) {
+      @Qualifier(EVENT_QUEUE_QUALIFIER) InMemoryJobEventQueue queue,
+      MaestroProperties properties,
+      ConductorProperties props,
+      MaestroMetrics metricRepo) {
     LOG.info("Creating inMemoryJobEventListener within Spring boot...");
+    JobEventListenerProperties listenerProperties = properties.getJobEventListener();
+    if (listenerProperties.getMaxConcurrency() <= 0) {
+      listenerProperties =
+          listenerProperties.toBuilder().maxConcurrency(props.getConnectionPoolMaxSize()).build();
+    }
     return new InMemoryJobEventListener(
         deleteWorkflowJobProcessor,
         runWorkflowInstancesJobProcessor,
@@ -158,6 +269,8 @@ public class MaestroServerConfiguration {
         terminateThenRunInstanceJobProcessor,
         publishJobEventProcessor,
         queue,
-        Executors.newFixedThreadPool(1));
+        InMemoryJobEventListener.createExecutorService(listenerProperties),
+        listenerProperties,
+        metricRepo);
   }
 }
@@ -19,6 +19,7 @@ import brave.Tracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.conductor.core.execution.WorkflowExecutor;
 import com.netflix.conductor.dao.ExecutionDAO;
+import com.netflix.conductor.dao.QueueDAO;
 import com.netflix.maestro.engine.concurrency.InstanceStepConcurrencyHandler;
 import com.netflix.maestro.engine.concurrency.TagPermitManager;
 import com.netflix.maestro.engine.dao.MaestroStepBreakpointDao;
@@ -28,11 +29,14 @@ import com.netflix.maestro.engine.dao.MaestroWorkflowInstanceDao;
 import com.netflix.maestro.engine.dao.OutputDataDao;
 import com.netflix.maestro.engine.eval.MaestroParamExtensionRepo;
 import com.netflix.maestro.engine.eval.ParamEvaluator;
+import com.netflix.maestro.engine.execution.ExecutionDefinitionCache;
+import com.netflix.maestro.engine.execution.StepRuntimeAdaptiveCallbackDelayPolicy;
 import com.netflix.maestro.engine.execution.StepRuntimeCallbackDelayPolicy;
 import com.netflix.maestro.engine.execution.StepRuntimeFixedCallbackDelayPolicy;
 import com.netflix.maestro.engine.execution.StepRuntimeManager;
 import com.netflix.maestro.engine.execution.StepRuntimeSummary;
 import com.netflix.maestro.engine.execution.StepSyncManager;
+import com.netflix.maestro.engine.execution.StepWakeUpRegistry;
 import com.netflix.maestro.engine.execution.WorkflowSummary;
 import com.netflix.maestro.engine.handlers.SignalHandler;
 import com.netflix.maestro.engine.handlers.WorkflowActionHandler;
@@ -42,6 +46,8 @@ import com.netflix.maestro.engine.metrics.MaestroMetrics;
 import com.netflix.maestro.engine.params.DefaultParamManager;
 import com.netflix.maestro.engine.params.OutputDataManager;
 import com.netflix.maestro.engine.params.ParamsManager;
+import com.netflix.maestro.engine.properties.AdaptiveCallbackDelayConfig;
+import com.netflix.maestro.engine.properties.CallbackDelayConfig;
 import com.netflix.maestro.engine.publisher.MaestroJobEventPublisher;
 import com.netflix.maestro.engine.steps.ForeachStepRuntime;
 import com.netflix.maestro.engine.steps.NoOpStepRuntime;
@@ -70,8 +76,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -229,7 +237,13 @@ public class MaestroWorkflowConfiguration {
   public StepRuntimeCallbackDelayPolicy stepRuntimeCallbackPolicy(
       StepRuntimeProperties stepRuntimeProperties) {
     LOG.info("Creating StepRuntimeCallbackDelayPolicy policy within Spring boot...");
-    return new StepRuntimeFixedCallbackDelayPolicy(stepRuntimeProperties.getCallbackDelayConfig());
+    CallbackDelayConfig config = stepRuntimeProperties.getCallbackDelayConfig();
+    StepRuntimeCallbackDelayPolicy fixedPolicy = new StepRuntimeFixedCallbackDelayPolicy(config);
+    AdaptiveCallbackDelayConfig adaptiveConfig = config.getAdaptiveCallbackDelay();
+    if (adaptiveConfig != null && adaptiveConfig.isEnabled()) {
+      return new StepRuntimeAdaptiveCallbackDelayPolicy(fixedPolicy, adaptiveConfig);
+    }
+    return fixedPolicy;
   }
 
   @Bean
@@ -246,7 +260,9 @@ public class MaestroWorkflowConfiguration {
       InstanceStepConcurrencyHandler instanceStepConcurrencyHandler,
       MaestroMetrics metricRepo,
       MaestroTracingManager tracingManager,
-      MaestroParamExtensionRepo extensionRepo) {
+      MaestroParamExtensionRepo extensionRepo,
+      ExecutionDefinitionCache definitionCache,
+      StepWakeUpRegistry stepWakeUpRegistry) {
     LOG.info("Creating Maestro maestroTask within Spring boot...");
     return new MaestroTask(
         stepRuntimeManager,
@@ -261,7 +277,29 @@ public class MaestroWorkflowConfiguration {
         instanceStepConcurrencyHandler,
         metricRepo,
         tracingManager,
-        extensionRepo);
+        extensionRepo,
+        definitionCache,
+        stepWakeUpRegistry);
+  }
+
+  @Bean
+  public ExecutionDefinitionCache executionDefinitionCache(
+      @Value("${maestro.task.definition-cache.max-size:10000}") int maxSize,
+      @Value("${maestro.task.definition-cache.ttl-millis:3600000}") long ttlMillis,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating Maestro executionDefinitionCache within Spring boot...");
+    return new ExecutionDefinitionCache(maxSize, ttlMillis, metricRepo);
+  }
+
+  @Bean
+  public StepWakeUpRegistry stepWakeUpRegistry(
+      QueueDAO queueDAO,
+      @Value("${maestro.task.wake-up-registry.max-subscribed-tasks:100000}") int maxSubscribedTasks,
+      @Value("${maestro.task.wake-up-registry.subscription-ttl-millis:900000}")
+          long subscriptionTtlMillis,
+      MaestroMetrics metricRepo) {
+    LOG.info("Creating Maestro stepWakeUpRegistry within Spring boot...");
+    return new StepWakeUpRegistry(queueDAO, metricRepo, maxSubscribedTasks, subscriptionTtlMillis);
   }
 
   @Bean
@@ -278,9 +316,10 @@ public class MaestroWorkflowConfiguration {
   @DependsOn({"TaskMappers"})
   public MaestroGateTask maestroGateTask(
       MaestroStepInstanceDao stepInstanceDao,
-      @Qualifier(MAESTRO_QUALIFIER) ObjectMapper objectMapper) {
+      @Qualifier(MAESTRO_QUALIFIER) ObjectMapper objectMapper,
+      @Value("${maestro.task.gate.reconcile-interval-millis:600000}") long reconcileInterval) {
     LOG.info("Creating Maestro gateTask within Spring boot...");
-    return new MaestroGateTask(stepInstanceDao, objectMapper);
+    return new MaestroGateTask(stepInstanceDao, objectMapper, reconcileInterval);
   }
 
   @Bean
@@ -306,13 +345,11 @@ public class MaestroWorkflowConfiguration {
   @DependsOn({"sleep", "noop", "subworkflow", "foreach"})
   public StepRuntimeManager stepRuntimeManager(
       @Qualifier(STEP_RUNTIME_QUALIFIER) Map<StepType, StepRuntime> stepRuntimeMap,
-      @Qualifier(Constants.MAESTRO_QUALIFIER) ObjectMapper objectMapper,
       ParamsManager paramsManager,
       MaestroMetrics metricRepo,
       MaestroTracingManager tracingManager) {
     LOG.info("Creating Maestro StepRuntimeManager within Spring boot...");
-    return new StepRuntimeManager(
-        stepRuntimeMap, objectMapper, paramsManager, metricRepo, tracingManager);
+    return new StepRuntimeManager(stepRuntimeMap, paramsManager, metricRepo, tracingManager);
   }
 
   @Bean
@@ -327,11 +364,26 @@ public class MaestroWorkflowConfiguration {
     };
   }
 
-  @Bean
+  @Bean(initMethod = "postConstruct", destroyMethod = "preDestroy")
   public StepSyncManager stepSyncManager(
-      MaestroStepInstanceDao instanceDao, MaestroJobEventPublisher publisher) {
-    LOG.info("Creating Maestro StepSyncManager within Spring boot...");
-    return new StepSyncManager(instanceDao, publisher);
+      MaestroStepInstanceDao instanceDao,
+      MaestroJobEventPublisher publisher,
+      @Value("${maestro.step-sync.group-commit.enabled:false}") boolean groupCommitEnabled,
+      @Value("${maestro.step-sync.group-commit.max-batch-size:100}") int maxBatchSize,
+      @Value("${maestro.step-sync.group-commit.max-batch-delay-millis:5}") long maxBatchDelay,
+      @Value("${maestro.step-sync.group-commit.max-pending-requests:10000}") int maxPending,
+      @Value("${maestro.step-sync.group-commit.sync-timeout-millis:30000}") long syncTimeout) {
+    LOG.info(
+        "Creating Maestro StepSyncManager with group commit [{}] within Spring boot...",
+        groupCommitEnabled);
+    return new StepSyncManager(
+        instanceDao,
+        publisher,
+        maxBatchSize,
+        maxBatchDelay,
+        maxPending,
+        syncTimeout,
+        groupCommitEnabled ? Executors.newSingleThreadExecutor() : null);
   }
 
   @Bean
@@ -12,6 +12,8 @@
  */
 package com.netflix.maestro.server.properties;
 
+import com.netflix.maestro.engine.properties.JobEventJournalProperties;
+import com.netflix.maestro.engine.properties.JobEventListenerProperties;
 import com.netflix.maestro.engine.properties.SelProperties;
 import com.netflix.maestro.models.Constants;
 import lombok.AllArgsConstructor;
@@ -26,4 +28,6 @@ import org.springframework.boot.context.properties.ConstructorBinding;
 @ConfigurationProperties(prefix = Constants.MAESTRO_QUALIFIER)
 public class MaestroProperties {
   private final SelProperties sel;
+  private final JobEventListenerProperties jobEventListener;
+  private final JobEventJournalProperties jobEventJournal;
 }